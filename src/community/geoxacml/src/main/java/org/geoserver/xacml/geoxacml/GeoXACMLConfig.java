@@ -20,6 +20,7 @@ import org.geoserver.xacml.request.RequestCtxBuilderFactory;
 import org.geoserver.xacml.request.RequestCtxBuilderFactoryImpl;
 import org.geoserver.xacml.role.XACMLDefaultRoleAuthority;
 import org.geoserver.xacml.role.XACMLRoleAuthority;
+import org.geoserver.xacml.security.XACMLDecisionCache;
 import org.geotools.xacml.geoxacml.config.GeoXACML;
 import org.geotools.xacml.geoxacml.finder.impl.GeoSelectorModule;
 import org.geotools.xacml.transport.XACMLLocalTransportFactory;
@@ -59,6 +60,10 @@ public class GeoXACMLConfig {
 
     private static Object requstCtxBuilderFactoryLock = new Object();
 
+    private static XACMLDecisionCache decisionCache;
+
+    private static Object decisionCacheLock = new Object();
+
     private static String repositoryBaseDir = null;
 
     static public void reset() {
@@ -68,6 +73,11 @@ public class GeoXACMLConfig {
         synchronized (transportFactoryLock) {
             transportFactory = null;
         }
+        // decisions taken with the old policies are no more valid
+        synchronized (decisionCacheLock) {
+            if (decisionCache != null)
+                decisionCache.clear();
+        }
 
     }
 
@@ -157,6 +167,23 @@ public class GeoXACMLConfig {
 
     }
 
+    /**
+     * Use GeoserverExtensions to lookup a {@link XACMLDecisionCache}, if nothing is configured
+     * a cache with default settings is used
+     * 
+     * @return the cache for PDP decisions
+     */
+    static public XACMLDecisionCache getDecisionCache() {
+        synchronized (decisionCacheLock) {
+            if (decisionCache != null)
+                return decisionCache;
+            decisionCache = GeoServerExtensions.bean(XACMLDecisionCache.class);
+            if (decisionCache == null)
+                decisionCache = new XACMLDecisionCache();
+            return decisionCache;
+        }
+    }
+
     static public RequestCtxBuilderFactory getRequestCtxBuilderFactory() {
         if (requstCtxBuilderFactory != null)
             return requstCtxBuilderFactory;
@@ -55,6 +55,12 @@ public class XACMLDataAccessManager implements DataAccessManager {
 
     public boolean canAccess(Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         GeoXACMLConfig.getXACMLRoleAuthority().prepareRoles(user);
+        XACMLDecisionCache cache = GeoXACMLConfig.getDecisionCache();
+        String key = XACMLDecisionCache.buildKey(user, workspaceKey(workspace), mode);
+        Boolean cached = cache.get(key);
+        if (cached != null)
+            return cached;
+
         List<RequestCtx> requestCtxts = buildWorkspaceRequestCtxListFromRoles(user, workspace, mode);
         if (requestCtxts.isEmpty())
             return false;
@@ -62,11 +68,7 @@ public class XACMLDataAccessManager implements DataAccessManager {
         List<ResponseCtx> responseCtxts = GeoXACMLConfig.getXACMLTransport()
                 .evaluateRequestCtxList(requestCtxts);
 
-        int xacmlDecision = XACMLUtil.getDecisionFromRoleResponses(responseCtxts);
-
-        if (xacmlDecision == Result.DECISION_PERMIT)
-            return true;
-        return false;
+        return cacheDecision(cache, key, XACMLUtil.getDecisionFromRoleResponses(responseCtxts));
     }
 
     public boolean canAccess(Authentication user, LayerInfo layer, AccessMode mode) {
@@ -84,6 +86,12 @@ public class XACMLDataAccessManager implements DataAccessManager {
 
     public boolean canAccess(Authentication user, ResourceInfo resource, AccessMode mode) {
         GeoXACMLConfig.getXACMLRoleAuthority().prepareRoles(user);
+        XACMLDecisionCache cache = GeoXACMLConfig.getDecisionCache();
+        String key = XACMLDecisionCache.buildKey(user, resourceKey(resource), mode);
+        Boolean cached = cache.get(key);
+        if (cached != null)
+            return cached;
+
         List<RequestCtx> requestCtxts = buildResourceInfoRequestCtxListFromRoles(user, resource,
                 mode);
         if (requestCtxts.isEmpty())
@@ -92,11 +100,34 @@ public class XACMLDataAccessManager implements DataAccessManager {
         List<ResponseCtx> responseCtxts = GeoXACMLConfig.getXACMLTransport()
                 .evaluateRequestCtxList(requestCtxts);
 
-        int xacmlDecision = XACMLUtil.getDecisionFromRoleResponses(responseCtxts);
+        return cacheDecision(cache, key, XACMLUtil.getDecisionFromRoleResponses(responseCtxts));
+    }
+
+    /**
+     * Caches the decision, unless the PDP failed to evaluate the request
+     */
+    private boolean cacheDecision(XACMLDecisionCache cache, String key, int xacmlDecision) {
+        if (xacmlDecision == Result.DECISION_INDETERMINATE)
+            return false;
+        boolean permit = xacmlDecision == Result.DECISION_PERMIT;
+        cache.put(key, permit);
+        return permit;
+    }
 
-        if (xacmlDecision == Result.DECISION_PERMIT)
-            return true;
-        return false;
+    private String workspaceKey(WorkspaceInfo workspace) {
+        return "workspace:" + workspace.getName();
+    }
+
+    private String resourceKey(ResourceInfo resource) {
+        String workspaceName;
+        if (resource.getNamespace() != null) {
+            workspaceName = resource.getNamespace().getName();
+            if (workspaceName == null)
+                workspaceName = resource.getNamespace().getURI();
+        } else {
+            workspaceName = resource.getStore().getWorkspace().getName();
+        }
+        return "resource:" + workspaceName + ":" + resource.getName();
     }
 
     public CatalogMode getMode() {
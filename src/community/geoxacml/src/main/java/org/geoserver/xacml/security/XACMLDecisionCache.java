@@ -0,0 +1,171 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+
+package org.geoserver.xacml.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.security.AccessMode;
+import org.geoserver.xacml.role.XACMLRole;
+import org.springframework.security.Authentication;
+import org.springframework.security.GrantedAuthority;
+
+import com.sun.xacml.ctx.Attribute;
+
+/**
+ * Caches the access decisions computed by the PDP, keyed by the enabled role set (including the
+ * role attributes), the resource and the action.
+ * <p>
+ * Since the XACML request also carries the OWS service, request, bounding box and its SRS of the
+ * current OWS call, these are made part of the key as well. Decisions expire after a configurable time to
+ * live, so that policies depending on the environment (e.g. current time) are eventually
+ * re-evaluated, and the whole cache is dropped when the policy repository gets reloaded.
+ * </p>
+ *
+ */
+public class XACMLDecisionCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 1000;
+
+    private Map<String, CachedDecision> decisions = new ConcurrentHashMap<String, CachedDecision>();
+
+    private int maxEntries;
+
+    private long timeToLive;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    public XACMLDecisionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public XACMLDecisionCache(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Builds the cache key for a decision. Must be called after the roles have been prepared by
+     * the {@link org.geoserver.xacml.role.XACMLRoleAuthority}, as the role attributes are part of
+     * the key
+     *
+     * @param user
+     * @param resourceKey a string uniquely identifying the resource being accessed
+     * @param mode
+     */
+    public static String buildKey(Authentication user, String resourceKey, AccessMode mode) {
+        List<String> roles = new ArrayList<String>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            XACMLRole role = (XACMLRole) authority;
+            if (role.isEnabled() == false)
+                continue;
+            StringBuilder sb = new StringBuilder(role.getAuthority());
+            if (role.hasAttributes()) {
+                List<String> attributes = new ArrayList<String>();
+                for (Attribute attribute : role.getAttributes()) {
+                    attributes.add(attribute.getId() + "=" + attribute.getValue().encode());
+                }
+                Collections.sort(attributes);
+                sb.append(attributes);
+            }
+            roles.add(sb.toString());
+        }
+        Collections.sort(roles);
+
+        StringBuilder key = new StringBuilder();
+        key.append(roles).append('|').append(resourceKey).append('|').append(mode);
+
+        // the request builders add the ows call details to the request, see
+        // RequestCtxBuilder#addOWSService and RequestCtxBuilder#addBbox
+        org.geoserver.ows.Request owsRequest = Dispatcher.REQUEST.get();
+        if (owsRequest != null) {
+            key.append('|').append(owsRequest.getService()).append('|')
+                    .append(owsRequest.getRequest());
+            if (owsRequest.getKvp() != null) {
+                key.append('|').append(owsRequest.getKvp().get("BBOX")).append('|')
+                        .append(owsRequest.getKvp().get("SRS"));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached decision, or <code>null</code> if not found or expired
+     */
+    public Boolean get(String key) {
+        CachedDecision decision = decisions.get(key);
+        if (decision != null && decision.expires < System.currentTimeMillis()) {
+            decisions.remove(key);
+            decision = null;
+        }
+        if (decision == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return decision.permit;
+    }
+
+    public void put(String key, boolean permit) {
+        if (decisions.size() >= maxEntries) {
+            evict();
+        }
+        decisions.put(key, new CachedDecision(permit, System.currentTimeMillis() + timeToLive));
+    }
+
+    /**
+     * Drops the expired entries, and if that is not enough, the whole cache
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        for (Iterator<CachedDecision> it = decisions.values().iterator(); it.hasNext();) {
+            if (it.next().expires < now)
+                it.remove();
+        }
+        if (decisions.size() >= maxEntries)
+            decisions.clear();
+    }
+
+    /**
+     * Removes all cached decisions, to be called when the policies change
+     */
+    public void clear() {
+        decisions.clear();
+    }
+
+    public int size() {
+        return decisions.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    static class CachedDecision {
+        boolean permit;
+
+        long expires;
+
+        CachedDecision(boolean permit, long expires) {
+            this.permit = permit;
+            this.expires = expires;
+        }
+    }
+}
@@ -37,6 +37,20 @@ public abstract class XACMLAbstractTransport implements XACMLTransport {
 
     protected Logger logger = Logger.getLogger(this.getClass().getName());
 
+    /**
+     * Maximum number of threads used at the same time when evaluating a list of requests in
+     * multithreaded mode
+     */
+    protected int maxThreads = 8;
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
     public abstract ResponseCtx evaluateRequestCtx(RequestCtx request);
 
     public abstract List<ResponseCtx> evaluateRequestCtxList(List<RequestCtx> requests);
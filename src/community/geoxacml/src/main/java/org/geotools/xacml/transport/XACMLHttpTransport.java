@@ -25,6 +25,7 @@ import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -133,31 +134,38 @@ public class XACMLHttpTransport extends XACMLAbstractTransport {
             return resultList;
         }
 
-        for (RequestCtx request : requests) {
-            HttpThread t = new HttpThread(request);
-            t.start();
-            threadList.add(t);
-        }
-        for (HttpThread t : threadList) {
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        // evaluate in windows of at most maxThreads concurrent requests, large batches would
+        // otherwise start one thread per request
+        for (int start = 0; start < requests.size(); start += maxThreads) {
+            int end = Math.min(start + maxThreads, requests.size());
+            threadList.clear();
+            for (RequestCtx request : requests.subList(start, end)) {
+                HttpThread t = new HttpThread(request);
+                t.start();
+                threadList.add(t);
+            }
+            for (HttpThread t : threadList) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                log(t.getRequestCtx());
+                if (t.getRuntimeException() == null) {
+                    log(t.getResponseCtx());
+                    resultList.add(t.getResponseCtx());
+                } else
+                    throw t.getRuntimeException();
             }
-            log(t.getRequestCtx());
-            if (t.getRuntimeException() == null) {
-                log(t.getResponseCtx());
-                resultList.add(t.getResponseCtx());
-            } else
-                throw t.getRuntimeException();
         }
         return resultList;
 
     }
 
     private void initDigestMap() {
+        // the map is inherited by the threads evaluating a request list, must be thread safe
         if (DigestMap.get() == null)
-            DigestMap.set(new HashMap<String, ResponseCtx>());
+            DigestMap.set(Collections.synchronizedMap(new HashMap<String, ResponseCtx>()));
     }
 
     private ResponseCtx sendHttpPost(RequestCtx requestCtx) {
@@ -106,20 +106,26 @@ public class XACMLLocalTransport extends XACMLAbstractTransport {
             return resultList;
         }
 
-        for (RequestCtx request : requests) {
-            LocalThread t = new LocalThread(request);
-            t.start();
-            threadList.add(t);
-        }
-        for (LocalThread t : threadList) {
-            try {
-                t.join();
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        // evaluate in windows of at most maxThreads concurrent requests, large batches would
+        // otherwise start one thread per request
+        for (int start = 0; start < requests.size(); start += maxThreads) {
+            int end = Math.min(start + maxThreads, requests.size());
+            threadList.clear();
+            for (RequestCtx request : requests.subList(start, end)) {
+                LocalThread t = new LocalThread(request);
+                t.start();
+                threadList.add(t);
+            }
+            for (LocalThread t : threadList) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                log(t.getRequestCtx());
+                log(t.getResponseCtx());
+                resultList.add(t.getResponseCtx());
             }
-            log(t.getRequestCtx());
-            log(t.getResponseCtx());
-            resultList.add(t.getResponseCtx());
         }
         return resultList;
 
@@ -0,0 +1,155 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+
+package org.geoserver.xacml.geoxacml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.Request;
+import org.geoserver.security.AccessMode;
+import org.geoserver.security.impl.AbstractAuthorizationTest;
+import org.geoserver.xacml.role.XACMLRole;
+import org.geoserver.xacml.security.XACMLDataAccessManager;
+import org.geoserver.xacml.security.XACMLDecisionCache;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.providers.TestingAuthenticationToken;
+
+/**
+ * Checks the PDP decision cache, and reports the cost of the cached and uncached evaluation
+ * paths against the local transport
+ */
+public class XACMLDecisionCacheTest extends AbstractAuthorizationTest {
+
+    static final Logger LOGGER = Logger.getLogger(XACMLDecisionCacheTest.class.getName());
+
+    static final int ITERATIONS = 200;
+
+    XACMLDataAccessManager manager;
+
+    XACMLDecisionCache cache;
+
+    List<ResourceInfo> resources;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        rwUser = new TestingAuthenticationToken("rw", "supersecret", new XACMLRole[] {
+                new XACMLRole("READER"), new XACMLRole("WRITER") });
+        roUser = new TestingAuthenticationToken("ro", "supersecret",
+                new XACMLRole[] { new XACMLRole("READER") });
+        anonymous = new TestingAuthenticationToken("anonymous", "",
+                new XACMLRole[] { new XACMLRole(XACMLConstants.AnonymousRole) });
+
+        GeoXACMLConfig.setPolicyRepsoitoryBaseDir("src/test/resources/publicRead/");
+        GeoXACMLConfig.reset();
+        manager = new XACMLDataAccessManager();
+        cache = GeoXACMLConfig.getDecisionCache();
+        cache.clear();
+
+        resources = new ArrayList<ResourceInfo>();
+        resources.add(states);
+        resources.add(roads);
+        resources.add(landmarks);
+        resources.add(bases);
+        resources.add(arcGrid);
+    }
+
+    @Test
+    public void testCachedDecision() throws Exception {
+        long hits = cache.getHits();
+        assertTrue(manager.canAccess(roUser, states, AccessMode.READ));
+        assertFalse(manager.canAccess(roUser, states, AccessMode.WRITE));
+        assertEquals(2, cache.size());
+        assertEquals(hits, cache.getHits());
+
+        // same answers, out of the cache
+        assertTrue(manager.canAccess(roUser, states, AccessMode.READ));
+        assertFalse(manager.canAccess(roUser, states, AccessMode.WRITE));
+        assertEquals(hits + 2, cache.getHits());
+
+        // a different role set does not hit the cache
+        assertTrue(manager.canAccess(rwUser, states, AccessMode.WRITE));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testKeyContainsRequestAttributes() throws Exception {
+        Map<String, Object> kvp = new HashMap<String, Object>();
+        kvp.put("BBOX", new ReferencedEnvelope(0, 10, 0, 10, null));
+        kvp.put("SRS", "EPSG:4326");
+        Request request = new Request();
+        request.setService("WMS");
+        request.setRequest("GetMap");
+        request.setKvp(kvp);
+        Dispatcher.REQUEST.set(request);
+        try {
+            String key = XACMLDecisionCache.buildKey(roUser, "states", AccessMode.READ);
+            assertEquals(key, XACMLDecisionCache.buildKey(roUser, "states", AccessMode.READ));
+
+            // the same bbox in another srs is a different geometry for the pdp
+            kvp.put("SRS", "EPSG:900913");
+            assertNotEquals(key, XACMLDecisionCache.buildKey(roUser, "states", AccessMode.READ));
+            kvp.put("SRS", "EPSG:4326");
+
+            kvp.put("BBOX", new ReferencedEnvelope(0, 20, 0, 10, null));
+            assertNotEquals(key, XACMLDecisionCache.buildKey(roUser, "states", AccessMode.READ));
+        } finally {
+            Dispatcher.REQUEST.remove();
+        }
+    }
+
+    @Test
+    public void testReloadClearsCache() throws Exception {
+        manager.canAccess(roUser, states, AccessMode.READ);
+        manager.canAccess(roUser, toppWs, AccessMode.READ);
+        assertEquals(2, cache.size());
+
+        GeoXACMLConfig.reload();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBenchmark() throws Exception {
+        // warm up the pdp
+        for (ResourceInfo resource : resources) {
+            manager.canAccess(rwUser, resource, AccessMode.READ);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            cache.clear();
+            for (ResourceInfo resource : resources) {
+                manager.canAccess(rwUser, resource, AccessMode.READ);
+            }
+        }
+        long uncached = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (ResourceInfo resource : resources) {
+                manager.canAccess(rwUser, resource, AccessMode.READ);
+            }
+        }
+        long cached = System.nanoTime() - start;
+
+        int checks = ITERATIONS * resources.size();
+        LOGGER.info("Average time per access check, local transport: uncached "
+                + (uncached / checks / 1000) + "us, cached " + (cached / checks / 1000) + "us");
+    }
+}
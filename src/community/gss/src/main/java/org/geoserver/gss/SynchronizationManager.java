@@ -9,12 +9,24 @@ import static org.geoserver.gss.GSSCore.*;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -56,6 +68,10 @@ public class SynchronizationManager extends TimerTask {
 
     static final Logger LOGGER = Logging.getLogger(DefaultGeoServerSynchronizationService.class);
 
+    static final int DEFAULT_MAX_PARALLEL_UNITS = 4;
+
+    static final int DEFAULT_MAX_BACKOFF_RUNS = 16;
+
     FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
 
     Catalog catalog;
@@ -64,6 +80,14 @@ public class SynchronizationManager extends TimerTask {
 
     GSSClientFactory clientFactory;
 
+    int maxParallelUnits = DEFAULT_MAX_PARALLEL_UNITS;
+
+    int maxBackoffRuns = DEFAULT_MAX_BACKOFF_RUNS;
+
+    Map<String, Lock> tableLocks = new HashMap<String, Lock>();
+
+    Map<Integer, UnitStatus> unitStatuses = new LinkedHashMap<Integer, UnitStatus>();
+
     public SynchronizationManager(GeoServer geoServer, GSSClientFactory clientFactory) {
         this.catalog = geoServer.getCatalog();
         this.core = new GSSCore(geoServer);
@@ -86,7 +110,13 @@ public class SynchronizationManager extends TimerTask {
 
     /**
      * Runs the synchronisation on all unit layers that require it (all the ones that haven't
-     * synchronised according to the requested frequency and that are inside the call window)
+     * synchronised according to the requested frequency and that are inside the call window).
+     * <p>
+     * Each unit is handled by its own worker, with at most {@link #getMaxParallelUnits()} units
+     * being synchronised at the same time, so that a slow or unreachable unit does not delay the
+     * others. The layers of a single unit are synchronised in sequence, and two units never work
+     * on the same layer at the same time. The method returns once all the workers are done.
+     * </p>
      * 
      * @throws IOException
      */
@@ -98,191 +128,347 @@ public class SynchronizationManager extends TimerTask {
             return;
         }
 
+        // grab the layers to be synchronised, grouped by unit
+        final VersioningDataStore ds = core.getVersioningStore();
+        Map<Integer, List<LayerSynchronization>> units = getOutstandingLayers(ds);
+        if (units.isEmpty()) {
+            return;
+        }
+
+        LOGGER.info("Performing scheduled synchronisation of " + units.size() + " units");
+
+        int threads = Math.max(1, Math.min(maxParallelUnits, units.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "GSS synchronisation " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final List<LayerSynchronization> layers : units.values()) {
+                final UnitStatus status = getUnitStatus(layers.get(0));
+                // avoid the units that have been failing lately, we'll try again later
+                if (status.skipRun()) {
+                    LOGGER.log(Level.INFO, "Unit " + status.getUnitName() + " failed "
+                            + status.getConsecutiveFailures() + " times in a row, skipping it "
+                            + "for this run");
+                    continue;
+                }
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        synchronizeUnit(ds, status, layers);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw (IOException) new IOException(
+                            "Interrupted while waiting for the synchronisation to complete")
+                            .initCause(e);
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.SEVERE, "Unexpected error during the synchronisation", e
+                            .getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads the outstanding layers, grouped by unit, keeping the units and layers in order of last
+     * synchronisation
+     */
+    Map<Integer, List<LayerSynchronization>> getOutstandingLayers(VersioningDataStore ds)
+            throws IOException {
+        Map<Integer, List<LayerSynchronization>> units = new LinkedHashMap<Integer, List<LayerSynchronization>>();
         FeatureIterator<SimpleFeature> fi = null;
-        FeatureIterator<SimpleFeature> li = null;
         try {
-            // grab the layers to be synchronised
-            VersioningDataStore ds = core.getVersioningStore();
             FeatureSource<SimpleFeatureType, SimpleFeature> outstanding = ds
                     .getFeatureSource(SYNCH_OUTSTANDING);
             DefaultQuery q = new DefaultQuery(SYNCH_OUTSTANDING);
             q.setSortBy(new SortBy[] { ff.sort("last_synchronization", SortOrder.ASCENDING) });
 
-            LOGGER.info("Performing scheduled synchronisation");
-
             fi = outstanding.getFeatures(q).features();
-
-            // the set of units we failed to synchronize with. The problem might be a connection
-            // timeout, we don't really want to multiply the timeout by the number of layers
-            Set<Integer> unitBlacklist = new HashSet<Integer>();
-
             while (fi.hasNext()) {
-                // extract relevant attributes
-                SimpleFeature layer = fi.next();
-                int unitId = (Integer) layer.getAttribute("unit_id");
-                int tableId = (Integer) layer.getAttribute("table_id");
-                String unitName = (String) layer.getAttribute("unit_name");
-                String tableName = (String) layer.getAttribute("table_name");
-                String address = (String) layer.getAttribute("unit_address");
-                String user = (String) layer.getAttribute("synch_user");
-                String password = (String) layer.getAttribute("synch_password");
-                Long getDiffCentralRevision = (Long) layer.getAttribute("getdiff_central_revision");
-                Long lastUnitRevision = (Long) layer.getAttribute("last_unit_revision");
-
-                // avoid the unit that already failed this run, we'll try next run
-                if (unitBlacklist.contains(unitId)) {
-                    LOGGER.log(Level.INFO, "Unit " + unitName + " is blacklisted "
-                            + "for this run, skipping " + tableName);
-                    continue;
+                LayerSynchronization layer = new LayerSynchronization(fi.next());
+                List<LayerSynchronization> layers = units.get(layer.unitId);
+                if (layers == null) {
+                    layers = new ArrayList<LayerSynchronization>();
+                    units.put(layer.unitId, layers);
                 }
+                layers.add(layer);
+            }
+        } finally {
+            if (fi != null) {
+                fi.close();
+            }
+        }
+        return units;
+    }
 
-                Transaction transaction = null;
+    /**
+     * Synchronises all the outstanding layers of a unit, stopping at the first failure (the
+     * problem might be a connection timeout, we don't really want to multiply the timeout by the
+     * number of layers)
+     */
+    void synchronizeUnit(VersioningDataStore ds, UnitStatus status,
+            List<LayerSynchronization> layers) {
+        long start = System.currentTimeMillis();
+        status.running = true;
+        try {
+            for (LayerSynchronization layer : layers) {
+                Lock lock = getTableLock(layer.tableName);
+                lock.lock();
                 try {
-                    // build the transaction with the proper author and commit message
-                    transaction = new DefaultTransaction();
-
-                    // get the last central revision the client knows about
-                    GSSClient client = getClient(address, user, password);
-                    QName layerName = getLayerName(tableName);
-                    long clientCentralRevision = client.getCentralRevision(layerName);
-
-                    // compute the diff that we have to send the client. Notice that we have
-                    // to skip over the local change occurred when we last performed a GetDiff
-                    // against the client
-                    VersioningFeatureStore fs = (VersioningFeatureStore) ds
-                            .getFeatureSource(tableName);
-                    fs.setTransaction(transaction);
-                    String fromRevision = clientCentralRevision == -1 ? "FIRST" : String
-                            .valueOf(clientCentralRevision);
-                    TransactionType centralChanges;
-                    LOGGER.log(Level.INFO, "About to compute PostDiff changes. Last central revision known to client " + clientCentralRevision + ", last GetDiff central revision " + getDiffCentralRevision);
-                    if (getDiffCentralRevision == null || clientCentralRevision >= getDiffCentralRevision) {
-                        // either first time or we don't need to make jumps
-                        LOGGER.log(Level.INFO, "First PostDiff or clientRevion same as the last central one, computing diff from " + fromRevision +  " to LAST");
-                        FeatureDiffReader fdr = fs.getDifferences(fromRevision, "LAST", null, null);
-                        centralChanges = new VersioningTransactionConverter().convert(fdr,
-                                TransactionType.class);
-                    } else  {
-                        // we need to jump over the last local changes
-                        String before = String.valueOf(getDiffCentralRevision - 1);
-                        String after = String.valueOf(getDiffCentralRevision);
-                        LOGGER.log(Level.INFO, "Client revision lower than the server one, computing diff from " + fromRevision +  " to " + before + " and merging with diffs from " + after + " to LAST");
-                        FeatureDiffReader fdr1 = fs.getDifferences(fromRevision, before, null, null);
-                        FeatureDiffReader fdr2 = fs.getDifferences(after, "LAST", null, null);
-                        FeatureDiffReader[] fdr = new FeatureDiffReader[] { fdr1, fdr2 };
-                        centralChanges = new VersioningTransactionConverter().convert(fdr,
-                                TransactionType.class);
-                    }
-
-                    // what is the latest change on this layer? (worst case it's the last GetDiff
-                    // from this Unit)
-                    long lastCentralRevision = clientCentralRevision;
-                    li = fs.getLog("LAST", fromRevision, null, null, 1).features();
-                    if (li.hasNext()) {
-                        lastCentralRevision = (Long) li.next().getAttribute("revision");
+                    if (!synchronizeLayer(ds, status, layer)) {
+                        return;
                     }
-                    li.close();
-
-                    // finally run the PostDiff
-                    PostDiffType postDiff = new PostDiffType();
-                    postDiff.setTypeName(layerName);
-                    postDiff.setFromVersion(clientCentralRevision);
-                    postDiff.setToVersion(lastCentralRevision);
-                    postDiff.setTransaction(centralChanges);
-                    client.postDiff(postDiff);
-
-                    // grab the changes from the client and apply them locally
-                    GetDiffType getDiff = new GetDiffType();
-                    getDiff.setFromVersion(lastUnitRevision == null ? -1 : lastUnitRevision);
-                    getDiff.setTypeName(layerName);
-                    GetDiffResponseType gdr = client.getDiff(getDiff);
-                    TransactionType unitChanges = gdr.getTransaction();
-                    core.applyChanges(unitChanges, fs);
-                    
-                    // mark down this layer as succesfully synchronised
-                    FeatureStore<SimpleFeatureType, SimpleFeature> tuMetadata = (FeatureStore<SimpleFeatureType, SimpleFeature>) ds
-                            .getFeatureSource(SYNCH_UNIT_TABLES);
-                    tuMetadata.setTransaction(transaction);
-                    SimpleFeatureType tuSchema = tuMetadata.getSchema();
-                    int unitChangeCount = core.countChanges(unitChanges);
-                    int centralChangeCount = core.countChanges(centralChanges);
-                    if (unitChangeCount == 0 && centralChangeCount == 0) {
-                        // just update the last_synch marker, as nothing else happened and
-                        // this way we can avoid eating away central revision number (which
-                        // might go up very rapidly otherwise)
-                        AttributeDescriptor[] atts = new AttributeDescriptor[] { tuSchema
-                                .getDescriptor("last_synchronization") };
-                        Object[] values = new Object[] { new Date() };
-                        Filter filter = ff.and(ff.equals(ff.property("table_id"), ff
-                                .literal(tableId)), ff.equals(ff.property("unit_id"), ff
-                                .literal(unitId)));
-                        tuMetadata.modifyFeatures(atts, values, filter);
-                    } else {
-                        AttributeDescriptor[] atts = new AttributeDescriptor[] {
-                                tuSchema.getDescriptor("last_synchronization"),
-                                tuSchema.getDescriptor("getdiff_central_revision"),
-                                tuSchema.getDescriptor("last_unit_revision") };
-                        Object[] values = new Object[] { new Date(),
-                                Long.parseLong(fs.getVersion()), gdr.getToVersion() };
-                        Filter filter = ff.and(ff.equals(ff.property("table_id"), ff
-                                .literal(tableId)), ff.equals(ff.property("unit_id"), ff
-                                .literal(unitId)));
-                        tuMetadata.modifyFeatures(atts, values, filter);
-                    }
-
-                    // mark the unit as succeffully updated
-                    updateUnitStatus(ds, transaction, unitId, false);
-                    
-                    // the the commit log
-                    transaction.putProperty(VersioningDataStore.AUTHOR, "gss");
-                    transaction.putProperty(VersioningDataStore.MESSAGE, "Synchronizing with Unit '" 
-                            + unitName + "' on table '" + tableName + "': " + centralChangeCount 
-                            + " changes sent and " + unitChangeCount + " changes received");
-
-                    // close up
-                    transaction.commit();
-                    LOGGER.log(Level.INFO, "Successfull synchronisation of table " + tableName
-                            + " for unit " + unitName + "(" + centralChangeCount
-                            + " changes sent to the Unit, " + unitChangeCount
-                            + " change incoming from the Unit)");
-                } catch (Exception e) {
-                    LOGGER.log(Level.SEVERE, "Synchronisation of table " + tableName + " for unit "
-                            + unitName + " failed", e);
-
-                    // rollback all current changes
-                    transaction.rollback();
-
-                    // if anything at all went bad mark the layer synch as failed
-                    FeatureStore<SimpleFeatureType, SimpleFeature> tuMetadata = (FeatureStore<SimpleFeatureType, SimpleFeature>) ds
-                            .getFeatureSource(SYNCH_UNIT_TABLES);
-                    SimpleFeatureType tuSchema = tuMetadata.getSchema();
-                    AttributeDescriptor[] atts = new AttributeDescriptor[] { tuSchema
-                            .getDescriptor("last_failure"), };
-                    Object[] values = new Object[] { new Date() };
-                    Filter filter = ff.and(ff.equals(ff.property("table_id"), ff.literal(tableId)),
-                            ff.equals(ff.property("unit_id"), ff.literal(unitId)));
-                    tuMetadata.modifyFeatures(atts, values, filter);
-
-                    // mark the unit as failed
-                    updateUnitStatus(ds, Transaction.AUTO_COMMIT, unitId, true);
-
-                    // blacklist the unit, we'll retry later
-                    unitBlacklist.add(unitId);
                 } finally {
-                    if (transaction != null) {
-                        transaction.close();
-                    }
+                    lock.unlock();
                 }
             }
+            status.succeeded();
         } finally {
-            if (fi != null) {
-                fi.close();
+            status.running = false;
+            status.lastDuration = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Synchronises a single layer with a unit
+     * 
+     * @return true if the synchronisation succeeded, false otherwise
+     */
+    boolean synchronizeLayer(VersioningDataStore ds, UnitStatus status,
+            LayerSynchronization layer) {
+        int unitId = layer.unitId;
+        int tableId = layer.tableId;
+        String unitName = layer.unitName;
+        String tableName = layer.tableName;
+        Long getDiffCentralRevision = layer.getDiffCentralRevision;
+        Long lastUnitRevision = layer.lastUnitRevision;
+
+        Transaction transaction = null;
+        FeatureIterator<SimpleFeature> li = null;
+        try {
+            // build the transaction with the proper author and commit message
+            transaction = new DefaultTransaction();
+
+            // get the last central revision the client knows about
+            GSSClient client = getClient(layer.address, layer.user, layer.password);
+            QName layerName = getLayerName(tableName);
+            long clientCentralRevision = client.getCentralRevision(layerName);
+
+            // compute the diff that we have to send the client. Notice that we have
+            // to skip over the local change occurred when we last performed a GetDiff
+            // against the client
+            VersioningFeatureStore fs = (VersioningFeatureStore) ds
+                    .getFeatureSource(tableName);
+            fs.setTransaction(transaction);
+            String fromRevision = clientCentralRevision == -1 ? "FIRST" : String
+                    .valueOf(clientCentralRevision);
+            TransactionType centralChanges;
+            LOGGER.log(Level.INFO, "About to compute PostDiff changes. Last central revision known to client " + clientCentralRevision + ", last GetDiff central revision " + getDiffCentralRevision);
+            if (getDiffCentralRevision == null || clientCentralRevision >= getDiffCentralRevision) {
+                // either first time or we don't need to make jumps
+                LOGGER.log(Level.INFO, "First PostDiff or clientRevion same as the last central one, computing diff from " + fromRevision +  " to LAST");
+                FeatureDiffReader fdr = fs.getDifferences(fromRevision, "LAST", null, null);
+                centralChanges = new VersioningTransactionConverter().convert(fdr,
+                        TransactionType.class);
+            } else  {
+                // we need to jump over the last local changes
+                String before = String.valueOf(getDiffCentralRevision - 1);
+                String after = String.valueOf(getDiffCentralRevision);
+                LOGGER.log(Level.INFO, "Client revision lower than the server one, computing diff from " + fromRevision +  " to " + before + " and merging with diffs from " + after + " to LAST");
+                FeatureDiffReader fdr1 = fs.getDifferences(fromRevision, before, null, null);
+                FeatureDiffReader fdr2 = fs.getDifferences(after, "LAST", null, null);
+                FeatureDiffReader[] fdr = new FeatureDiffReader[] { fdr1, fdr2 };
+                centralChanges = new VersioningTransactionConverter().convert(fdr,
+                        TransactionType.class);
+            }
+
+            // what is the latest change on this layer? (worst case it's the last GetDiff
+            // from this Unit)
+            long lastCentralRevision = clientCentralRevision;
+            li = fs.getLog("LAST", fromRevision, null, null, 1).features();
+            if (li.hasNext()) {
+                lastCentralRevision = (Long) li.next().getAttribute("revision");
             }
+            li.close();
+            li = null;
+
+            // finally run the PostDiff
+            PostDiffType postDiff = new PostDiffType();
+            postDiff.setTypeName(layerName);
+            postDiff.setFromVersion(clientCentralRevision);
+            postDiff.setToVersion(lastCentralRevision);
+            postDiff.setTransaction(centralChanges);
+            client.postDiff(postDiff);
+            // the changes have been sent, no need to keep them around while waiting for the unit
+            int centralChangeCount = core.countChanges(centralChanges);
+            postDiff = null;
+            centralChanges = null;
+
+            // grab the changes from the client and apply them locally
+            GetDiffType getDiff = new GetDiffType();
+            getDiff.setFromVersion(lastUnitRevision == null ? -1 : lastUnitRevision);
+            getDiff.setTypeName(layerName);
+            GetDiffResponseType gdr = client.getDiff(getDiff);
+            TransactionType unitChanges = gdr.getTransaction();
+            core.applyChanges(unitChanges, fs);
+            
+            // mark down this layer as succesfully synchronised
+            FeatureStore<SimpleFeatureType, SimpleFeature> tuMetadata = (FeatureStore<SimpleFeatureType, SimpleFeature>) ds
+                    .getFeatureSource(SYNCH_UNIT_TABLES);
+            tuMetadata.setTransaction(transaction);
+            SimpleFeatureType tuSchema = tuMetadata.getSchema();
+            int unitChangeCount = core.countChanges(unitChanges);
+            if (unitChangeCount == 0 && centralChangeCount == 0) {
+                // just update the last_synch marker, as nothing else happened and
+                // this way we can avoid eating away central revision number (which
+                // might go up very rapidly otherwise)
+                AttributeDescriptor[] atts = new AttributeDescriptor[] { tuSchema
+                        .getDescriptor("last_synchronization") };
+                Object[] values = new Object[] { new Date() };
+                Filter filter = ff.and(ff.equals(ff.property("table_id"), ff
+                        .literal(tableId)), ff.equals(ff.property("unit_id"), ff
+                        .literal(unitId)));
+                tuMetadata.modifyFeatures(atts, values, filter);
+            } else {
+                AttributeDescriptor[] atts = new AttributeDescriptor[] {
+                        tuSchema.getDescriptor("last_synchronization"),
+                        tuSchema.getDescriptor("getdiff_central_revision"),
+                        tuSchema.getDescriptor("last_unit_revision") };
+                Object[] values = new Object[] { new Date(),
+                        Long.parseLong(fs.getVersion()), gdr.getToVersion() };
+                Filter filter = ff.and(ff.equals(ff.property("table_id"), ff
+                        .literal(tableId)), ff.equals(ff.property("unit_id"), ff
+                        .literal(unitId)));
+                tuMetadata.modifyFeatures(atts, values, filter);
+            }
+
+            // mark the unit as succeffully updated
+            updateUnitStatus(ds, transaction, unitId, false);
+            
+            // the the commit log
+            transaction.putProperty(VersioningDataStore.AUTHOR, "gss");
+            transaction.putProperty(VersioningDataStore.MESSAGE, "Synchronizing with Unit '" 
+                    + unitName + "' on table '" + tableName + "': " + centralChangeCount 
+                    + " changes sent and " + unitChangeCount + " changes received");
+
+            // close up
+            transaction.commit();
+            status.layerSynchronized(centralChangeCount, unitChangeCount);
+            LOGGER.log(Level.INFO, "Successfull synchronisation of table " + tableName
+                    + " for unit " + unitName + "(" + centralChangeCount
+                    + " changes sent to the Unit, " + unitChangeCount
+                    + " change incoming from the Unit)");
+            return true;
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Synchronisation of table " + tableName + " for unit "
+                    + unitName + " failed", e);
+            status.failed();
+
+            try {
+                // rollback all current changes
+                transaction.rollback();
+    
+                // if anything at all went bad mark the layer synch as failed
+                FeatureStore<SimpleFeatureType, SimpleFeature> tuMetadata = (FeatureStore<SimpleFeatureType, SimpleFeature>) ds
+                        .getFeatureSource(SYNCH_UNIT_TABLES);
+                SimpleFeatureType tuSchema = tuMetadata.getSchema();
+                AttributeDescriptor[] atts = new AttributeDescriptor[] { tuSchema
+                        .getDescriptor("last_failure"), };
+                Object[] values = new Object[] { new Date() };
+                Filter filter = ff.and(ff.equals(ff.property("table_id"), ff.literal(tableId)),
+                        ff.equals(ff.property("unit_id"), ff.literal(unitId)));
+                tuMetadata.modifyFeatures(atts, values, filter);
+    
+                // mark the unit as failed
+                updateUnitStatus(ds, Transaction.AUTO_COMMIT, unitId, true);
+            } catch (IOException ioe) {
+                LOGGER.log(Level.SEVERE, "Failed to record the synchronisation failure of table "
+                        + tableName + " for unit " + unitName, ioe);
+            }
+            return false;
+        } finally {
             if (li != null) {
                 li.close();
             }
+            if (transaction != null) {
+                try {
+                    transaction.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Failed to close the synchronisation transaction", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the lock guarding the synchronisation of the specified table
+     */
+    Lock getTableLock(String tableName) {
+        synchronized (tableLocks) {
+            Lock lock = tableLocks.get(tableName);
+            if (lock == null) {
+                lock = new ReentrantLock();
+                tableLocks.put(tableName, lock);
+            }
+            return lock;
+        }
+    }
+
+    UnitStatus getUnitStatus(LayerSynchronization layer) {
+        synchronized (unitStatuses) {
+            UnitStatus status = unitStatuses.get(layer.unitId);
+            if (status == null) {
+                status = new UnitStatus(layer.unitId, layer.unitName);
+                unitStatuses.put(layer.unitId, status);
+            }
+            return status;
+        }
+    }
+
+    /**
+     * Returns the synchronisation status and progress of the units synchronised so far, keyed by
+     * unit id
+     */
+    public Map<Integer, UnitStatus> getUnitStatuses() {
+        synchronized (unitStatuses) {
+            return new LinkedHashMap<Integer, UnitStatus>(unitStatuses);
         }
+    }
+
+    /**
+     * The max number of units synchronised in parallel
+     */
+    public int getMaxParallelUnits() {
+        return maxParallelUnits;
+    }
+
+    public void setMaxParallelUnits(int maxParallelUnits) {
+        this.maxParallelUnits = maxParallelUnits;
+    }
 
+    /**
+     * The max number of consecutive runs a failing unit gets skipped for
+     */
+    public int getMaxBackoffRuns() {
+        return maxBackoffRuns;
+    }
+
+    public void setMaxBackoffRuns(int maxBackoffRuns) {
+        this.maxBackoffRuns = maxBackoffRuns;
     }
 
     /**
@@ -324,4 +510,159 @@ public class SynchronizationManager extends TimerTask {
         return clientFactory.createClient(new URL(address), username, password);
     }
 
+    /**
+     * The synchronisation parameters of a unit layer, as read from the outstanding layers view
+     */
+    static class LayerSynchronization {
+        int unitId;
+
+        int tableId;
+
+        String unitName;
+
+        String tableName;
+
+        String address;
+
+        String user;
+
+        String password;
+
+        Long getDiffCentralRevision;
+
+        Long lastUnitRevision;
+
+        LayerSynchronization(SimpleFeature layer) {
+            unitId = (Integer) layer.getAttribute("unit_id");
+            tableId = (Integer) layer.getAttribute("table_id");
+            unitName = (String) layer.getAttribute("unit_name");
+            tableName = (String) layer.getAttribute("table_name");
+            address = (String) layer.getAttribute("unit_address");
+            user = (String) layer.getAttribute("synch_user");
+            password = (String) layer.getAttribute("synch_password");
+            getDiffCentralRevision = (Long) layer.getAttribute("getdiff_central_revision");
+            lastUnitRevision = (Long) layer.getAttribute("last_unit_revision");
+        }
+    }
+
+    /**
+     * Synchronisation progress and failure backoff of a single unit. A unit that fails is retried
+     * the next time it's outstanding, if it fails again it's skipped once, then three times, and
+     * so on, up to {@link SynchronizationManager#getMaxBackoffRuns()} times
+     */
+    public class UnitStatus {
+        int unitId;
+
+        String unitName;
+
+        volatile boolean running;
+
+        volatile int consecutiveFailures;
+
+        volatile int runsToSkip;
+
+        AtomicLong layersSynchronized = new AtomicLong();
+
+        AtomicLong layersFailed = new AtomicLong();
+
+        AtomicLong changesSent = new AtomicLong();
+
+        AtomicLong changesReceived = new AtomicLong();
+
+        volatile Date lastSuccess;
+
+        volatile Date lastFailure;
+
+        volatile long lastDuration;
+
+        UnitStatus(int unitId, String unitName) {
+            this.unitId = unitId;
+            this.unitName = unitName;
+        }
+
+        /**
+         * Returns true if the unit should be skipped in the current run, consuming one of the
+         * runs to be skipped
+         */
+        synchronized boolean skipRun() {
+            if (runsToSkip > 0) {
+                runsToSkip--;
+                return true;
+            }
+            return false;
+        }
+
+        void layerSynchronized(int sent, int received) {
+            layersSynchronized.incrementAndGet();
+            changesSent.addAndGet(sent);
+            changesReceived.addAndGet(received);
+        }
+
+        synchronized void succeeded() {
+            consecutiveFailures = 0;
+            runsToSkip = 0;
+            lastSuccess = new Date();
+        }
+
+        synchronized void failed() {
+            layersFailed.incrementAndGet();
+            lastFailure = new Date();
+            consecutiveFailures++;
+            // 0, 1, 3, 7, ... runs skipped
+            long skip = (1l << Math.min(consecutiveFailures - 1, 30)) - 1;
+            runsToSkip = (int) Math.min(skip, maxBackoffRuns);
+        }
+
+        public int getUnitId() {
+            return unitId;
+        }
+
+        public String getUnitName() {
+            return unitName;
+        }
+
+        public boolean isRunning() {
+            return running;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public int getRunsToSkip() {
+            return runsToSkip;
+        }
+
+        public long getLayersSynchronized() {
+            return layersSynchronized.get();
+        }
+
+        public long getLayersFailed() {
+            return layersFailed.get();
+        }
+
+        public long getChangesSent() {
+            return changesSent.get();
+        }
+
+        public long getChangesReceived() {
+            return changesReceived.get();
+        }
+
+        public Date getLastSuccess() {
+            return lastSuccess;
+        }
+
+        public Date getLastFailure() {
+            return lastFailure;
+        }
+
+        /**
+         * The duration of the last synchronisation of this unit, in milliseconds
+         */
+        public long getLastDuration() {
+            return lastDuration;
+        }
+    }
+
 }
@@ -93,6 +93,8 @@ public class SynchronizationManagerTest extends GeoServerAbstractTestSupport {
         // grab the synch manager
         synch = (SynchronizationManager) applicationContext.getBeansOfType(
                 SynchronizationManager.class).values().iterator().next();
+        // forget about the units statuses of previous tests
+        synch.unitStatuses.clear();
 
         // disable automated scheduling, we control how does what here
         Timer timer = (Timer) applicationContext.getBean("gssTimerFactory");
@@ -337,4 +339,97 @@ public class SynchronizationManagerTest extends GeoServerAbstractTestSupport {
         assertEquals(0, restricted.getCount(new DefaultQuery("restricted", removeFilter)));
     }
 
+    public void testFailingUnitDoesNotBlockOthers() throws Exception {
+        // add a second unit synchronising the same table
+        long unit2Id = addFeature(fsUnits, "unit2", "http://localhost:8082/geoserver/ows",
+                null, null, null, null, 60, 10, false);
+        long restrictedId = (Integer) getSingleFeature(fsUnitTables, Filter.INCLUDE)
+                .getAttribute("table_id");
+        addFeature(fsUnitTables, unit2Id, restrictedId, null, null, null, null);
+
+        // the first unit is unreachable
+        GSSClient client1 = createMock(GSSClient.class);
+        expect(client1.getCentralRevision((QName) anyObject())).andThrow(
+                new IOException("Host unreachable"));
+        replay(client1);
+
+        // the second one works fine
+        QName typeName = new QName("http://www.openplans.org/spearfish", "restricted");
+        PostDiffType postDiff = new PostDiffType();
+        postDiff.setFromVersion(-1);
+        postDiff.setToVersion(-1);
+        postDiff.setTypeName(typeName);
+        postDiff.setTransaction(WfsFactory.eINSTANCE.createTransactionType());
+        GSSClient client2 = createMock(GSSClient.class);
+        expect(client2.getCentralRevision((QName) anyObject())).andReturn(new Long(-1));
+        client2.postDiff(postDiff);
+        expect(client2.getDiff((GetDiffType) anyObject())).andReturn(new GetDiffResponseType());
+        replay(client2);
+
+        GSSClientFactory factory = createMock(GSSClientFactory.class);
+        expect(factory.createClient(new URL("http://localhost:8081/geoserver/ows"), null, null))
+                .andReturn(client1);
+        expect(factory.createClient(new URL("http://localhost:8082/geoserver/ows"), null, null))
+                .andReturn(client2);
+        replay(factory);
+
+        synch.clientFactory = factory;
+        synch.setMaxParallelUnits(2);
+        synch.synchronizeOustandlingLayers();
+        verify(client1, client2, factory);
+
+        // check the units status
+        SimpleFeature f = getSingleFeature(fsUnits, ff.equal(ff.property("unit_name"), ff.literal("unit1"), false));
+        assertTrue((Boolean) f.getAttribute("errors"));
+        f = getSingleFeature(fsUnits, ff.equal(ff.property("unit_name"), ff.literal("unit2"), false));
+        assertFalse((Boolean) f.getAttribute("errors"));
+
+        // and the progress metrics
+        Map<Integer, SynchronizationManager.UnitStatus> statuses = synch.getUnitStatuses();
+        SynchronizationManager.UnitStatus status1 = null, status2 = null;
+        for (SynchronizationManager.UnitStatus status : statuses.values()) {
+            if ("unit1".equals(status.getUnitName())) {
+                status1 = status;
+            } else if ("unit2".equals(status.getUnitName())) {
+                status2 = status;
+            }
+        }
+        assertEquals(1, status1.getLayersFailed());
+        assertEquals(0, status1.getLayersSynchronized());
+        assertEquals(1, status1.getConsecutiveFailures());
+        assertNotNull(status1.getLastFailure());
+        assertEquals(0, status2.getLayersFailed());
+        assertEquals(1, status2.getLayersSynchronized());
+        assertNotNull(status2.getLastSuccess());
+        assertFalse(status2.isRunning());
+    }
+
+    public void testFailureBackoff() throws Exception {
+        // retry right away on failure
+        fsUnits.modifyFeatures(fsUnits.getSchema().getDescriptor("synch_retry"), new Float(0),
+                Filter.INCLUDE);
+
+        // the unit is unreachable, we expect only two attempts out of three runs
+        GSSClient client = createMock(GSSClient.class);
+        expect(client.getCentralRevision((QName) anyObject())).andThrow(
+                new IOException("Host unreachable")).times(2);
+        replay(client);
+        GSSClientFactory factory = createMock(GSSClientFactory.class);
+        expect(factory.createClient(new URL("http://localhost:8081/geoserver/ows"), null, null))
+                .andReturn(client).times(2);
+        replay(factory);
+
+        synch.clientFactory = factory;
+        for (int i = 0; i < 3; i++) {
+            synch.synchronizeOustandlingLayers();
+            Thread.sleep(50);
+        }
+        verify(client, factory);
+
+        SynchronizationManager.UnitStatus status = synch.getUnitStatuses().values().iterator()
+                .next();
+        assertEquals(2, status.getConsecutiveFailures());
+        assertEquals(0, status.getRunsToSkip());
+    }
+
 }
@@ -20,6 +20,7 @@ import org.geoserver.config.impl.GeoServerImpl;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.config.util.XStreamServiceLoader;
 import org.geoserver.jdbcconfig.catalog.JDBCCatalogFacade;
+import org.geoserver.jdbcconfig.internal.ChangeLogWatcher;
 import org.geoserver.jdbcconfig.internal.ConfigDatabase;
 import org.geoserver.jdbcconfig.internal.JDBCConfigProperties;
 import org.geoserver.platform.GeoServerExtensions;
@@ -38,6 +39,8 @@ public class JDBCGeoServerLoader extends DefaultGeoServerLoader {
 
     private JDBCConfigProperties config;
 
+    private ChangeLogWatcher changeLogWatcher;
+
     private int importSteps = 2;
 
     public JDBCGeoServerLoader(GeoServerResourceLoader resourceLoader, JDBCConfigProperties config) throws Exception {
@@ -57,6 +60,11 @@ public class JDBCGeoServerLoader extends DefaultGeoServerLoader {
         URL initScript = config.isInitDb() ? config.getInitScript() : null;
         configDatabase.initDb(initScript);
 
+        // objects stored with another encoding are converted once, the ones added later on use the
+        // configured one
+        configDatabase.setBlobEncoding(config.getBlobEncoding());
+        configDatabase.reencodeBlobs();
+
         config.setInitDb(false);
         config.save();
     }
@@ -65,6 +73,10 @@ public class JDBCGeoServerLoader extends DefaultGeoServerLoader {
         this.geoServerFacade = geoServerFacade;
     }
 
+    public void setChangeLogWatcher(ChangeLogWatcher changeLogWatcher) {
+        this.changeLogWatcher = changeLogWatcher;
+    }
+
     @Override
     protected void loadCatalog(Catalog catalog, XStreamPersister xp) throws Exception {
         if (!config.isEnabled()) {
@@ -124,6 +136,11 @@ public class JDBCGeoServerLoader extends DefaultGeoServerLoader {
                 geoServer.add(l.create(geoServer));
             }
         }
+
+        // catalog and configuration are loaded, keep up with the changes other instances make
+        if (changeLogWatcher != null) {
+            changeLogWatcher.start();
+        }
     }
 
     private void decImportStep() throws IOException {
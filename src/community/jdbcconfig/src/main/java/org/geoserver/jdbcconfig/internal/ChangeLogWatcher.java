@@ -0,0 +1,280 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.Info;
+import org.geoserver.catalog.event.CatalogInvalidationListener;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.impl.ClassMappings;
+import org.geoserver.jdbcconfig.internal.ConfigDatabase.Change;
+import org.geoserver.ows.util.OwsUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Keeps this GeoServer instance consistent with the changes made to the catalog by other
+ * instances sharing the same database.
+ * <p>
+ * {@link ConfigDatabase} records every add, save and remove in the {@code change_log} table. This
+ * class polls the table at a fixed interval for the entries added since the previous poll by other
+ * instances and, for just the objects they changed:
+ * <ul>
+ * <li>drops the cached copies held by {@link ConfigDatabase}
+ * <li>notifies the {@link CatalogInvalidationListener}s found in the application context and
+ * among the catalog listeners, such as the resource pool, so they drop the state they derived
+ * from those objects
+ * </ul>
+ * </p>
+ * <p>
+ * The sequence numbers of the change log may be committed out of order, so the numbers skipped by
+ * a poll are looked for again during the following polls, for a while, before being given up as
+ * rolled back. Polling is used instead of database specific notification mechanisms, such as
+ * PostgreSQL's LISTEN/NOTIFY, as it works the same on all the supported databases.
+ * </p>
+ */
+public class ChangeLogWatcher implements DisposableBean {
+
+    private static final Logger LOGGER = Logging.getLogger(ChangeLogWatcher.class);
+
+    public static final long DEFAULT_POLL_INTERVAL = 5000;
+
+    /**
+     * How long entries are kept in the change log
+     */
+    static final long RETENTION = TimeUnit.HOURS.toMillis(24);
+
+    /**
+     * Interval between prunings of the change log
+     */
+    static final long PRUNE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Minimum time skipped sequence numbers are looked for before being given up as rolled back
+     */
+    static final long GAP_TIMEOUT = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Maximum number of skipped sequence numbers tracked, databases may leave large holes in
+     * the sequences on restart that are not worth tracking
+     */
+    static final int MAX_GAPS = 500;
+
+    private final ConfigDatabase db;
+
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Sequence number of the latest entry seen, {@code -1} until the first poll
+     */
+    private long lastSeq = -1;
+
+    /**
+     * Skipped sequence numbers and when they were first noticed
+     */
+    private final Map<Long, Long> gaps = new TreeMap<Long, Long>();
+
+    private long lastPrune;
+
+    public ChangeLogWatcher(ConfigDatabase db) {
+        this.db = db;
+    }
+
+    public ChangeLogWatcher(ConfigDatabase db, JDBCConfigProperties config) {
+        this(db);
+        setPollInterval(config.getChangeLogPollInterval());
+    }
+
+    /**
+     * @return milliseconds between polls, {@code 0} or less if polling is disabled
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Starts polling the change log, unless polling is disabled or the database has no change
+     * log.
+     */
+    public synchronized void start() {
+        if (executor != null || pollInterval <= 0 || !db.isChangeLogEnabled()) {
+            return;
+        }
+        // start from the current end of the log, everything before it is already in the database
+        poll();
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "JDBC catalog change log watcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    poll();
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Error polling the catalog change log", e);
+                }
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        LOGGER.info("Polling the catalog change log every " + pollInterval + "ms");
+    }
+
+    public void destroy() throws Exception {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Looks for the changes made by other instances since the previous poll and invalidates the
+     * objects they changed.
+     *
+     * @return the number of objects invalidated
+     */
+    public synchronized int poll() {
+        final long now = System.currentTimeMillis();
+        if (lastSeq < 0) {
+            lastSeq = db.getLastChange();
+            lastPrune = now;
+            return 0;
+        }
+
+        final long gapTimeout = Math.max(GAP_TIMEOUT, 10 * pollInterval);
+        for (Iterator<Long> it = gaps.values().iterator(); it.hasNext();) {
+            if (now - it.next() > gapTimeout) {
+                it.remove();
+            }
+        }
+
+        final List<Change> changes = db.getChanges(lastSeq, new ArrayList<Long>(gaps.keySet()));
+        final Map<String, Integer> changed = new LinkedHashMap<String, Integer>();
+        long next = lastSeq + 1;
+        for (Change change : changes) {
+            final long seq = change.getSeq();
+            if (seq > lastSeq) {
+                for (long missing = next; missing < seq && gaps.size() < MAX_GAPS; missing++) {
+                    gaps.put(missing, now);
+                }
+                next = seq + 1;
+            } else {
+                gaps.remove(seq);
+            }
+            if (!db.getNodeId().equals(change.getNode())) {
+                changed.put(change.getId(), change.getTypeId());
+            }
+        }
+        lastSeq = next - 1;
+
+        if (now - lastPrune > PRUNE_INTERVAL) {
+            lastPrune = now;
+            int pruned = db.pruneChanges(new Date(now - RETENTION));
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Pruned " + pruned + " entries from the catalog change log");
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Invalidating objects changed by other instances: " + changed.keySet());
+            }
+            invalidate(changed);
+        }
+        return changed.size();
+    }
+
+    private void invalidate(Map<String, Integer> changed) {
+        final Map<String, Info> cached = db.invalidate(changed.keySet());
+
+        List<CatalogInfo> objects = new ArrayList<CatalogInfo>();
+        for (Map.Entry<String, Integer> e : changed.entrySet()) {
+            final String id = e.getKey();
+            final Class<?> type = db.getDbMappings().getType(e.getValue());
+            if (type == null || !CatalogInfo.class.isAssignableFrom(type)) {
+                // configuration objects are not cached outside of the database
+                continue;
+            }
+            // prefer the copy known locally, derived state is looked up with it
+            Info info = cached.get(id);
+            if (info == null) {
+                info = db.getById(id, type.asSubclass(CatalogInfo.class));
+            }
+            if (info == null) {
+                info = removed(id, type.asSubclass(CatalogInfo.class));
+            }
+            objects.add((CatalogInfo) info);
+        }
+        if (objects.isEmpty()) {
+            return;
+        }
+
+        List<CatalogInvalidationListener> listeners = new ArrayList<CatalogInvalidationListener>(
+                GeoServerExtensions.extensions(CatalogInvalidationListener.class));
+        Catalog catalog = db.getCatalog();
+        if (catalog != null) {
+            for (CatalogListener l : catalog.getListeners()) {
+                if (l instanceof CatalogInvalidationListener) {
+                    listeners.add((CatalogInvalidationListener) l);
+                }
+            }
+        }
+        objects = Collections.unmodifiableList(objects);
+        for (CatalogInvalidationListener l : listeners) {
+            try {
+                l.invalidated(objects);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Catalog invalidation listener " + l + " failed", e);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty object standing for one removed elsewhere and not known locally
+     */
+    private CatalogInfo removed(String id, Class<? extends CatalogInfo> type) {
+        try {
+            CatalogInfo info = (CatalogInfo) ClassMappings.fromInterface(type).getImpl()
+                    .newInstance();
+            OwsUtils.set(info, "id", id);
+            return info;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+}
@@ -15,16 +15,26 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Proxy;
 import java.net.URL;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -56,6 +66,7 @@ import org.geoserver.config.impl.CoverageAccessInfoImpl;
 import org.geoserver.config.impl.GeoServerImpl;
 import org.geoserver.config.impl.GeoServerInfoImpl;
 import org.geoserver.config.impl.JAIInfoImpl;
+import org.geoserver.jdbcconfig.internal.XStreamInfoSerialBinding.Encoding;
 import org.geoserver.ows.util.OwsUtils;
 import org.geoserver.util.CacheProvider;
 import org.geoserver.util.DefaultCacheProvider;
@@ -67,11 +78,16 @@ import org.opengis.filter.FilterFactory;
 import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Assert;
@@ -88,6 +104,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Callables;
 
 /**
  * 
@@ -96,6 +114,12 @@ public class ConfigDatabase {
 
     public static final Logger LOGGER = Logging.getLogger(ConfigDatabase.class);
 
+    /**
+     * Default number of objects loaded from the database with a single query when iterating over
+     * query results
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     private DbMappings dbMappings;
 
     private CatalogImpl catalog;
@@ -108,10 +132,28 @@ public class ConfigDatabase {
 
     private Cache<String, Info> cache;
 
+    /**
+     * The types of the stored objects by id, an object never changes type
+     */
+    private final ConcurrentMap<String, Class<?>> typesById = new ConcurrentHashMap<String, Class<?>>();
+
     private InfoRowMapper<CatalogInfo> catalogRowMapper;
 
     private InfoRowMapper<Info> configRowMapper;
 
+    private InfoRowMapper<CatalogInfo> catalogBatchRowMapper;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private DataSource dataSource;
+
+    /**
+     * Identifies the changes made by this instance in the change log
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private boolean changeLogEnabled;
+
     /**
      * Protected default constructor needed by spring-jdbc instrumentation
      */
@@ -127,12 +169,20 @@ public class ConfigDatabase {
             CacheProvider cacheProvider) {
 
         this.binding = binding;
+        this.dataSource = dataSource;
         this.template = new NamedParameterJdbcTemplate(dataSource);
 
         this.dbMappings = new DbMappings();
 
         this.catalogRowMapper = new InfoRowMapper<CatalogInfo>(CatalogInfo.class, binding);
         this.configRowMapper = new InfoRowMapper<Info>(Info.class, binding);
+        this.catalogBatchRowMapper = new InfoRowMapper<CatalogInfo>(CatalogInfo.class, binding, 2);
+        this.binding.setReferenceTypes(new Function<String, Class<?>>() {
+            @Override
+            public Class<?> apply(String id) {
+                return getType(id);
+            }
+        });
 
         if (cacheProvider == null) {
             cacheProvider = DefaultCacheProvider.findProvider();
@@ -146,6 +196,37 @@ public class ConfigDatabase {
             runInitScript(initScript);
         }
         dbMappings.initDb(template);
+        changeLogEnabled = hasChangeLog();
+    }
+
+    private boolean hasChangeLog() {
+        try {
+            Boolean exists = (Boolean) JdbcUtils.extractDatabaseMetaData(dataSource,
+                    new DatabaseMetaDataCallback() {
+                        @Override
+                        public Object processMetaData(DatabaseMetaData md) throws SQLException {
+                            for (String table : ImmutableList.of("change_log", "CHANGE_LOG")) {
+                                ResultSet rs = md.getTables(null, null, table, null);
+                                try {
+                                    if (rs.next()) {
+                                        return Boolean.TRUE;
+                                    }
+                                } finally {
+                                    rs.close();
+                                }
+                            }
+                            return Boolean.FALSE;
+                        }
+                    });
+            if (!exists.booleanValue()) {
+                LOGGER.warning("The catalog database has no change_log table, other GeoServer "
+                        + "instances sharing it won't notice the changes made by this one. Create "
+                        + "the table as done by the database init script to enable it.");
+            }
+            return exists.booleanValue();
+        } catch (MetaDataAccessException e) {
+            throw Throwables.propagate(e);
+        }
     }
 
     private void runInitScript(URL initScript) throws IOException {
@@ -178,6 +259,85 @@ public class ConfigDatabase {
     public GeoServer getGeoServer() {
         return geoServer;
     }
+
+    /**
+     * @return the max number of catalog objects loaded with a single query while iterating over
+     *         query results, a value of {@code 1} or less loads them one by one
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the encoding objects are stored with
+     */
+    public Encoding getBlobEncoding() {
+        return binding.getEncoding();
+    }
+
+    /**
+     * Sets the encoding objects are stored with, objects already stored with a different one are
+     * still readable, {@link #reencodeBlobs()} converts them
+     */
+    public void setBlobEncoding(Encoding encoding) {
+        binding.setEncoding(encoding);
+    }
+
+    /**
+     * Converts the objects stored with an encoding other than the {@link #getBlobEncoding()
+     * current one}.
+     * 
+     * @return the number of objects converted
+     */
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public int reencodeBlobs() {
+        // the binary blobs are the only ones starting with the binary prefix
+        final String sql;
+        if (Encoding.BINARY.equals(getBlobEncoding())) {
+            sql = "select oid from object where blob not like :header";
+        } else {
+            sql = "select oid from object where blob like :prefix";
+        }
+        Map<String, ?> params = params("header", XStreamInfoSerialBinding.BINARY_HEADER + "%",
+                "prefix", XStreamInfoSerialBinding.BINARY_PREFIX + "%");
+        logStatement(sql, params);
+        final List<Integer> oids = template.queryForList(sql, params, Integer.class);
+        if (oids.isEmpty()) {
+            return 0;
+        }
+
+        LOGGER.info("Converting " + oids.size() + " catalog and configuration objects to the "
+                + getBlobEncoding() + " encoding");
+        Stopwatch sw = new Stopwatch().start();
+        final int pageSize = Math.max(batchSize, 1);
+        for (int from = 0; from < oids.size(); from += pageSize) {
+            List<Integer> page = oids.subList(from, Math.min(oids.size(), from + pageSize));
+
+            final String select = "select oid, blob from object where oid in (:oids)";
+            final List<Map<String, ?>> updates = Lists.newArrayList();
+            template.query(select, params("oids", page), new RowCallbackHandler() {
+
+                @Override
+                public void processRow(ResultSet rs) throws SQLException {
+                    String blob = binding.reencode(rs.getString(2));
+                    if (blob != null) {
+                        updates.add(params("oid", rs.getInt(1), "blob", blob));
+                    }
+                }
+            });
+            @SuppressWarnings("unchecked")
+            Map<String, ?>[] batch = updates.toArray(new Map[updates.size()]);
+            template.batchUpdate("update object set blob = :blob where oid = :oid", batch);
+        }
+        // cached objects are still valid, they're the same objects in a different encoding
+        sw.stop();
+        LOGGER.info("Converted " + oids.size() + " objects in " + sw);
+        return oids.size();
+    }
     
     public <T extends CatalogInfo> int count(final Class<T> of, final Filter filter) {
 
@@ -241,27 +401,25 @@ public class ConfigDatabase {
                     sw.toString()));
         }
 
-        List<T> lazyTransformed = Lists.transform(ids, new Function<String, T>() {
-            @Override
-            public T apply(String id) {
-                return getById(id, of);
-            }
-        });
+        // objects removed since the ids were queried come out as nulls
+        Iterator<T> iterator = Iterators.filter(new BatchLoadingList<T>(ids, of).iterator(),
+                com.google.common.base.Predicates.notNull());
 
         CloseableIterator<T> result;
 
         if (fullySupported) {
-            Iterator<T> iterator = lazyTransformed.iterator();
             result = new CloseableIteratorAdapter<T>(iterator);
         } else {
-            Iterator<T> iterator = lazyTransformed.iterator();
+            // the offset and limit have not been applied by the database, apply them after
+            // filtering out what the database could not evaluate
+            iterator = CloseableIteratorAdapter.filter(iterator, filter);
             if (offset != null) {
                 Iterators.skip(iterator, offset.intValue());
             }
             if (limit != null) {
                 iterator = Iterators.limit(iterator, limit.intValue());
             }
-            result = CloseableIteratorAdapter.filter(iterator, filter);
+            result = new CloseableIteratorAdapter<T>(iterator);
         }
 
         return result;
@@ -320,6 +478,7 @@ public class ConfigDatabase {
             key = keyHolder.getKey();
         }
         addAttributes(info, key);
+        logChange(id, typeId);
 
         cache.put(id, info);
         return getById(id, interf);
@@ -519,6 +678,9 @@ public class ConfigDatabase {
         }
         cache.invalidate(info.getId());
 
+        final Integer typeId = template.queryForInt("select type_id from object where oid = :oid",
+                params("oid", oid));
+
         String deleteObject = "delete from object where id = :id";
         String deleteRelatedProperties = "delete from object_property where related_oid = :oid";
 
@@ -529,8 +691,32 @@ public class ConfigDatabase {
         }
         final int relatedPropCount = template.update(deleteRelatedProperties, params("oid", oid));
         LOGGER.fine("Removed " + relatedPropCount + " related properties of " + info.getId());
+        logChange(info.getId(), typeId);
 
         cache.invalidate(info.getId());
+        typesById.remove(info.getId());
+        binding.invalidateReferences();
+    }
+
+    /**
+     * Returns the interface of the stored object with the given id, such as
+     * {@code FeatureTypeInfo}, or {@code null} if there is no such object
+     */
+    @Nullable
+    public Class<?> getType(final String id) {
+        Class<?> type = typesById.get(id);
+        if (type == null) {
+            List<Integer> typeIds = template.queryForList(
+                    "select type_id from object where id = :id", params("id", id), Integer.class);
+            if (typeIds.isEmpty()) {
+                return null;
+            }
+            type = dbMappings.getType(typeIds.get(0));
+            if (type != null) {
+                typesById.put(id, type);
+            }
+        }
+        return type;
     }
 
     /**
@@ -580,7 +766,9 @@ public class ConfigDatabase {
         updateQueryableProperties(oldObject, objectId, changedProperties);
 
         cache.invalidate(id);
+        binding.invalidateReferences();
         Class<T> clazz = ClassMappings.fromImpl(oldObject.getClass()).getInterface();
+        logChange(id, dbMappings.getTypeId(clazz));
 
         // / <HACK>
         // we're explicitly changing the resourceinfo's layer name property here because
@@ -756,6 +944,10 @@ public class ConfigDatabase {
             return;
         }
         real = ModificationProxy.unwrap(real);
+        if (real instanceof Proxy) {
+            // a lazy reference, gets resolved through the catalog when used
+            return;
+        }
         if (real instanceof StyleInfoImpl || real instanceof StoreInfoImpl
                 || real instanceof ResourceInfoImpl) {
             OwsUtils.set(real, "catalog", catalog);
@@ -793,13 +985,87 @@ public class ConfigDatabase {
 
         List<String> ids = template.queryForList(sql, params, String.class);
 
-        List<T> transformed = Lists.transform(ids, new Function<String, T>() {
+        return Collections.unmodifiableList(new BatchLoadingList<T>(ids, clazz));
+    }
+
+    /**
+     * Loads the catalog objects of the given ids that are not cached yet with a single query, and
+     * caches them
+     */
+    private void prefetch(final List<String> ids) {
+        final Set<String> missing = Sets.newHashSet(ids);
+        missing.removeAll(cache.getAllPresent(ids).keySet());
+        if (missing.size() < 2) {
+            // not worth it, getById will load it
+            return;
+        }
+
+        final String sql = "select id, blob from object where id in (:ids)";
+        Map<String, ?> params = params("ids", missing);
+        logStatement(sql, params);
+
+        Stopwatch sw = new Stopwatch().start();
+        template.query(sql, params, new RowCallbackHandler() {
+
             @Override
-            public T apply(String input) {
-                return getById(input, clazz);
+            public void processRow(ResultSet rs) throws SQLException {
+                final String id = rs.getString(1);
+                final Info info = catalogBatchRowMapper.mapRow(rs, rs.getRow());
+                try {
+                    // does not replace an object cached in the meantime
+                    cache.get(id, Callables.returning(info));
+                } catch (ExecutionException e) {
+                    Throwables.propagate(e.getCause());
+                }
             }
         });
-        return Collections.unmodifiableList(transformed);
+        sw.stop();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(Joiner.on("").join("prefetched ", missing.size(), " objects in ",
+                    sw.toString()));
+        }
+    }
+
+    /**
+     * A lazy list of the objects of the given ids, that loads the catalog objects from the
+     * database in batches of {@link #getBatchSize()} as the list is accessed instead of one by one.
+     * Objects that no longer exist are returned as {@code null}.
+     */
+    private final class BatchLoadingList<T extends Info> extends AbstractList<T> {
+
+        private final List<String> ids;
+
+        private final Class<T> type;
+
+        private final BitSet prefetched = new BitSet();
+
+        BatchLoadingList(List<String> ids, Class<T> type) {
+            this.ids = ids;
+            this.type = type;
+        }
+
+        @Override
+        public T get(int index) {
+            final int batchSize = ConfigDatabase.this.batchSize;
+            if (batchSize > 1 && CatalogInfo.class.isAssignableFrom(type)) {
+                final int batch = index / batchSize;
+                boolean prefetch;
+                synchronized (prefetched) {
+                    prefetch = !prefetched.get(batch);
+                    prefetched.set(batch);
+                }
+                if (prefetch) {
+                    int from = batch * batchSize;
+                    prefetch(ids.subList(from, Math.min(ids.size(), from + batchSize)));
+                }
+            }
+            return getById(ids.get(index), type);
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
     }
 
     private <T extends Info> List<Integer> typesParam(final Class<T> clazz) {
@@ -832,6 +1098,143 @@ public class ConfigDatabase {
         cache.cleanUp();
     }
 
+    /**
+     * Records a change to an object in the change log, for the other GeoServer instances sharing
+     * the database to drop their cached copies of it.
+     */
+    private void logChange(final String id, final Integer typeId) {
+        if (!changeLogEnabled) {
+            return;
+        }
+        final String sql = "insert into change_log (id, type_id, node, changed) "
+                + "values (:id, :type_id, :node, :changed)";
+        Map<String, ?> params = params("id", id, "type_id", typeId, "node", nodeId, "changed",
+                new Timestamp(System.currentTimeMillis()));
+        logStatement(sql, params);
+        template.update(sql, params);
+    }
+
+    /**
+     * @return whether the database has a change log, in which case the changes made by this
+     *         instance are recorded in it
+     */
+    public boolean isChangeLogEnabled() {
+        return changeLogEnabled;
+    }
+
+    /**
+     * @return the id of this instance in the change log
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return the sequence number of the latest change log entry, {@code 0} if there's none
+     */
+    public long getLastChange() {
+        Number last = template.getJdbcOperations().queryForObject(
+                "select max(seq) from change_log", Number.class);
+        return last == null ? 0 : last.longValue();
+    }
+
+    /**
+     * Returns the change log entries after the given sequence number, plus the ones with the given
+     * sequence numbers, ordered by sequence number.
+     */
+    public List<Change> getChanges(final long after, final Collection<Long> missing) {
+        StringBuilder sql = new StringBuilder(
+                "select seq, id, type_id, node from change_log where seq > :after");
+        if (!missing.isEmpty()) {
+            sql.append(" or seq in (:missing)");
+        }
+        sql.append(" order by seq");
+        Map<String, ?> params = params("after", after, "missing", missing);
+        logStatement(sql, params);
+        return template.query(sql.toString(), params, new RowMapper<Change>() {
+            @Override
+            public Change mapRow(ResultSet rs, int rowNum) throws SQLException {
+                return new Change(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getString(4));
+            }
+        });
+    }
+
+    /**
+     * Deletes the change log entries recorded before the given date.
+     * 
+     * @return the number of entries deleted
+     */
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public int pruneChanges(final Date before) {
+        final String sql = "delete from change_log where changed < :before";
+        Map<String, ?> params = params("before", new Timestamp(before.getTime()));
+        logStatement(sql, params);
+        return template.update(sql, params);
+    }
+
+    /**
+     * Drops the cached copies of objects changed by another GeoServer instance.
+     * 
+     * @return the dropped copies, by id, for the objects that were cached
+     */
+    public Map<String, Info> invalidate(final Collection<String> ids) {
+        Map<String, Info> cached = new HashMap<String, Info>(cache.getAllPresent(ids));
+        cache.invalidateAll(ids);
+        binding.invalidateReferences();
+        return cached;
+    }
+
+    /**
+     * An entry of the change log
+     */
+    public static final class Change {
+
+        private final long seq;
+
+        private final String id;
+
+        private final Integer typeId;
+
+        private final String node;
+
+        public Change(long seq, String id, Integer typeId, String node) {
+            this.seq = seq;
+            this.id = id;
+            this.typeId = typeId;
+            this.node = node;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        /**
+         * @return the id of the changed object
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the {@link DbMappings#getType(Integer) type id} of the changed object
+         */
+        public Integer getTypeId() {
+            return typeId;
+        }
+
+        /**
+         * @return the {@link ConfigDatabase#getNodeId() id} of the instance that made the change
+         */
+        public String getNode() {
+            return node;
+        }
+
+        @Override
+        public String toString() {
+            return "Change[" + seq + ", " + id + ", " + node + "]";
+        }
+    }
+
     private final class CatalogLoader implements Callable<CatalogInfo> {
 
         private final String id;
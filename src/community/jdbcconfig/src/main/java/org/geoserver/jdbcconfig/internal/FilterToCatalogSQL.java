@@ -15,6 +15,7 @@ import java.util.Set;
 import org.geotools.filter.Capabilities;
 import org.geotools.filter.LikeFilterImpl;
 import org.opengis.filter.And;
+import org.opengis.filter.BinaryComparisonOperator;
 import org.opengis.filter.ExcludeFilter;
 import org.opengis.filter.Filter;
 import org.opengis.filter.FilterVisitor;
@@ -86,6 +87,7 @@ public class FilterToCatalogSQL implements FilterVisitor, ExpressionVisitor {
         builder.addType(PropertyIsNil.class);// whether the property exists AND it's value is null
         builder.addType(And.class);
         builder.addType(Or.class);
+        builder.addType(Not.class);
 
         CAPABILITIES = builder.getContents();
     }
@@ -153,31 +155,68 @@ public class FilterToCatalogSQL implements FilterVisitor, ExpressionVisitor {
      */
     @Override
     public Object visit(PropertyIsEqualTo filter, Object extraData) {
-        PropertyName expression1 = (PropertyName) filter.getExpression1();
-        Literal expression2 = (Literal) filter.getExpression2();
-        MatchAction matchAction = filter.getMatchAction();
-        boolean matchingCase = filter.isMatchingCase();
+        return comparison(filter, false, extraData);
+    }
+
+    /**
+     * Encodes a property equality or inequality check, where either side may be the property name
+     * and the other one the literal value to compare against.
+     * <p>
+     * The inequality is encoded as the objects having any value of the property that's not equal
+     * to the literal, or for {@link MatchAction#ALL}, as the ones having no value equal to it.
+     * </p>
+     */
+    private Object comparison(BinaryComparisonOperator filter, boolean negate, Object extraData) {
+        final PropertyName propertyName;
+        final Literal literal;
+        if (filter.getExpression1() instanceof PropertyName
+                && filter.getExpression2() instanceof Literal) {
+            propertyName = (PropertyName) filter.getExpression1();
+            literal = (Literal) filter.getExpression2();
+        } else if (filter.getExpression1() instanceof Literal
+                && filter.getExpression2() instanceof PropertyName) {
+            propertyName = (PropertyName) filter.getExpression2();
+            literal = (Literal) filter.getExpression1();
+        } else {
+            // no property involved, the result does not depend on the object
+            return filter.evaluate(null) ? visit(Filter.INCLUDE, extraData) : visit(
+                    Filter.EXCLUDE, extraData);
+        }
+        final MatchAction matchAction = filter.getMatchAction();
+        final boolean matchingCase = filter.isMatchingCase();
 
-        final String propertyTypesParam = propertyTypesParam(expression1);
+        final String propertyTypesParam = propertyTypesParam(propertyName);
+
+        final String expectedValue = literal.evaluate(null, String.class);
 
-        final String expectedValue = expression2.evaluate(null, String.class);
-        String valueParam = newParam("value", expectedValue);
-
-        switch (matchAction) {
-        // TODO: respect match action
-        case ALL:
-            break;
-        case ANY:
-            break;
-        case ONE:
-            break;
-        default:
-            throw new IllegalArgumentException("MatchAction: " + matchAction);
+        String condition;
+        if (expectedValue == null) {
+            condition = "value IS NULL";
+        } else {
+            String valueParam = newParam("value", expectedValue);
+            condition = matchingCase ? "value = :" + valueParam : "UPPER(value) = UPPER(:"
+                    + valueParam + ")";
         }
 
-        StringBuilder builder = append(extraData,
-                "oid IN (SELECT oid FROM object_property WHERE property_type IN (:",
-                propertyTypesParam, ") AND value = :", valueParam, ") /* ", filter.toString(),
+        String in = "oid IN";
+        if (negate) {
+            switch (matchAction) {
+            case ALL:
+                in = "oid NOT IN";
+                break;
+            case ANY:
+            case ONE:
+                condition = "NOT (" + condition + ")"
+                        + (expectedValue == null ? "" : " OR value IS NULL");
+                break;
+            default:
+                throw new IllegalArgumentException("MatchAction: " + matchAction);
+            }
+        }
+
+        StringBuilder builder = append(extraData, in,
+                " (SELECT oid FROM object_property WHERE property_type IN (:",
+                propertyTypesParam, ") AND (", condition, ")) /* ", filter.toString(),
                 " */ \n");
         return builder;
     }
@@ -258,8 +297,7 @@ public class FilterToCatalogSQL implements FilterVisitor, ExpressionVisitor {
      */
     @Override
     public Object visit(PropertyIsNotEqualTo filter, Object extraData) {
-
-        return extraData;
+        return comparison(filter, true, extraData);
     }
 
     /**
@@ -331,8 +369,11 @@ public class FilterToCatalogSQL implements FilterVisitor, ExpressionVisitor {
      */
     @Override
     public Object visit(Not filter, Object extraData) {
-
-        return extraData;
+        StringBuilder sql = (StringBuilder) extraData;
+        sql.append("NOT (\n\t");
+        sql = (StringBuilder) filter.getFilter().accept(this, sql);
+        sql.append(")");
+        return sql;
     }
 
     /**
@@ -427,8 +468,13 @@ public class FilterToCatalogSQL implements FilterVisitor, ExpressionVisitor {
      */
     @Override
     public Object visit(PropertyIsNil filter, Object extraData) {
+        final PropertyName propertyName = (PropertyName) filter.getExpression();
+        final String propertyTypesParam = propertyTypesParam(propertyName);
 
-        return extraData;
+        StringBuilder builder = append(extraData,
+                "oid IN (select oid from object_property where property_type in (:",
+                propertyTypesParam, ") and value IS NULL) /* ", filter.toString(), " */ \n");
+        return builder;
     }
 
     /**
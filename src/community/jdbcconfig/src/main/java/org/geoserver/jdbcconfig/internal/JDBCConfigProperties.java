@@ -8,6 +8,7 @@ import java.util.Enumeration;
 import java.util.LinkedHashSet;
 import java.util.Properties;
 
+import org.geoserver.jdbcconfig.internal.XStreamInfoSerialBinding.Encoding;
 import org.geotools.data.DataUtilities;
 
 import com.google.common.base.Preconditions;
@@ -75,6 +76,33 @@ public class JDBCConfigProperties extends Properties {
         setProperty("import", String.valueOf(imprt));
     }
 
+    /**
+     * @return the encoding catalog and configuration objects are stored with, defaults to
+     *         {@link Encoding#XML}
+     */
+    public Encoding getBlobEncoding() {
+        String encoding = getProperty("blobEncoding");
+        return encoding == null ? Encoding.XML : Encoding.valueOf(encoding.trim().toUpperCase());
+    }
+
+    public void setBlobEncoding(Encoding encoding) {
+        setProperty("blobEncoding", encoding.name().toLowerCase());
+    }
+
+    /**
+     * @return milliseconds between polls of the change log for the changes made by other
+     *         GeoServer instances sharing the database, {@code 0} disables polling
+     */
+    public long getChangeLogPollInterval() {
+        String interval = getProperty("changeLog.pollInterval");
+        return interval == null ? ChangeLogWatcher.DEFAULT_POLL_INTERVAL : Long.parseLong(interval
+                .trim());
+    }
+
+    public void setChangeLogPollInterval(long interval) {
+        setProperty("changeLog.pollInterval", String.valueOf(interval));
+    }
+
     public void save() throws IOException {
         factory.saveConfig(this);
     }
@@ -0,0 +1,232 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.ProxyUtils;
+import org.geoserver.catalog.impl.ResolvingProxy;
+
+import com.google.common.base.Function;
+
+/**
+ * Proxy for a reference to another catalog object that looks it up in the catalog the first time
+ * it's used, instead of when the object holding the reference is loaded.
+ * <p>
+ * This way loading a layer does not load its resource, store and workspace unless they are
+ * actually needed. The id of the referenced object is available without resolving it, so objects
+ * holding unresolved references can be saved as is.
+ * </p>
+ * <p>
+ * The resolved object is kept until the shared {@code generation} counter changes, which happens
+ * whenever stored objects are modified or removed, by this or another GeoServer instance, so that
+ * cached objects never hold on to stale copies of the objects they refer to.
+ * </p>
+ */
+class LazyResolvingProxy implements InvocationHandler {
+
+    private final Catalog catalog;
+
+    /**
+     * The {@link ResolvingProxy} created when reading the reference
+     */
+    private final Object reference;
+
+    private final String ref;
+
+    private final AtomicLong generation;
+
+    private volatile Resolution resolution;
+
+    /**
+     * The hash code, computed once so that it does not change when the reference gets resolved,
+     * or when the referenced object changes, while the proxy sits in a hash based collection
+     */
+    private volatile Integer hashCode;
+
+    private LazyResolvingProxy(Catalog catalog, AtomicLong generation, Object reference,
+            String ref) {
+        this.catalog = catalog;
+        this.generation = generation;
+        this.reference = reference;
+        this.ref = ref;
+    }
+
+    /**
+     * Replaces the unresolved references of an object just read from the database with lazy ones
+     */
+    static void resolveLazily(CatalogInfo info, final Catalog catalog,
+            final AtomicLong generation, final Function<String, Class<?>> types) {
+        info = ModificationProxy.unwrap(info);
+        if (info instanceof StoreInfo) {
+            StoreInfo store = (StoreInfo) info;
+            store.setWorkspace(create(catalog, generation, types, store.getWorkspace()));
+        } else if (info instanceof ResourceInfo) {
+            ResourceInfo resource = (ResourceInfo) info;
+            resource.setStore(create(catalog, generation, types, resource.getStore()));
+            resource.setNamespace(create(catalog, generation, types, resource.getNamespace()));
+        } else if (info instanceof LayerInfo) {
+            LayerInfo layer = (LayerInfo) info;
+            layer.setResource(create(catalog, generation, types, layer.getResource()));
+            layer.setDefaultStyle(create(catalog, generation, types, layer.getDefaultStyle()));
+            // the styles are hashed, which would resolve them anyways
+            Set<StyleInfo> styles = layer.getStyles();
+            if (styles != null && !styles.isEmpty()) {
+                List<StyleInfo> resolvedStyles = new ArrayList<StyleInfo>(styles.size());
+                for (StyleInfo s : styles) {
+                    resolvedStyles.add(ModificationProxy.unwrap(ResolvingProxy
+                            .resolve(catalog, s)));
+                }
+                styles.clear();
+                styles.addAll(resolvedStyles);
+            }
+        } else if (info instanceof LayerGroupInfo) {
+            LayerGroupInfo group = (LayerGroupInfo) info;
+            group.setWorkspace(create(catalog, generation, types, group.getWorkspace()));
+            group.setRootLayer(create(catalog, generation, types, group.getRootLayer()));
+            group.setRootLayerStyle(create(catalog, generation, types, group.getRootLayerStyle()));
+            List<PublishedInfo> layers = group.getLayers();
+            if (layers != null) {
+                for (int i = 0; i < layers.size(); i++) {
+                    layers.set(i, create(catalog, generation, types, layers.get(i)));
+                }
+            }
+            List<StyleInfo> styles = group.getStyles();
+            if (styles != null) {
+                for (int i = 0; i < styles.size(); i++) {
+                    styles.set(i, create(catalog, generation, types, styles.get(i)));
+                }
+            }
+        } else if (info instanceof StyleInfo) {
+            StyleInfo style = (StyleInfo) info;
+            style.setWorkspace(create(catalog, generation, types, style.getWorkspace()));
+        }
+    }
+
+    /**
+     * Wraps an unresolved reference in a lazy one, any other object is returned as is.
+     * <p>
+     * The unresolved reference only implements the declared type of the reference, such as
+     * {@link StoreInfo} for the store of a resource, while code checks and casts the referenced
+     * object to its concrete type, such as {@link DataStoreInfo}. When the declared type has
+     * sub types the lazy reference implements the type of the stored object instead, looked up by
+     * id, and when that type is unknown the reference is resolved right away.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T create(Catalog catalog, AtomicLong generation,
+            Function<String, Class<?>> types, T reference) {
+        ResolvingProxy h = ProxyUtils.handler(reference, ResolvingProxy.class);
+        if (h == null) {
+            return reference;
+        }
+        Class<?> declared = reference.getClass().getInterfaces()[0];
+        Class<?> type = declared;
+        if (isAbstract(declared)) {
+            Class<?> stored = types != null ? types.apply(h.getRef()) : null;
+            if (stored == null || !declared.isAssignableFrom(stored)) {
+                T resolved = ResolvingProxy.resolve(catalog, reference);
+                return resolved != null ? (T) ModificationProxy.unwrap(resolved) : reference;
+            }
+            type = stored;
+        }
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new LazyResolvingProxy(catalog, generation, reference, h.getRef()));
+    }
+
+    /**
+     * Whether references of this type can point to objects of different interfaces
+     */
+    static boolean isAbstract(Class<?> type) {
+        return type == StoreInfo.class || type == ResourceInfo.class
+                || type == PublishedInfo.class || type == CatalogInfo.class;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        final String name = method.getName();
+        if ("getId".equals(name) && method.getParameterTypes().length == 0) {
+            return ref;
+        }
+
+        if ("hashCode".equals(name) && args == null) {
+            Integer h = hashCode;
+            if (h == null) {
+                Object target = resolve();
+                h = target != null ? target.hashCode() : ref.hashCode();
+                hashCode = h;
+            }
+            return h;
+        }
+
+        Object target = resolve();
+        if (target == null) {
+            // the referenced object does not exist (anymore)
+            if ("equals".equals(name) && args != null && args.length == 1) {
+                return proxy == args[0];
+            }
+            if ("toString".equals(name) && args == null) {
+                return "Unresolved reference " + ref;
+            }
+            throw new IllegalStateException("Unable to resolve the reference to " + ref);
+        }
+
+        if ("equals".equals(name) && args != null && args.length == 1) {
+            LazyResolvingProxy other = ProxyUtils.handler(args[0], LazyResolvingProxy.class);
+            if (other != null) {
+                return target.equals(other.resolve());
+            }
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private Object resolve() {
+        final long current = generation.get();
+        Resolution r = resolution;
+        if (r == null || r.target == null || r.generation != current) {
+            Object target = ModificationProxy.unwrap(ResolvingProxy.resolve(catalog, reference));
+            if (target == reference) {
+                // not a kind of reference the catalog can resolve
+                target = null;
+            }
+            r = new Resolution(target, current);
+            resolution = r;
+        }
+        return r.target;
+    }
+
+    private static final class Resolution {
+
+        final Object target;
+
+        final long generation;
+
+        Resolution(Object target, long generation) {
+            this.target = target;
+            this.generation = generation;
+        }
+    }
+}
@@ -181,7 +181,11 @@ class QueryBuilder<T extends Info> {
                 query.append(" ORDER BY value ").append(
                         SortOrder.ASCENDING.equals(order.getSortOrder()) ? "ASC" : "DESC");
             }
-            applyOffsetLimit(query);
+            // if part of the filter is evaluated in memory the offset and limit can only be
+            // applied after it
+            if (Filter.INCLUDE.equals(this.unsupportedFilter)) {
+                applyOffsetLimit(query);
+            }
 
         }
 
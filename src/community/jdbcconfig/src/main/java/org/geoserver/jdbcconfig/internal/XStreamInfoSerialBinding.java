@@ -4,42 +4,148 @@
  */
 package org.geoserver.jdbcconfig.internal;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
+import javax.xml.bind.DatatypeConverter;
+
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.Info;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.config.util.XStreamPersisterFactory;
 
+import com.google.common.base.Function;
+import com.google.common.io.ByteStreams;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
+import com.thoughtworks.xstream.io.copy.HierarchicalStreamCopier;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
 /**
- * @param <T>
+ * Serializes and deserializes the objects stored in the database.
+ * <p>
+ * Objects are written with the {@link #getEncoding() encoding} configured for the database, and
+ * read with the encoding they were written with:
+ * <ul>
+ * <li>{@link Encoding#XML}: the same XML used for the data directory files
+ * <li>{@link Encoding#BINARY}: the same XStream object tree as the XML, in the compact XStream
+ * binary format, which is several times faster to parse. As the blob column holds text the binary
+ * content is stored in base 64, preceded by a {@code gsb<version>:} header identifying the version
+ * of the binary format.
+ * </ul>
+ * Both encodings describe the objects by field name, so they cope with fields being added to or
+ * removed from the configuration objects in the same way the data directory XML does.
+ * </p>
+ * <p>
+ * The references to other catalog objects held by the catalog objects read from the database are
+ * resolved lazily, see {@link LazyResolvingProxy}.
+ * </p>
  */
 public class XStreamInfoSerialBinding {
 
+    public static enum Encoding {
+        XML, BINARY
+    }
+
+    /**
+     * Header of the current version of the binary blobs
+     */
+    static final String BINARY_HEADER = "gsb1:";
+
+    /**
+     * Prefix common to the headers of all the versions of the binary blobs
+     */
+    static final String BINARY_PREFIX = "gsb";
+
+    /**
+     * Resolves references while loading, for the configuration objects
+     */
     private final XStreamPersister xstreamPersister;
 
+    /**
+     * Leaves references unresolved while loading, for the catalog objects
+     */
+    private final XStreamPersister catalogPersister;
+
+    private final XppDriver xmlDriver = new XppDriver();
+
+    private final BinaryStreamDriver binaryDriver = new BinaryStreamDriver();
+
+    private Catalog catalog;
+
+    private Encoding encoding = Encoding.XML;
+
+    /**
+     * Incremented when stored objects change, for lazy references to be resolved again
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Looks up the interface of the stored object with a given id, for lazy references to
+     * implement the interface of the object they refer to
+     */
+    private Function<String, Class<?>> referenceTypes;
+
     public XStreamInfoSerialBinding(final XStreamPersisterFactory xspf) {
         this.xstreamPersister = xspf.createXMLPersister();
         this.xstreamPersister.setLoggingLevel(Level.WARNING);
+        this.catalogPersister = xspf.createXMLPersister();
+        this.catalogPersister.setLoggingLevel(Level.WARNING);
+    }
+
+    /**
+     * @return the encoding objects are written with
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(Encoding encoding) {
+        this.encoding = encoding;
     }
 
     public <T extends Info> T entryToObject(InputStream in, Class<T> target) {
-        // try {
-        // in = new LZFInputStream(in);
-        // } catch (Exception e) {
-        // throw Throwables.propagate(e);
-        // }
-        T info;
+        try {
+            return entryToObject(new String(ByteStreams.toByteArray(in), "UTF-8"), target);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public <T extends Info> T entryToObject(String blob, Class<T> target) {
+        final boolean catalogInfo = CatalogInfo.class.isAssignableFrom(target);
+        final XStreamPersister persister = catalogInfo ? catalogPersister : xstreamPersister;
 
+        T info;
         try {
-            info = xstreamPersister.load(in, target);
+            if (isBinary(blob)) {
+                HierarchicalStreamReader reader = binaryDriver
+                        .createReader(new ByteArrayInputStream(decodeBinary(blob)));
+                try {
+                    info = target.cast(persister.getXStream().unmarshal(reader));
+                } finally {
+                    reader.close();
+                }
+            } else {
+                info = persister.load(new ByteArrayInputStream(blob.getBytes("UTF-8")), target);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        if (catalogInfo && catalog != null) {
+            LazyResolvingProxy.resolveLazily((CatalogInfo) info, catalog, generation,
+                    referenceTypes);
+        }
         return info;
     }
 
@@ -50,11 +156,16 @@ public class XStreamInfoSerialBinding {
     }
 
     public void objectToEntry(final Info info, OutputStream out) {
-
-        // out = new LZFOutputStream(out);
-
         try {
-            xstreamPersister.save(info, out);
+            if (encoding == Encoding.BINARY) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                HierarchicalStreamWriter writer = binaryDriver.createWriter(bytes);
+                xstreamPersister.getXStream().marshal(XStreamPersister.unwrapProxies(info), writer);
+                writer.close();
+                out.write(encodeBinary(bytes.toByteArray()).getBytes("UTF-8"));
+            } else {
+                xstreamPersister.save(info, out);
+            }
             out.flush();
             out.close();
         } catch (IOException e) {
@@ -62,7 +173,75 @@ public class XStreamInfoSerialBinding {
         }
     }
 
+    /**
+     * Converts a blob to the current encoding without deserializing the object it represents.
+     *
+     * @return the converted blob, or {@code null} if it's already in the current encoding
+     */
+    public String reencode(String blob) {
+        final boolean binary = isBinary(blob);
+        if (binary ? blob.startsWith(BINARY_HEADER) && encoding == Encoding.BINARY
+                : encoding == Encoding.XML) {
+            return null;
+        }
+
+        HierarchicalStreamReader reader;
+        if (binary) {
+            reader = binaryDriver.createReader(new ByteArrayInputStream(decodeBinary(blob)));
+        } else {
+            reader = xmlDriver.createReader(new StringReader(blob));
+        }
+        try {
+            if (encoding == Encoding.BINARY) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                HierarchicalStreamWriter writer = binaryDriver.createWriter(bytes);
+                new HierarchicalStreamCopier().copy(reader, writer);
+                writer.close();
+                return encodeBinary(bytes.toByteArray());
+            } else {
+                StringWriter xml = new StringWriter();
+                HierarchicalStreamWriter writer = xmlDriver.createWriter(xml);
+                new HierarchicalStreamCopier().copy(reader, writer);
+                writer.close();
+                return xml.toString();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Makes the lazy references of the objects read so far resolve the object they refer to
+     * again, to be called whenever stored objects are modified or removed.
+     */
+    public void invalidateReferences() {
+        generation.incrementAndGet();
+    }
+
+    static boolean isBinary(String blob) {
+        return blob.startsWith(BINARY_PREFIX);
+    }
+
+    private static String encodeBinary(byte[] bytes) {
+        return BINARY_HEADER + DatatypeConverter.printBase64Binary(bytes);
+    }
+
+    private static byte[] decodeBinary(String blob) {
+        if (!blob.startsWith(BINARY_HEADER)) {
+            int end = blob.indexOf(':');
+            throw new IllegalArgumentException("Unsupported binary blob version: "
+                    + blob.substring(BINARY_PREFIX.length(), end < 0 ? BINARY_PREFIX.length()
+                            : end));
+        }
+        return DatatypeConverter.parseBase64Binary(blob.substring(BINARY_HEADER.length()));
+    }
+
+    public void setReferenceTypes(Function<String, Class<?>> referenceTypes) {
+        this.referenceTypes = referenceTypes;
+    }
+
     public void setCatalog(Catalog catalog) {
+        this.catalog = catalog;
         xstreamPersister.setCatalog(catalog);
     }
 
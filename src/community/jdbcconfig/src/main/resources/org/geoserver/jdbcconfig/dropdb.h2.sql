@@ -26,3 +26,4 @@ DROP TABLE object_property IF EXISTS;
 DROP TABLE type IF EXISTS;
 DROP TABLE property_type IF EXISTS;
 DROP TABLE default_object IF EXISTS;
+DROP TABLE change_log IF EXISTS;
@@ -8,3 +8,4 @@ DROP TABLE OBJECT_PROPERTY;
 DROP TABLE TYPE;
 DROP TABLE PROPERTY_TYPE;
 DROP TABLE DEFAULT_OBJECT;
+DROP TABLE CHANGE_LOG;
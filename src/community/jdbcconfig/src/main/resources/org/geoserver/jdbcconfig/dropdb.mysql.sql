@@ -8,3 +8,4 @@ DROP TABLE IF EXISTS OBJECT_PROPERTY;
 DROP TABLE IF EXISTS TYPE;
 DROP TABLE IF EXISTS PROPERTY_TYPE;
 DROP TABLE IF EXISTS DEFAULT_OBJECT;
+DROP TABLE IF EXISTS CHANGE_LOG;
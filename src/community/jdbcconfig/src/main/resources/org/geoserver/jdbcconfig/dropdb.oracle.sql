@@ -1,8 +1,10 @@
 DROP SEQUENCE seq_OBJECT;
 DROP SEQUENCE seq_TYPE;
 DROP SEQUENCE seq_PROPERTY_TYPE;
+DROP SEQUENCE seq_CHANGE_LOG;
 DROP TABLE OBJECT CASCADE CONSTRAINTS;
 DROP TABLE OBJECT_PROPERTY CASCADE CONSTRAINTS;
 DROP TABLE TYPE CASCADE CONSTRAINTS;
 DROP TABLE PROPERTY_TYPE CASCADE CONSTRAINTS;
 DROP TABLE DEFAULT_OBJECT CASCADE CONSTRAINTS;
+DROP TABLE CHANGE_LOG CASCADE CONSTRAINTS;
@@ -39,6 +39,15 @@ CREATE TABLE default_object (
   id varchar(255) NOT NULL
 );
 
+CREATE TABLE change_log (
+  seq bigint GENERATED BY DEFAULT AS IDENTITY, 
+  id varchar(255) NOT NULL, 
+  type_id int NOT NULL, 
+  node varchar(255) NOT NULL, 
+  changed timestamp NOT NULL, 
+  PRIMARY KEY (seq)
+);
+
 -- foriegn keys
 ALTER TABLE object_property ADD CONSTRAINT 
   fk_object_property FOREIGN KEY (oid) REFERENCES object (oid) ON DELETE CASCADE;
@@ -79,6 +88,7 @@ CREATE INDEX property_type_collection_idx ON property_type (collection);
 
 CREATE UNIQUE INDEX default_object_def_key_idx ON default_object (def_key);
 CREATE INDEX default_object_id_idx ON default_object (id);
+CREATE INDEX change_log_changed_idx ON change_log (changed);
 
 -- views
 -- workspace view 
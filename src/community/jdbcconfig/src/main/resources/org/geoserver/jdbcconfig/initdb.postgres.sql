@@ -40,6 +40,15 @@ CREATE TABLE default_object (
 
 );
 
+CREATE TABLE change_log (
+  seq bigserial NOT NULL, 
+  id varchar(255) NOT NULL, 
+  type_id int4 NOT NULL, 
+  node varchar(255) NOT NULL, 
+  changed timestamp NOT NULL, 
+  PRIMARY KEY (seq)
+);
+
 -- foreign keys
 ALTER TABLE object_property ADD CONSTRAINT fk_object_property 
   FOREIGN KEY (oid) REFERENCES object (oid) ON DELETE CASCADE;
@@ -81,6 +90,7 @@ CREATE INDEX property_type_collection_idx ON property_type (collection);
 
 CREATE INDEX default_object_def_key_idx ON default_object (def_key);
 CREATE INDEX default_object_id_idx ON default_object (id);
+CREATE INDEX change_log_changed_idx ON change_log (changed);
 
 -- views
 -- workspace view 
@@ -78,6 +78,14 @@ public class JDBCConfigTestSupport {
 
     private ConfigDatabase configDb;
 
+    /**
+     * Sets the JDBC url of the test database, {@code ${DATA_DIR}} is replaced by the test data
+     * directory. To be called before {@link #setUp()}.
+     */
+    public void setConnectionUrl(String connectionUrl) {
+        this.connectionUrl = connectionUrl;
+    }
+
     public void setUp() throws Exception {
         ConfigDatabase.LOGGER.setLevel(Level.FINER);
 
@@ -0,0 +1,132 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.Keyword;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.jdbcconfig.internal.XStreamInfoSerialBinding.Encoding;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Compares the size of the blobs and the time to deserialize them for the XML and binary
+ * encodings. Not run by the build, run it explicitly with
+ * {@code mvn test -Dtest=BlobEncodingBenchmark}, the number of times each object is deserialized
+ * defaults to 10000 and can be set with the {@code jdbcconfig.benchmark.size} system property.
+ */
+public class BlobEncodingBenchmark extends TestCase {
+
+    static final int SIZE = Integer.getInteger("jdbcconfig.benchmark.size", 10000);
+
+    public void testEncodings() throws Exception {
+        List<CatalogInfo> objects = createObjects();
+        for (Encoding encoding : Encoding.values()) {
+            XStreamInfoSerialBinding binding = new XStreamInfoSerialBinding(
+                    new XStreamPersisterFactory());
+            binding.setEncoding(encoding);
+
+            for (CatalogInfo info : objects) {
+                String blob = new String(binding.objectToEntry(info), "UTF-8");
+                Class<? extends CatalogInfo> type = type(info);
+
+                // warm up
+                for (int i = 0; i < 100; i++) {
+                    binding.entryToObject(blob, type);
+                }
+                Stopwatch sw = new Stopwatch().start();
+                for (int i = 0; i < SIZE; i++) {
+                    binding.entryToObject(blob, type);
+                }
+                sw.stop();
+                System.out.println(String.format("%s %s: %d chars, %d objects read in %s",
+                        encoding, type.getSimpleName(), blob.length(), SIZE, sw));
+            }
+        }
+    }
+
+    private Class<? extends CatalogInfo> type(CatalogInfo info) {
+        for (Class<? extends CatalogInfo> type : ImmutableList.of(WorkspaceInfo.class,
+                NamespaceInfo.class, DataStoreInfo.class, FeatureTypeInfo.class, LayerInfo.class,
+                StyleInfo.class)) {
+            if (type.isInstance(info)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(String.valueOf(info));
+    }
+
+    private List<CatalogInfo> createObjects() throws Exception {
+        CatalogImpl catalog = new CatalogImpl();
+        CatalogFactory factory = catalog.getFactory();
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("benchmark");
+        catalog.add(ws);
+
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("benchmark");
+        ns.setURI("http://geoserver.org/benchmark");
+        catalog.add(ns);
+
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("store");
+        ds.setType("PostGIS");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        ds.getConnectionParameters().put("host", "localhost");
+        ds.getConnectionParameters().put("port", 5432);
+        ds.getConnectionParameters().put("database", "benchmark");
+        ds.getConnectionParameters().put("schema", "public");
+        ds.getConnectionParameters().put("user", "geoserver");
+        catalog.add(ds);
+
+        FeatureTypeInfo ft = factory.createFeatureType();
+        ft.setName("roads");
+        ft.setNativeName("roads");
+        ft.setTitle("Roads");
+        ft.setAbstract("The road network of the benchmark area");
+        ft.getKeywords().add(new Keyword("roads"));
+        ft.getKeywords().add(new Keyword("transportation"));
+        ft.setStore(ds);
+        ft.setNamespace(ns);
+        ft.setSRS("EPSG:4326");
+        ft.setNativeCRS(DefaultGeographicCRS.WGS84);
+        ft.setNativeBoundingBox(new ReferencedEnvelope(-180, 180, -90, 90,
+                DefaultGeographicCRS.WGS84));
+        ft.setLatLonBoundingBox(new ReferencedEnvelope(-180, 180, -90, 90,
+                DefaultGeographicCRS.WGS84));
+        ft.setEnabled(true);
+        catalog.add(ft);
+
+        StyleInfo style = factory.createStyle();
+        style.setName("line");
+        style.setFilename("line.sld");
+        catalog.add(style);
+
+        LayerInfo layer = factory.createLayer();
+        layer.setResource(ft);
+        layer.setDefaultStyle(style);
+        layer.setEnabled(true);
+        catalog.add(layer);
+
+        return ImmutableList.<CatalogInfo> of(ws, ns, ds, ft, style, layer);
+    }
+}
@@ -0,0 +1,192 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogInvalidationListener;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.jdbcconfig.JDBCConfigTestSupport;
+import org.geoserver.jdbcconfig.catalog.JDBCCatalogFacade;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Runs two GeoServer catalogs, each with its own {@link ConfigDatabase}, against the same H2
+ * database and checks the changes made through one become visible through the other.
+ */
+public class ChangeLogWatcherTest extends TestCase {
+
+    private JDBCConfigTestSupport testSupport;
+
+    private CatalogImpl catalog;
+
+    private BasicDataSource otherDataSource;
+
+    private ConfigDatabase otherDatabase;
+
+    private CatalogImpl otherCatalog;
+
+    private ChangeLogWatcher otherWatcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        testSupport = new JDBCConfigTestSupport();
+        testSupport.setConnectionUrl("jdbc:h2:file:${DATA_DIR}/geoserver;AUTO_SERVER=TRUE");
+        testSupport.setUp();
+        assertTrue(testSupport.getDatabase().isChangeLogEnabled());
+
+        catalog = new CatalogImpl();
+        catalog.setFacade(new JDBCCatalogFacade(testSupport.getDatabase()));
+
+        BasicDataSource dataSource = (BasicDataSource) testSupport.getDataSource();
+        otherDataSource = new BasicDataSource();
+        otherDataSource.setDriverClassName(dataSource.getDriverClassName());
+        otherDataSource.setUrl(dataSource.getUrl());
+        otherDataSource.setUsername(dataSource.getUsername());
+        otherDataSource.setPassword(dataSource.getPassword());
+
+        otherDatabase = new ConfigDatabase(otherDataSource, new XStreamInfoSerialBinding(
+                new XStreamPersisterFactory()));
+        otherDatabase.initDb(null);
+        otherCatalog = new CatalogImpl();
+        otherCatalog.setFacade(new JDBCCatalogFacade(otherDatabase));
+
+        otherWatcher = new ChangeLogWatcher(otherDatabase);
+        assertEquals(0, otherWatcher.poll());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        otherWatcher.destroy();
+        otherDatabase.dispose();
+        otherDataSource.close();
+        testSupport.tearDown();
+    }
+
+    private WorkspaceInfo addWorkspace(String name) {
+        WorkspaceInfo ws = catalog.getFactory().createWorkspace();
+        ws.setName(name);
+        catalog.add(ws);
+        return catalog.getWorkspaceByName(name);
+    }
+
+    public void testModification() throws Exception {
+        WorkspaceInfo ws = addWorkspace("ws1");
+        assertEquals("ws1", otherCatalog.getWorkspace(ws.getId()).getName());
+
+        ws.setName("ws2");
+        catalog.save(ws);
+        // still cached
+        assertEquals("ws1", otherCatalog.getWorkspace(ws.getId()).getName());
+
+        assertEquals(1, otherWatcher.poll());
+        assertEquals("ws2", otherCatalog.getWorkspace(ws.getId()).getName());
+        assertNull(otherCatalog.getWorkspaceByName("ws1"));
+        assertEquals(0, otherWatcher.poll());
+    }
+
+    public void testReferencesRefreshed() throws Exception {
+        WorkspaceInfo ws = addWorkspace("ws1");
+        DataStoreInfo ds = catalog.getFactory().createDataStore();
+        ds.setName("ds1");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+
+        DataStoreInfo other = otherCatalog.getDataStoreByName("ds1");
+        assertEquals("ws1", other.getWorkspace().getName());
+
+        ws.setName("ws2");
+        catalog.save(ws);
+        otherWatcher.poll();
+
+        // the store itself did not change, but the workspace it refers to did
+        other = otherCatalog.getDataStore(other.getId());
+        assertEquals("ws2", other.getWorkspace().getName());
+    }
+
+    public void testRemoval() throws Exception {
+        final List<CatalogInfo> invalidated = new ArrayList<CatalogInfo>();
+        otherCatalog.addListener(new TestInvalidationListener(invalidated));
+
+        WorkspaceInfo ws = addWorkspace("ws1");
+        assertNotNull(otherCatalog.getWorkspace(ws.getId()));
+
+        catalog.remove(ws);
+        assertEquals(1, otherWatcher.poll());
+        assertNull(otherCatalog.getWorkspace(ws.getId()));
+
+        // listeners get the copy that was cached
+        assertEquals(1, invalidated.size());
+        assertEquals(ws.getId(), invalidated.get(0).getId());
+        assertEquals("ws1", ((WorkspaceInfo) invalidated.get(0)).getName());
+    }
+
+    public void testOwnChangesIgnored() throws Exception {
+        ChangeLogWatcher watcher = new ChangeLogWatcher(testSupport.getDatabase());
+        watcher.poll();
+
+        addWorkspace("ws1");
+        assertEquals(0, watcher.poll());
+        assertEquals(1, otherWatcher.poll());
+    }
+
+    public void testLateCommit() throws Exception {
+        JdbcTemplate template = new JdbcTemplate(testSupport.getDataSource());
+        Integer typeId = otherDatabase.getDbMappings().getTypeId(WorkspaceInfo.class);
+        String insert = "insert into change_log (seq, id, type_id, node, changed) "
+                + "values (?, ?, ?, 'other', current_timestamp)";
+
+        // the second entry commits before the first one
+        template.update(insert, 2L, "ws2", typeId);
+        assertEquals(1, otherWatcher.poll());
+        template.update(insert, 1L, "ws1", typeId);
+        assertEquals(1, otherWatcher.poll());
+        assertEquals(0, otherWatcher.poll());
+    }
+
+    static class TestInvalidationListener implements CatalogListener,
+            CatalogInvalidationListener {
+
+        private final List<CatalogInfo> invalidated;
+
+        TestInvalidationListener(List<CatalogInfo> invalidated) {
+            this.invalidated = invalidated;
+        }
+
+        public void invalidated(Collection<CatalogInfo> objects) {
+            invalidated.addAll(objects);
+        }
+
+        public void handleAddEvent(CatalogAddEvent event) {
+        }
+
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+        }
+
+        public void handleModifyEvent(CatalogModifyEvent event) {
+        }
+
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        }
+
+        public void reloaded() {
+        }
+    }
+}
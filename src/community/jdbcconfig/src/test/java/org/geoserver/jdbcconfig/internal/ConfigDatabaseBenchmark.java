@@ -0,0 +1,108 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jdbcconfig.internal;
+
+import java.util.logging.Level;
+
+import junit.framework.TestCase;
+
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.WorkspaceInfoImpl;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.geoserver.jdbcconfig.JDBCConfigTestSupport;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Measures the {@link ConfigDatabase} query times over a large catalog, loading the objects one by
+ * one and in batches. Not run by the build, run it explicitly with
+ * {@code mvn test -Dtest=ConfigDatabaseBenchmark}, the catalog size defaults to 100000 objects and
+ * can be set with the {@code jdbcconfig.benchmark.size} system property.
+ * <p>
+ * There is no PostgreSQL server in the test environment, the PostgreSQL dialect is exercised
+ * through the H2 compatibility mode.
+ * </p>
+ */
+public class ConfigDatabaseBenchmark extends TestCase {
+
+    static final int SIZE = Integer.getInteger("jdbcconfig.benchmark.size", 100000);
+
+    private JDBCConfigTestSupport testSupport;
+
+    private ConfigDatabase database;
+
+    private void setUp(String connectionUrl) throws Exception {
+        testSupport = new JDBCConfigTestSupport();
+        testSupport.setConnectionUrl(connectionUrl);
+        testSupport.setUp();
+        database = testSupport.getDatabase();
+        ConfigDatabase.LOGGER.setLevel(Level.INFO);
+
+        Stopwatch sw = new Stopwatch().start();
+        for (int i = 0; i < SIZE; i++) {
+            WorkspaceInfoImpl ws = new WorkspaceInfoImpl();
+            ws.setId("wsid" + i);
+            ws.setName(String.format("ws%07d", i));
+            database.add(ws);
+        }
+        System.out.println("Added " + SIZE + " workspaces in " + sw.stop());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (testSupport != null) {
+            testSupport.tearDown();
+        }
+    }
+
+    public void testH2() throws Exception {
+        setUp("jdbc:h2:file:${DATA_DIR}/geoserver");
+        run("H2");
+    }
+
+    public void testPostgreSQLMode() throws Exception {
+        setUp("jdbc:h2:file:${DATA_DIR}/geoserver;MODE=PostgreSQL");
+        run("PostgreSQL");
+    }
+
+    private void run(String dialect) {
+        final Filter unsupported = Predicates.factory.greater(Predicates.factory.property("name"),
+                Predicates.factory.literal("ws0050000"));
+        for (int batchSize : new int[] { 1, ConfigDatabase.DEFAULT_BATCH_SIZE }) {
+            database.setBatchSize(batchSize);
+
+            time(dialect, batchSize, "query all", Filter.INCLUDE, null, null, null);
+            time(dialect, batchSize, "sorted page", Filter.INCLUDE, SIZE / 2, 50,
+                    Predicates.desc("name"));
+            time(dialect, batchSize, "in memory filter page", unsupported, 1000, 50,
+                    Predicates.asc("name"));
+        }
+    }
+
+    private void time(String dialect, int batchSize, String name, Filter filter, Integer offset,
+            Integer limit, SortBy sortBy) {
+        // start with a cold cache
+        database.dispose();
+
+        Stopwatch sw = new Stopwatch().start();
+        int count = 0;
+        CloseableIterator<WorkspaceInfo> it = database.query(WorkspaceInfo.class, filter, offset,
+                limit, sortBy);
+        try {
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+        } finally {
+            it.close();
+        }
+        sw.stop();
+        System.out.println(String.format("%s, batch size %d, %s: %d objects in %s", dialect,
+                batchSize, name, count, sw));
+    }
+}
@@ -17,16 +17,30 @@
 package org.geoserver.jdbcconfig.internal;
 
 import java.lang.reflect.Proxy;
+import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.Info;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.Predicates;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
 import org.geoserver.catalog.impl.DataStoreInfoImpl;
+import org.geoserver.catalog.impl.FeatureTypeInfoImpl;
+import org.geoserver.catalog.impl.LayerInfoImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.NamespaceInfoImpl;
 import org.geoserver.catalog.impl.WorkspaceInfoImpl;
 import org.geoserver.jdbcconfig.JDBCConfigTestSupport;
+import org.geoserver.jdbcconfig.catalog.JDBCCatalogFacade;
+import org.geoserver.jdbcconfig.internal.XStreamInfoSerialBinding.Encoding;
+import org.opengis.filter.Filter;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 /**
  * @author groldan
@@ -114,4 +128,199 @@ public class ConfigDatabaseTest extends TestCase {
         }
         assertEquals(info, saved);
     }
+
+    private void addWorkspaces(int count) {
+        for (int i = 0; i < count; i++) {
+            WorkspaceInfoImpl ws = new WorkspaceInfoImpl();
+            ws.setId("wsid" + i);
+            ws.setName(String.format("ws%03d", i));
+            database.add(ws);
+        }
+    }
+
+    public void testQueryBatchLoading() throws Exception {
+        addWorkspaces(250);
+        // empties the cache
+        database.dispose();
+        database.setBatchSize(100);
+
+        List<WorkspaceInfo> all = database.queryAsList(WorkspaceInfo.class, Filter.INCLUDE,
+                null, null, Predicates.asc("name"));
+        assertEquals(250, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(String.format("ws%03d", i), all.get(i).getName());
+        }
+
+        database.dispose();
+        List<WorkspaceInfo> page = database.queryAsList(WorkspaceInfo.class, Filter.INCLUDE, 10,
+                5, Predicates.asc("name"));
+        assertEquals(5, page.size());
+        assertEquals("ws010", page.get(0).getName());
+    }
+
+    public void testQueryPagingUnsupportedFilter() throws Exception {
+        addWorkspaces(150);
+
+        // the comparison is evaluated in memory, offset and limit must apply after it
+        Filter filter = Predicates.and(Predicates.contains("name", "ws"), Predicates.factory
+                .greater(Predicates.factory.property("name"), Predicates.factory.literal("ws099")));
+        List<WorkspaceInfo> page = database.queryAsList(WorkspaceInfo.class, filter, 10, 5,
+                Predicates.asc("name"));
+        assertEquals(5, page.size());
+        assertEquals("ws110", page.get(0).getName());
+        assertEquals("ws114", page.get(4).getName());
+    }
+
+    public void testQueryNotEqual() throws Exception {
+        addWorkspaces(3);
+
+        Filter filter = Predicates.factory.notEqual(Predicates.factory.property("name"),
+                Predicates.factory.literal("ws001"));
+        List<WorkspaceInfo> result = database.queryAsList(WorkspaceInfo.class, filter, null,
+                null, Predicates.asc("name"));
+        assertEquals(2, result.size());
+        assertEquals("ws000", result.get(0).getName());
+        assertEquals("ws002", result.get(1).getName());
+
+        filter = Predicates.factory.not(Predicates.equal("name", "ws001"));
+        assertEquals(2, database.queryAsList(WorkspaceInfo.class, filter, null, null, null)
+                .size());
+    }
+
+    /**
+     * Sets up a catalog backed by the database, for references to be resolved against it
+     */
+    private void setUpCatalog() {
+        CatalogImpl catalog = new CatalogImpl();
+        catalog.setFacade(new JDBCCatalogFacade(database));
+    }
+
+    private String blob(String id) {
+        return new JdbcTemplate(testSupport.getDataSource()).queryForObject(
+                "select blob from object where id = ?", String.class, id);
+    }
+
+    public void testBinaryEncoding() throws Exception {
+        setUpCatalog();
+        database.setBlobEncoding(Encoding.BINARY);
+        WorkspaceInfo ws = addWorkspace();
+        DataStoreInfo ds = addDataStore(ws);
+        assertTrue(blob("ds1").startsWith(XStreamInfoSerialBinding.BINARY_HEADER));
+
+        // empties the cache
+        database.dispose();
+        DataStoreInfo loaded = database.getById("ds1", DataStoreInfo.class);
+        assertEquals(ds, loaded);
+        assertEquals("value1", loaded.getConnectionParameters().get("param1"));
+        assertEquals("ws1", loaded.getWorkspace().getName());
+    }
+
+    public void testLazyReferences() throws Exception {
+        setUpCatalog();
+        WorkspaceInfo ws = addWorkspace();
+        addDataStore(ws);
+        database.dispose();
+
+        DataStoreInfo ds = ModificationProxy.unwrap(database.getById("ds1", DataStoreInfo.class));
+        WorkspaceInfo reference = ds.getWorkspace();
+        assertTrue(Proxy.isProxyClass(reference.getClass()));
+        assertEquals("wsid", reference.getId());
+        assertEquals("ws1", reference.getName());
+        assertEquals(ws, reference);
+
+        // saving keeps the reference, resolved or not
+        database.dispose();
+        DataStoreInfo proxy = database.getById("ds1", DataStoreInfo.class);
+        proxy.setDescription("modified");
+        database.save(proxy);
+        database.dispose();
+        ds = database.getById("ds1", DataStoreInfo.class);
+        assertEquals("modified", ds.getDescription());
+        assertEquals("wsid", ds.getWorkspace().getId());
+    }
+
+    private LayerInfo addLayer(DataStoreInfo ds) {
+        NamespaceInfoImpl ns = new NamespaceInfoImpl();
+        ns.setId("nsid");
+        ns.setPrefix("ws1");
+        ns.setURI("http://ws1.org");
+        NamespaceInfo addedNs = database.add(ns);
+
+        FeatureTypeInfoImpl ft = new FeatureTypeInfoImpl(database.getCatalog(), "ft1");
+        ft.setName("ft one");
+        ft.setNativeName("ft one");
+        ft.setStore(ds);
+        ft.setNamespace(addedNs);
+        ft.setEnabled(true);
+        FeatureTypeInfo addedFt = database.add(ft);
+
+        LayerInfoImpl layer = new LayerInfoImpl();
+        layer.setId("layer1");
+        layer.setResource(addedFt);
+        layer.setEnabled(true);
+        return database.add(layer);
+    }
+
+    public void testLazyResourceReferences() throws Exception {
+        setUpCatalog();
+        WorkspaceInfo ws = addWorkspace();
+        addLayer(addDataStore(ws));
+        database.dispose();
+
+        // the store is declared as a StoreInfo, the reference has to be a DataStoreInfo anyways
+        FeatureTypeInfo ft = database.getById("ft1", FeatureTypeInfo.class);
+        DataStoreInfo store = ft.getStore();
+        assertNotNull(store);
+        assertEquals("ds1", store.getId());
+        assertEquals("data store one", store.getName());
+
+        // and the resource is declared as a ResourceInfo
+        database.dispose();
+        LayerInfo layer = database.getById("layer1", LayerInfo.class);
+        assertTrue(layer.getResource() instanceof FeatureTypeInfo);
+        FeatureTypeInfo resource = (FeatureTypeInfo) layer.getResource();
+        assertEquals("ft1", resource.getId());
+        assertEquals("ds1", resource.getStore().getId());
+        assertEquals("ft one", layer.getName());
+    }
+
+    public void testLazyReferenceHashCode() throws Exception {
+        setUpCatalog();
+        WorkspaceInfo ws = addWorkspace();
+        addDataStore(ws);
+        database.dispose();
+
+        DataStoreInfo ds = ModificationProxy.unwrap(database.getById("ds1", DataStoreInfo.class));
+        WorkspaceInfo reference = ds.getWorkspace();
+        int hashCode = reference.hashCode();
+        // resolving does not change the hash code
+        assertEquals("ws1", reference.getName());
+        assertEquals(hashCode, reference.hashCode());
+        assertEquals(ws.hashCode(), hashCode);
+    }
+
+    public void testReencodeBlobs() throws Exception {
+        setUpCatalog();
+        WorkspaceInfo ws = addWorkspace();
+        addDataStore(ws);
+        assertEquals(0, database.reencodeBlobs());
+        assertTrue(blob("ds1").startsWith("<"));
+
+        database.setBlobEncoding(Encoding.BINARY);
+        assertEquals(2, database.reencodeBlobs());
+        assertTrue(blob("wsid").startsWith(XStreamInfoSerialBinding.BINARY_HEADER));
+        assertTrue(blob("ds1").startsWith(XStreamInfoSerialBinding.BINARY_HEADER));
+        assertEquals(0, database.reencodeBlobs());
+
+        database.dispose();
+        DataStoreInfo ds = database.getById("ds1", DataStoreInfo.class);
+        assertEquals("value1", ds.getConnectionParameters().get("param1"));
+        assertEquals(ws, ds.getWorkspace());
+
+        database.setBlobEncoding(Encoding.XML);
+        assertEquals(2, database.reencodeBlobs());
+        assertTrue(blob("ds1").startsWith("<"));
+        database.dispose();
+        assertEquals("data store one", database.getById("ds1", DataStoreInfo.class).getName());
+    }
 }
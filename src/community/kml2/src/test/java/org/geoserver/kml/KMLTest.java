@@ -186,7 +186,7 @@ public class KMLTest extends WMSTestSupport {
         FeatureTypeInfo ftInfo = getCatalog().getResourceByName(getLayerId(MockData.OTHER),
                 FeatureTypeInfo.class);
         File resourceDir = getDataDirectory().findResourceDir(ftInfo);
-        File templateFile = new File(resourceDir, "time.ftl");
+        File templateFile = getResourceLoader().createFile(resourceDir, "time.ftl");
         try {
             // create the time template
             
@@ -209,7 +209,7 @@ public class KMLTest extends WMSTestSupport {
         FeatureTypeInfo ftInfo = getCatalog().getResourceByName(getLayerId(MockData.OTHER),
                 FeatureTypeInfo.class);
         File resourceDir = getDataDirectory().findResourceDir(ftInfo);
-        File templateFile = new File(resourceDir, "height.ftl");
+        File templateFile = getResourceLoader().createFile(resourceDir, "height.ftl");
         try {
             // create the height template
             FileUtils.writeStringToFile(templateFile, "200");
@@ -0,0 +1,203 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.script;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.script.Bindings;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.apache.commons.io.IOUtils;
+import org.geoserver.platform.FileWatcher;
+
+/**
+ * Pool of script engines that evaluated the same script file, for scripts invoked concurrently,
+ * such as filter functions evaluated by several rendering threads.
+ * <p>
+ * Script engines are generally not thread safe, so each caller {@link #acquire() acquires} an
+ * engine for its exclusive use and {@link #release(ScriptEngine) releases} it when done. Engines
+ * are created on demand, and up to {@link #getMaxIdle()} of them are kept for later use.
+ * </p>
+ * <p>
+ * The script file is checked for modifications at most once a second. The contents of the file
+ * are read once per modification and evaluated by every new engine. When the file changes the
+ * idle engines are discarded, and so are the engines in use when they're released.
+ * </p>
+ *
+ * @see ScriptFileWatcher
+ */
+public class ScriptEnginePool {
+
+    /**
+     * Interval between checks of the script file for modifications
+     */
+    static final long CHECK_INTERVAL = 1000;
+
+    ScriptManager scriptMgr;
+
+    ScriptWatcher watcher;
+
+    int maxIdle = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    volatile Script script;
+
+    volatile long nextCheck;
+
+    Queue<ScriptEngine> idle = new ConcurrentLinkedQueue<ScriptEngine>();
+
+    AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * The version of the script each engine evaluated, for the engines of the pool
+     */
+    ConcurrentMap<ScriptEngine, Long> versions = new ConcurrentHashMap<ScriptEngine, Long>();
+
+    public ScriptEnginePool(File file, ScriptManager scriptMgr) {
+        this.scriptMgr = scriptMgr;
+        this.watcher = new ScriptWatcher(file);
+    }
+
+    public File getFile() {
+        return watcher.getFile();
+    }
+
+    /**
+     * The max number of engines kept around for later use.
+     */
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns an engine that evaluated the current version of the script, for the exclusive use
+     * of the caller until it's {@link #release(ScriptEngine) released}.
+     */
+    public ScriptEngine acquire() throws IOException {
+        Script s = script();
+
+        ScriptEngine engine;
+        while ((engine = idle.poll()) != null) {
+            idleCount.decrementAndGet();
+            Long version = versions.get(engine);
+            if (version != null && version.longValue() == s.version) {
+                return engine;
+            }
+            versions.remove(engine);
+        }
+
+        engine = create(s);
+        versions.put(engine, s.version);
+        return engine;
+    }
+
+    /**
+     * Returns a new engine that evaluated the current version of the script. The engine is not
+     * managed by the pool, it's meant for callers that must not share the engine state with
+     * others, and must not be {@link #release(ScriptEngine) released}.
+     */
+    public ScriptEngine create() throws IOException {
+        return create(script());
+    }
+
+    ScriptEngine create(Script s) throws IOException {
+        ScriptEngine engine = scriptMgr.createNewEngine(getFile());
+        Bindings bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        bindings.put(ScriptEngine.FILENAME, getFile().getPath());
+        try {
+            engine.eval(new StringReader(s.source));
+        } catch (ScriptException e) {
+            throw new IOException(e);
+        }
+        return engine;
+    }
+
+    /**
+     * Gives back an engine obtained from {@link #acquire()}.
+     */
+    public void release(ScriptEngine engine) {
+        if (engine == null) {
+            return;
+        }
+        Script s = script;
+        Long version = versions.get(engine);
+        if (s != null && version != null && version.longValue() == s.version) {
+            if (idleCount.incrementAndGet() <= maxIdle) {
+                idle.offer(engine);
+                return;
+            }
+            idleCount.decrementAndGet();
+        }
+        versions.remove(engine);
+    }
+
+    /**
+     * Returns the current version of the script, reading the file again if it was modified.
+     */
+    Script script() throws IOException {
+        Script s = script;
+        if (s != null && System.currentTimeMillis() < nextCheck) {
+            return s;
+        }
+        synchronized (this) {
+            s = script;
+            if (s == null || watcher.isModified()) {
+                String source = watcher.read();
+                if (source == null) {
+                    throw new FileNotFoundException(getFile().getPath());
+                }
+                s = new Script(source, s == null ? 0 : s.version + 1);
+                script = s;
+                // the engines evaluated the previous version
+                ScriptEngine engine;
+                while ((engine = idle.poll()) != null) {
+                    idleCount.decrementAndGet();
+                    versions.remove(engine);
+                }
+            }
+            nextCheck = System.currentTimeMillis() + CHECK_INTERVAL;
+            return s;
+        }
+    }
+
+    static class Script {
+
+        final String source;
+
+        final long version;
+
+        Script(String source, long version) {
+            this.source = source;
+            this.version = version;
+        }
+    }
+
+    static class ScriptWatcher extends FileWatcher<String> {
+
+        ScriptWatcher(File file) {
+            super(file);
+        }
+
+        @Override
+        protected String parseFileContents(InputStream in) throws IOException {
+            return IOUtils.toString(new InputStreamReader(in));
+        }
+    }
+}
@@ -4,6 +4,7 @@
  */
 package org.geoserver.script.function;
 
+import java.util.Arrays;
 import java.util.List;
 
 import javax.script.ScriptEngine;
@@ -42,4 +43,16 @@ public class FunctionHook extends ScriptHook {
 
         return invoke(engine, "run", value, args);
     }
+
+    /**
+     * Runs the function for every evaluation of a {@link ScriptFunction}, the arguments array is
+     * owned by the hook.
+     * <p>
+     * This implementation hands the arguments to {@link #run(Object, List, ScriptEngine)} without 
+     * copying them, subclasses converting the arguments can do so in place.
+     * </p>
+     */
+    public Object run(Object value, Object[] args, ScriptEngine engine) throws ScriptException {
+        return run(value, Arrays.asList(args), engine);
+    }
 }
@@ -5,13 +5,11 @@
 package org.geoserver.script.function;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.script.ScriptEngine;
 
-import org.geoserver.platform.FileWatcher;
-import org.geoserver.script.ScriptFileWatcher;
+import org.geoserver.script.ScriptEnginePool;
 import org.geoserver.script.ScriptManager;
 import org.geotools.filter.FunctionImpl;
 import org.geotools.filter.capability.FunctionNameImpl;
@@ -23,9 +21,10 @@ import org.opengis.filter.expression.VolatileFunction;
  * Implementation of {@link org.opengis.filter.expression.Function} backed by a script.
  * <p>
  * This class does its work by delegating all methods to the {@link FunctionHook} interface. This 
- * class maintains a link to the backing script {@link File} and uses a {@link FileWatcher} to 
- * detect changes to the underlying script. When changed a new {@link ScriptEngine} is created and 
- * the underlying script is reloaded. 
+ * class maintains a link to the backing script {@link File} and uses a {@link ScriptEnginePool} 
+ * so that each evaluation runs on a {@link ScriptEngine} of its own, which allows the function to
+ * be evaluated by several threads at the same time. When the underlying script changes new 
+ * engines are created and the script is reloaded. 
  * </p>
  * @author Justin Deoliveira, OpenGeo
  *
@@ -35,11 +34,11 @@ public class ScriptFunction {
     /** the hook for interacting with the script */
     FunctionHook hook;
 
-    /** watcher for changes */
-    ScriptFileWatcher watcher;
+    /** engines that evaluated the script, reloaded on changes */
+    ScriptEnginePool engines;
 
     public ScriptFunction(File file, ScriptManager scriptMgr) {
-        watcher = new ScriptFileWatcher(file, scriptMgr);
+        engines = new ScriptEnginePool(file, scriptMgr);
         hook = scriptMgr.lookupFilterHook(file);
     }
 
@@ -59,11 +58,18 @@ public class ScriptFunction {
         public Object evaluate(Object object) {
             try {
                 //round up the arguments
-                List<Object> args = new ArrayList<Object>();
-                for (Expression e : getParameters()) {
-                    args.add(e.evaluate(object));
+                List<Expression> params = getParameters();
+                Object[] args = new Object[params.size()];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = params.get(i).evaluate(object);
+                }
+
+                ScriptEngine engine = engines.acquire();
+                try {
+                    return hook.run(object, args, engine);
+                } finally {
+                    engines.release(engine);
                 }
-                return hook.run(object, args, watcher.readIfModified());
             }
             catch(Exception e) {
                 throw new RuntimeException(e);
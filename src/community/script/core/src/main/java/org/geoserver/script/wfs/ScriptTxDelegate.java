@@ -5,6 +5,7 @@
 package org.geoserver.script.wfs;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,7 +19,7 @@ import net.opengis.wfs.TransactionResponseType;
 import net.opengis.wfs.TransactionType;
 import net.opengis.wfs.UpdateElementType;
 
-import org.geoserver.script.ScriptFileWatcher;
+import org.geoserver.script.ScriptEnginePool;
 import org.geoserver.script.ScriptManager;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.WFSException;
@@ -32,17 +33,17 @@ public class ScriptTxDelegate {
     static Logger LOGGER = Logging.getLogger(ScriptTxDelegate.class);
 
     WfsTxHook hook;
-    ScriptFileWatcher fw;
+    ScriptEnginePool engines;
 
     public ScriptTxDelegate(File script, ScriptManager scriptMgr) {
         this.hook = scriptMgr.lookupWfsTxHook(script);
-        this.fw = new ScriptFileWatcher(script, scriptMgr);
+        this.engines = new ScriptEnginePool(script, scriptMgr);
     }
 
     public TransactionType beforeTransaction(TransactionType request) throws WFSException {
         try {
             Map context = request.getExtendedProperties();
-            hook.handleBefore(fw.read(), TransactionRequest.adapt(request), context);
+            hook.handleBefore(engine(context), TransactionRequest.adapt(request), context);
         } 
         catch(WFSException e) {
             throw e;
@@ -58,7 +59,7 @@ public class ScriptTxDelegate {
         Map context = request.getExtendedProperties();
 
         try {
-            hook.handlePreInsert(fw.read(), event.getAffectedFeatures(), request, context);
+            hook.handlePreInsert(engine(context), event.getAffectedFeatures(), request, context);
         } catch (WFSException e) {
             throw e;
         } catch (Exception e) {
@@ -71,7 +72,7 @@ public class ScriptTxDelegate {
         Map context = request.getExtendedProperties();
 
         try {
-            hook.handlePostInsert(fw.read(), event.getAffectedFeatures(), request, context);
+            hook.handlePostInsert(engine(context), event.getAffectedFeatures(), request, context);
         } catch (WFSException e) {
             throw e;
         } catch (Exception e) {
@@ -86,7 +87,7 @@ public class ScriptTxDelegate {
         Map context = request.getExtendedProperties();
 
         try {
-            hook.handlePreUpdate(fw.read(), event.getAffectedFeatures(), props, request, context);
+            hook.handlePreUpdate(engine(context), event.getAffectedFeatures(), props, request, context);
         } catch (WFSException e) {
             throw e;
         } catch (Exception e) {
@@ -101,7 +102,7 @@ public class ScriptTxDelegate {
         Map context = request.getExtendedProperties();
 
         try {
-            hook.handlePostUpdate(fw.read(), event.getAffectedFeatures(), props, request, context);
+            hook.handlePostUpdate(engine(context), event.getAffectedFeatures(), props, request, context);
         } catch (WFSException e) {
             throw e;
         } catch (Exception e) {
@@ -114,7 +115,7 @@ public class ScriptTxDelegate {
         Map context = request.getExtendedProperties();
 
         try {
-            hook.handlePreDelete(fw.read(), event.getAffectedFeatures(), request, context);
+            hook.handlePreDelete(engine(context), event.getAffectedFeatures(), request, context);
         } catch (WFSException e) {
             throw e;
         } catch (Exception e) {
@@ -125,7 +126,7 @@ public class ScriptTxDelegate {
     public void beforeCommit(TransactionType request) throws WFSException {
         try {
             Map context = request.getExtendedProperties();
-            hook.handlePreCommit(fw.read(), TransactionRequest.adapt(request), context);
+            hook.handlePreCommit(engine(context), TransactionRequest.adapt(request), context);
         } 
         catch(WFSException e) {
             throw e;
@@ -139,15 +140,20 @@ public class ScriptTxDelegate {
         try {
             Map context = request.getExtendedProperties();
 
-            ScriptEngine eng = fw.read();
-            TransactionRequest txReq = TransactionRequest.adapt(request);
-            TransactionResponse txRes = TransactionResponse.adapt(result);
-
-            if (committed) {
-                hook.handlePostCommit(eng, txReq, txRes, context);
-            }
-            else {
-                hook.handleAbort(eng, txReq, txRes, context);
+            try {
+                ScriptEngine eng = engine(context);
+                TransactionRequest txReq = TransactionRequest.adapt(request);
+                TransactionResponse txRes = TransactionResponse.adapt(result);
+
+                if (committed) {
+                    hook.handlePostCommit(eng, txReq, txRes, context);
+                }
+                else {
+                    hook.handleAbort(eng, txReq, txRes, context);
+                }
+            } finally {
+                // the transaction is over, so is the engine
+                context.remove(this);
             }
         } 
         catch(Exception e) {
@@ -155,6 +161,20 @@ public class ScriptTxDelegate {
         }
     }
 
+    /**
+     * Returns the engine running the hooks of the transaction. Each transaction gets a fresh
+     * engine, kept in the transaction context, so that the script state is shared among the hooks
+     * of a transaction, but not among transactions and users.
+     */
+    ScriptEngine engine(Map context) throws IOException {
+        ScriptEngine engine = (ScriptEngine) context.get(this);
+        if (engine == null) {
+            engine = engines.create();
+            context.put(this, engine);
+        }
+        return engine;
+    }
+
     Map<String, Object> updateProperties(TransactionEvent event) {
         //get the map of properties changed
         UpdateElementType update = (UpdateElementType) event.getSource();
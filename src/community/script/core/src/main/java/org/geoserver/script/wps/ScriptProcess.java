@@ -11,8 +11,7 @@ import java.util.Map;
 import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
-import org.geoserver.platform.FileWatcher;
-import org.geoserver.script.ScriptFileWatcher;
+import org.geoserver.script.ScriptEnginePool;
 import org.geoserver.script.ScriptManager;
 import org.geotools.data.Parameter;
 import org.geotools.process.Process;
@@ -24,9 +23,9 @@ import org.opengis.util.ProgressListener;
  * Implementation of {@link Process} backed by a script.
  * <p>
  * This class does its work by delegating all methods to the {@link WpsHook} interface. This 
- * class maintains a link to the backing script {@link File} and uses a {@link FileWatcher} to 
- * detect changes to the underlying script. When changed a new {@link ScriptEngine} is created and 
- * the underlying script is reloaded. 
+ * class maintains a link to the backing script {@link File} and uses a {@link ScriptEnginePool} 
+ * so that concurrent executions each run on a {@link ScriptEngine} of their own. When the 
+ * underlying script changes new engines are created and the script is reloaded. 
  * </p>
  * @author Justin Deoliveira, OpenGeo
  *
@@ -36,8 +35,8 @@ public class ScriptProcess implements Process {
     /** process name*/
     Name name;
     
-    /** watcher for file changes */
-    ScriptFileWatcher fw;
+    /** engines that evaluated the script, reloaded on changes */
+    ScriptEnginePool engines;
     
     /** script manager */
     ScriptManager scriptMgr;
@@ -50,27 +49,52 @@ public class ScriptProcess implements Process {
         this.scriptMgr = scriptMgr;
 
         hook = scriptMgr.lookupWpsHook(script);
-        fw = new ScriptFileWatcher(script, scriptMgr);
+        engines = new ScriptEnginePool(script, scriptMgr);
     }
 
     public String getTitle() throws ScriptException, IOException {
-        return hook.getTitle(fw.readIfModified());
+        ScriptEngine engine = engines.acquire();
+        try {
+            return hook.getTitle(engine);
+        } finally {
+            engines.release(engine);
+        }
     }
 
     String getVersion() throws ScriptException, IOException {
-        return hook.getVersion(fw.readIfModified());
+        ScriptEngine engine = engines.acquire();
+        try {
+            return hook.getVersion(engine);
+        } finally {
+            engines.release(engine);
+        }
     }
 
     public String getDescription() throws ScriptException, IOException {
-        return hook.getDescription(fw.readIfModified());
+        ScriptEngine engine = engines.acquire();
+        try {
+            return hook.getDescription(engine);
+        } finally {
+            engines.release(engine);
+        }
     }
 
     public Map<String, Parameter<?>> getInputs() throws ScriptException, IOException {
-        return hook.getInputs(fw.readIfModified());
+        ScriptEngine engine = engines.acquire();
+        try {
+            return hook.getInputs(engine);
+        } finally {
+            engines.release(engine);
+        }
     }
 
     public Map<String, Parameter<?>> getOutputs() throws ScriptException, IOException {
-        return hook.getOutputs(fw.readIfModified());
+        ScriptEngine engine = engines.acquire();
+        try {
+            return hook.getOutputs(engine);
+        } finally {
+            engines.release(engine);
+        }
     }
 
     @Override
@@ -78,7 +102,12 @@ public class ScriptProcess implements Process {
             ProgressListener monitor) throws ProcessException {
 
         try {
-            return hook.run(input, fw.readIfModified());
+            ScriptEngine engine = engines.acquire();
+            try {
+                return hook.run(input, engine);
+            } finally {
+                engines.release(engine);
+            }
         } catch (Exception e) {
             throw new ProcessException(e);
         }
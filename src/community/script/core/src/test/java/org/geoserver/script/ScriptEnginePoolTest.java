@@ -0,0 +1,89 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.script;
+
+import java.io.File;
+
+import javax.script.ScriptEngine;
+
+import org.apache.commons.io.FileUtils;
+
+public class ScriptEnginePoolTest extends ScriptTestSupport {
+
+    File script;
+
+    ScriptEnginePool pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        script = new File(scriptMgr.getFunctionRoot(), "pool.js");
+        FileUtils.writeStringToFile(script, "var x = 1;");
+        pool = new ScriptEnginePool(script, scriptMgr);
+    }
+
+    public void testReuse() throws Exception {
+        ScriptEngine engine = pool.acquire();
+        assertEquals(1, ((Number) engine.get("x")).intValue());
+        pool.release(engine);
+
+        assertSame(engine, pool.acquire());
+    }
+
+    public void testExclusive() throws Exception {
+        ScriptEngine e1 = pool.acquire();
+        ScriptEngine e2 = pool.acquire();
+        assertNotSame(e1, e2);
+        assertEquals(1, ((Number) e2.get("x")).intValue());
+
+        pool.release(e1);
+        pool.release(e2);
+        assertEquals(2, pool.idle.size());
+    }
+
+    public void testMaxIdle() throws Exception {
+        pool.setMaxIdle(1);
+
+        ScriptEngine e1 = pool.acquire();
+        ScriptEngine e2 = pool.acquire();
+        pool.release(e1);
+        pool.release(e2);
+        assertEquals(1, pool.idle.size());
+        assertEquals(1, pool.versions.size());
+    }
+
+    public void testReload() throws Exception {
+        ScriptEngine e1 = pool.acquire();
+        ScriptEngine e2 = pool.acquire();
+        pool.release(e1);
+
+        FileUtils.writeStringToFile(script, "var x = 2;");
+        script.setLastModified(script.lastModified() + 2000);
+        // modifications are looked for at most once a second
+        Thread.sleep(ScriptEnginePool.CHECK_INTERVAL + 100);
+
+        ScriptEngine e3 = pool.acquire();
+        assertNotSame(e1, e3);
+        assertEquals(2, ((Number) e3.get("x")).intValue());
+
+        // engines running the previous version are not reused
+        pool.release(e2);
+        pool.release(e3);
+        assertEquals(1, pool.idle.size());
+        assertSame(e3, pool.acquire());
+    }
+
+    public void testCreate() throws Exception {
+        ScriptEngine e1 = pool.create();
+        ScriptEngine e2 = pool.create();
+        assertNotSame(e1, e2);
+        assertEquals(1, ((Number) e1.get("x")).intValue());
+
+        // not managed by the pool
+        assertTrue(pool.versions.isEmpty());
+        assertNotSame(e1, pool.acquire());
+    }
+}
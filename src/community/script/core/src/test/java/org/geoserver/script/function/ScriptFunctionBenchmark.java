@@ -0,0 +1,93 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.script.function;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.geoserver.script.ScriptTestSupport;
+import org.opengis.filter.expression.Function;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Times the evaluation of a script function, from a single thread and from as many threads as
+ * there are processors. Not run by the build, run it explicitly with
+ * {@code mvn test -Dtest=ScriptFunctionBenchmark}, the number of evaluations defaults to 100000
+ * and can be set with the {@code script.benchmark.size} system property.
+ */
+public class ScriptFunctionBenchmark extends ScriptTestSupport {
+
+    static final int SIZE = Integer.getInteger("script.benchmark.size", 100000);
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        File function = scriptMgr.getFunctionRoot();
+        File script = new File(function, "factorial." + getExtension());
+
+        FileUtils.copyURLToFile(getClass().getResource(script.getName()), script);
+    }
+
+    protected String getExtension() {
+        return "js";
+    }
+
+    public void testEvaluate() throws Exception {
+        ScriptFunctionFactory sff = new ScriptFunctionFactory(scriptMgr);
+        benchmark(getExtension(), sff.function("factorial", Collections.EMPTY_LIST, null));
+    }
+
+    /**
+     * Evaluates the factorial function {@link #SIZE} times, sequentially and concurrently, and
+     * prints the timings.
+     */
+    public static void benchmark(String name, final Function f) throws Exception {
+        // warm up
+        for (int i = 0; i < 1000; i++) {
+            f.evaluate(i % 10 + 1);
+        }
+
+        Stopwatch sw = new Stopwatch().start();
+        for (int i = 0; i < SIZE; i++) {
+            f.evaluate(i % 10 + 1);
+        }
+        sw.stop();
+        System.out.println(String.format("%s: %d evaluations in %s", name, SIZE, sw));
+
+        final int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        for (int i = 0; i < SIZE / threads; i++) {
+                            f.evaluate(i % 10 + 1);
+                        }
+                        return null;
+                    }
+                });
+            }
+            sw = new Stopwatch().start();
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+            sw.stop();
+            System.out.println(String.format("%s: %d evaluations on %d threads in %s", name,
+                    SIZE, threads, sw));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
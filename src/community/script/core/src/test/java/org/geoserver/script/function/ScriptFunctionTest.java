@@ -5,7 +5,13 @@
 package org.geoserver.script.function;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.geoserver.script.ScriptTestSupport;
@@ -40,4 +46,31 @@ public class ScriptFunctionTest extends ScriptTestSupport {
         assertNotNull(f);
         assertEquals(120, ((Number)f.evaluate(5)).intValue());
     }
+
+    public void testRunConcurrently() throws Exception {
+        ScriptFunctionFactory sff = new ScriptFunctionFactory(scriptMgr);
+        final Function f = sff.function("factorial", Collections.EMPTY_LIST, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 50; i++) {
+                            if (((Number)f.evaluate(5)).intValue() != 120) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                });
+            }
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -11,6 +11,9 @@ import java.util.Map;
 
 import javax.script.ScriptEngine;
 
+import net.opengis.wfs.TransactionType;
+import net.opengis.wfs.WfsFactory;
+
 import org.apache.commons.io.FileUtils;
 import org.geoserver.script.ScriptIntTestSupport;
 import org.geoserver.wfs.WFSException;
@@ -34,6 +37,21 @@ public abstract class WfsTxHookTest extends ScriptIntTestSupport {
         assertNotNull(scriptMgr.lookupWfsTxHook(script));
     }
 
+    public void testEnginePerTransaction() throws Exception {
+        File script = copyOverFile("tx");
+        ScriptTxDelegate delegate = new ScriptTxDelegate(script, scriptMgr);
+
+        TransactionType t1 = WfsFactory.eINSTANCE.createTransactionType();
+        TransactionType t2 = WfsFactory.eINSTANCE.createTransactionType();
+        ScriptEngine e1 = delegate.engine(t1.getExtendedProperties());
+        assertSame(e1, delegate.engine(t1.getExtendedProperties()));
+        assertNotSame(e1, delegate.engine(t2.getExtendedProperties()));
+
+        // dropped once the transaction is over
+        delegate.afterTransaction(t1, WfsFactory.eINSTANCE.createTransactionResponseType(), true);
+        assertFalse(t1.getExtendedProperties().containsKey(delegate));
+    }
+
     public void testHookExecution() throws Exception {
         File script = copyOverFile("tx");
         TransactionRequest tx = new TransactionRequest.WFS11(null);
@@ -4,7 +4,7 @@
  */
 package org.geoserver.script.groovy;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.script.ScriptEngine;
@@ -21,20 +21,23 @@ public class GroovyFunctionHook extends FunctionHook {
 
 	@Override
 	public Object run(Object value, List<Object> args, ScriptEngine engine) 
+        throws ScriptException {
+		return run(value, args.toArray(), engine);
+	}
+
+	@Override
+	public Object run(Object value, Object[] args, ScriptEngine engine) 
         throws ScriptException {
 		
-		// Convert GeoTools args to GeoScript args
-		List<Object> newArgs = new ArrayList<Object>(args.size());
-		for(Object arg: args) {
-			if (arg instanceof com.vividsolutions.jts.geom.Geometry) {
-				newArgs.add(geoscript.geom.Geometry.wrap((com.vividsolutions.jts.geom.Geometry) arg));
-			} else {
-				newArgs.add(arg);
+		// Convert GeoTools args to GeoScript args, in place as the array is ours
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] instanceof com.vividsolutions.jts.geom.Geometry) {
+				args[i] = geoscript.geom.Geometry.wrap((com.vividsolutions.jts.geom.Geometry) args[i]);
 			}
 		}
 		
 		// Run the function
-        Object result = invoke(engine, "run", value, newArgs);
+        Object result = invoke(engine, "run", value, Arrays.asList(args));
         
         // Convert GeoScript result to GeoTools result
         if (result instanceof geoscript.geom.Geometry) {
@@ -0,0 +1,35 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.script.js;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.geoserver.data.test.MockData;
+import org.geoserver.data.util.IOUtils;
+import org.geoserver.script.ScriptIntTestSupport;
+import org.geoserver.script.function.ScriptFunctionBenchmark;
+import org.geoserver.script.function.ScriptFunctionFactory;
+
+/**
+ * Times the factorial function through the JavaScript plugin, see 
+ * {@link ScriptFunctionBenchmark}.
+ */
+public class JavaScriptFunctionBenchmark extends ScriptIntTestSupport {
+
+    @Override
+    protected void populateDataDirectory(MockData dataDirectory) throws Exception {
+        File fromDir = new File(getClass().getResource("scripts").getFile());
+        File toDir = new File(dataDirectory.getDataDirectoryRoot(), "scripts");
+        IOUtils.deepCopy(fromDir, toDir);
+        super.populateDataDirectory(dataDirectory);
+    }
+
+    public void testEvaluate() throws Exception {
+        ScriptFunctionFactory sff = new ScriptFunctionFactory(getScriptManager());
+        ScriptFunctionBenchmark.benchmark("js", 
+            sff.function("factorial", Collections.EMPTY_LIST, null));
+    }
+}
@@ -4,8 +4,6 @@
  */
 package org.geoserver.wcs2_0.response;
 
-import java.awt.image.DataBuffer;
-import java.awt.image.RenderedImage;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -13,9 +11,6 @@ import java.util.TreeSet;
 
 import javax.measure.unit.Unit;
 import javax.measure.unit.UnitFormat;
-import javax.media.jai.PlanarImage;
-import javax.media.jai.iterator.RectIter;
-import javax.media.jai.iterator.RectIterFactory;
 
 import org.geoserver.catalog.DimensionPresentation;
 import org.geoserver.wcs2_0.GetCoverage;
@@ -44,6 +39,7 @@ import org.opengis.referencing.crs.GeographicCRS;
 import org.opengis.referencing.cs.CoordinateSystem;
 import org.opengis.referencing.operation.MathTransform2D;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
 /**
@@ -384,52 +380,10 @@ class GMLTransformer extends TransformerBase {
 
             start("tupleList");
             // walk through the coverage and spit it out!
-            final RenderedImage raster = gc2d.getRenderedImage();
-            final int numBands = raster.getSampleModel().getNumBands();
-            final int dataType = raster.getSampleModel().getDataType();
-            final double[] valuesD = new double[numBands];
-            final int[] valuesI = new int[numBands];
-            RectIter iterator = RectIterFactory.create(raster, PlanarImage
-                    .wrapRenderedImage(raster).getBounds());
-
-            iterator.startLines();
-            while (!iterator.finishedLines()) {
-                iterator.startPixels();
-                while (!iterator.finishedPixels()) {
-                    switch (dataType) {
-                    case DataBuffer.TYPE_BYTE:
-                    case DataBuffer.TYPE_INT:
-                    case DataBuffer.TYPE_SHORT:
-                    case DataBuffer.TYPE_USHORT:
-                        iterator.getPixel(valuesI);
-                        for (int i = 0; i < numBands; i++) {
-                            // spit out
-                            chars(String.valueOf(valuesI[i]));
-                            if (i + 1 < numBands) {
-                                chars(",");
-                            }
-                        }
-                        break;
-                    case DataBuffer.TYPE_DOUBLE:
-                    case DataBuffer.TYPE_FLOAT:
-                        iterator.getPixel(valuesD);
-                        for (int i = 0; i < numBands; i++) {
-                            // spit out
-                            chars(String.valueOf(valuesD[i]));
-                            if (i + 1 < numBands) {
-                                chars(",");
-                            }
-                        }
-                        break;
-                    default:
-                        break;
-                    }
-                    // space as sample separator
-                    chars(" ");
-                    iterator.nextPixel();
-                }
-                iterator.nextLine();
-                chars("\n");
+            try {
+                new TupleListWriter(contentHandler).write(gc2d.getRenderedImage());
+            } catch (SAXException e) {
+                throw new RuntimeException(e);
             }
 
             end("tupleList");
@@ -0,0 +1,134 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs2_0.response;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.util.Arrays;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Writes the samples of an image as the contents of a GML tupleList: the bands of a pixel are
+ * separated by commas, the pixels by spaces, and each image line ends with a new line.
+ * <p>
+ * The image is read one row of tiles at a time, each line of a tile is copied into a reusable
+ * sample array and the samples are formatted into a reusable buffer, which is handed to the
+ * {@link ContentHandler} every {@link #BUFFER_SIZE} characters. This way the memory used does not
+ * depend on the size of the image and no objects are created for each sample.
+ * </p>
+ */
+class TupleListWriter {
+
+    /**
+     * Number of characters accumulated before handing them to the content handler
+     */
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    final ContentHandler handler;
+
+    final StringBuilder buffer = new StringBuilder(BUFFER_SIZE * 2);
+
+    char[] chars = new char[BUFFER_SIZE * 2];
+
+    public TupleListWriter(ContentHandler handler) {
+        this.handler = handler;
+    }
+
+    public void write(RenderedImage image) throws SAXException {
+        final SampleModel sampleModel = image.getSampleModel();
+        final int numBands = sampleModel.getNumBands();
+        final int dataType = sampleModel.getDataType();
+        final boolean integral = dataType == DataBuffer.TYPE_BYTE
+                || dataType == DataBuffer.TYPE_SHORT || dataType == DataBuffer.TYPE_USHORT
+                || dataType == DataBuffer.TYPE_INT;
+        final boolean floating = dataType == DataBuffer.TYPE_FLOAT
+                || dataType == DataBuffer.TYPE_DOUBLE;
+
+        final int minX = image.getMinX();
+        final int maxX = minX + image.getWidth();
+        final int minY = image.getMinY();
+        final int maxY = minY + image.getHeight();
+        final int minTileX = image.getMinTileX();
+        final int minTileY = image.getMinTileY();
+        final int numXTiles = image.getNumXTiles();
+        final int numYTiles = image.getNumYTiles();
+
+        final int length = image.getTileWidth() * numBands;
+        final int[] samplesI = integral ? new int[length] : null;
+        final double[] samplesD = floating ? new double[length] : null;
+        final Raster[] tiles = new Raster[numXTiles];
+
+        for (int ty = minTileY; ty < minTileY + numYTiles; ty++) {
+            for (int tx = minTileX; tx < minTileX + numXTiles; tx++) {
+                tiles[tx - minTileX] = image.getTile(tx, ty);
+            }
+            final int y0 = Math.max(minY, tiles[0].getMinY());
+            final int y1 = Math.min(maxY, tiles[0].getMinY() + tiles[0].getHeight());
+            for (int y = y0; y < y1; y++) {
+                for (Raster tile : tiles) {
+                    final int x0 = Math.max(minX, tile.getMinX());
+                    final int width = Math.min(maxX, tile.getMinX() + tile.getWidth()) - x0;
+                    if (width <= 0) {
+                        continue;
+                    }
+
+                    if (integral) {
+                        tile.getPixels(x0, y, width, 1, samplesI);
+                        for (int i = 0, s = 0; i < width; i++) {
+                            for (int b = 0; b < numBands; b++, s++) {
+                                if (b > 0) {
+                                    buffer.append(',');
+                                }
+                                buffer.append(samplesI[s]);
+                            }
+                            // space as sample separator
+                            buffer.append(' ');
+                        }
+                    } else if (floating) {
+                        tile.getPixels(x0, y, width, 1, samplesD);
+                        for (int i = 0, s = 0; i < width; i++) {
+                            for (int b = 0; b < numBands; b++, s++) {
+                                if (b > 0) {
+                                    buffer.append(',');
+                                }
+                                buffer.append(samplesD[s]);
+                            }
+                            buffer.append(' ');
+                        }
+                    } else {
+                        for (int i = 0; i < width; i++) {
+                            buffer.append(' ');
+                        }
+                    }
+
+                    if (buffer.length() >= BUFFER_SIZE) {
+                        flush();
+                    }
+                }
+                buffer.append('\n');
+            }
+            // let the tiles be collected
+            Arrays.fill(tiles, null);
+        }
+        flush();
+    }
+
+    void flush() throws SAXException {
+        final int length = buffer.length();
+        if (length == 0) {
+            return;
+        }
+        if (chars.length < length) {
+            chars = new char[length];
+        }
+        buffer.getChars(0, length, chars, 0);
+        handler.characters(chars, 0, length);
+        buffer.setLength(0);
+    }
+}
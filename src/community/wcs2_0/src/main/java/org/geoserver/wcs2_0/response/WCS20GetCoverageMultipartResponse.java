@@ -8,19 +8,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
-
-import javax.activation.DataHandler;
-import javax.mail.BodyPart;
-import javax.mail.MessagingException;
-import javax.mail.Session;
-import javax.mail.internet.MimeBodyPart;
-import javax.mail.internet.MimeMessage;
-import javax.mail.internet.MimeMultipart;
+import java.util.UUID;
 
 import net.opengis.wcs20.ExtensionItemType;
 import net.opengis.wcs20.ExtensionType;
 import net.opengis.wcs20.GetCoverageType;
 
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.eclipse.emf.common.util.EList;
 import org.geoserver.ows.Response;
 import org.geoserver.platform.Operation;
@@ -31,17 +25,20 @@ import org.geoserver.wcs2_0.response.GMLCovHandler.CoverageData;
 import org.geoserver.wcs2_0.util.EnvelopeAxesLabelsMapper;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.opengis.coverage.grid.GridCoverage;
-import org.vfny.geoserver.wcs.WcsException;
 
 /**
  * Returns a single coverage encoded in the specified output format (eventually the native one)
  * along with the XML describing the coverage, in a MIME multipart package
+ * <p>
+ * The package is written directly to the output, part after part, instead of being assembled in
+ * memory first, the coverage part uses the binary transfer encoding.
+ * </p>
  * 
  * @author Andrea Aime - GeoSolutions
  */
 public class WCS20GetCoverageMultipartResponse extends Response {
 
-    MimeMultipart multipart;
+    static final byte[] CRLF = new byte[] { '\r', '\n' };
 
     CoverageResponseDelegateFinder responseFactory;
 
@@ -49,7 +46,6 @@ public class WCS20GetCoverageMultipartResponse extends Response {
 
     public WCS20GetCoverageMultipartResponse(CoverageResponseDelegateFinder responseFactory, EnvelopeAxesLabelsMapper envelopeDimensionsMapper) {
         super(GridCoverage.class);
-        this.multipart = new MimeMultipart();
         this.responseFactory = responseFactory;
         this.envelopeDimensionsMapper = envelopeDimensionsMapper;
     }
@@ -97,41 +93,45 @@ public class WCS20GetCoverageMultipartResponse extends Response {
         // grab the delegate
         CoverageResponseDelegate delegate = responseFactory.encoderFor(format);
 
-        // use javamail classes to actually encode the document
-        try {
-            String fileName = "/coverages/" + getCoverage.getCoverageId() + "." + delegate.getFileExtension(format);
-            
-            // coverages xml structure, which is very close to the DescribeFeatureType output
-            BodyPart coveragesPart = new MimeBodyPart();
-            FileReference reference = new FileReference(fileName, delegate.getMimeType(format), delegate.getConformanceClass(format));
-            final CoverageData coveragesData = new CoverageData(coverage, reference, envelopeDimensionsMapper);
-            coveragesPart.setDataHandler(new DataHandler(coveragesData, "geoserver/coverages20"));
-            coveragesPart.setHeader("Content-ID", "wcs");
-            coveragesPart.setHeader("Content-Type", "application/gml+xml");
-            multipart.addBodyPart(coveragesPart);
-
-            // the actual coverage
-            BodyPart coveragePart = new MimeBodyPart();
-            CoverageEncoder encoder = new CoverageEncoder(delegate, coverage, format, encodingParameters);
-            coveragePart.setDataHandler(new DataHandler(encoder, "geoserver/coverageDelegate"));
-            coveragePart.setHeader("Content-ID", fileName);
-            coveragePart.setHeader("Content-Type", delegate.getMimeType(format));
-            coveragePart.setHeader("Content-Transfer-Encoding", "binary");
-            multipart.addBodyPart(coveragePart);
-
-            // write out the multipart (we need to use mime message trying to
-            // encode directly with multipart or BodyPart does not set properly
-            // the encodings and binary files gets ruined
-            MimeMessage message = new GeoServerMimeMessage();
-            message.setContent(multipart);
-            message.writeTo(output);
-            output.flush();
-        } catch (MessagingException e) {
-            throw new WcsException("Error occurred while encoding the mime multipart response", e);
-        }
-        
-        
-        delegate.encode(coverage, format, encodingParameters, output);
+        String fileName = "/coverages/" + getCoverage.getCoverageId() + "." + delegate.getFileExtension(format);
+        String boundary = "----=_Part_" + UUID.randomUUID().toString().replace("-", "");
+
+        // the parts encoders must not close the response
+        OutputStream os = new CloseShieldOutputStream(output);
+
+        // the headers of the package, the http content type lacks the boundary
+        writeLine(os, "MIME-Version: 1.0");
+        writeLine(os, "Content-Type: multipart/related; boundary=\"" + boundary + "\"");
+        writeLine(os, "");
+
+        // coverages xml structure, which is very close to the DescribeFeatureType output
+        writeLine(os, "--" + boundary);
+        writeLine(os, "Content-Type: application/gml+xml");
+        writeLine(os, "Content-ID: wcs");
+        writeLine(os, "Content-Transfer-Encoding: 8bit");
+        writeLine(os, "");
+        FileReference reference = new FileReference(fileName, delegate.getMimeType(format), delegate.getConformanceClass(format));
+        final CoverageData coveragesData = new CoverageData(coverage, reference, envelopeDimensionsMapper);
+        new GMLCovHandler().writeTo(coveragesData, "geoserver/coverages20", os);
+        writeLine(os, "");
+
+        // the actual coverage
+        writeLine(os, "--" + boundary);
+        writeLine(os, "Content-Type: " + delegate.getMimeType(format));
+        writeLine(os, "Content-ID: " + fileName);
+        writeLine(os, "Content-Transfer-Encoding: binary");
+        writeLine(os, "");
+        CoverageEncoder encoder = new CoverageEncoder(delegate, coverage, format, encodingParameters);
+        encoder.encode(os);
+        writeLine(os, "");
+
+        writeLine(os, "--" + boundary + "--");
+        output.flush();
+    }
+
+    void writeLine(OutputStream os, String line) throws IOException {
+        os.write(line.getBytes("US-ASCII"));
+        os.write(CRLF);
     }
 
     @Override
@@ -140,22 +140,4 @@ public class WCS20GetCoverageMultipartResponse extends Response {
         GetCoverageType getCoverage = (GetCoverageType) operation.getParameters()[0];
         return getCoverage.getCoverageId() + ".eml";
     }
-    
-    /**
-     * A special mime message that does not set any header other than the
-     * content type
-     * 
-     * @author Andrea Aime - GeoSolutions
-     */
-   private static class GeoServerMimeMessage extends MimeMessage {
-       public GeoServerMimeMessage() {
-           super((Session) null);
-       }
-
-       @Override
-       protected void updateMessageID() throws MessagingException {
-           // it's just ugly to see ...
-           removeHeader("Message-ID");
-       }
-   }
 }
@@ -7,11 +7,9 @@ package org.geoserver.wcs2_0.util;
 import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.media.jai.Interpolation;
@@ -19,6 +17,8 @@ import javax.media.jai.Interpolation;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.CoverageStoreInfo;
+import org.geoserver.coverage.CoverageReadPlan;
+import org.geoserver.coverage.CoverageReadPlanner;
 import org.geoserver.data.util.CoverageUtils;
 import org.geoserver.platform.OWS20Exception;
 import org.geoserver.platform.ServiceException;
@@ -31,8 +31,6 @@ import org.geotools.factory.GeoTools;
 import org.geotools.factory.Hints;
 import org.geotools.gce.imagemosaic.ImageMosaicFormat;
 import org.geotools.geometry.GeneralEnvelope;
-import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.parameter.Parameter;
 import org.geotools.referencing.CRS;
 import org.geotools.util.DefaultProgressListener;
 import org.geotools.util.Version;
@@ -41,7 +39,6 @@ import org.opengis.coverage.grid.Format;
 import org.opengis.coverage.grid.GridCoverageReader;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.coverage.grid.GridGeometry;
-import org.opengis.geometry.BoundingBox;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.parameter.ParameterDescriptor;
 import org.opengis.parameter.ParameterValue;
@@ -129,15 +126,14 @@ public class RequestUtils {
 
     /**
      * Reads the best matching grid out of a grid coverage applying sub-sampling and using overviews
-     * as necessary
+     * as necessary, as planned by the {@link CoverageReadPlanner}
      * 
-     * @param mapContent
      * @param reader
      * @param params
      * @param readGG
      * @param interpolation
      * @param hints 
-     * @return
+     * @return the coverage, or null if the read area does not intersect the coverage
      * @throws IOException
      */
     public static GridCoverage2D readBestCoverage(
@@ -146,93 +142,14 @@ public class RequestUtils {
             final GridGeometry2D readGG,
             final Interpolation interpolation, 
             Hints hints) throws IOException {
-    
-        ////
-        //
-        // Intersect the present envelope with the request envelope, also in WGS 84 to make sure
-        // there is an actual intersection
-        //
-        ////
-        try {
-            final ReferencedEnvelope coverageEnvelope=new ReferencedEnvelope(reader.getOriginalEnvelope());
-            if (!coverageEnvelope.intersects((BoundingBox) ReferencedEnvelope.reference(readGG.getEnvelope()))) {
-                return null;
-            }
 
-        } catch (Exception e) {
-            LOGGER.log(
-                    Level.WARNING,
-                    "Failed to compare data and request envelopes, proceeding with rendering anyways",
-                    e);
-        }
-    
-        // //
-        // It is an AbstractGridCoverage2DReader, let's use parameters
-        // if we have any supplied by a user.
-        // //
-        // first I created the correct ReadGeometry
-        final Parameter<GridGeometry2D> readGGParam = (Parameter<GridGeometry2D>) AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
-        readGGParam.setValue(readGG);
-        
-        final Parameter<Interpolation> readInterpolation=(Parameter<Interpolation>) ImageMosaicFormat.INTERPOLATION.createValue(); 
-        readInterpolation.setValue(interpolation);
-       
-        
-        // then I try to get read parameters associated with this
-        // coverage if there are any.
-        GridCoverage2D coverage = null;
-        GeneralParameterValue[] readParams = (GeneralParameterValue[]) params;
-        final int length = readParams == null ? 0 :readParams.length;
-        if (length > 0) {
-            // //
-            //
-            // Getting parameters to control how to read this coverage.
-            // Remember to check to actually have them before forwarding
-            // them to the reader.
-            //
-            // //
-        
-            // we have a valid number of parameters, let's check if
-            // also have a READ_GRIDGEOMETRY2D. In such case we just
-            // override it with the one we just build for this
-            // request.
-            final String readGGName = AbstractGridFormat.READ_GRIDGEOMETRY2D.getName().toString();
-            final String readInterpolationName = ImageMosaicFormat.INTERPOLATION.getName().toString();
-            int i = 0;
-            boolean foundInterpolation = false;
-            boolean foundGG = false;
-            for (; i < length; i++) {
-                final String paramName = readParams[i].getDescriptor().getName().toString();
-                if (paramName.equalsIgnoreCase(readGGName)){
-                    ((Parameter) readParams[i]).setValue(readGG);
-                    foundGG = true;
-                } else if(paramName.equalsIgnoreCase(readInterpolationName)){
-                    ((Parameter) readParams[i]).setValue(interpolation);
-                    foundInterpolation = true;
-                }
-            }
-            
-            // did we find anything?
-            if (!foundGG || !foundInterpolation){// || !(foundBgColor && bgColor != null)) {
-                // add the correct read geometry to the supplied
-                // params since we did not find anything
-                List<GeneralParameterValue> paramList = new ArrayList<GeneralParameterValue>();
-                paramList.addAll(Arrays.asList(readParams));
-                if(!foundGG) {
-                     paramList.add(readGGParam);
-                } 
-                if(!foundInterpolation) {
-                    paramList.add(readInterpolation);
-                } 
-
-                readParams = (GeneralParameterValue[]) paramList.toArray(new GeneralParameterValue[paramList.size()]);
-            }
-            coverage = (GridCoverage2D) reader.read(readParams);
-        } else { 
-            coverage = (GridCoverage2D) reader.read(new GeneralParameterValue[] {readGGParam ,readInterpolation});
+        final GeneralParameterValue[] configuredParams = (GeneralParameterValue[]) params;
+        final CoverageReadPlan plan = CoverageReadPlanner.plan(reader, readGG, interpolation,
+                configuredParams);
+        if (plan == null) {
+            return null;
         }
-    
-        return coverage;
+        return (GridCoverage2D) reader.read(plan.getReadParameters(configuredParams));
     }
 
     /**
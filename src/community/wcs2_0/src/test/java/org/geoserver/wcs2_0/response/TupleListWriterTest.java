@@ -0,0 +1,84 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs2_0.response;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+
+import javax.media.jai.RasterFactory;
+import javax.media.jai.TiledImage;
+
+import org.junit.Test;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class TupleListWriterTest {
+
+    @Test
+    public void testUntiled() throws Exception {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+        image.getRaster().setSample(0, 0, 0, 1);
+        image.getRaster().setSample(2, 1, 0, 255);
+
+        assertEquals("1 0 0 \n0 0 255 \n", write(image));
+    }
+
+    @Test
+    public void testTiledMultiband() throws Exception {
+        // 5x3 image split in 2x2 tiles, the last column and row of tiles are partial
+        SampleModel sm = RasterFactory.createPixelInterleavedSampleModel(DataBuffer.TYPE_INT,
+                2, 2, 2);
+        TiledImage image = new TiledImage(0, 0, 5, 3, 0, 0, sm, null);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                image.setSample(x, y, 0, y * 10 + x);
+                image.setSample(x, y, 1, -x);
+            }
+        }
+
+        StringBuilder expected = new StringBuilder();
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 5; x++) {
+                expected.append(y * 10 + x).append(',').append(-x).append(' ');
+            }
+            expected.append('\n');
+        }
+        assertEquals(expected.toString(), write(image));
+    }
+
+    @Test
+    public void testFloat() throws Exception {
+        SampleModel sm = RasterFactory.createPixelInterleavedSampleModel(DataBuffer.TYPE_FLOAT,
+                2, 1, 1);
+        TiledImage image = new TiledImage(0, 0, 2, 1, 0, 0, sm, null);
+        image.setSample(0, 0, 0, 1.5f);
+        image.setSample(1, 0, 0, 0.1f);
+
+        // same formatting as String.valueOf(double)
+        assertEquals("1.5 " + String.valueOf((double) 0.1f) + " \n", write(image));
+    }
+
+    @Test
+    public void testLargerThanBuffer() throws Exception {
+        BufferedImage image = new BufferedImage(TupleListWriter.BUFFER_SIZE, 2,
+                BufferedImage.TYPE_BYTE_GRAY);
+        String result = write(image);
+        assertEquals(TupleListWriter.BUFFER_SIZE * 2 * 2 + 2, result.length());
+    }
+
+    String write(RenderedImage image) throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        new TupleListWriter(new DefaultHandler() {
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                sb.append(ch, start, length);
+            }
+        }).write(image);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,276 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.geosearch.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.rest.util.RESTUtils;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Caches the generated sitemap and KML metadata documents, so that crawlers hitting the geosearch
+ * end points do not cause them to be regenerated on every request.
+ * <p>
+ * The whole cache is dropped on any catalog or global configuration change. Each document carries
+ * an ETag (the MD5 of its contents) and a last modified time (the time of the last change), which
+ * are used to answer conditional requests with a {@code 304 Not Modified}.
+ * </p>
+ */
+public class GeoSearchCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * A cached document
+     */
+    public static class Document {
+        final byte[] content;
+
+        final String etag;
+
+        final long lastModified;
+
+        Document(byte[] content, String etag, long lastModified) {
+            this.content = content;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final Map<String, Document> documents = new ConcurrentHashMap<String, Document>();
+
+    /**
+     * Bumped on each invalidation, to avoid caching documents generated before a change
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Time of the last change, with second precision as that's what the HTTP headers carry
+     */
+    private volatile long lastModified = now();
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public GeoSearchCache(GeoServer geoServer) {
+        geoServer.getCatalog().addListener(new CatalogListener() {
+
+            public void handleAddEvent(CatalogAddEvent event) {
+                clear();
+            }
+
+            public void handleRemoveEvent(CatalogRemoveEvent event) {
+                clear();
+            }
+
+            public void handleModifyEvent(CatalogModifyEvent event) {
+                // wait for the post modify event
+            }
+
+            public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+                clear();
+            }
+
+            public void reloaded() {
+                clear();
+            }
+        });
+        geoServer.addListener(new ConfigurationListenerAdapter() {
+            @Override
+            public void handlePostGlobalChange(GeoServerInfo global) {
+                clear();
+            }
+
+            @Override
+            public void handleSettingsPostModified(SettingsInfo settings) {
+                clear();
+            }
+
+            @Override
+            public void reloaded() {
+                clear();
+            }
+        });
+    }
+
+    private static long now() {
+        return 1000 * (System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put(String, byte[], long)} once the
+     *         document has been generated
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Document get(String key) {
+        return documents.get(key);
+    }
+
+    /**
+     * Caches the document, unless the cache has been invalidated since the specified generation
+     *
+     * @return the document, cached or not
+     */
+    public Document put(String key, byte[] content, long generation) {
+        Document document = new Document(content, etag(content), lastModified);
+        if (documents.size() >= maxEntries) {
+            documents.clear();
+        }
+        if (this.generation.get() == generation) {
+            documents.put(key, document);
+        }
+        return document;
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        lastModified = now();
+        documents.clear();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(Integer.toHexString((b >> 4) & 0xF)).append(Integer.toHexString(b & 0xF));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the name and the roles of the current user, to be made part of the key of the
+     * documents built out of the secured catalog so that they are not served to other users
+     */
+    public static String userKey() {
+        Authentication user = SecurityContextHolder.getContext().getAuthentication();
+        if (user == null) {
+            return "";
+        }
+        Set<String> roles = new TreeSet<String>();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return user.getName() + roles;
+    }
+
+    /**
+     * Writes out the representation contents into a byte array
+     */
+    public static byte[] toByteArray(Representation representation) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        representation.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Sets the document as the response entity, or a {@code 304} status if the client already has
+     * the current version as per the {@code If-None-Match} and {@code If-Modified-Since} headers
+     */
+    public static void respond(Request request, Response response, final Document document,
+            MediaType mediaType) {
+        if (isNotModified(RESTUtils.getServletRequest(request), document)) {
+            response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            return;
+        }
+        Representation representation = new OutputRepresentation(mediaType) {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                outputStream.write(document.content);
+            }
+        };
+        representation.setSize(document.content.length);
+        representation.setTag(new Tag(document.etag, false));
+        representation.setModificationDate(new Date(document.lastModified));
+        response.setEntity(representation);
+    }
+
+    static boolean isNotModified(HttpServletRequest request, Document document) {
+        if (request == null) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            // If-None-Match takes precedence over If-Modified-Since
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(document.etag)
+                        || tag.equals("\"" + document.etag + "\"")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince != -1 && ifModifiedSince >= document.lastModified;
+    }
+}
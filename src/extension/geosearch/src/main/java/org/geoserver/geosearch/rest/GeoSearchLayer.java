@@ -4,6 +4,7 @@
  */
 package org.geoserver.geosearch.rest;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -16,6 +17,7 @@ import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.config.GeoServer;
+import org.geoserver.geosearch.rest.GeoSearchCache.Document;
 import org.geoserver.ows.util.KvpMap;
 import org.geoserver.rest.AbstractResource;
 import org.geoserver.rest.RestletException;
@@ -38,10 +40,12 @@ import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.data.Status;
-import org.restlet.resource.Representation;
 import org.springframework.util.Assert;
 
 /**
+ * REST resource producing the KML metadata document of a layer or layer group. The generated
+ * documents are cached in the {@link GeoSearchCache}.
+ * 
  * @author groldan
  * @see LayerKMLDocumentFormat
  */
@@ -53,15 +57,44 @@ public class GeoSearchLayer extends AbstractResource {
 
     private final GeoServer geoserver;
 
+    private final GeoSearchCache cache;
+
     public GeoSearchLayer(final Context context, final Request request, final Response response,
-            final CatalogInfo layer, GeoServer geoserver) {
+            final CatalogInfo layer, GeoServer geoserver, GeoSearchCache cache) {
         super(context, request, response);
         this.layer = layer;
         this.geoserver = geoserver;
+        this.cache = cache;
     }
 
     @Override
     public void handleGet() {
+        final String layerName;
+        if (layer instanceof LayerInfo) {
+            layerName = ((LayerInfo) layer).getResource().getPrefixedName();
+        } else {
+            layerName = ((LayerGroupInfo) layer).getName();
+        }
+        // the document links are built out of the (proxy aware) base url
+        final String baseurl = getRequest().getRootRef().getParentRef().toString();
+        final String key = "kml|" + GeoSearchCache.userKey() + "|" + baseurl + "|" + layerName;
+
+        DataFormat format = getFormatGet();
+        Document document = cache.get(key);
+        if (document == null) {
+            long generation = cache.getGeneration();
+            WebMap webMap = getMap();
+            try {
+                byte[] bytes = GeoSearchCache.toByteArray(format.toRepresentation(webMap));
+                document = cache.put(key, bytes, generation);
+            } catch (IOException e) {
+                throw new RestletException(e.getMessage(), Status.SERVER_ERROR_INTERNAL, e);
+            }
+        }
+        GeoSearchCache.respond(getRequest(), getResponse(), document, format.getMediaType());
+    }
+
+    private WebMap getMap() {
         final WMS wms = new WMS(geoserver) {
             /**
              * Override to KMLMetadataDocumentMapOutputFormat does not need to be in the spring
@@ -117,11 +150,7 @@ public class GeoSearchLayer extends AbstractResource {
         }
         // final WebMap webMap = wmsService.getMap(getMapRequest);
         Assert.isTrue(webMap instanceof XMLTransformerMap);
-
-        DataFormat format = getFormatGet();
-        Representation representation = format.toRepresentation(webMap);
-        Response response = getResponse();
-        response.setEntity(representation);
+        return webMap;
     }
 
     /**
@@ -29,12 +29,17 @@ public class GeoSearchLayerFinder extends Finder {
 
     private final GeoServer geoserver;
 
+    private final GeoSearchCache cache;
+
     /**
      * @param geoserver
      *            access to {@link Catalog} and {@link GeoServerInfo}
+     * @param cache
+     *            the cache for the generated KML documents
      */
-    private GeoSearchLayerFinder(GeoServer geoserver) {
+    private GeoSearchLayerFinder(GeoServer geoserver, GeoSearchCache cache) {
         this.geoserver = geoserver;
+        this.cache = cache;
     }
 
     /**
@@ -73,6 +78,6 @@ public class GeoSearchLayerFinder extends Finder {
                     Status.CLIENT_ERROR_NOT_FOUND);
         }
         final Context context = getContext();
-        return new GeoSearchLayer(context, request, response, layer, geoserver);
+        return new GeoSearchLayer(context, request, response, layer, geoserver, cache);
     }
 }
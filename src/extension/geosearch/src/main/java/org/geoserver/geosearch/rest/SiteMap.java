@@ -6,18 +6,30 @@ package org.geoserver.geosearch.rest;
 
 import static org.geoserver.rest.util.RESTUtils.getBaseURL;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.geosearch.rest.GeoSearchCache.Document;
 import org.geoserver.rest.AbstractResource;
+import org.geoserver.rest.RestletException;
 import org.geoserver.rest.format.DataFormat;
+import org.geoserver.rest.util.RESTUtils;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
 
 /**
  * A REST resource that uses a {@link SiteMapXMLFormat} to produce the {@code sitemap.xml} document.
+ * <p>
+ * When the catalog holds more indexed layers and layer groups than the page size, {@code sitemap.xml}
+ * is a sitemap index pointing to the {@code sitemap.xml?page=<n>} sub sitemaps. The generated
+ * documents are cached in the {@link GeoSearchCache}.
+ * </p>
  * 
  * @author groldan
  * @see SiteMapXMLFormat
@@ -26,18 +38,64 @@ public class SiteMap extends AbstractResource {
 
     private final Catalog catalog;
 
+    private final GeoSearchCache cache;
+
+    private final int pageSize;
+
     public SiteMap(final Context context, final Request request, final Response response,
-            final Catalog catalog) {
+            final Catalog catalog, final GeoSearchCache cache, final int pageSize) {
 
         super(context, request, response);
 
         this.catalog = catalog;
+        this.cache = cache;
+        this.pageSize = pageSize;
     }
 
     @Override
     public void handleGet() {
+        final String page = RESTUtils.getQueryStringValue(getRequest(), "page");
+        // the pages are built out of the secured catalog, what's in them depends on the user
+        final String key = "sitemap|" + GeoSearchCache.userKey() + "|" + getBaseURL(getRequest())
+                + "|" + pageSize + "|" + page;
+
         DataFormat format = getFormatGet();
-        getResponse().setEntity(format.toRepresentation(catalog));
+        Document document = cache.get(key);
+        if (document == null) {
+            long generation = cache.getGeneration();
+            Object contents = getContents(page);
+            try {
+                byte[] bytes = GeoSearchCache.toByteArray(format.toRepresentation(contents));
+                document = cache.put(key, bytes, generation);
+            } catch (IOException e) {
+                throw new RestletException("Error encoding sitemap",
+                        Status.SERVER_ERROR_INTERNAL, e);
+            }
+        }
+        GeoSearchCache.respond(getRequest(), getResponse(), document, format.getMediaType());
+    }
+
+    private Object getContents(String page) {
+        final int total = catalog.count(LayerInfo.class, SiteMapXMLFormat.indexingEnabled())
+                + catalog.count(LayerGroupInfo.class, SiteMapXMLFormat.indexingEnabled());
+        final int pages = Math.max(1, (total + pageSize - 1) / pageSize);
+        if (page == null) {
+            if (pages == 1) {
+                return new SiteMapXMLFormat.Page(catalog, 0, null);
+            }
+            return new SiteMapXMLFormat.Index(pages);
+        }
+        int pageNumber;
+        try {
+            pageNumber = Integer.parseInt(page);
+        } catch (NumberFormatException e) {
+            throw new RestletException("Invalid page: " + page, Status.CLIENT_ERROR_BAD_REQUEST);
+        }
+        if (pageNumber < 0 || pageNumber >= pages) {
+            throw new RestletException("Page " + page + " not found",
+                    Status.CLIENT_ERROR_NOT_FOUND);
+        }
+        return new SiteMapXMLFormat.Page(catalog, pageNumber * pageSize, pageSize);
     }
 
     /**
@@ -18,10 +18,31 @@ import org.restlet.resource.Resource;
  */
 public class SiteMapFinder extends Finder {
 
+    /**
+     * Max number of layers and layer groups per sitemap, the sitemap protocol allows up to 50000
+     */
+    public static final int DEFAULT_PAGE_SIZE = 10000;
+
     private Catalog catalog;
 
-    private SiteMapFinder(Catalog catalog) {
+    private GeoSearchCache cache;
+
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    private SiteMapFinder(Catalog catalog, GeoSearchCache cache) {
         this.catalog = catalog;
+        this.cache = cache;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size shall be positive: " + pageSize);
+        }
+        this.pageSize = pageSize;
     }
 
     @Override
@@ -31,6 +52,6 @@ public class SiteMapFinder extends Finder {
             return null;
         }
         final Context context = getContext();
-        return new SiteMap(context, request, response, catalog);
+        return new SiteMap(context, request, response, catalog, cache, pageSize);
     }
 }
@@ -22,19 +22,88 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.MetadataMap;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.ows.util.ResponseUtils;
 import org.geoserver.rest.format.StreamDataFormat;
+import org.geotools.filter.expression.InternalVolatileFunction;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
+import org.opengis.filter.expression.Function;
 import org.restlet.data.MediaType;
 import org.springframework.util.Assert;
 
 /**
- * REST format that produces the sitemap.xml document
+ * REST format that produces the sitemap.xml document.
+ * <p>
+ * Encodes either the whole catalog (given a {@link Catalog}), a page of it (given a {@link Page}),
+ * or a sitemap index pointing to the pages (given an {@link Index}). Layers and layer groups are
+ * streamed out of the catalog with {@link Catalog#list} instead of being loaded all at once.
+ * </p>
  */
 public class SiteMapXMLFormat extends StreamDataFormat {
 
+    /**
+     * A slice of the catalog layers followed by the layer groups with indexing enabled, both
+     * sorted by id
+     */
+    public static class Page {
+        final Catalog catalog;
+
+        final int offset;
+
+        final Integer count;
+
+        /**
+         * @param offset the offset of the first layer or layer group in the page
+         * @param count the max number of layers and layer groups in the page, {@code null} for
+         *        no limit
+         */
+        public Page(Catalog catalog, int offset, Integer count) {
+            this.catalog = catalog;
+            this.offset = offset;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Returns a filter selecting the layers and layer groups with indexing enabled, so that the
+     * catalog pages over the indexed ones only
+     */
+    static Filter indexingEnabled() {
+        Function enabled = new InternalVolatileFunction() {
+            @Override
+            public Boolean evaluate(Object info) {
+                MetadataMap metadata;
+                if (info instanceof LayerInfo) {
+                    metadata = ((LayerInfo) info).getMetadata();
+                } else if (info instanceof LayerGroupInfo) {
+                    metadata = ((LayerGroupInfo) info).getMetadata();
+                } else {
+                    return false;
+                }
+                return Boolean.TRUE.equals(metadata.get(INDEXING_ENABLED, Boolean.class));
+            }
+        };
+        FilterFactory factory = Predicates.factory;
+        return factory.equals(factory.literal(Boolean.TRUE), enabled);
+    }
+
+    /**
+     * A sitemap index referring to {@code pages} sub sitemaps
+     */
+    public static class Index {
+        final int pages;
+
+        public Index(int pages) {
+            this.pages = pages;
+        }
+    }
+
     private static final String GEO_NS = "http://www.google.com/geo/schemas/sitemap/1.0";
 
     private static final String SITEMAP_NS = "http://www.sitemaps.org/schemas/sitemap/0.9";
@@ -76,9 +145,8 @@ public class SiteMapXMLFormat extends StreamDataFormat {
      */
     @Override
     protected void write(final Object object, OutputStream out) throws IOException {
-        Assert.isTrue(object instanceof Catalog);
-
-        final Catalog catalog = (Catalog) object;
+        Assert.isTrue(object instanceof Catalog || object instanceof Page
+                || object instanceof Index);
 
         final XMLStreamWriter writer;
         try {
@@ -91,7 +159,13 @@ public class SiteMapXMLFormat extends StreamDataFormat {
             throw new RuntimeException(e);
         }
         try {
-            encode(catalog, writer);
+            if (object instanceof Index) {
+                encode((Index) object, writer);
+            } else if (object instanceof Page) {
+                encode((Page) object, writer);
+            } else {
+                encode(new Page((Catalog) object, 0, null), writer);
+            }
             writer.flush();
         } catch (XMLStreamException e) {
             throw (IOException) new IOException("Error encoding sitemap: " + e.getMessage())
@@ -99,13 +173,26 @@ public class SiteMapXMLFormat extends StreamDataFormat {
         }
     }
 
-    /**
-     * @param catalog
-     * @param writer
-     * @throws XMLStreamException
-     * @throws IOException
-     */
-    private void encode(Catalog catalog, XMLStreamWriter writer) throws XMLStreamException,
+    private void encode(Index index, XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartDocument();
+
+        writer.writeStartElement("sitemapindex");
+        writer.writeDefaultNamespace(SITEMAP_NS);
+        writer.setDefaultNamespace(SITEMAP_NS);
+        for (int page = 0; page < index.pages; page++) {
+            writer.writeStartElement("sitemap");
+            writer.writeStartElement("loc");
+            writer.writeCharacters(ResponseUtils.appendPath(baseUrl, "sitemap.xml") + "?page="
+                    + page);
+            writer.writeEndElement();
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+
+        writer.writeEndDocument();
+    }
+
+    private void encode(Page page, XMLStreamWriter writer) throws XMLStreamException,
             IOException {
 
         writer.writeStartDocument();
@@ -116,31 +203,52 @@ public class SiteMapXMLFormat extends StreamDataFormat {
         writer.setDefaultNamespace(SITEMAP_NS);
 
         writer.setPrefix("geo", GEO_NS);
-        for (LayerInfo info : catalog.getLayers()) {
-            final MetadataMap metadata = info.getMetadata();
-            final Boolean indexingEnabled = metadata.get(INDEXING_ENABLED, Boolean.class);
-            if (null == indexingEnabled || Boolean.FALSE.equals(indexingEnabled)) {
-                continue;
-            }
-            final String layerName = info.getResource().getPrefixedName();
 
-            writeUrl(writer, metadata, layerName);
-        }
-        for (LayerGroupInfo info : catalog.getLayerGroups()) {
-            final MetadataMap metadata = info.getMetadata();
-            final Boolean indexingEnabled = metadata.get(INDEXING_ENABLED, Boolean.class);
-            if (null == indexingEnabled || Boolean.FALSE.equals(indexingEnabled)) {
-                continue;
-            }
-            final String layerName = info.getName();
+        final Catalog catalog = page.catalog;
+        final int layerCount = catalog.count(LayerInfo.class, indexingEnabled());
 
-            writeUrl(writer, metadata, layerName);
+        // layers first, then layer groups
+        Integer count = page.count;
+        if (page.offset < layerCount) {
+            Integer layersInPage = count == null ? null : Math.min(count, layerCount
+                    - page.offset);
+            encode(catalog, LayerInfo.class, page.offset, layersInPage, writer);
+            if (count != null) {
+                count = count - layersInPage;
+            }
+        }
+        if (count == null || count > 0) {
+            int groupOffset = Math.max(0, page.offset - layerCount);
+            encode(catalog, LayerGroupInfo.class, groupOffset, count, writer);
         }
         writer.writeEndElement();
 
         writer.writeEndDocument();
     }
 
+    private <T extends CatalogInfo> void encode(Catalog catalog, Class<T> type, int offset,
+            Integer count, XMLStreamWriter writer) throws XMLStreamException {
+        CloseableIterator<T> it = catalog.list(type, indexingEnabled(), offset, count,
+                Predicates.asc("id"));
+        try {
+            while (it.hasNext()) {
+                T info = it.next();
+                final MetadataMap metadata;
+                final String layerName;
+                if (info instanceof LayerInfo) {
+                    metadata = ((LayerInfo) info).getMetadata();
+                    layerName = ((LayerInfo) info).getResource().getPrefixedName();
+                } else {
+                    metadata = ((LayerGroupInfo) info).getMetadata();
+                    layerName = ((LayerGroupInfo) info).getName();
+                }
+                writeUrl(writer, metadata, layerName);
+            }
+        } finally {
+            it.close();
+        }
+    }
+
     /**
      * @param writer
      * @param metadata
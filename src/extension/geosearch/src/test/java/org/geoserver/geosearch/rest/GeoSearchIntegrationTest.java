@@ -8,6 +8,7 @@ import static junit.framework.Assert.*;
 import static org.custommonkey.xmlunit.XMLAssert.*;
 import static org.geoserver.data.test.MockData.*;
 
+import java.io.ByteArrayInputStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -28,6 +29,7 @@ import org.geoserver.test.GeoServerSystemTestSupport;
 import org.junit.Test;
 import org.w3c.dom.Document;
 
+import com.mockrunner.mock.web.MockHttpServletRequest;
 import com.mockrunner.mock.web.MockHttpServletResponse;
 
 public class GeoSearchIntegrationTest extends GeoServerSystemTestSupport {
@@ -118,4 +120,112 @@ public class GeoSearchIntegrationTest extends GeoServerSystemTestSupport {
         assertEquals(200, response.getStatusCode());
         assertEquals("application/vnd.google-earth.kml+xml", response.getContentType());
     }
+
+    @Test
+    public void testSiteMapIndex() throws Exception {
+        SiteMapFinder finder = (SiteMapFinder) applicationContext
+                .getBean("geosearchSitemapfinder");
+        int pageSize = finder.getPageSize();
+        finder.setPageSize(1);
+        try {
+            // only the indexed layers are paged over
+            int total = indexed.length;
+
+            Document index = getAsDOM("/geosearch/sitemap.xml");
+            assertXpathExists("/sm:sitemapindex", index);
+            assertXpathEvaluatesTo(String.valueOf(total), "count(/sm:sitemapindex/sm:sitemap)",
+                    index);
+            XpathEngine xp = XMLUnit.newXpathEngine();
+            assertEquals("http://localhost:8080/geoserver/geosearch/sitemap.xml?page=0",
+                    xp.evaluate("/sm:sitemapindex/sm:sitemap[1]/sm:loc", index));
+
+            // the pages together list all the indexed layers, none of them is empty
+            Set<String> urls = new HashSet<String>();
+            for (int page = 0; page < total; page++) {
+                Document dom = getAsDOM("/geosearch/sitemap.xml?page=" + page);
+                assertXpathEvaluatesTo("1", "count(/sm:urlset/sm:url)", dom);
+                urls.add(xp.evaluate("/sm:urlset/sm:url/sm:loc", dom));
+            }
+            assertEquals(indexed.length, urls.size());
+
+            assertEquals(404, getAsServletResponse("/geosearch/sitemap.xml?page=" + total)
+                    .getStatusCode());
+            assertEquals(400, getAsServletResponse("/geosearch/sitemap.xml?page=abc")
+                    .getStatusCode());
+        } finally {
+            finder.setPageSize(pageSize);
+        }
+    }
+
+    @Test
+    public void testSiteMapCachedPerUser() throws Exception {
+        GeoSearchCache cache = (GeoSearchCache) applicationContext.getBean("geosearchCache");
+        cache.clear();
+        getAsDOM("/geosearch/sitemap.xml");
+        assertEquals(1, cache.size());
+        getAsDOM("/geosearch/sitemap.xml");
+        assertEquals(1, cache.size());
+
+        // the sitemap is built out of the secured catalog, another user gets its own copy
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        try {
+            getAsDOM("/geosearch/sitemap.xml");
+            assertEquals(2, cache.size());
+        } finally {
+            logout();
+        }
+    }
+
+    @Test
+    public void testSiteMapConditionalGet() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("/geosearch/sitemap.xml");
+        assertEquals(200, response.getStatusCode());
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+        assertNotNull(response.getHeader("Last-Modified"));
+
+        MockHttpServletRequest request = createRequest("/geosearch/sitemap.xml");
+        request.setMethod("GET");
+        request.setBodyContent(new byte[] {});
+        request.setHeader("If-None-Match", etag);
+        response = dispatch(request, "UTF-8");
+        assertEquals(304, response.getStatusCode());
+
+        // a catalog change invalidates the cached sitemap
+        Catalog catalog = getCatalog();
+        LayerInfo layer = catalog.getLayerByName(getLayerId(MockData.LAKES));
+        layer.getMetadata().put(Properties.INDEXING_ENABLED, Boolean.TRUE);
+        catalog.save(layer);
+        try {
+            request = createRequest("/geosearch/sitemap.xml");
+            request.setMethod("GET");
+            request.setBodyContent(new byte[] {});
+            request.setHeader("If-None-Match", etag);
+            response = dispatch(request, "UTF-8");
+            assertEquals(200, response.getStatusCode());
+            Document dom = dom(new ByteArrayInputStream(response.getOutputStreamContent()
+                    .getBytes()));
+            assertXpathEvaluatesTo(String.valueOf(indexed.length + 1),
+                    "count(/sm:urlset/sm:url)", dom);
+        } finally {
+            layer = catalog.getLayerByName(getLayerId(MockData.LAKES));
+            layer.getMetadata().remove(Properties.INDEXING_ENABLED);
+            catalog.save(layer);
+        }
+    }
+
+    @Test
+    public void testKmlConditionalGet() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("/geosearch/cite%3ABasicPolygons.kml");
+        assertEquals(200, response.getStatusCode());
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+
+        MockHttpServletRequest request = createRequest("/geosearch/cite%3ABasicPolygons.kml");
+        request.setMethod("GET");
+        request.setBodyContent(new byte[] {});
+        request.setHeader("If-None-Match", etag);
+        response = dispatch(request, "UTF-8");
+        assertEquals(304, response.getStatusCode());
+    }
 }
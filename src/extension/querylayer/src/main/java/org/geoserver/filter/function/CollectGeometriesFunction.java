@@ -28,6 +28,12 @@ public class CollectGeometriesFunction extends FunctionImpl {
 
     long maxCoordinates;
 
+    /**
+     * The last list of geometries collected and its collection, the query functions return the
+     * same list when their results are cached, in that case the geometries are collected once
+     */
+    volatile Collected last;
+
     public CollectGeometriesFunction(Name name, List<Expression> args, Literal fallback, long maxCoordinates) {
         functionName = new FunctionNameImpl(name, args != null ? args.size() : -1);
         setName(name.getLocalPart());
@@ -46,6 +52,10 @@ public class CollectGeometriesFunction extends FunctionImpl {
         if (geometries == null || geometries.size() == 0) {
             return new GeometryCollection(null, new GeometryFactory());
         }
+        Collected collected = last;
+        if (collected != null && collected.geometries == geometries) {
+            return collected.collection;
+        }
 
         // collect but don't clone, unfortunately we're already stuck with a list, by cloning
         // we'd just increase memory usage
@@ -57,7 +67,23 @@ public class CollectGeometriesFunction extends FunctionImpl {
             collector.add(geometry);
         }
 
-        return collector.collect();
+        GeometryCollection collection = collector.collect();
+        // compute the envelope once, it's used by the spatial filters to skip the
+        // geometries that are too far to interact with the collection
+        collection.getEnvelopeInternal();
+        last = new Collected(geometries, collection);
+        return collection;
+    }
+
+    static final class Collected {
+        final List geometries;
+
+        final GeometryCollection collection;
+
+        Collected(List geometries, GeometryCollection collection) {
+            this.geometries = geometries;
+            this.collection = collection;
+        }
     }
 
 }
@@ -5,6 +5,7 @@ package org.geoserver.filter.function;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
@@ -40,11 +41,35 @@ public class QueryFunction extends FunctionImpl {
     
     boolean single;
 
+    QueryResultCache cache;
+
+    /**
+     * True if all the arguments are literals, in that case the query is the same for every
+     * evaluation
+     */
+    boolean constant;
+
+    /**
+     * The arguments, resolved on the first evaluation when they are constant
+     */
+    volatile Arguments constantArguments;
+
+    /**
+     * The feature type queried by the constant arguments, resolved along with them
+     */
+    volatile ResolvedFeatureType constantFeatureType;
+
     public QueryFunction(Name name, Catalog catalog, List<Expression> args, Literal fallback,
             boolean single, int maxResults) {
+        this(name, catalog, args, fallback, single, maxResults, null);
+    }
+
+    public QueryFunction(Name name, Catalog catalog, List<Expression> args, Literal fallback,
+            boolean single, int maxResults, QueryResultCache cache) {
         this.catalog = catalog;
         this.maxResults = maxResults;
         this.single = single;
+        this.cache = cache;
 
         functionName = new FunctionNameImpl(name, args != null ? args.size() : -1);
         setName(name.getLocalPart());
@@ -56,35 +81,77 @@ public class QueryFunction extends FunctionImpl {
                     "QuerySingle function requires 3 or 4 arguments (feature type qualified name, "
                             + "cql filter, extracted attribute name and sort by clause");
         }
+
+        constant = true;
+        for (Expression arg : args) {
+            constant &= arg instanceof Literal;
+        }
     }
 
     @Override
     public Object evaluate(Object object) {
-        FeatureIterator fi = null;
-        try {
-            // extract layer
-            String layerName = getParameters().get(0).evaluate(object, String.class);
-            if (layerName == null) {
-                throw new IllegalArgumentException(
-                        "The first argument should be a vector layer name");
-            }
-            FeatureTypeInfo ft = catalog.getFeatureTypeByName(layerName);
-            if (ft == null) {
-                throw new IllegalArgumentException("Could not find vector layer " + layerName
-                        + " in the GeoServer catalog");
+        Arguments args = constantArguments;
+        if (args == null) {
+            args = new Arguments(object);
+            if (constant) {
+                constantArguments = args;
             }
+        }
 
-            // extract and check the attribute
-            String attribute = getParameters().get(1).evaluate(object, String.class);
-            if (attribute == null) {
-                throw new IllegalArgumentException("The second argument of the query "
-                        + "function should be the attribute name");
+        if (!constant || cache == null) {
+            return query(getFeatureType(args), args);
+        }
+
+        Object result = cache.get(args);
+        if (result == null) {
+            FeatureTypeInfo ft = getFeatureType(args);
+            result = query(ft, args);
+            cache.put(args, ft, result != null ? result : QueryResultCache.NO_RESULTS);
+        }
+        return result != QueryResultCache.NO_RESULTS ? result : null;
+    }
+
+    /**
+     * Looks up the feature type to be queried. When the arguments are constant it is looked up
+     * only once, and again only when the user or the local workspace the query runs for change,
+     * or the catalog changes. Catalog changes are tracked by the {@link QueryResultCache}, without
+     * it the feature type is looked up at each evaluation
+     */
+    FeatureTypeInfo getFeatureType(Arguments args) {
+        final boolean reuse = constant && cache != null;
+        String context = null;
+        long generation = 0;
+        if (reuse) {
+            context = QueryResultCache.Key.contextKey();
+            generation = cache.getCatalogGeneration();
+            ResolvedFeatureType resolved = constantFeatureType;
+            if (resolved != null && resolved.generation == generation
+                    && resolved.context.equals(context)) {
+                return resolved.featureType;
             }
+        }
+
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName(args.layerName);
+        if (ft == null) {
+            throw new IllegalArgumentException("Could not find vector layer " + args.layerName
+                    + " in the GeoServer catalog");
+        }
+        if (reuse) {
+            constantFeatureType = new ResolvedFeatureType(ft, context, generation);
+        }
+        return ft;
+    }
+
+    Object query(FeatureTypeInfo ft, Arguments args) {
+        FeatureIterator fi = null;
+        try {
+            // check the attribute
+            String attribute = args.attribute;
             CoordinateReferenceSystem crs = null;
             PropertyDescriptor ad = ft.getFeatureType().getDescriptor(attribute);
             if (ad == null) {
                 throw new IllegalArgumentException("Attribute " + attribute
-                        + " could not be found in layer " + layerName);
+                        + " could not be found in layer " + args.layerName);
             } else if(ad instanceof GeometryDescriptor) {
                 crs = ((GeometryDescriptor) ad).getCoordinateReferenceSystem();
                 if(crs == null) {
@@ -92,22 +159,8 @@ public class QueryFunction extends FunctionImpl {
                 }
             }
 
-            // extract and check the filter
-            String cql = getParameters().get(2).evaluate(object, String.class);
-            if (cql == null) {
-                throw new IllegalArgumentException("The third argument of the query "
-                        + "function should be a valid (E)CQL filter");
-            }
-            Filter filter;
-            try {
-                filter = (Filter) ECQL.toFilter(cql);
-            } catch (Exception e) {
-                throw new IllegalArgumentException("The third argument of the query "
-                        + "function should be a valid (E)CQL filter", e);
-            }
-
             // perform the query
-            Query query = new Query(null, filter, new String[] { attribute });
+            Query query = new Query(null, args.filter, new String[] { attribute });
             // .. just enough to judge if we went beyond the limit
             query.setMaxFeatures(maxResults + 1);
             FeatureSource fs = ft.getFeatureSource(null, null);
@@ -135,7 +188,8 @@ public class QueryFunction extends FunctionImpl {
             if (maxResults == 1) {
                 return results.get(0);
             } else {
-                return results;
+                // the results might be cached and shared among evaluations
+                return Collections.unmodifiableList(results);
             }
 
         } catch (IOException e) {
@@ -147,7 +201,89 @@ public class QueryFunction extends FunctionImpl {
         }
 
     }
-    
+
+    /**
+     * The evaluated arguments of the function, used as the key of the {@link QueryResultCache}
+     */
+    final class Arguments {
+
+        final String layerName;
+
+        final String attribute;
+
+        final String cql;
+
+        final Filter filter;
+
+        Arguments(Object object) {
+            // extract layer
+            layerName = getParameters().get(0).evaluate(object, String.class);
+            if (layerName == null) {
+                throw new IllegalArgumentException(
+                        "The first argument should be a vector layer name");
+            }
+
+            // extract the attribute
+            attribute = getParameters().get(1).evaluate(object, String.class);
+            if (attribute == null) {
+                throw new IllegalArgumentException("The second argument of the query "
+                        + "function should be the attribute name");
+            }
+
+            // extract and check the filter
+            cql = getParameters().get(2).evaluate(object, String.class);
+            if (cql == null) {
+                throw new IllegalArgumentException("The third argument of the query "
+                        + "function should be a valid (E)CQL filter");
+            }
+            try {
+                filter = (Filter) ECQL.toFilter(cql);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("The third argument of the query "
+                        + "function should be a valid (E)CQL filter", e);
+            }
+        }
+
+        QueryFunction getFunction() {
+            return QueryFunction.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return (layerName.hashCode() * 31 + attribute.hashCode()) * 31 + cql.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Arguments)) {
+                return false;
+            }
+            Arguments other = (Arguments) obj;
+            return layerName.equals(other.layerName) && attribute.equals(other.attribute)
+                    && cql.equals(other.cql) && maxResults == other.getFunction().maxResults
+                    && single == other.getFunction().single;
+        }
+    }
+
+    /**
+     * A feature type looked up in the secured catalog, along with the user and local workspace it
+     * was looked up for
+     */
+    static final class ResolvedFeatureType {
+
+        final FeatureTypeInfo featureType;
+
+        final String context;
+
+        final long generation;
+
+        ResolvedFeatureType(FeatureTypeInfo featureType, String context, long generation) {
+            this.featureType = featureType;
+            this.context = context;
+            this.generation = generation;
+        }
+    }
+
     /**
      * Applies the CRS to all geometry components
      * @author aaime
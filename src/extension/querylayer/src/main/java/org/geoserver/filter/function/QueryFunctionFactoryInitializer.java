@@ -13,7 +13,8 @@ import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.filter.FunctionFactory;
 
 /**
- * Sets the catalog reference inside the {@link QueryLayerFunctionFactory}
+ * Sets the catalog reference inside the {@link QueryLayerFunctionFactory}, along with the
+ * limits and the result cache configured via system/context/environment properties
  * 
  * @author Andrea Aime - GeoSolutions
  */
@@ -25,6 +26,12 @@ public class QueryFunctionFactoryInitializer implements GeoServerLifecycleHandle
 
     GeoServer geoServer;
 
+    QueryResultCache resultCache;
+
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     public void onDispose() {
         // nothing do to
     }
@@ -39,6 +46,13 @@ public class QueryFunctionFactoryInitializer implements GeoServerLifecycleHandle
                 .getProperty("QUERY_LAYER_MAX_FEATURES"));
         Long maxCoordinates = parseLong(GeoServerExtensions
                 .getProperty("GEOMETRY_COLLECT_MAX_COORDINATES"));
+        Integer cacheTTL = parseInteger(GeoServerExtensions
+                .getProperty("QUERY_LAYER_CACHE_TTL"));
+
+        if (resultCache != null) {
+            resultCache.setTimeToLive(cacheTTL != null ? cacheTTL : 0);
+            resultCache.setCatalog(geoServer.getCatalog());
+        }
 
         Set<FunctionFactory> factories = CommonFactoryFinder.getFunctionFactories(null);
         for (FunctionFactory ff : factories) {
@@ -50,6 +64,7 @@ public class QueryFunctionFactoryInitializer implements GeoServerLifecycleHandle
                 if (maxCoordinates != null) {
                     factory.setMaxCoordinates(maxCoordinates);
                 }
+                factory.setResultCache(resultCache);
                 factory.setCatalog(geoServer.getCatalog());
             }
         }
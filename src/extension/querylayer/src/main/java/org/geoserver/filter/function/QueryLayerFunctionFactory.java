@@ -44,6 +44,8 @@ public class QueryLayerFunctionFactory implements FunctionFactory {
 
     long maxCoordinates = 1024 * 1024 / 28; // this results 1MB of Coordinate object max
 
+    QueryResultCache resultCache;
+
     public QueryLayerFunctionFactory() {
         FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
         List<FunctionName> names = new ArrayList<FunctionName>();
@@ -79,6 +81,16 @@ public class QueryLayerFunctionFactory implements FunctionFactory {
         this.maxCoordinates = maxCoordinates;
     }
 
+    /**
+     * Sets the cache for the results of the queries with constant arguments, when not set the
+     * queries are run on each evaluation
+     * 
+     * @param resultCache
+     */
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /**
      * Initializes the catalog reference, without it the factory won't generate any function
      * 
@@ -99,9 +111,10 @@ public class QueryLayerFunctionFactory implements FunctionFactory {
         }
 
         if (QUERY_SINGLE.equals(name)) {
-            return new QueryFunction(QUERY_SINGLE, catalog, args, fallback, true, 1);
+            return new QueryFunction(QUERY_SINGLE, catalog, args, fallback, true, 1, resultCache);
         } else if (QUERY_COLLECTION.equals(name)) {
-            return new QueryFunction(QUERY_COLLECTION, catalog, args, fallback, false, maxFeatures);
+            return new QueryFunction(QUERY_COLLECTION, catalog, args, fallback, false, maxFeatures,
+                    resultCache);
         } else if(COLLECT_GEOMETRIES.equals(name)) {
             return new CollectGeometriesFunction(COLLECT_GEOMETRIES, args, fallback, maxCoordinates);
         } else {
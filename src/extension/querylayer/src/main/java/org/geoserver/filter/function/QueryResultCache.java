@@ -0,0 +1,366 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.filter.function;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.LocalWorkspace;
+import org.geoserver.ows.Request;
+import org.geotools.data.FeatureEvent;
+import org.geotools.data.FeatureListener;
+import org.geotools.data.FeatureSource;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the results of the {@link QueryFunction} evaluations whose arguments are all constant.
+ * <p>
+ * Results are always kept for the duration of the OWS request evaluating them, so that a query
+ * used in a style rule or in a filter runs once per request instead of once per evaluated
+ * feature. Optionally results are also kept across requests for a configurable time to live,
+ * in that case they are dropped as soon as the data of the queried layer is modified through
+ * GeoServer, or its configuration changes. Since the layers are queried through the secured and
+ * workspace local catalog, the results kept across requests are also keyed by the user, its
+ * roles and the local workspace.
+ * </p>
+ * <p>
+ * Evaluations happening outside of an OWS request thread only use the cross request cache.
+ * </p>
+ */
+public class QueryResultCache extends AbstractDispatcherCallback implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(QueryResultCache.class);
+
+    /**
+     * Stands for a query returning no results, the caches cannot hold nulls
+     */
+    static final Object NO_RESULTS = new Object();
+
+    static final ThreadLocal<Map<QueryFunction.Arguments, CachedResult>> REQUEST_RESULTS = new ThreadLocal<Map<QueryFunction.Arguments, CachedResult>>();
+
+    volatile Cache<Key, CachedResult> results;
+
+    int timeToLive;
+
+    Catalog catalog;
+
+    /**
+     * Ids of the feature types whose feature source is being listened to
+     */
+    Set<String> watched = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Incremented at each catalog change that could affect the layers being queried
+     */
+    AtomicLong catalogGeneration = new AtomicLong();
+
+    /**
+     * Sets the catalog, the cache listens to it to drop the results of the layers being modified
+     */
+    public void setCatalog(Catalog catalog) {
+        if (this.catalog == catalog) {
+            return;
+        }
+        if (this.catalog != null) {
+            this.catalog.removeListener(this);
+        }
+        this.catalog = catalog;
+        if (catalog != null) {
+            catalog.addListener(this);
+        }
+    }
+
+    /**
+     * The time, in seconds, results are kept across requests
+     */
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Sets the time, in seconds, results are kept across requests. A non positive value disables
+     * the cross request cache, results are then kept only for the duration of a request.
+     *
+     * @param timeToLive
+     */
+    public synchronized void setTimeToLive(int timeToLive) {
+        if (timeToLive == this.timeToLive) {
+            return;
+        }
+        this.timeToLive = timeToLive;
+        if (timeToLive > 0) {
+            results = CacheBuilder.newBuilder().expireAfterWrite(timeToLive, TimeUnit.SECONDS)
+                    .build();
+        } else {
+            results = null;
+        }
+    }
+
+    /**
+     * Returns the cached result, {@link #NO_RESULTS} for queries without results, or null if the
+     * query has not been run yet
+     */
+    Object get(QueryFunction.Arguments args) {
+        CachedResult result = null;
+        Map<QueryFunction.Arguments, CachedResult> requestResults = REQUEST_RESULTS.get();
+        if (requestResults != null) {
+            result = requestResults.get(args);
+        }
+        if (result == null) {
+            Cache<Key, CachedResult> cache = results;
+            if (cache != null) {
+                result = cache.getIfPresent(new Key(args));
+                if (result != null && requestResults != null) {
+                    requestResults.put(args, result);
+                }
+            }
+        }
+        return result != null ? result.value : null;
+    }
+
+    /**
+     * Caches the result of a query
+     *
+     * @param args the query arguments
+     * @param featureType the feature type that was queried
+     * @param value the result, or {@link #NO_RESULTS}
+     */
+    void put(QueryFunction.Arguments args, FeatureTypeInfo featureType, Object value) {
+        CachedResult result = new CachedResult(featureType.getId(), value);
+        Map<QueryFunction.Arguments, CachedResult> requestResults = REQUEST_RESULTS.get();
+        if (requestResults != null) {
+            requestResults.put(args, result);
+        }
+        Cache<Key, CachedResult> cache = results;
+        if (cache != null) {
+            watch(featureType);
+            cache.put(new Key(args), result);
+        }
+    }
+
+    /**
+     * Drops the results of the queries against the specified feature type
+     */
+    public void invalidate(String featureTypeId) {
+        Cache<Key, CachedResult> cache = results;
+        if (cache == null) {
+            return;
+        }
+        for (Iterator<CachedResult> it = cache.asMap().values().iterator(); it.hasNext();) {
+            if (featureTypeId.equals(it.next().featureTypeId)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        Cache<Key, CachedResult> cache = results;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Listens to the changes made to the data of the feature type, the listener is registered
+     * with the store, so that it sees the changes made by any GeoServer service using it
+     */
+    void watch(FeatureTypeInfo featureType) {
+        final String id = featureType.getId();
+        if (!watched.add(id)) {
+            return;
+        }
+        try {
+            FeatureSource source = featureType.getFeatureSource(null, null);
+            source.addFeatureListener(new FeatureListener() {
+
+                public void changed(FeatureEvent featureEvent) {
+                    invalidate(id);
+                }
+            });
+        } catch (Exception e) {
+            // not fatal, the results will expire anyways
+            watched.remove(id);
+            LOGGER.log(Level.FINE, "Could not listen to the changes of " + featureType.getName(),
+                    e);
+        }
+    }
+
+    //
+    // DispatcherCallback
+    //
+
+    @Override
+    public Request init(Request request) {
+        REQUEST_RESULTS.set(new HashMap<QueryFunction.Arguments, CachedResult>());
+        return request;
+    }
+
+    @Override
+    public void finished(Request request) {
+        REQUEST_RESULTS.remove();
+    }
+
+    //
+    // CatalogListener
+    //
+
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        // nothing cached about a new object
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        catalogGeneration.incrementAndGet();
+        invalidate(event.getSource());
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the source has not been modified yet, take care of the old names
+        catalogGeneration.incrementAndGet();
+        invalidate(event.getSource());
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        catalogGeneration.incrementAndGet();
+        invalidate(event.getSource());
+    }
+
+    public void reloaded() {
+        // the stores are recreated, the data listeners along with them
+        catalogGeneration.incrementAndGet();
+        watched.clear();
+        invalidateAll();
+    }
+
+    /**
+     * @return a number that changes each time the catalog changes in a way that could affect the
+     *         layers being queried, used to tell when the feature types resolved by the
+     *         {@link QueryFunction} are to be looked up again
+     */
+    long getCatalogGeneration() {
+        return catalogGeneration.get();
+    }
+
+    void invalidate(CatalogInfo info) {
+        if (info instanceof FeatureTypeInfo) {
+            invalidate(info.getId());
+        } else if (info instanceof LayerInfo) {
+            if (((LayerInfo) info).getResource() instanceof FeatureTypeInfo) {
+                invalidate(((LayerInfo) info).getResource().getId());
+            }
+        } else if (info instanceof DataStoreInfo) {
+            List<FeatureTypeInfo> featureTypes = catalog
+                    .getFeatureTypesByDataStore((DataStoreInfo) info);
+            for (FeatureTypeInfo featureType : featureTypes) {
+                // the store might get recreated, listen to the new one
+                watched.remove(featureType.getId());
+                invalidate(featureType.getId());
+            }
+        } else if (info instanceof NamespaceInfo || info instanceof WorkspaceInfo) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * The key of the results kept across requests, the query arguments along with the user and
+     * the local workspace the query runs for
+     */
+    static class Key {
+
+        final QueryFunction.Arguments args;
+
+        final String user;
+
+        final String workspace;
+
+        Key(QueryFunction.Arguments args) {
+            this.args = args;
+            this.user = userKey();
+            this.workspace = workspaceKey();
+        }
+
+        /**
+         * @return a string identifying the user and local workspace the queries run for
+         */
+        static String contextKey() {
+            return userKey() + "|" + workspaceKey();
+        }
+
+        static String workspaceKey() {
+            WorkspaceInfo local = LocalWorkspace.get();
+            return local != null ? local.getName() : null;
+        }
+
+        static String userKey() {
+            Authentication user = SecurityContextHolder.getContext().getAuthentication();
+            if (user == null) {
+                return "";
+            }
+            Set<String> roles = new TreeSet<String>();
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                roles.add(authority.getAuthority());
+            }
+            return user.getName() + roles;
+        }
+
+        @Override
+        public int hashCode() {
+            return (args.hashCode() * 31 + user.hashCode()) * 31
+                    + (workspace != null ? workspace.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return args.equals(other.args) && user.equals(other.user)
+                    && (workspace != null ? workspace.equals(other.workspace)
+                            : other.workspace == null);
+        }
+    }
+
+    static class CachedResult {
+
+        final String featureTypeId;
+
+        final Object value;
+
+        CachedResult(String featureTypeId, Object value) {
+            this.featureTypeId = featureTypeId;
+            this.value = value;
+        }
+    }
+}
@@ -58,5 +58,21 @@ public class GeometryCollectorFunctionTest extends GeoServerSystemTestSupport {
         assertSame(p0, result.getGeometryN(0));
         assertSame(p1, result.getGeometryN(1));
     }
+
+    @Test
+    public void testSameListCollectedOnce() throws Exception {
+        WKTReader reader = new WKTReader();
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        geometries.add(reader.read("POINT(0 0)"));
+        geometries.add(reader.read("POINT(1 1)"));
+
+        Function function = ff.function("collectGeometries", ff.literal(geometries));
+        GeometryCollection result = (GeometryCollection) function.evaluate(null);
+        assertSame(result, function.evaluate(null));
+
+        List<Geometry> others = new ArrayList<Geometry>(geometries);
+        Function other = ff.function("collectGeometries", ff.literal(others));
+        assertNotSame(result, other.evaluate(null));
+    }
     
 }
@@ -8,11 +8,14 @@ import static org.junit.Assert.*;
 
 import java.util.Collection;
 
+import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.data.test.MockData;
+import org.geoserver.ows.Request;
 import org.geoserver.test.GeoServerSystemTestSupport;
 import org.geotools.factory.CommonFactoryFinder;
 import org.junit.Test;
 import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
 import org.opengis.filter.expression.Function;
 
 public class QueryLayerFunctionTest extends GeoServerSystemTestSupport {
@@ -68,4 +71,133 @@ public class QueryLayerFunctionTest extends GeoServerSystemTestSupport {
             System.clearProperty("QUERY_LAYER_MAX_FEATURES");
         }
     }
+
+    @Test
+    public void testRequestCache() {
+        QueryResultCache cache = applicationContext.getBean(QueryResultCache.class);
+        Function function = ff.function("queryCollection", // 
+                ff.literal(getLayerId(MockData.BUILDINGS)), // 
+                ff.literal("ADDRESS"), //
+                ff.literal("INCLUDE"));
+
+        // outside of a request the query runs on each evaluation
+        assertNotSame(function.evaluate(null), function.evaluate(null));
+
+        Request request = new Request();
+        cache.init(request);
+        try {
+            Object result = function.evaluate(null);
+            assertEquals(2, ((Collection) result).size());
+            assertSame(result, function.evaluate(null));
+        } finally {
+            cache.finished(request);
+        }
+        assertNull(QueryResultCache.REQUEST_RESULTS.get());
+    }
+    
+    @Test
+    public void testNonConstantNotCached() {
+        QueryResultCache cache = applicationContext.getBean(QueryResultCache.class);
+        Expression cql = ff.function("strConcat", ff.literal("FID = "), ff.literal("'113'"));
+        Function function = ff.function("querySingle", // 
+                ff.literal(getLayerId(MockData.BUILDINGS)), // 
+                ff.literal("the_geom"), //
+                cql);
+
+        Request request = new Request();
+        cache.init(request);
+        try {
+            Object result = function.evaluate(null);
+            assertNotNull(result);
+            assertNotSame(result, function.evaluate(null));
+        } finally {
+            cache.finished(request);
+        }
+    }
+    
+    @Test
+    public void testCrossRequestCache() throws Exception {
+        QueryResultCache cache = applicationContext.getBean(QueryResultCache.class);
+        cache.setTimeToLive(60);
+        try {
+            Function function = ff.function("queryCollection", // 
+                    ff.literal(getLayerId(MockData.BUILDINGS)), // 
+                    ff.literal("ADDRESS"), //
+                    ff.literal("INCLUDE"));
+
+            Object result = function.evaluate(null);
+            assertSame(result, function.evaluate(null));
+
+            // configuration changes drop the cached results
+            FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(
+                    getLayerId(MockData.BUILDINGS));
+            ft.setAbstract("Modified to drop the cached results");
+            getCatalog().save(ft);
+            Object reloaded = function.evaluate(null);
+            assertNotSame(result, reloaded);
+            assertEquals(result, reloaded);
+        } finally {
+            cache.setTimeToLive(0);
+        }
+    }
+
+    @Test
+    public void testCrossRequestCacheByUser() throws Exception {
+        QueryResultCache cache = applicationContext.getBean(QueryResultCache.class);
+        cache.setTimeToLive(60);
+        try {
+            Function function = ff.function("queryCollection", // 
+                    ff.literal(getLayerId(MockData.BUILDINGS)), // 
+                    ff.literal("ADDRESS"), //
+                    ff.literal("INCLUDE"));
+
+            Object anonymous = function.evaluate(null);
+            assertSame(anonymous, function.evaluate(null));
+
+            // the layers are queried through the secured catalog, users do not share results
+            login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+            try {
+                Object admin = function.evaluate(null);
+                assertNotSame(anonymous, admin);
+                assertSame(admin, function.evaluate(null));
+            } finally {
+                logout();
+            }
+            assertSame(anonymous, function.evaluate(null));
+        } finally {
+            cache.setTimeToLive(0);
+        }
+    }
+
+    @Test
+    public void testFeatureTypeResolvedOnce() throws Exception {
+        QueryFunction function = (QueryFunction) ff.function("queryCollection", // 
+                ff.literal(getLayerId(MockData.BUILDINGS)), // 
+                ff.literal("ADDRESS"), //
+                ff.literal("INCLUDE"));
+
+        function.evaluate(null);
+        QueryFunction.ResolvedFeatureType resolved = function.constantFeatureType;
+        assertNotNull(resolved);
+        function.evaluate(null);
+        assertSame(resolved, function.constantFeatureType);
+
+        // looked up again for another user, the catalog is secured
+        login("admin", "geoserver", "ROLE_ADMINISTRATOR");
+        try {
+            function.evaluate(null);
+            assertNotSame(resolved, function.constantFeatureType);
+        } finally {
+            logout();
+        }
+
+        // and when the catalog changes
+        function.evaluate(null);
+        resolved = function.constantFeatureType;
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        ft.setAbstract("Modified to look up the feature type again");
+        getCatalog().save(ft);
+        function.evaluate(null);
+        assertNotSame(resolved, function.constantFeatureType);
+    }
 }
@@ -5,13 +5,21 @@
 package org.geoserver.filter.function;
 
 import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
+import org.geoserver.data.test.MockData;
 import org.geoserver.wfs.WFSTestSupport;
+import org.geotools.factory.CommonFactoryFinder;
 import org.junit.Test;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Function;
 import org.w3c.dom.Document;
 
 public class WFSFilteringTest extends WFSTestSupport {
 
+    FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
     static final String QUERY_SINGLE = //
     "<wfs:GetFeature xmlns:wfs=\"http://www.opengis.net/wfs\"\n" + //
             "                xmlns:cite=\"http://www.opengis.net/cite\"\n" + //
@@ -110,4 +118,45 @@ public class WFSFilteringTest extends WFSTestSupport {
         assertXpathEvaluatesTo("2", "count(//cite:Buildings)", doc);
     }
 
+    @Test
+    public void testTransactionDropsCachedResults() throws Exception {
+        QueryResultCache cache = applicationContext.getBean(QueryResultCache.class);
+        cache.setTimeToLive(60);
+        try {
+            Function function = ff.function("querySingle", //
+                    ff.literal(getLayerId(MockData.BUILDINGS)), //
+                    ff.literal("ADDRESS"), //
+                    ff.literal("FID = '113'"));
+            assertEquals("123 Main Street", function.evaluate(null));
+            assertEquals("123 Main Street", cache.get(((QueryFunction) function).constantArguments));
+
+            String xml = "<wfs:Transaction service=\"WFS\" version=\"1.0.0\"\n"
+                    + "  xmlns:cite=\"http://www.opengis.net/cite\"\n"
+                    + "  xmlns:ogc=\"http://www.opengis.net/ogc\"\n"
+                    + "  xmlns:wfs=\"http://www.opengis.net/wfs\">\n"
+                    + "  <wfs:Update typeName=\"cite:Buildings\">\n"
+                    + "    <wfs:Property>\n"
+                    + "      <wfs:Name>ADDRESS</wfs:Name>\n"
+                    + "      <wfs:Value>1 Transaction Street</wfs:Value>\n"
+                    + "    </wfs:Property>\n"
+                    + "    <ogc:Filter>\n"
+                    + "      <ogc:PropertyIsEqualTo>\n"
+                    + "        <ogc:PropertyName>FID</ogc:PropertyName>\n"
+                    + "        <ogc:Literal>113</ogc:Literal>\n"
+                    + "      </ogc:PropertyIsEqualTo>\n"
+                    + "    </ogc:Filter>\n"
+                    + "  </wfs:Update>\n"
+                    + "</wfs:Transaction>";
+            Document doc = postAsDOM("wfs", xml);
+            assertXpathEvaluatesTo("1", "count(//wfs:SUCCESS)", doc);
+
+            // the transaction dropped the cached result
+            assertNull(cache.get(((QueryFunction) function).constantArguments));
+            assertEquals("1 Transaction Street", function.evaluate(null));
+        } finally {
+            cache.setTimeToLive(0);
+            revertLayer(MockData.BUILDINGS);
+        }
+    }
+
 }
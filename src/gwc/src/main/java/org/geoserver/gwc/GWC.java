@@ -22,6 +22,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,11 +52,21 @@ import org.geoserver.gwc.layer.GeoServerTileLayer;
 import org.geoserver.gwc.layer.GeoServerTileLayerInfo;
 import org.geoserver.gwc.layer.GeoServerTileLayerInfoImpl;
 import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.DispatcherCallback;
+import org.geoserver.ows.EnviromentInjectionCallback;
+import org.geoserver.ows.Request;
 import org.geoserver.ows.Response;
+import org.geoserver.ows.util.KvpMap;
+import org.geoserver.ows.util.KvpUtils;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.security.OperationSecurityCallback;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.WMS;
+import org.geoserver.wms.WebMap;
+import org.geoserver.wms.WebMapService;
+import org.geoserver.wms.map.GetMapKvpRequestReader;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.geometry.jts.JTS;
@@ -135,6 +149,21 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     private static final String GLOBAL_LOCK_KEY = "global";
 
+    /**
+     * System property, servlet context parameter or environment variable that can be set to
+     * {@code false} to render the meta tiles dispatching a GetMap request through the OWS
+     * {@link Dispatcher}, instead of executing it in process, so that all of the dispatcher
+     * callbacks see the meta tile requests
+     */
+    public static final String GWC_INPROCESS_GETMAP = "GWC_INPROCESS_GETMAP";
+
+    /**
+     * System property, servlet context parameter or environment variable setting how many threads
+     * encode the tiles sliced out of meta tiles, defaults to the number of available processors.
+     * Set it to {@code 0} to encode the tiles sequentially on the rendering thread.
+     */
+    public static final String GWC_METATILE_ENCODING_THREADS = "GWC_METATILE_ENCODING_THREADS";
+
     /**
      * @see #get()
      */
@@ -172,6 +201,10 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
     private DefaultStorageFinder storageFinder;
 
     private ApplicationContext applicationContext;
+
+    private ExecutorService metaTileEncoder;
+
+    private boolean metaTileEncoderInitialized;
     
     public GWC(final GWCConfigPersister gwcConfigPersister, final StorageBroker sb,
             final TileLayerDispatcher tld, final GridSetBroker gridSetBroker,
@@ -263,6 +296,12 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         if (this.catalogStyleChangeListener != null) {
             catalog.removeListener(this.catalogStyleChangeListener);
         }
+        synchronized (this) {
+            if (metaTileEncoder != null) {
+                metaTileEncoder.shutdownNow();
+                metaTileEncoder = null;
+            }
+        }
         GWC.set(null);
     }
 
@@ -457,12 +496,44 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
 
     private void truncate(final TileLayer layer, final BoundingBox bounds,
             final GridSubset gridSubset, String formatName, Map<String, String> parameters) {
+        dispatch(layer, bounds, gridSubset, formatName, parameters, TRUNCATE,
+                gridSubset.getZoomStart(), gridSubset.getZoomStop());
+    }
+
+    /**
+     * Seeds the default style of the layer, in all its formats and grid subsets, for the area
+     * intersecting the given bounds, up to the given zoom level. A single thread is used, so that
+     * seeding does not compete much with the tile requests being served.
+     * 
+     * @param layerName
+     *            name of the layer to seed, non {@code null}
+     * @param bounds
+     *            bounds to seed
+     * @param zoomStop
+     *            the last zoom level to seed
+     */
+    public void seed(final String layerName, final ReferencedEnvelope bounds, final int zoomStop)
+            throws GeoWebCacheException {
+
+        final TileLayer tileLayer = tld.getTileLayer(layerName);
+        for (String gridSetId : tileLayer.getGridSubsets()) {
+            GridSubset layerGrid = tileLayer.getGridSubset(gridSetId);
+            BoundingBox intersectingBounds = getIntersectingBounds(layerName, layerGrid, bounds);
+            if (intersectingBounds == null || layerGrid.getZoomStart() > zoomStop) {
+                continue;
+            }
+            for (MimeType mime : tileLayer.getMimeTypes()) {
+                dispatch(tileLayer, intersectingBounds, layerGrid, mime.getFormat(), null,
+                        SEED, layerGrid.getZoomStart(),
+                        Math.min(zoomStop, layerGrid.getZoomStop()));
+            }
+        }
+    }
+
+    private void dispatch(final TileLayer layer, final BoundingBox bounds,
+            final GridSubset gridSubset, String formatName, Map<String, String> parameters,
+            final TYPE taskType, final int zoomStart, final int zoomStop) {
         final int threadCount = 1;
-        int zoomStart;
-        int zoomStop;
-        zoomStart = gridSubset.getZoomStart();
-        zoomStop = gridSubset.getZoomStop();
-        final TYPE taskType = TRUNCATE;
         SeedRequest req = new SeedRequest(layer.getName(), bounds, gridSubset.getName(),
                 threadCount, zoomStart, zoomStop, formatName, taskType, parameters);
 
@@ -1123,6 +1194,140 @@ public class GWC implements DisposableBean, InitializingBean, ApplicationContext
         return new ByteArrayResource(resp.getBytes());
     }
 
+    /**
+     * @return whether meta tiles are rendered calling {@link #getMap(Map)} rather than
+     *         dispatching a fake GetMap request through {@link #dispatchOwsRequest(Map, Cookie[])}
+     * @see #GWC_INPROCESS_GETMAP
+     */
+    public boolean isInProcessGetMap() {
+        String value = GeoServerExtensions.getProperty(GWC_INPROCESS_GETMAP);
+        return value == null || Boolean.valueOf(value);
+    }
+
+    /**
+     * Executes a WMS 1.1.1 GetMap request in process, calling the {@link WebMapService} directly
+     * instead of going through the OWS {@link Dispatcher} with a fake http request and response.
+     * <p>
+     * The request is parsed by the same KVP parsers and reader the dispatcher would use, and
+     * executed on behalf of the current user, so the layers are looked up in the secured catalog.
+     * Of the dispatcher callbacks only the ones performing the service level security checks and
+     * injecting the environment variables are run, the others (monitoring, control flow, ...) are
+     * meant for the requests coming from the outside and are run anyways for the GWC request
+     * that triggered the rendering, if any.
+     * </p>
+     *
+     * @param params the GetMap request KVP parameters
+     * @return the map produced by the web map service
+     */
+    public WebMap getMap(final Map<String, String> params) throws Exception {
+        final org.geoserver.platform.Service service = (org.geoserver.platform.Service) GeoServerExtensions
+                .bean("wms-1_1_1-ServiceDescriptor");
+        final WebMapService webMapService = (WebMapService) GeoServerExtensions
+                .bean("webMapService");
+        final GetMapKvpRequestReader getMapReader = (GetMapKvpRequestReader) GeoServerExtensions
+                .bean("getMapKvpReader");
+        if (service == null || webMapService == null || getMapReader == null) {
+            throw new IllegalStateException("Didn't find the WMS 1.1.1 service");
+        }
+        WMS wms = WMS.get();
+        if (!wms.getServiceInfo().isEnabled()) {
+            throw new ServiceException("Service " + wms.getServiceInfo().getName()
+                    + " is disabled");
+        }
+
+        // same as the dispatcher does, keep the unparsed values around
+        Map kvp = KvpUtils.normalize(params);
+        Map rawKvp = new KvpMap(kvp);
+        List<Throwable> errors = KvpUtils.parse(kvp);
+        if (!errors.isEmpty()) {
+            Throwable error = errors.get(0);
+            throw error instanceof Exception ? (Exception) error : new ServiceException(error);
+        }
+
+        Request request = new Request();
+        request.setGet(true);
+        request.setKvp(kvp);
+        request.setRawKvp(rawKvp);
+        request.setService("WMS");
+        request.setVersion("1.1.1");
+        request.setRequest("GetMap");
+        request.setServiceDescriptor(service);
+
+        List<DispatcherCallback> callbacks = new ArrayList<DispatcherCallback>();
+        for (DispatcherCallback callback : GeoServerExtensions.extensions(DispatcherCallback.class)) {
+            if (callback instanceof OperationSecurityCallback
+                    || callback instanceof EnviromentInjectionCallback) {
+                callbacks.add(callback);
+            }
+        }
+
+        final Request outerRequest = Dispatcher.REQUEST.get();
+        Dispatcher.REQUEST.set(request);
+        try {
+            for (DispatcherCallback callback : callbacks) {
+                Request initialized = callback.init(request);
+                if (initialized != null) {
+                    request = initialized;
+                }
+            }
+
+            // not calling createRequest(), the reader holds on to the http request being
+            // dispatched, if any, which has nothing to do with this one
+            GetMapRequest getMap = new GetMapRequest();
+            getMap.setGet(true);
+            getMap = getMapReader.read(getMap, request.getKvp(), request.getRawKvp());
+
+            Operation operation = new Operation("GetMap", service, (Method) null,
+                    new Object[] { getMap });
+            for (DispatcherCallback callback : callbacks) {
+                callback.operationDispatched(request, operation);
+            }
+            return webMapService.getMap(getMap);
+        } finally {
+            for (DispatcherCallback callback : callbacks) {
+                callback.finished(request);
+            }
+            if (outerRequest == null) {
+                Dispatcher.REQUEST.remove();
+            } else {
+                Dispatcher.REQUEST.set(outerRequest);
+            }
+        }
+    }
+
+    /**
+     * @return the executor used to encode in parallel the tiles of a meta tile, or {@code null} if
+     *         they have to be encoded sequentially
+     * @see #GWC_METATILE_ENCODING_THREADS
+     */
+    public synchronized ExecutorService getMetaTileEncoder() {
+        if (!metaTileEncoderInitialized) {
+            metaTileEncoderInitialized = true;
+            int threads = Runtime.getRuntime().availableProcessors();
+            String value = GeoServerExtensions.getProperty(GWC_METATILE_ENCODING_THREADS);
+            if (value != null) {
+                try {
+                    threads = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    log.warning("Invalid value for " + GWC_METATILE_ENCODING_THREADS + ": "
+                            + value + ", using " + threads + " threads");
+                }
+            }
+            if (threads > 0) {
+                final AtomicInteger count = new AtomicInteger();
+                metaTileEncoder = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "GWC meta tile encoder " + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+        }
+        return metaTileEncoder;
+    }
+
     public GridSetBroker getGridSetBroker() {
         return gridSetBroker;
     }
@@ -31,13 +31,11 @@ import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.logging.Logging;
 import org.geowebcache.GeoWebCacheException;
-import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.operation.TransformException;
 
 /**
  * Listens to transactions (so far only issued by WFS) and truncates the cache for the affected area
- * of the layers involved in the transaction.
+ * of the layers involved in the transaction, either right away or through a
+ * {@link TruncationQueue}.
  * <p>
  * A Spring bean singleton of this class needs to be declared in order for GeoServer transactions to
  * pick it up automatically and forward transaction events to it.
@@ -57,13 +55,27 @@ public class GWCTransactionListener implements TransactionPlugin {
 
     final private GWC gwc;
 
+    final private TruncationQueue truncationQueue;
+
     static final String GWC_TRANSACTION_INFO_PLACEHOLDER = "GWC_TRANSACTION_INFO_PLACEHOLDER";
 
     /**
+     * Builds a listener truncating the affected areas right after each transaction
+     * 
      * @param gwc
      */
     public GWCTransactionListener(final GWC gwc) {
+        this(gwc, null);
+    }
+
+    /**
+     * @param gwc
+     * @param truncationQueue the queue truncating the affected areas off the request thread, or
+     *        {@code null} to truncate them right after each transaction
+     */
+    public GWCTransactionListener(final GWC gwc, final TruncationQueue truncationQueue) {
         this.gwc = gwc;
+        this.truncationQueue = truncationQueue;
     }
 
     /**
@@ -114,38 +126,28 @@ public class GWCTransactionListener implements TransactionPlugin {
         }
         for (String tileLayerName : byLayerDirtyRegions.keySet()) {
             List<ReferencedEnvelope> dirtyList = byLayerDirtyRegions.get(tileLayerName);
-            ReferencedEnvelope dirtyRegion;
+            if (truncationQueue != null) {
+                truncationQueue.add(tileLayerName, dirtyList);
+                continue;
+            }
+
+            List<ReferencedEnvelope> dirtyRegions;
             try {
-                dirtyRegion = merge(tileLayerName, dirtyList);
+                dirtyRegions = TruncationQueue.coalesce(gwc.getDeclaredCrs(tileLayerName),
+                        dirtyList, TruncationQueue.DEFAULT_MAX_REGIONS);
             } catch (Exception e) {
                 log.log(Level.WARNING, e.getMessage(), e);
                 continue;
             }
-            if (dirtyRegion == null) {
-                continue;
+            for (ReferencedEnvelope dirtyRegion : dirtyRegions) {
+                try {
+                    gwc.truncate(tileLayerName, dirtyRegion);
+                } catch (GeoWebCacheException e) {
+                    log.warning("Error truncating tile layer " + tileLayerName
+                            + " for transaction affected bounds " + dirtyRegion);
+                }
             }
-            try {
-                gwc.truncate(tileLayerName, dirtyRegion);
-            } catch (GeoWebCacheException e) {
-                log.warning("Error truncating tile layer " + tileLayerName
-                        + " for transaction affected bounds " + dirtyRegion);
-            }
-        }
-    }
-
-    private ReferencedEnvelope merge(final String tileLayerName,
-            final List<ReferencedEnvelope> dirtyList) throws TransformException, FactoryException {
-        if (dirtyList.size() == 0) {
-            return null;
-        }
-
-        final CoordinateReferenceSystem declaredCrs = gwc.getDeclaredCrs(tileLayerName);
-        ReferencedEnvelope merged = new ReferencedEnvelope(declaredCrs);
-        for (ReferencedEnvelope env : dirtyList) {
-            ReferencedEnvelope transformedDirtyRegion = env.transform(declaredCrs, true, 1000);
-            merged.expandToInclude(transformedDirtyRegion);
         }
-        return merged;
     }
 
     /**
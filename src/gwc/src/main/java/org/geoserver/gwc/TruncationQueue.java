@@ -0,0 +1,352 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.operation.TransformException;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Collects the regions of the tile layers made dirty by transactions and truncates them off the
+ * request thread.
+ * <p>
+ * The dirty regions are accumulated for {@link #getDelay() delay} milliseconds after the first one
+ * comes in, then the regions of each layer are coalesced, merging only the ones that overlap or
+ * are close enough for the merge not to enlarge the truncated area much, and each resulting region
+ * is truncated on its own. This way two small edits far apart from each other do not truncate
+ * everything in between. Optionally, the truncated regions can be seeded again, with a single
+ * thread, up to a given zoom level.
+ * </p>
+ * <p>
+ * The number of dirty regions waiting to be truncated and the age of the oldest one are exposed
+ * for monitoring, and logged at each flush: at {@code FINE} level normally, at {@code INFO} level
+ * when the regions waited more than {@link #LAG_WARNING_FACTOR} times the delay, meaning the
+ * truncations are not keeping up with the transactions.
+ * </p>
+ * <p>
+ * On shutdown the pending regions are truncated right away, so that no stale tiles survive a
+ * restart.
+ * </p>
+ */
+public class TruncationQueue implements DisposableBean {
+
+    private static Logger log = Logging.getLogger(TruncationQueue.class);
+
+    public static final long DEFAULT_DELAY = 1000;
+
+    public static final int DEFAULT_MAX_REGIONS = 32;
+
+    public static final int LAG_WARNING_FACTOR = 10;
+
+    /**
+     * How long, in seconds, {@link #destroy()} waits for a running flush to complete
+     */
+    static final long SHUTDOWN_TIMEOUT = 60;
+
+    private final GWC gwc;
+
+    /**
+     * The dirty regions waiting to be truncated, by tile layer name. Guarded by this
+     */
+    private Map<String, List<ReferencedEnvelope>> pending = new LinkedHashMap<String, List<ReferencedEnvelope>>();
+
+    private int pendingRegions;
+
+    /**
+     * When the oldest pending region was queued, or {@code 0} if there are no pending regions
+     */
+    private long oldestPending;
+
+    private boolean flushScheduled;
+
+    private ScheduledExecutorService executor;
+
+    private long delay = DEFAULT_DELAY;
+
+    private int maxRegions = DEFAULT_MAX_REGIONS;
+
+    private int reseedZoomStop = -1;
+
+    private final AtomicLong regionsQueued = new AtomicLong();
+
+    private final AtomicLong truncations = new AtomicLong();
+
+    private volatile long lastLag;
+
+    public TruncationQueue(GWC gwc) {
+        this.gwc = gwc;
+    }
+
+    /**
+     * @return how long, in milliseconds, dirty regions are accumulated before being truncated
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * @return the max number of regions truncated for a layer at each flush, the closest regions
+     *         are merged until there are no more than these
+     */
+    public int getMaxRegions() {
+        return maxRegions;
+    }
+
+    public void setMaxRegions(int maxRegions) {
+        this.maxRegions = maxRegions;
+    }
+
+    /**
+     * @return the zoom level up to which the truncated regions are seeded again, or {@code -1} if
+     *         they are not seeded at all (the default)
+     */
+    public int getReseedZoomStop() {
+        return reseedZoomStop;
+    }
+
+    public void setReseedZoomStop(int reseedZoomStop) {
+        this.reseedZoomStop = reseedZoomStop;
+    }
+
+    /**
+     * Queues the dirty regions of a tile layer for truncation
+     */
+    public void add(String tileLayerName, List<ReferencedEnvelope> dirtyRegions) {
+        if (dirtyRegions.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            List<ReferencedEnvelope> layerRegions = pending.get(tileLayerName);
+            if (layerRegions == null) {
+                layerRegions = new ArrayList<ReferencedEnvelope>();
+                pending.put(tileLayerName, layerRegions);
+            }
+            layerRegions.addAll(dirtyRegions);
+            if (pendingRegions == 0) {
+                oldestPending = System.currentTimeMillis();
+            }
+            pendingRegions += dirtyRegions.size();
+            regionsQueued.addAndGet(dirtyRegions.size());
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                getExecutor().schedule(new Runnable() {
+
+                    public void run() {
+                        flush();
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Truncates all the pending dirty regions right away
+     */
+    public void flush() {
+        Map<String, List<ReferencedEnvelope>> regions;
+        long queued;
+        synchronized (this) {
+            regions = pending;
+            queued = oldestPending;
+            pending = new LinkedHashMap<String, List<ReferencedEnvelope>>();
+            pendingRegions = 0;
+            oldestPending = 0;
+            flushScheduled = false;
+        }
+        if (regions.isEmpty()) {
+            return;
+        }
+        final long lag = System.currentTimeMillis() - queued;
+        lastLag = lag;
+
+        int regionCount = 0;
+        int truncationCount = 0;
+        for (Map.Entry<String, List<ReferencedEnvelope>> entry : regions.entrySet()) {
+            final String tileLayerName = entry.getKey();
+            try {
+                CoordinateReferenceSystem declaredCrs = gwc.getDeclaredCrs(tileLayerName);
+                regionCount += entry.getValue().size();
+                List<ReferencedEnvelope> coalesced = coalesce(declaredCrs, entry.getValue(),
+                        maxRegions);
+                for (ReferencedEnvelope region : coalesced) {
+                    gwc.truncate(tileLayerName, region);
+                    truncations.incrementAndGet();
+                    truncationCount++;
+                    if (reseedZoomStop >= 0) {
+                        gwc.seed(tileLayerName, region, reseedZoomStop);
+                    }
+                }
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Error truncating tile layer " + tileLayerName
+                        + " for transaction affected bounds " + entry.getValue(), e);
+            }
+        }
+
+        Level level = lag > LAG_WARNING_FACTOR * delay ? Level.INFO : Level.FINE;
+        if (log.isLoggable(level)) {
+            log.log(level, "Truncated " + regionCount + " dirty regions of " + regions.size()
+                    + " tile layers with " + truncationCount + " truncations, the oldest region"
+                    + " waited " + lag + "ms, " + getQueueDepth() + " regions queued since");
+        }
+    }
+
+    /**
+     * @return the number of dirty regions waiting to be truncated
+     */
+    public synchronized int getQueueDepth() {
+        return pendingRegions;
+    }
+
+    /**
+     * @return how long, in milliseconds, the oldest dirty region has been waiting to be truncated
+     */
+    public synchronized long getLag() {
+        return oldestPending == 0 ? 0 : System.currentTimeMillis() - oldestPending;
+    }
+
+    /**
+     * @return how long, in milliseconds, the oldest dirty region waited at the last flush
+     */
+    public long getLastLag() {
+        return lastLag;
+    }
+
+    /**
+     * @return the number of dirty regions queued so far
+     */
+    public long getRegionsQueued() {
+        return regionsQueued.get();
+    }
+
+    /**
+     * @return the number of truncations issued so far, after coalescing the dirty regions
+     */
+    public long getTruncations() {
+        return truncations.get();
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            ScheduledThreadPoolExecutor stpe = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactory() {
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "GWC truncation queue");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            // the pending regions are flushed by destroy() right away
+            stpe.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            executor = stpe;
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the scheduled flushes and truncates the pending regions on the calling thread
+     */
+    public void destroy() throws Exception {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            // cancels the scheduled flush, if any, and lets a running one complete
+            executor.shutdown();
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                log.warning("Timed out waiting for the running truncations to complete");
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Transforms the dirty regions to the specified CRS and merges the ones that overlap, or whose
+     * merge would not cover much more than the two of them. If there are still more than
+     * {@code maxRegions} the ones whose merge grows the covered area the least are merged.
+     */
+    static List<ReferencedEnvelope> coalesce(CoordinateReferenceSystem crs,
+            List<ReferencedEnvelope> dirtyList, int maxRegions) throws TransformException,
+            FactoryException {
+        List<ReferencedEnvelope> regions = new ArrayList<ReferencedEnvelope>(dirtyList.size());
+        for (ReferencedEnvelope env : dirtyList) {
+            if (env == null || env.isNull()) {
+                continue;
+            }
+            ReferencedEnvelope region = new ReferencedEnvelope(crs);
+            region.expandToInclude(env.transform(crs, true, 1000));
+            regions.add(region);
+        }
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = 0; i < regions.size() && !merged; i++) {
+                ReferencedEnvelope a = regions.get(i);
+                for (int j = i + 1; j < regions.size(); j++) {
+                    ReferencedEnvelope b = regions.get(j);
+                    if (a.intersects((Envelope) b)
+                            || enlargement(a, b) < a.getArea() + b.getArea()) {
+                        a.expandToInclude(b);
+                        regions.remove(j);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+        }
+
+        while (regions.size() > Math.max(1, maxRegions)) {
+            int mergeA = 0, mergeB = 1;
+            double minEnlargement = Double.MAX_VALUE;
+            for (int i = 0; i < regions.size(); i++) {
+                for (int j = i + 1; j < regions.size(); j++) {
+                    double enlargement = enlargement(regions.get(i), regions.get(j));
+                    if (enlargement < minEnlargement) {
+                        minEnlargement = enlargement;
+                        mergeA = i;
+                        mergeB = j;
+                    }
+                }
+            }
+            regions.get(mergeA).expandToInclude(regions.remove(mergeB));
+        }
+
+        return regions;
+    }
+
+    /**
+     * @return the area covered by the merge of the two envelopes that neither of them covers
+     */
+    private static double enlargement(ReferencedEnvelope a, ReferencedEnvelope b) {
+        ReferencedEnvelope union = new ReferencedEnvelope(a);
+        union.expandToInclude(b);
+        return union.getArea() - a.getArea() - b.getArea();
+    }
+}
@@ -10,6 +10,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.collect.Maps.newConcurrentMap;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -25,9 +26,13 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogInvalidationListener;
 import org.geoserver.gwc.GWC;
 import org.geotools.util.logging.Logging;
 import org.geowebcache.config.Configuration;
@@ -62,7 +67,7 @@ import com.google.common.util.concurrent.UncheckedExecutionException;
  * @see #getTileLayers(boolean)
  * @see CatalogStyleChangeListener
  */
-public class CatalogConfiguration implements Configuration {
+public class CatalogConfiguration implements Configuration, CatalogInvalidationListener {
 
     /**
      * {@link GeoServerTileLayer} cache loader
@@ -550,6 +555,53 @@ public class CatalogConfiguration implements Configuration {
         }
     }
 
+    /**
+     * Drops the cached tile layers of the layers and layer groups changed outside of this
+     * GeoServer instance, as well as the ones of the layers whose resource, store or default style
+     * changed, so they're created again out of the current catalog objects.
+     * 
+     * @see org.geoserver.catalog.event.CatalogInvalidationListener#invalidated(java.util.Collection)
+     */
+    @Override
+    public void invalidated(Collection<CatalogInfo> objects) {
+        final Set<String> ids = new HashSet<String>();
+        for (CatalogInfo info : objects) {
+            ids.add(info.getId());
+        }
+        lock.writeLock().lock();
+        try {
+            List<String> invalid = Lists.newArrayList();
+            for (Map.Entry<String, GeoServerTileLayer> e : layerCache.asMap().entrySet()) {
+                if (ids.contains(e.getKey()) || references(e.getValue().getLayerInfo(), ids)) {
+                    invalid.add(e.getKey());
+                }
+            }
+            layerCache.invalidateAll(invalid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean references(final LayerInfo layer, final Set<String> ids) {
+        if (layer == null) {
+            return false;
+        }
+        try {
+            ResourceInfo resource = layer.getResource();
+            if (resource != null
+                    && (ids.contains(resource.getId()) || resource.getStore() != null
+                            && ids.contains(resource.getStore().getId()))) {
+                return true;
+            }
+            StyleInfo style = layer.getDefaultStyle();
+            return style != null && ids.contains(style.getId());
+        } catch (RuntimeException e) {
+            // a reference that can't be resolved anymore, the layer is stale either way
+            LOGGER.log(Level.FINE, "Can't check the references of layer " + layer.getId(), e);
+            return true;
+        }
+    }
+
     /**
      * @see GWC#layerAdded(String)
      * @see GWC#layerRemoved(String)
@@ -9,6 +9,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
 import java.awt.image.WritableRaster;
 import java.io.IOException;
@@ -19,10 +20,14 @@ import javax.media.jai.RenderedOp;
 
 import org.geoserver.gwc.GWC;
 import org.geoserver.ows.Response;
+import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.RenderedImageMap;
+import org.geoserver.wms.map.PNGMapResponse;
 import org.geoserver.wms.map.RenderedImageMapResponse;
+import org.geoserver.wms.map.quantize.Quantizer;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.image.ImageWorker;
 import org.geotools.image.crop.GTCropDescriptor;
 import org.geotools.resources.i18n.ErrorKeys;
 import org.geotools.resources.i18n.Errors;
@@ -37,6 +42,11 @@ public class GeoServerMetaTile extends MetaTile {
 
     private RenderedImageMap metaTileMap;
 
+    /**
+     * The palette shared by the tiles, built out of the whole meta tile
+     */
+    private IndexColorModel sharedPalette;
+
     public GeoServerMetaTile(GridSubset gridSubset, MimeType responseFormat,
             FormatModifier formatModifier, long[] tileGridPosition, int metaX, int metaY,
             Integer gutter) {
@@ -91,7 +101,7 @@ public class GeoServerMetaTile extends MetaTile {
                 tileContext.setBgColor(metaTileContext.getBgColor());
                 tileContext.setMapWidth(tileDim.width);
                 tileContext.setMapHeight(tileDim.height);
-                tileContext.setPalette(metaTileContext.getPalette());
+                tileContext.setPalette(getTilePalette(metaTileContext, mapEncoder));
                 tileContext.setTransparent(tileContext.isTransparent());
                 long[][] tileIndexes = getTilesGridPositions();
                 BoundingBox tileBounds = gridSubset.boundsFromIndex(tileIndexes[tileIdx]);
@@ -115,6 +125,38 @@ public class GeoServerMetaTile extends MetaTile {
         }
     }
 
+    /**
+     * Returns the palette the tiles are encoded with. For PNG8 tiles, whatever the spelling of the
+     * format, unless a palette has been requested, a single palette is built out of the whole meta
+     * tile, so that it's quantized once instead of once per tile, and all the tiles share the same
+     * colors.
+     */
+    private synchronized IndexColorModel getTilePalette(WMSMapContent metaTileContext,
+            RenderedImageMapResponse mapEncoder) {
+        GetMapRequest request = metaTileContext.getRequest();
+        if (metaTileContext.getPalette() != null || request == null
+                || !(mapEncoder instanceof PNGMapResponse)
+                || !PNGMapResponse.isPNG8(request.getFormat())
+                || metaTileImage.getColorModel() instanceof IndexColorModel) {
+            return metaTileContext.getPalette();
+        }
+        if (sharedPalette == null) {
+            RenderedImage image = new ImageWorker(metaTileImage).rescaleToBytes()
+                    .forceComponentColorModel().getRenderedImage();
+            sharedPalette = new Quantizer(256).subsample().buildColorIndexer(image)
+                    .toIndexColorModel();
+        }
+        return sharedPalette;
+    }
+
+    /**
+     * The tiles might be created and encoded by several threads at once
+     */
+    @Override
+    protected synchronized void disposeLater(RenderedImage tile) {
+        super.disposeLater(tile);
+    }
+
     /**
      * Checks if this meta tile has a gutter, or not
      * @return
@@ -199,6 +241,7 @@ public class GeoServerMetaTile extends MetaTile {
 
     @Override
     public void dispose() {
+        sharedPalette = null;
         if (metaTileMap != null) {
             metaTileMap.dispose();
             metaTileMap = null;
@@ -19,6 +19,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +40,7 @@ import org.geoserver.catalog.StyleInfo;
 import org.geoserver.gwc.GWC;
 import org.geoserver.gwc.config.GWCConfig;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WebMap;
 import org.geoserver.wms.map.RenderedImageMap;
@@ -54,6 +60,7 @@ import org.geowebcache.grid.GridSetBroker;
 import org.geowebcache.grid.GridSubset;
 import org.geowebcache.grid.OutsideCoverageException;
 import org.geowebcache.grid.SRS;
+import org.geowebcache.io.ByteArrayResource;
 import org.geowebcache.io.Resource;
 import org.geowebcache.layer.LayerListenerList;
 import org.geowebcache.layer.MetaTile;
@@ -66,6 +73,8 @@ import org.geowebcache.locks.LockProvider.Lock;
 import org.geowebcache.mime.FormatModifier;
 import org.geowebcache.mime.MimeException;
 import org.geowebcache.mime.MimeType;
+import org.geowebcache.storage.StorageException;
+import org.geowebcache.storage.TileObject;
 import org.geowebcache.util.GWCVars;
 import org.geowebcache.util.ServletUtils;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -498,7 +507,12 @@ public class GeoServerTileLayer extends TileLayer {
                     map = dispatchGetMap(tile, metaTile);
                     checkNotNull(map, "Did not obtain a WebMap from GeoServer's Dispatcher");
                     metaTile.setWebMap(map);
-                    saveTiles(metaTile, tile, requestTime);
+                    ExecutorService encoder = GWC.get().getMetaTileEncoder();
+                    if (encoder == null) {
+                        saveTiles(metaTile, tile, requestTime);
+                    } else {
+                        saveTiles(metaTile, tile, requestTime, encoder);
+                    }
                 } catch (Exception e) {
                     throw new GeoWebCacheException("Problem communicating with GeoServer", e);
                 } 
@@ -515,6 +529,134 @@ public class GeoServerTileLayer extends TileLayer {
         return finalizeTile(tile);
     }
     
+    /**
+     * Slices, encodes and stores the tiles of the meta tile like
+     * {@link #saveTiles(MetaTile, ConveyorTile, long)} does, but encoding the requested tile first,
+     * on the calling thread, while the other ones are encoded and stored in parallel by the
+     * specified executor.
+     * <p>
+     * The method still waits for all the tiles to be stored, since the meta tile lock has to be
+     * released by the thread that acquired it, and releasing it earlier would make the requests
+     * for the other tiles of the meta tile render it again. On failure the tiles not encoded yet
+     * are skipped, and the method still waits for the ones being encoded, so that the meta tile is
+     * not disposed of while in use.
+     * </p>
+     */
+    private void saveTiles(final GeoServerMetaTile metaTile, final ConveyorTile tileProto,
+            final long requestTime, ExecutorService executor) throws GeoWebCacheException {
+
+        final long[][] gridPositions = metaTile.getTilesGridPositions();
+        final long[] gridLoc = tileProto.getTileIndex();
+        final GridSubset gridSubset = getGridSubset(tileProto.getGridSetId());
+        final boolean store = getExpireCache((int) gridLoc[2]) != GWCVars.CACHE_DISABLE_CACHE;
+
+        List<Future<Void>> pending = new ArrayList<Future<Void>>();
+        final AtomicBoolean aborted = new AtomicBoolean();
+        int requested = -1;
+        for (int i = 0; i < gridPositions.length; i++) {
+            final long[] gridPos = gridPositions[i];
+            if (Arrays.equals(gridLoc, gridPos)) {
+                requested = i;
+            } else if (store && gridSubset.covers(gridPos)) {
+                final int tileIdx = i;
+                pending.add(executor.submit(new Callable<Void>() {
+
+                    public Void call() throws Exception {
+                        if (aborted.get()) {
+                            // the meta tile is about to be disposed of
+                            return null;
+                        }
+                        try {
+                            Resource resource = new ByteArrayResource();
+                            metaTile.writeTileToStream(tileIdx, resource);
+                            storeTile(tileProto, gridPositions[tileIdx], resource, requestTime);
+                            return null;
+                        } finally {
+                            // the encoders schedule the images for disposal at the end of the
+                            // request, there is no request on this thread
+                            new RasterCleaner().finished(null);
+                        }
+                    }
+                }));
+            }
+        }
+
+        boolean completed = false;
+        try {
+            if (requested >= 0 && gridSubset.covers(gridLoc)) {
+                Resource resource = new ByteArrayResource();
+                try {
+                    metaTile.writeTileToStream(requested, resource);
+                } catch (IOException e) {
+                    throw new GeoWebCacheException(e);
+                }
+                tileProto.setBlob(resource);
+                if (store) {
+                    TileObject stored = storeTile(tileProto, gridLoc, resource, requestTime);
+                    tileProto.getStorageObject().setCreated(stored.getCreated());
+                }
+            }
+
+            for (Future<Void> future : pending) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new GeoWebCacheException(e);
+                } catch (ExecutionException e) {
+                    throw new GeoWebCacheException(e.getCause());
+                }
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                abort(pending, aborted);
+            }
+        }
+    }
+
+    /**
+     * Makes the tiles not encoded yet skip their encoding, and waits for the ones being encoded,
+     * as the meta tile is going to be disposed of as soon as the caller gets control back
+     */
+    private void abort(List<Future<Void>> pending, AtomicBoolean aborted) {
+        aborted.set(true);
+        for (Future<Void> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                // cannot wait any longer, interrupt the tiles still being encoded
+                Thread.currentThread().interrupt();
+                for (Future<Void> f : pending) {
+                    f.cancel(true);
+                }
+                return;
+            } catch (ExecutionException e) {
+                // we are already failing, the first error is the one reported
+                LOGGER.log(Level.FINE, "Tile encoding failed after the meta tile failure", e);
+            }
+        }
+    }
+
+    private TileObject storeTile(ConveyorTile tileProto, long[] gridPos, Resource resource,
+            long requestTime) throws GeoWebCacheException {
+        long[] idx = { gridPos[0], gridPos[1], gridPos[2] };
+        TileObject tile = TileObject.createCompleteTileObject(getName(), idx,
+                tileProto.getGridSetId(), tileProto.getMimeType().getFormat(), tileProto
+                        .getStorageObject().getParameters(), resource);
+        tile.setCreated(requestTime);
+        try {
+            if (tileProto.isMetaTileCacheOnly()) {
+                tileProto.getStorageBroker().putTransient(tile);
+            } else {
+                tileProto.getStorageBroker().put(tile);
+            }
+        } catch (StorageException e) {
+            throw new GeoWebCacheException(e);
+        }
+        return tile;
+    }
+
     private String buildLockKey(ConveyorTile tile, GeoServerMetaTile metaTile) {
         StringBuilder metaKey = new StringBuilder();
         
@@ -545,18 +687,24 @@ public class GeoServerTileLayer extends TileLayer {
             throws Exception {
 
         Map<String, String> params = buildGetMap(tile, metaTile);
+        final GWC gwc = GWC.get();
         WebMap map;
-        try {
-            HttpServletRequest actualRequest = tile.servletReq;
-            Cookie[] cookies = actualRequest == null ? null : actualRequest.getCookies();
+        if (gwc.isInProcessGetMap()) {
+            map = gwc.getMap(params);
+        } else {
+            params.put(GWC_SEED_INTERCEPT_TOKEN, "true");
+            try {
+                HttpServletRequest actualRequest = tile.servletReq;
+                Cookie[] cookies = actualRequest == null ? null : actualRequest.getCookies();
 
-            GWC.get().dispatchOwsRequest(params, cookies);
-            map = WEB_MAP.get();
-            if (!(map instanceof RenderedImageMap)) {
-                throw new IllegalStateException("Expected: RenderedImageMap, got " + map);
+                gwc.dispatchOwsRequest(params, cookies);
+                map = WEB_MAP.get();
+            } finally {
+                WEB_MAP.remove();
             }
-        } finally {
-            WEB_MAP.remove();
+        }
+        if (!(map instanceof RenderedImageMap)) {
+            throw new IllegalStateException("Expected: RenderedImageMap, got " + map);
         }
 
         return (RenderedImageMap) map;
@@ -605,7 +753,6 @@ public class GeoServerTileLayer extends TileLayer {
         params.put("EXCEPTIONS", GetMapRequest.SE_XML);
         params.put("STYLES", "");
         params.put("TRANSPARENT", "true");
-        params.put(GWC_SEED_INTERCEPT_TOKEN, "true");
 
         Map<String, String> filteredParams = tile.getFullParameters();
         if (filteredParams.isEmpty()) {
@@ -12,6 +12,7 @@ import java.util.logging.Logger;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
+import org.geoserver.gwc.GWC;
 import org.geoserver.gwc.layer.GeoServerTileLayer;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.wms.GetMapRequest;
@@ -28,6 +29,11 @@ import org.geotools.util.logging.Logging;
  * the server with too many requests. That is, adheres to the expectations of the control-flow and
  * monitoring modules by not bypassing the dispatcher.
  * </p>
+ * <p>
+ * This is the case only when {@link GWC#GWC_INPROCESS_GETMAP} is set to {@code false}, by default
+ * the meta tiles are rendered by {@link GWC#getMap(java.util.Map)}, which executes the GetMap
+ * request in process.
+ * </p>
  * 
  * @author Gabriel Roldan
  * 
@@ -0,0 +1,192 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.data.test.SystemTestData;
+import org.geoserver.gwc.layer.GeoServerTileLayer;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.security.impl.ServiceAccessRule;
+import org.geoserver.security.impl.ServiceAccessRuleDAO;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.geoserver.wms.WMSInfo;
+import org.geoserver.wms.WebMap;
+import org.geoserver.wms.map.RenderedImageMap;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.logging.Logging;
+import org.junit.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+
+/**
+ * System tests for {@link GWC#getMap(Map)}, the in process GetMap used to render the meta tiles
+ */
+public class GWCGetMapTest extends GeoServerSystemTestSupport {
+
+    static final Logger LOGGER = Logging.getLogger(GWCGetMapTest.class);
+
+    static final int ITERATIONS = 20;
+
+    @Override
+    protected void onSetUp(SystemTestData testData) throws Exception {
+        super.onSetUp(testData);
+        testData.addStyle("paramFill", "paramFill.sld", getClass(), getCatalog());
+    }
+
+    Map<String, String> getMapParams() {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(
+                getLayerId(MockData.BASIC_POLYGONS));
+        ReferencedEnvelope bbox = ft.getLatLonBoundingBox();
+
+        Map<String, String> params = new HashMap<String, String>();
+        params.put("SERVICE", "WMS");
+        params.put("VERSION", "1.1.1");
+        params.put("REQUEST", "GetMap");
+        params.put("LAYERS", getLayerId(MockData.BASIC_POLYGONS));
+        params.put("STYLES", "paramFill");
+        params.put("FORMAT", "image/png");
+        params.put("SRS", "EPSG:4326");
+        params.put("BBOX", bbox.getMinX() + "," + bbox.getMinY() + "," + bbox.getMaxX() + ","
+                + bbox.getMaxY());
+        params.put("WIDTH", "256");
+        params.put("HEIGHT", "256");
+        return params;
+    }
+
+    /**
+     * @return the number of pixels of the given color in the map image
+     */
+    int countPixels(WebMap map, int rgb) {
+        assertTrue(map instanceof RenderedImageMap);
+        RenderedImageMap imageMap = (RenderedImageMap) map;
+        try {
+            BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+            image.createGraphics().drawRenderedImage(imageMap.getImage(), new AffineTransform());
+            int count = 0;
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    if ((image.getRGB(x, y) & 0xFFFFFF) == rgb) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            imageMap.dispose();
+        }
+    }
+
+    @Test
+    public void testEnvironmentInjection() throws Exception {
+        Map<String, String> params = getMapParams();
+        assertEquals(0, countPixels(GWC.get().getMap(params), 0x0000FF));
+
+        // the env parameter reaches the env function used by the style
+        params.put("ENV", "color:0x0000FF");
+        assertTrue(countPixels(GWC.get().getMap(params), 0x0000FF) > 0);
+    }
+
+    @Test
+    public void testOperationSecurity() throws Exception {
+        ServiceAccessRuleDAO dao = ServiceAccessRuleDAO.get();
+        ServiceAccessRule rule = new ServiceAccessRule("wms", "GetMap", "ROLE_MAPS");
+        dao.addRule(rule);
+        try {
+            logout();
+            try {
+                GWC.get().getMap(getMapParams());
+                fail("Anonymous users should not be allowed to run GetMap");
+            } catch (InsufficientAuthenticationException e) {
+                // fine
+            }
+
+            login("bob", "secret", "ROLE_OTHER");
+            try {
+                GWC.get().getMap(getMapParams());
+                fail("Users without the required role should not be allowed to run GetMap");
+            } catch (AccessDeniedException e) {
+                // fine
+            }
+
+            login("alice", "secret", "ROLE_MAPS");
+            countPixels(GWC.get().getMap(getMapParams()), 0x0000FF);
+        } finally {
+            dao.removeRule(rule);
+            logout();
+        }
+    }
+
+    @Test
+    public void testDisabledService() throws Exception {
+        WMSInfo wms = getGeoServer().getService(WMSInfo.class);
+        wms.setEnabled(false);
+        getGeoServer().save(wms);
+        try {
+            GWC.get().getMap(getMapParams());
+            fail("The WMS is disabled, the GetMap should have been refused");
+        } catch (ServiceException e) {
+            assertTrue(e.getMessage().contains("disabled"));
+        } finally {
+            wms = getGeoServer().getService(WMSInfo.class);
+            wms.setEnabled(true);
+            getGeoServer().save(wms);
+        }
+    }
+
+    /**
+     * Reports the time spent rendering a meta tile in process and through the dispatcher, the
+     * difference being the per meta tile overhead the in process GetMap saves while seeding
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        final GWC gwc = GWC.get();
+        // warm up both paths
+        gwc.getMap(getMapParams()).dispose();
+        dispatchGetMap(gwc).dispose();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            gwc.getMap(getMapParams()).dispose();
+        }
+        long inProcess = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            dispatchGetMap(gwc).dispose();
+        }
+        long dispatched = System.nanoTime() - start;
+
+        LOGGER.info("Average time per meta tile GetMap: in process " + (inProcess / ITERATIONS
+                / 1000) + "us, dispatched " + (dispatched / ITERATIONS / 1000) + "us");
+    }
+
+    /**
+     * Renders the map the way {@link GeoServerTileLayer} does when
+     * {@link GWC#GWC_INPROCESS_GETMAP} is disabled
+     */
+    WebMap dispatchGetMap(GWC gwc) throws Exception {
+        Map<String, String> params = getMapParams();
+        params.put(GeoServerTileLayer.GWC_SEED_INTERCEPT_TOKEN, "true");
+        try {
+            gwc.dispatchOwsRequest(params, null);
+            WebMap map = GeoServerTileLayer.WEB_MAP.get();
+            assertTrue(map instanceof RenderedImageMap);
+            return map;
+        } finally {
+            GeoServerTileLayer.WEB_MAP.remove();
+        }
+    }
+}
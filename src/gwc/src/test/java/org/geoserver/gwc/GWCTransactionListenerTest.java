@@ -4,14 +4,17 @@
  */
 package org.geoserver.gwc;
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -185,6 +188,61 @@ public class GWCTransactionListenerTest {
 
     }
 
+    @Test
+    public void testAfterTransactionDistantRegions() throws Exception {
+
+        Map<Object, Object> extendedProperties = new HashMap<Object, Object>();
+        ReferencedEnvelope affectedBounds1 = new ReferencedEnvelope(-180, -170, 0, 10, WGS84);
+        ReferencedEnvelope affectedBounds2 = new ReferencedEnvelope(170, 180, 80, 90, WGS84);
+
+        issueInsert(extendedProperties, affectedBounds1);
+
+        issueInsert(extendedProperties, affectedBounds2);
+
+        TransactionType request = mock(TransactionType.class);
+        TransactionResponseType result = mock(TransactionResponseType.class);
+        when(request.getExtendedProperties()).thenReturn(extendedProperties);
+
+        when(mediator.getDeclaredCrs(anyString())).thenReturn(WGS84);
+        listener.afterTransaction(request, result, true);
+
+        // no truncation of everything in between
+        verify(mediator, times(1)).truncate(eq("theLayer"), eq(affectedBounds1));
+        verify(mediator, times(1)).truncate(eq("theLayer"), eq(affectedBounds2));
+        verify(mediator, times(1)).truncate(eq("theGroup"), eq(affectedBounds1));
+        verify(mediator, times(1)).truncate(eq("theGroup"), eq(affectedBounds2));
+    }
+
+    @Test
+    public void testAfterTransactionQueued() throws Exception {
+        TruncationQueue queue = new TruncationQueue(mediator);
+        // long enough not to flush during the test
+        queue.setDelay(60000);
+        listener = new GWCTransactionListener(mediator, queue);
+        try {
+            Map<Object, Object> extendedProperties = new HashMap<Object, Object>();
+            ReferencedEnvelope affectedBounds = new ReferencedEnvelope(-180, 0, 0, 90, WGS84);
+            issueInsert(extendedProperties, affectedBounds);
+
+            TransactionType request = mock(TransactionType.class);
+            TransactionResponseType result = mock(TransactionResponseType.class);
+            when(request.getExtendedProperties()).thenReturn(extendedProperties);
+            when(mediator.getDeclaredCrs(anyString())).thenReturn(WGS84);
+            listener.afterTransaction(request, result, true);
+
+            // nothing truncated on the request thread
+            verify(mediator, never()).truncate(anyString(), any(ReferencedEnvelope.class));
+            assertEquals(2, queue.getQueueDepth());
+
+            queue.flush();
+            verify(mediator, times(1)).truncate(eq("theLayer"), eq(affectedBounds));
+            verify(mediator, times(1)).truncate(eq("theGroup"), eq(affectedBounds));
+            assertEquals(0, queue.getQueueDepth());
+        } finally {
+            queue.destroy();
+        }
+    }
+
     /**
      * Issues a fake dataStoreChange insert event that affects two tile layers: "theLayer" and
      * "theGroup"
@@ -0,0 +1,119 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc;
+
+import static org.geotools.referencing.crs.DefaultGeographicCRS.WGS84;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TruncationQueueTest {
+
+    private GWC mediator;
+
+    private TruncationQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        mediator = mock(GWC.class);
+        when(mediator.getDeclaredCrs("theLayer")).thenReturn(WGS84);
+        queue = new TruncationQueue(mediator);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queue.destroy();
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        ReferencedEnvelope a = new ReferencedEnvelope(0, 10, 0, 10, WGS84);
+        ReferencedEnvelope b = new ReferencedEnvelope(5, 15, 5, 15, WGS84);
+        ReferencedEnvelope c = new ReferencedEnvelope(100, 101, 50, 51, WGS84);
+        ReferencedEnvelope d = new ReferencedEnvelope(101.5, 102.5, 50, 51, WGS84);
+
+        List<ReferencedEnvelope> regions = TruncationQueue.coalesce(WGS84,
+                Arrays.asList(a, b, c, d), 10);
+        assertEquals(2, regions.size());
+        assertTrue(regions.contains(new ReferencedEnvelope(0, 15, 0, 15, WGS84)));
+        assertTrue(regions.contains(new ReferencedEnvelope(100, 102.5, 50, 51, WGS84)));
+
+        // the inputs are not modified
+        assertEquals(new ReferencedEnvelope(0, 10, 0, 10, WGS84), a);
+    }
+
+    @Test
+    public void testCoalesceMaxRegions() throws Exception {
+        ReferencedEnvelope a = new ReferencedEnvelope(0, 1, 0, 1, WGS84);
+        ReferencedEnvelope b = new ReferencedEnvelope(10, 11, 0, 1, WGS84);
+        ReferencedEnvelope c = new ReferencedEnvelope(100, 101, 80, 81, WGS84);
+
+        List<ReferencedEnvelope> regions = TruncationQueue.coalesce(WGS84,
+                Arrays.asList(a, b, c), 2);
+        assertEquals(2, regions.size());
+        // the two closest ones got merged
+        assertTrue(regions.contains(new ReferencedEnvelope(0, 11, 0, 1, WGS84)));
+        assertTrue(regions.contains(c));
+    }
+
+    @Test
+    public void testScheduledFlush() throws Exception {
+        queue.setDelay(10);
+        ReferencedEnvelope a = new ReferencedEnvelope(0, 1, 0, 1, WGS84);
+        ReferencedEnvelope b = new ReferencedEnvelope(50, 51, 0, 1, WGS84);
+        queue.add("theLayer", Collections.singletonList(a));
+        queue.add("theLayer", Collections.singletonList(b));
+
+        verify(mediator, timeout(5000)).truncate(eq("theLayer"), eq(a));
+        verify(mediator, timeout(5000)).truncate(eq("theLayer"), eq(b));
+        for (int i = 0; i < 100 && queue.getTruncations() < 2; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(2, queue.getRegionsQueued());
+        assertEquals(2, queue.getTruncations());
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(0, queue.getLag());
+    }
+
+    @Test
+    public void testReseed() throws Exception {
+        queue.setDelay(60000);
+        queue.setReseedZoomStop(5);
+        ReferencedEnvelope a = new ReferencedEnvelope(0, 1, 0, 1, WGS84);
+        queue.add("theLayer", Collections.singletonList(a));
+        assertEquals(1, queue.getQueueDepth());
+
+        queue.flush();
+        verify(mediator).truncate(eq("theLayer"), eq(a));
+        verify(mediator).seed(eq("theLayer"), eq(a), eq(5));
+    }
+
+    @Test
+    public void testDestroyFlushesPending() throws Exception {
+        queue.setDelay(60000);
+        ReferencedEnvelope a = new ReferencedEnvelope(0, 1, 0, 1, WGS84);
+        queue.add("theLayer", Collections.singletonList(a));
+        assertEquals(1, queue.getQueueDepth());
+
+        // the scheduled flush is way in the future, shutting down truncates right away
+        queue.destroy();
+        verify(mediator).truncate(eq("theLayer"), eq(a));
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(1, queue.getTruncations());
+    }
+}
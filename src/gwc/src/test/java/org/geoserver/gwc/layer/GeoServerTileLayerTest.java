@@ -18,11 +18,14 @@ import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -30,6 +33,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
@@ -542,6 +547,91 @@ public class GeoServerTileLayerTest {
         verify(mockGWC, times(1)).getResponseEncoder(eq(mimeType), isA(RenderedImageMap.class));
     }
 
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testGetTileInProcess() throws Exception {
+
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        RenderedImageMap fakeMap = new RenderedImageMap(new WMSMapContent(), image, "image/png");
+
+        when(mockGWC.isInProcessGetMap()).thenReturn(true);
+        ArgumentCaptor<Map> argument = ArgumentCaptor.forClass(Map.class);
+        when(mockGWC.getMap(argument.capture())).thenReturn(fakeMap);
+
+        RenderedImageMapResponse fakeResponseEncoder = mock(RenderedImageMapResponse.class);
+        MimeType mimeType = MimeType.createFromFormat("image/png");
+        when(mockGWC.getResponseEncoder(eq(mimeType), (RenderedImageMap) anyObject())).thenReturn(
+                fakeResponseEncoder);
+
+        StorageBroker storageBroker = mock(StorageBroker.class);
+        when(storageBroker.get((TileObject) anyObject())).thenReturn(false);
+
+        layerInfoTileLayer = new GeoServerTileLayer(layerInfo, defaults, gridSetBroker);
+
+        long[] tileIndex = { 0, 0, 0 };
+        ConveyorTile tile = new ConveyorTile(storageBroker, layerInfoTileLayer.getName(),
+                "EPSG:4326", tileIndex, mimeType, null, new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+
+        ConveyorTile returned = layerInfoTileLayer.getTile(tile);
+        assertNotNull(returned);
+        assertNotNull(returned.getBlob());
+        assertEquals(200, returned.getStatus());
+
+        Map<String, String> params = argument.getValue();
+        assertEquals("GetMap", params.get("REQUEST"));
+        assertEquals("test:MockLayerInfoName", params.get("LAYERS"));
+        assertEquals("EPSG:4326", params.get("SRS"));
+        assertFalse(params.containsKey(GeoServerTileLayer.GWC_SEED_INTERCEPT_TOKEN));
+
+        // the dispatcher is not involved at all
+        verify(mockGWC, never()).dispatchOwsRequest((Map) anyObject(), (Cookie[]) anyObject());
+        verify(mockGWC, times(1)).getResponseEncoder(eq(mimeType), same(fakeMap));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetTileParallelEncoding() throws Exception {
+
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        RenderedImageMap fakeMap = new RenderedImageMap(new WMSMapContent(), image, "image/png");
+        when(mockGWC.isInProcessGetMap()).thenReturn(true);
+        when(mockGWC.getMap((Map<String, String>) anyObject())).thenReturn(fakeMap);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        when(mockGWC.getMetaTileEncoder()).thenReturn(executor);
+
+        RenderedImageMapResponse fakeResponseEncoder = mock(RenderedImageMapResponse.class);
+        MimeType mimeType = MimeType.createFromFormat("image/png");
+        when(mockGWC.getResponseEncoder(eq(mimeType), (RenderedImageMap) anyObject())).thenReturn(
+                fakeResponseEncoder);
+
+        StorageBroker storageBroker = mock(StorageBroker.class);
+        when(storageBroker.get((TileObject) anyObject())).thenReturn(false);
+
+        layerInfoTileLayer = new GeoServerTileLayer(layerInfo, defaults, gridSetBroker);
+
+        long[] tileIndex = { 0, 0, 0 };
+        ConveyorTile tile = new ConveyorTile(storageBroker, layerInfoTileLayer.getName(),
+                "EPSG:4326", tileIndex, mimeType, null, new MockHttpServletRequest(),
+                new MockHttpServletResponse());
+        try {
+            ConveyorTile returned = layerInfoTileLayer.getTile(tile);
+            assertNotNull(returned.getBlob());
+            assertEquals(200, returned.getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(mockGWC).getMetaTileEncoder();
+        // the requested tile was stored along with the other tiles of the meta tile in the
+        // layer bounds
+        verify(storageBroker, atLeastOnce()).put((TileObject) anyObject());
+        verify(fakeResponseEncoder, atLeastOnce()).formatImageOutputStream(
+                (RenderedImage) anyObject(), (OutputStream) anyObject(),
+                (WMSMapContent) anyObject());
+    }
+
     @Test
     public void testGetMimeTypes() throws Exception {
 
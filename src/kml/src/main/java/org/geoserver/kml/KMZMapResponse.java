@@ -4,16 +4,30 @@
  */
 package org.geoserver.kml;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import javax.xml.transform.TransformerException;
 
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.DefaultWebMapService;
+import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.AbstractMapResponse;
@@ -21,7 +35,9 @@ import org.geoserver.wms.map.PNGMapResponse;
 import org.geoserver.wms.map.RenderedImageMap;
 import org.geoserver.wms.map.RenderedImageMapOutputFormat;
 import org.geoserver.wms.map.XMLTransformerMap;
+import org.geotools.filter.function.EnvFunction;
 import org.geotools.map.Layer;
+import org.geotools.util.logging.Logging;
 import org.geotools.xml.transform.TransformerBase;
 import org.springframework.util.Assert;
 
@@ -40,9 +56,20 @@ import org.springframework.util.Assert;
  * 
  */
 public class KMZMapResponse extends AbstractMapResponse {
-    
+
+    private static final Logger LOGGER = Logging.getLogger(KMZMapResponse.class);
+
+    /**
+     * System property, servlet context parameter or environment variable setting how many layer
+     * images of a KMZ are rendered and encoded at the same time, defaults to the number of
+     * available processors. Set it to {@code 1} to render them one after the other.
+     */
+    public static final String KMZ_RENDERING_THREADS = "KMZ_RENDERING_THREADS";
+
     private WMS wms;
 
+    private int renderingThreads = -1;
+
     public static class KMZMap extends XMLTransformerMap {
         public KMZMap(final WMSMapContent mapContent, TransformerBase transformer, String mimeType) {
             super(mapContent, transformer, mapContent, mimeType);
@@ -59,6 +86,31 @@ public class KMZMapResponse extends AbstractMapResponse {
         return DISPOSITION_ATTACH;
     }
 
+    /**
+     * @return the max number of layer images rendered and encoded at the same time
+     * @see #KMZ_RENDERING_THREADS
+     */
+    public synchronized int getRenderingThreads() {
+        if (renderingThreads < 0) {
+            int threads = Runtime.getRuntime().availableProcessors();
+            String value = GeoServerExtensions.getProperty(KMZ_RENDERING_THREADS);
+            if (value != null) {
+                try {
+                    threads = Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    LOGGER.warning("Invalid value for " + KMZ_RENDERING_THREADS + ": " + value
+                            + ", using " + threads + " threads");
+                }
+            }
+            renderingThreads = Math.max(1, threads);
+        }
+        return renderingThreads;
+    }
+
+    public synchronized void setRenderingThreads(int renderingThreads) {
+        this.renderingThreads = Math.max(1, renderingThreads);
+    }
+
     /**
      * Makes the map and sends it to the zipped output stream The produceMap() method does not
      * create the map in this case. We produce the map here so we can stream directly to the
@@ -97,46 +149,11 @@ public class KMZMapResponse extends AbstractMapResponse {
                 throw (IOException) new IOException().initCause(e);
             }
 
-            final RenderedImageMapOutputFormat pngProducer = new RenderedImageMapOutputFormat(
-                    "image/png", wms);
-            final PNGMapResponse pngEncoder = new PNGMapResponse(wms);
-
             ZipEntry images = new ZipEntry("images/");
             zip.putNextEntry(images);
-            
-            // write the images
-            List<Layer> layers = mapContent.layers();
-            for (int i = 0; i < layers.size(); i++) {
-                Layer mapLayer = layers.get(i);
-
-                // create a context for this single layer
-                WMSMapContent subContext = new WMSMapContent();
-                subContext.addLayer(mapLayer);
-                subContext.setRequest(mapContent.getRequest());
-                subContext.setMapHeight(mapContent.getMapHeight());
-                subContext.setMapWidth(mapContent.getMapWidth());
-                subContext.getViewport().setBounds(mapContent.getRenderingArea());
-                subContext.setBgColor(mapContent.getBgColor());
-                subContext.setBuffer(mapContent.getBuffer());
-                subContext.setContactInformation(mapContent.getContactInformation());
-                subContext.setKeywords(mapContent.getKeywords());
-                subContext.setAbstract(mapContent.getAbstract());
-                subContext.setTransparent(true);
-
-                // render the map
-                RenderedImageMap imageMap;
-                try {
-                    imageMap = pngProducer.produceMap(subContext);
-                } finally {
-                    subContext.dispose();
-                }
 
-                // write it to the zip stream
-                entry = new ZipEntry("images/layer_" + i + ".png");
-                zip.putNextEntry(entry);
-                pngEncoder.write(imageMap, zip, operation);
-                zip.closeEntry();
-            }
+            // write the images
+            writeImages(mapContent, zip, operation);
             zip.closeEntry();// close the images/ folder
 
             zip.finish();
@@ -147,4 +164,140 @@ public class KMZMapResponse extends AbstractMapResponse {
         
     }
 
+    /**
+     * Renders and encodes the layer images, several at a time when possible, writing each to the
+     * zip as soon as it's ready. The number of images in progress is bounded by
+     * {@link #getRenderingThreads()} and by the max request memory, so that the drawing surfaces
+     * allocated at the same time don't use more memory than a single request may.
+     */
+    void writeImages(final WMSMapContent mapContent, ZipOutputStream zip,
+            final Operation operation) throws IOException {
+        final List<Layer> layers = mapContent.layers();
+        int parallelism = Math.min(getRenderingThreads(), layers.size());
+        final long maxMemory = wms.getMaxRequestMemory() * 1024L;
+        final long imageMemory = 4L * mapContent.getMapWidth() * mapContent.getMapHeight();
+        if (maxMemory > 0 && imageMemory > 0) {
+            parallelism = (int) Math.max(1, Math.min(parallelism, maxMemory / imageMemory));
+        }
+        final ExecutorService executor = parallelism > 1 ? DefaultWebMapService
+                .getRenderingPool() : null;
+
+        if (executor == null) {
+            for (int i = 0; i < layers.size(); i++) {
+                writeImage(zip, encodeImage(mapContent, i, operation));
+            }
+            return;
+        }
+
+        // the env() values of the request are thread bound, the renderers need them too
+        final Map<String, Object> env = EnvFunction.getLocalValues();
+        CompletionService<EncodedImage> completion = new ExecutorCompletionService<EncodedImage>(
+                executor);
+        List<Future<EncodedImage>> futures = new ArrayList<Future<EncodedImage>>();
+        try {
+            int submitted = 0;
+            for (int written = 0; written < layers.size(); written++) {
+                while (submitted < layers.size() && submitted - written < parallelism) {
+                    final int index = submitted++;
+                    futures.add(completion.submit(new Callable<EncodedImage>() {
+
+                        public EncodedImage call() throws Exception {
+                            EnvFunction.setLocalValues(env);
+                            try {
+                                return encodeImage(mapContent, index, operation);
+                            } finally {
+                                EnvFunction.clearLocalValues();
+                                // the images scheduled for cleanup on this pooled thread would
+                                // not be cleaned up at the end of the request
+                                new RasterCleaner().finished(null);
+                            }
+                        }
+                    }));
+                }
+                writeImage(zip, completion.take().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new IOException("Interrupted while rendering the KMZ images")
+                    .initCause(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (IOException) new IOException().initCause(cause);
+        } finally {
+            // stops the images still in progress if something went wrong
+            for (Future<EncodedImage> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Renders a single layer and encodes it as PNG
+     */
+    EncodedImage encodeImage(WMSMapContent mapContent, int index, Operation operation)
+            throws IOException {
+        // create a context for this single layer
+        WMSMapContent subContext = new WMSMapContent();
+        subContext.addLayer(mapContent.layers().get(index));
+        subContext.setRequest(mapContent.getRequest());
+        subContext.setMapHeight(mapContent.getMapHeight());
+        subContext.setMapWidth(mapContent.getMapWidth());
+        subContext.getViewport().setBounds(mapContent.getRenderingArea());
+        subContext.setBgColor(mapContent.getBgColor());
+        subContext.setBuffer(mapContent.getBuffer());
+        subContext.setContactInformation(mapContent.getContactInformation());
+        subContext.setKeywords(mapContent.getKeywords());
+        subContext.setAbstract(mapContent.getAbstract());
+        subContext.setTransparent(true);
+
+        // render the map, the producer and encoder are not meant to be shared among threads
+        RenderedImageMap imageMap;
+        try {
+            imageMap = new RenderedImageMapOutputFormat("image/png", wms).produceMap(subContext);
+        } finally {
+            subContext.dispose();
+        }
+
+        // encode it, this also disposes the map
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new PNGMapResponse(wms).write(imageMap, bytes, operation);
+        return new EncodedImage(index, bytes.toByteArray());
+    }
+
+    /**
+     * Writes an encoded image to the zip, uncompressed as PNG is compressed already
+     */
+    private void writeImage(ZipOutputStream zip, EncodedImage image) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(image.png);
+
+        ZipEntry entry = new ZipEntry("images/layer_" + image.index + ".png");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(image.png.length);
+        entry.setCompressedSize(image.png.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(image.png);
+        zip.closeEntry();
+    }
+
+    static class EncodedImage {
+
+        final int index;
+
+        final byte[] png;
+
+        EncodedImage(int index, byte[] png) {
+            this.index = index;
+            this.png = png;
+        }
+    }
+
 }
@@ -4,13 +4,19 @@
  */
 package org.geoserver.kml;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import javax.imageio.ImageIO;
+
 import javax.xml.namespace.QName;
 
 import org.geoserver.data.test.MockData;
@@ -48,6 +54,16 @@ public class KMZMapProducerTest extends WMSTestSupport {
 
     @Test
     public void test() throws Exception {
+        checkKMZ();
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        mapEncoder.setRenderingThreads(1);
+        checkKMZ();
+    }
+
+    private void checkKMZ() throws Exception {
         // create the kmz
         File temp = File.createTempFile("test", "kmz");
         temp.delete();
@@ -69,8 +85,17 @@ public class KMZMapProducerTest extends WMSTestSupport {
         ZipFile zipFile = new ZipFile(zip);
 
         assertNotNull(zipFile.getEntry("wms.kml"));
-        assertNotNull(zipFile.getEntry("images/layer_0.png"));
-        assertNotNull(zipFile.getEntry("images/layer_1.png"));
+        for (int i = 0; i < 2; i++) {
+            ZipEntry entry = zipFile.getEntry("images/layer_" + i + ".png");
+            assertNotNull(entry);
+            // png is compressed already
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            InputStream in = zipFile.getInputStream(entry);
+            BufferedImage image = ImageIO.read(in);
+            in.close();
+            assertEquals(256, image.getWidth());
+            assertEquals(256, image.getHeight());
+        }
 
         zipFile.close();
     }
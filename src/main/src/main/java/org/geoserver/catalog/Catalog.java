@@ -1771,4 +1771,19 @@ public interface Catalog extends CatalogInfo {
      */
     public void removeListeners(Class listenerClass);
 
+    /**
+     * Applies a batch of add, save and remove operations.
+     * <p>
+     * The operations are applied in order, each one with the same validation as the single
+     * object methods, a failing operation is recorded as such in the batch and does not stop the
+     * following ones. Listeners are notified of the add, post modify and remove events once all
+     * the operations have been applied, so that persistence and the other side effects of the
+     * changes are carried out in one go.
+     * </p>
+     *
+     * @param batch the operations to apply, the outcome of each operation is available from
+     *        {@link CatalogBatch#getOperations()} once this method returns
+     */
+    public void execute(CatalogBatch batch);
+
 }
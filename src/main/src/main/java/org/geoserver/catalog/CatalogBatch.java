@@ -0,0 +1,250 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A sequence of add, save and remove operations applied to the catalog by a single
+ * {@link Catalog#execute(CatalogBatch)} call.
+ * <p>
+ * Operations are pulled from the batch one at a time while the batch is being executed, so an
+ * operation can be built out of the catalog state left by the previous ones, for instance
+ * resolving references to objects added earlier in the same batch. A failing operation does not
+ * prevent the following ones from being applied, the outcome of each operation is recorded in the
+ * operation itself and can be inspected through {@link #getOperations()} once the batch has been
+ * executed.
+ * </p>
+ * <p>
+ * Catalog listeners are notified of the add, post modify and remove events fired by the
+ * operations once the whole batch has been applied, in the order the events were fired. By then
+ * the operations have been applied, errors raised by listeners are recorded in the
+ * {@link Operation#getListenerErrors() listener errors} of the operation that fired the event,
+ * without marking it as failed.
+ * </p>
+ */
+public class CatalogBatch {
+
+    /**
+     * The kind of batch operations
+     */
+    public static enum Type {
+        ADD, SAVE, REMOVE
+    }
+
+    /**
+     * A single operation of the batch
+     */
+    public static class Operation {
+
+        Type type;
+
+        CatalogInfo object;
+
+        RuntimeException error;
+
+        List<RuntimeException> listenerErrors = new ArrayList<RuntimeException>();
+
+        public Operation(Type type, CatalogInfo object) {
+            this.type = type;
+            this.object = object;
+        }
+
+        /**
+         * Builds an operation that failed before it could be applied, for instance because the
+         * object could not be parsed or looked up
+         */
+        public Operation(Type type, RuntimeException error) {
+            this.type = type;
+            this.error = error;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public CatalogInfo getObject() {
+            return object;
+        }
+
+        /**
+         * The error that made the operation fail, or {@code null} if the operation succeeded
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public void setError(RuntimeException error) {
+            this.error = error;
+        }
+
+        public boolean isFailed() {
+            return error != null;
+        }
+
+        /**
+         * The errors raised by the catalog listeners notified of the events fired by the
+         * operation. The operation has been applied nonetheless.
+         */
+        public List<RuntimeException> getListenerErrors() {
+            return Collections.unmodifiableList(listenerErrors);
+        }
+
+        public void addListenerError(RuntimeException error) {
+            listenerErrors.add(error);
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + object + (error != null ? " failed: " + error.getMessage() : "");
+        }
+    }
+
+    Iterator<Operation> source;
+
+    List<Operation> operations = new ArrayList<Operation>();
+
+    Catalog target;
+
+    /**
+     * Builds a batch out of a fixed list of operations
+     */
+    public CatalogBatch(List<Operation> operations) {
+        this(operations.iterator());
+    }
+
+    /**
+     * Builds a batch pulling the operations from the specified iterator, which is consumed while
+     * the batch is executed
+     */
+    public CatalogBatch(Iterator<Operation> source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the next operation to apply, or {@code null} if the batch is exhausted
+     */
+    public Operation next() {
+        if (!source.hasNext()) {
+            return null;
+        }
+        Operation op = source.next();
+        operations.add(op);
+        return op;
+    }
+
+    /**
+     * The operations pulled from the batch so far, in order
+     */
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * The catalog the operations are applied to, {@code null} if the operations are applied
+     * directly to the catalog executing the batch
+     */
+    public Catalog getTarget() {
+        return target;
+    }
+
+    /**
+     * Has the operations applied through the specified catalog, unless a target was already set.
+     * Used by catalog decorators so that the operations go through the outermost decorator.
+     */
+    public CatalogBatch through(Catalog catalog) {
+        if (target == null) {
+            target = catalog;
+        }
+        return this;
+    }
+
+    /**
+     * Applies the operation to the specified catalog, calling the add, save or remove method
+     * matching the type of the operation object
+     */
+    public static void apply(Operation op, Catalog catalog) {
+        CatalogInfo o = op.getObject();
+        Type type = op.getType();
+        if (o instanceof WorkspaceInfo) {
+            WorkspaceInfo ws = (WorkspaceInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(ws);
+            } else if (type == Type.SAVE) {
+                catalog.save(ws);
+            } else {
+                catalog.remove(ws);
+            }
+        } else if (o instanceof NamespaceInfo) {
+            NamespaceInfo ns = (NamespaceInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(ns);
+            } else if (type == Type.SAVE) {
+                catalog.save(ns);
+            } else {
+                catalog.remove(ns);
+            }
+        } else if (o instanceof StoreInfo) {
+            StoreInfo store = (StoreInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(store);
+            } else if (type == Type.SAVE) {
+                catalog.save(store);
+            } else {
+                catalog.remove(store);
+            }
+        } else if (o instanceof ResourceInfo) {
+            ResourceInfo resource = (ResourceInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(resource);
+            } else if (type == Type.SAVE) {
+                catalog.save(resource);
+            } else {
+                catalog.remove(resource);
+            }
+        } else if (o instanceof LayerInfo) {
+            LayerInfo layer = (LayerInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(layer);
+            } else if (type == Type.SAVE) {
+                catalog.save(layer);
+            } else {
+                catalog.remove(layer);
+            }
+        } else if (o instanceof LayerGroupInfo) {
+            LayerGroupInfo group = (LayerGroupInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(group);
+            } else if (type == Type.SAVE) {
+                catalog.save(group);
+            } else {
+                catalog.remove(group);
+            }
+        } else if (o instanceof StyleInfo) {
+            StyleInfo style = (StyleInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(style);
+            } else if (type == Type.SAVE) {
+                catalog.save(style);
+            } else {
+                catalog.remove(style);
+            }
+        } else if (o instanceof MapInfo) {
+            MapInfo map = (MapInfo) o;
+            if (type == Type.ADD) {
+                catalog.add(map);
+            } else if (type == Type.SAVE) {
+                catalog.save(map);
+            } else {
+                catalog.remove(map);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported catalog object: " + o);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import java.lang.reflect.Proxy;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -39,6 +40,7 @@ import org.eclipse.xsd.XSDParticle;
 import org.eclipse.xsd.XSDSchema;
 import org.eclipse.xsd.XSDTypeDefinition;
 import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogInvalidationListener;
 import org.geoserver.catalog.event.CatalogListener;
 import org.geoserver.catalog.event.CatalogModifyEvent;
 import org.geoserver.catalog.event.CatalogPostModifyEvent;
@@ -1832,7 +1834,8 @@ public class ResourcePool {
     /**
      * Listens to catalog events clearing cache entires when resources are modified.
      */
-    public class CacheClearingListener extends CatalogVisitorAdapter implements CatalogListener {
+    public class CacheClearingListener extends CatalogVisitorAdapter implements CatalogListener,
+            CatalogInvalidationListener {
 
         public void handleAddEvent(CatalogAddEvent event) {
         }
@@ -1850,6 +1853,12 @@ public class ResourcePool {
 
         public void reloaded() {
         }
+
+        public void invalidated(Collection<CatalogInfo> objects) {
+            for (CatalogInfo info : objects) {
+                info.accept(this);
+            }
+        }
        
         @Override
         public void visit(DataStoreInfo dataStore) {
@@ -0,0 +1,31 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.event;
+
+import java.util.Collection;
+
+import org.geoserver.catalog.CatalogInfo;
+
+/**
+ * Extension point notified when catalog objects were changed outside of this GeoServer instance,
+ * for example by another instance sharing the same catalog storage.
+ * <p>
+ * No {@link CatalogListener} events are issued for such changes, implementations are expected to
+ * drop whatever state they derived from the invalidated objects so that it's rebuilt from the
+ * catalog on the next use. Implementations are looked up in the application context.
+ * </p>
+ */
+public interface CatalogInvalidationListener {
+
+    /**
+     * Called after the given objects were added, modified or removed elsewhere.
+     *
+     * @param objects the changed objects, in their old state when it was known locally,
+     *        otherwise in their current state, or as bare references holding only the id when
+     *        they were removed
+     */
+    void invalidated(Collection<CatalogInfo> objects);
+
+}
@@ -8,6 +8,7 @@ import java.util.Collection;
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogBatch;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.CatalogFactory;
 import org.geoserver.catalog.CatalogInfo;
@@ -864,4 +865,9 @@ public abstract class AbstractFilteredCatalog extends AbstractDecorator<Catalog>
     public void removeListeners(Class listenerClass) {
         delegate.removeListeners(listenerClass);
     } 
+
+    public void execute(CatalogBatch batch) {
+        // have the operations go through this catalog
+        delegate.execute(batch.through(this));
+    }
 }
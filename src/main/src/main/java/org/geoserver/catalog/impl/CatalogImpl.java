@@ -16,6 +16,8 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogBatch;
+import org.geoserver.catalog.CatalogBatch.Operation;
 import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.CatalogFactory;
@@ -87,6 +89,11 @@ public class CatalogImpl implements Catalog {
      */
     protected List listeners = new ArrayList();
 
+    /**
+     * events held back by the batch being executed by the current thread
+     */
+    static final ThreadLocal<BatchEvents> BATCH = new ThreadLocal<BatchEvents>();
+
     /** 
      * resources
      */
@@ -1419,6 +1426,24 @@ public class CatalogImpl implements Catalog {
     }
 
     protected void event(CatalogEvent event) {
+        BatchEvents batch = BATCH.get();
+        if (batch != null && batch.catalog == this) {
+            if (event instanceof CatalogModifyEvent) {
+                // listeners may rely on the state before the change, deliver what's pending so
+                // that they see the events in order, and then this one right away
+                batch.flush();
+            } else {
+                batch.queue(event);
+                return;
+            }
+        }
+        dispatch(event);
+    }
+
+    /**
+     * Delivers the event to the listeners
+     */
+    protected void dispatch(CatalogEvent event) {
         CatalogException toThrow = null;
         
         for (Iterator l = listeners.iterator(); l.hasNext();) {
@@ -1448,6 +1473,77 @@ public class CatalogImpl implements Catalog {
         }
     }
     
+    public void execute(CatalogBatch batch) {
+        Catalog target = batch.getTarget() != null ? batch.getTarget() : this;
+        BatchEvents previous = BATCH.get();
+        BatchEvents events = new BatchEvents(this);
+        BATCH.set(events);
+        try {
+            Operation op;
+            while ((op = batch.next()) != null) {
+                if (op.isFailed()) {
+                    continue;
+                }
+                events.operation = op;
+                try {
+                    CatalogBatch.apply(op, target);
+                } catch (RuntimeException e) {
+                    op.setError(e);
+                }
+            }
+        } finally {
+            try {
+                events.flush();
+            } finally {
+                if (previous != null) {
+                    BATCH.set(previous);
+                } else {
+                    BATCH.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * The events held back while a batch is executed, along with the operations that fired them
+     */
+    static class BatchEvents {
+        CatalogImpl catalog;
+
+        Operation operation;
+
+        List<CatalogEvent> events = new ArrayList<CatalogEvent>();
+
+        List<Operation> operations = new ArrayList<Operation>();
+
+        BatchEvents(CatalogImpl catalog) {
+            this.catalog = catalog;
+        }
+
+        void queue(CatalogEvent event) {
+            events.add(event);
+            operations.add(operation);
+        }
+
+        void flush() {
+            for (int i = 0; i < events.size(); i++) {
+                try {
+                    catalog.dispatch(events.get(i));
+                } catch (RuntimeException e) {
+                    // the operation has been applied already, the failure is the listener's
+                    Operation op = operations.get(i);
+                    if (op != null) {
+                        op.addListenerError(e);
+                    } else {
+                        LOGGER.log(Level.WARNING, "Catalog listener failed during batch", e);
+                    }
+                }
+            }
+            events.clear();
+            operations.clear();
+        }
+    }
+
     public static Object unwrap(Object obj) {
         return obj;
     }
@@ -86,24 +86,36 @@ public class ResolvingProxy extends ProxyBase {
                      return (T) ns;
                 }
                 if ( object instanceof StoreInfo ) {
+                    Class<? extends StoreInfo> clazz = StoreInfo.class;
                     if ( object instanceof DataStoreInfo ) {
-                        return (T) catalog.getDataStore( ref );
+                        clazz = DataStoreInfo.class;
                     }
-                    if ( object instanceof CoverageStoreInfo ) {
-                        return (T) catalog.getCoverageStore( ref );
+                    else if ( object instanceof CoverageStoreInfo ) {
+                        clazz = CoverageStoreInfo.class;
                     }
                     
-                    return (T) catalog.getStore( ref, StoreInfo.class );
+                    Object s = catalog.getStore( ref, clazz );
+                    if ( s == null && ref != null ) {
+                        //referenced by name, possibly along with the workspace
+                        s = catalog.getStoreByName( pre, ref, clazz );
+                    }
+                    return (T) s;
                 }
                 if ( object instanceof ResourceInfo ) {
+                    Class<? extends ResourceInfo> clazz = ResourceInfo.class;
                     if ( object instanceof FeatureTypeInfo ) {
-                        return (T) catalog.getFeatureType( ref );
+                        clazz = FeatureTypeInfo.class;
                     }
-                    if ( object instanceof CoverageInfo ) {
-                        return (T) catalog.getCoverage( ref );
+                    else if ( object instanceof CoverageInfo ) {
+                        clazz = CoverageInfo.class;
                     }
                     
-                    return (T) catalog.getResource( ref, ResourceInfo.class );
+                    Object r = catalog.getResource( ref, clazz );
+                    if ( r == null && ref != null ) {
+                        //referenced by name, possibly prefixed
+                        r = catalog.getResourceByName( ref, clazz );
+                    }
+                    return (T) r;
                 }
                 if ( object instanceof LayerInfo ) {
                     Object l = catalog.getLayer( ref );
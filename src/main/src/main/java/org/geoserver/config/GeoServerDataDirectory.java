@@ -226,7 +226,7 @@ public class GeoServerDataDirectory {
      * </p>
      */
     public void copyToSecurityDir( File f ) throws IOException {
-        FileUtils.copyFileToDirectory( f, securityRoot( true ) );
+        copy( f, securityRoot( true ) );
     }
 
     /**
@@ -323,7 +323,7 @@ public class GeoServerDataDirectory {
      * </p>
      */
     public void copyToWorkspaceDir( WorkspaceInfo ws, File f ) throws IOException {
-        FileUtils.copyFileToDirectory( f, workspaceDir( true, ws ) );
+        copy( f, workspaceDir( true, ws ) );
     }
 
     /**
@@ -416,7 +416,7 @@ public class GeoServerDataDirectory {
      * </p>
      */
     public void copyToStoreDir( StoreInfo s, File f ) throws IOException {
-        FileUtils.copyFileToDirectory( f, storeDir( true, s ) );
+        copy( f, storeDir( true, s ) );
     }
 
     /**
@@ -538,7 +538,7 @@ public class GeoServerDataDirectory {
      * </p>
      */
     public void copyToResourceDir( ResourceInfo r, File f ) throws IOException {
-        FileUtils.copyFileToDirectory( f, resourceDir( true, r ) );
+        copy( f, resourceDir( true, r ) );
     }
 
     /**
@@ -681,11 +681,11 @@ public class GeoServerDataDirectory {
      * @deprecated use {@link #copyToStyleDir(File, StyleInfo)}
      */
     public void copyToStyleDir( File f ) throws IOException {
-        FileUtils.copyFileToDirectory( f, styleDir(true, (WorkspaceInfo)null) );
+        copy( f, styleDir(true, (WorkspaceInfo)null) );
     }
 
     public void copyToStyleDir(File f, StyleInfo s) throws IOException {
-        FileUtils.copyFileToDirectory( f, styleDir( true, s ) );
+        copy( f, styleDir( true, s ) );
     }
 
     /**
@@ -732,14 +732,21 @@ public class GeoServerDataDirectory {
     // Helper methods
     //
     void copy( InputStream data, File targetDir, String filename ) throws IOException {
+        File target = new File( targetDir, filename );
         OutputStream out = null;
         try {
-            out = new FileOutputStream(new File( targetDir, filename ));
+            out = new FileOutputStream(target);
             IOUtils.copy( data, out );
             out.flush();
         } finally {
             IOUtils.closeQuietly(out);
         }
+        resourceLoader.changed( target );
+    }
+
+    void copy( File f, File targetDir ) throws IOException {
+        FileUtils.copyFileToDirectory( f, targetDir );
+        resourceLoader.changed( new File( targetDir, f.getName() ) );
     }
     
     File file( File f ) {
@@ -70,6 +70,12 @@ public interface JAIInfo extends Cloneable, Serializable{
      */
     boolean isAllowNativeMosaic();
     void setAllowNativeMosaic(boolean allowNativeMosaic);
+
+    /**
+     * Flag controlling the use of the concurrent GeoServer tile cache instead of the stock JAI one.
+     */
+    boolean isConcurrentTileCache();
+    void setConcurrentTileCache(boolean concurrentTileCache);
     
     /**
      * Flag controlling the image io cache.
@@ -88,7 +94,7 @@ public interface JAIInfo extends Cloneable, Serializable{
     void setJAI(JAI jai);
 
     /**
-     * The jai tile cache.
+     * The jai tile cache. Setting it replaces the tile cache of the jai instance.
      */
     TileCache getTileCache();
     void setTileCache(TileCache tileCache);
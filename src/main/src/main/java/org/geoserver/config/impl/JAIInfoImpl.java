@@ -11,8 +11,6 @@ import javax.media.jai.TileCache;
 
 import org.geoserver.config.JAIInfo;
 
-import com.sun.media.jai.util.SunTileCache;
-
 public class JAIInfoImpl implements Serializable, JAIInfo {
 
     public static final String KEY = "jai.info";
@@ -48,6 +46,9 @@ public class JAIInfoImpl implements Serializable, JAIInfo {
     public static final boolean DEFAULT_MosaicNative = false;
     boolean allowNativeMosaic = DEFAULT_MosaicNative;
 
+    public static final boolean DEFAULT_ConcurrentTileCache = false;
+    boolean concurrentTileCache = DEFAULT_ConcurrentTileCache;
+
     /**
      * @uml.property name="allowInterpolation"
      */
@@ -172,10 +173,16 @@ public class JAIInfoImpl implements Serializable, JAIInfo {
     }
     
     public void setTileCache( TileCache tileCache ) {
-        // do nothing. REVISIT: we're using the singleton JAI instance and guess there's no way to
-        // get a non singleton one, so does this method make sense at all? In any case, this class
-        // is meant to be serializable, hence the change in getTileCache() to return the singleton
-        // directly and avoid NPE's
+        // we're using the singleton JAI instance, so the cache is set there, this class is meant to
+        // be serializable, hence getTileCache() returning the singleton's one directly
+        JAI jai = getJAI();
+        if (tileCache != null && jai.getTileCache() != tileCache) {
+            TileCache previous = jai.getTileCache();
+            jai.setTileCache(tileCache);
+            if (previous != null) {
+                previous.flush();
+            }
+        }
     }
 
     public boolean isAllowNativeMosaic() {
@@ -185,6 +192,14 @@ public class JAIInfoImpl implements Serializable, JAIInfo {
     public void setAllowNativeMosaic(boolean allowNativeMosaic) {
         this.allowNativeMosaic = allowNativeMosaic;
     }
+
+    public boolean isConcurrentTileCache() {
+        return concurrentTileCache;
+    }
+
+    public void setConcurrentTileCache(boolean concurrentTileCache) {
+        this.concurrentTileCache = concurrentTileCache;
+    }
     
     @Override
     public int hashCode() {
@@ -192,6 +207,7 @@ public class JAIInfoImpl implements Serializable, JAIInfo {
         int result = 1;
         result = prime * result + (allowInterpolation ? 1231 : 1237);
         result = prime * result + (allowNativeMosaic ? 1231 : 1237);
+        result = prime * result + (concurrentTileCache ? 1231 : 1237);
         result = prime * result + (imageIOCache ? 1231 : 1237);
         result = prime * result + (jpegAcceleration ? 1231 : 1237);
         long temp;
@@ -219,6 +235,8 @@ public class JAIInfoImpl implements Serializable, JAIInfo {
             return false;
         if (allowNativeMosaic != other.allowNativeMosaic)
             return false;
+        if (concurrentTileCache != other.concurrentTileCache)
+            return false;
         if (imageIOCache != other.imageIOCache)
             return false;
         if (jpegAcceleration != other.jpegAcceleration)
@@ -0,0 +1,183 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.coverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.media.jai.Interpolation;
+
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.OverviewPolicy;
+import org.geotools.gce.imagemosaic.ImageMosaicFormat;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterDescriptor;
+import org.opengis.parameter.ParameterValue;
+
+/**
+ * The way a coverage is going to be read to produce a target grid, as computed by the
+ * {@link CoverageReadPlanner}: the region of the coverage to read, the overview level and the
+ * subsampling factors the reader is expected to use.
+ */
+public class CoverageReadPlan {
+
+    final GridGeometry2D targetGridGeometry;
+
+    final GridGeometry2D readGridGeometry;
+
+    final Interpolation interpolation;
+
+    final OverviewPolicy overviewPolicy;
+
+    final int overviewLevel;
+
+    final double[] requestedResolution;
+
+    final double[] overviewResolution;
+
+    final int[] subsampling;
+
+    CoverageReadPlan(GridGeometry2D targetGridGeometry, GridGeometry2D readGridGeometry,
+            Interpolation interpolation, OverviewPolicy overviewPolicy, int overviewLevel,
+            double[] requestedResolution, double[] overviewResolution, int[] subsampling) {
+        this.targetGridGeometry = targetGridGeometry;
+        this.readGridGeometry = readGridGeometry;
+        this.interpolation = interpolation;
+        this.overviewPolicy = overviewPolicy;
+        this.overviewLevel = overviewLevel;
+        this.requestedResolution = requestedResolution;
+        this.overviewResolution = overviewResolution;
+        this.subsampling = subsampling;
+    }
+
+    /**
+     * The grid the read coverage is going to be rendered or resampled into
+     */
+    public GridGeometry2D getTargetGridGeometry() {
+        return targetGridGeometry;
+    }
+
+    /**
+     * The grid geometry handed to the reader, in the native CRS of the coverage whenever the
+     * target envelope could be transformed into it, covering only the part of the coverage
+     * intersecting the target grid at the requested resolution
+     */
+    public GridGeometry2D getReadGridGeometry() {
+        return readGridGeometry;
+    }
+
+    public Interpolation getInterpolation() {
+        return interpolation;
+    }
+
+    public OverviewPolicy getOverviewPolicy() {
+        return overviewPolicy;
+    }
+
+    /**
+     * The overview level expected to be read, 0 being the native resolution, or -1 if it could
+     * not be determined
+     */
+    public int getOverviewLevel() {
+        return overviewLevel;
+    }
+
+    /**
+     * The resolution of the target grid in the native CRS, or null if unknown
+     */
+    public double[] getRequestedResolution() {
+        return requestedResolution;
+    }
+
+    /**
+     * The resolution of the overview expected to be read, or null if unknown
+     */
+    public double[] getOverviewResolution() {
+        return overviewResolution;
+    }
+
+    /**
+     * The subsampling factors along the x and y axes the reader can apply to the overview to get
+     * close to the requested resolution, or null if unknown
+     */
+    public int[] getSubsampling() {
+        return subsampling;
+    }
+
+    /**
+     * Estimates the number of pixels read out of the overview, or -1 if unknown
+     */
+    public long getEstimatedPixels() {
+        if (overviewResolution == null) {
+            return -1;
+        }
+        ReferencedEnvelope envelope = new ReferencedEnvelope(readGridGeometry.getEnvelope2D());
+        long width = Math.round(envelope.getWidth() / overviewResolution[0] / subsampling[0]);
+        long height = Math.round(envelope.getHeight() / overviewResolution[1] / subsampling[1]);
+        return Math.max(1, width) * Math.max(1, height);
+    }
+
+    /**
+     * Returns a copy of the read parameters with the read grid geometry, the interpolation and
+     * the overview policy of this plan, replacing the ones found among the parameters
+     *
+     * @param parameters the read parameters, as configured in the coverage, may be null
+     */
+    public GeneralParameterValue[] getReadParameters(GeneralParameterValue[] parameters) {
+        List<GeneralParameterValue> result = new ArrayList<GeneralParameterValue>();
+        if (parameters != null) {
+            for (GeneralParameterValue parameter : parameters) {
+                String code = parameter.getDescriptor().getName().getCode();
+                if (!matches(code, AbstractGridFormat.READ_GRIDGEOMETRY2D)
+                        && !(interpolation != null && matches(code,
+                                ImageMosaicFormat.INTERPOLATION))
+                        && !matches(code, AbstractGridFormat.OVERVIEW_POLICY)) {
+                    result.add(parameter);
+                }
+            }
+        }
+
+        result.add(value(AbstractGridFormat.READ_GRIDGEOMETRY2D, readGridGeometry));
+        if (interpolation != null) {
+            result.add(value(ImageMosaicFormat.INTERPOLATION, interpolation));
+        }
+        result.add(value(AbstractGridFormat.OVERVIEW_POLICY, overviewPolicy));
+        return result.toArray(new GeneralParameterValue[result.size()]);
+    }
+
+    static boolean matches(String code, ParameterDescriptor<?> descriptor) {
+        return code.equalsIgnoreCase(descriptor.getName().getCode());
+    }
+
+    static <T> ParameterValue<T> value(ParameterDescriptor<T> descriptor, T value) {
+        ParameterValue<T> pv = descriptor.createValue();
+        pv.setValue(value);
+        return pv;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CoverageReadPlan[");
+        sb.append("target=").append(targetGridGeometry.getGridRange2D());
+        sb.append(" ").append(new ReferencedEnvelope(targetGridGeometry.getEnvelope2D()));
+        sb.append(", read=").append(readGridGeometry.getGridRange2D());
+        sb.append(" ").append(new ReferencedEnvelope(readGridGeometry.getEnvelope2D()));
+        sb.append(", policy=").append(overviewPolicy);
+        sb.append(", level=").append(overviewLevel);
+        if (requestedResolution != null) {
+            sb.append(", requestedResolution=").append(Arrays.toString(requestedResolution));
+            sb.append(", overviewResolution=").append(Arrays.toString(overviewResolution));
+            sb.append(", subsampling=").append(Arrays.toString(subsampling));
+            sb.append(", estimatedPixels=").append(getEstimatedPixels());
+        }
+        if (interpolation != null) {
+            sb.append(", interpolation=").append(interpolation.getClass().getSimpleName());
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,265 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.coverage;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.InterpolationNearest;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.OverviewPolicy;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.util.logging.Logging;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Plans the read of a coverage needed to fill a target grid, so that WMS and the WCS versions
+ * read coverages the same way.
+ * <p>
+ * The target envelope is transformed into the native CRS of the coverage and intersected with
+ * the coverage envelope to get the read region, the target resolution is expressed in the native
+ * CRS, and the overview level and subsampling factors the reader will use for it are computed
+ * from the resolution levels of the reader and the overview policy. The resulting
+ * {@link CoverageReadPlan} provides the parameters to hand to the reader, and is logged at the
+ * FINE level.
+ * </p>
+ * <p>
+ * The overview policy is the one configured in the coverage read parameters, if any, otherwise
+ * the one set by the {@link #OVERVIEW_POLICY} property, the GeoTools default otherwise. When the
+ * policy is not configured explicitly and the target is going to be interpolated with anything
+ * but nearest neighbour the policy is raised to {@link OverviewPolicy#QUALITY}, interpolating a
+ * coarser overview than requested would blur the output.
+ * </p>
+ */
+public class CoverageReadPlanner {
+
+    static final Logger LOGGER = Logging.getLogger(CoverageReadPlanner.class);
+
+    /**
+     * System property, servlet context parameter or environment variable setting the overview
+     * policy used when the coverage does not configure one, one of QUALITY, SPEED, NEAREST and
+     * IGNORE
+     */
+    public static final String OVERVIEW_POLICY = "COVERAGE_OVERVIEW_POLICY";
+
+    /**
+     * Relative tolerance used when comparing resolutions
+     */
+    static final double EPS = 0.01;
+
+    /**
+     * Plans the read of a coverage
+     *
+     * @param reader the coverage reader
+     * @param target the grid the coverage is going to be rendered or resampled into
+     * @param interpolation the interpolation used to fill the target grid, may be null
+     * @param parameters the read parameters configured in the coverage, may be null
+     * @return the plan, or null if the target grid does not intersect the coverage
+     */
+    public static CoverageReadPlan plan(AbstractGridCoverage2DReader reader,
+            GridGeometry2D target, Interpolation interpolation, GeneralParameterValue[] parameters)
+            throws IOException {
+        OverviewPolicy policy = getOverviewPolicy(parameters, interpolation);
+
+        final CoordinateReferenceSystem nativeCRS = reader.getCrs();
+        final ReferencedEnvelope coverageEnvelope = new ReferencedEnvelope(
+                reader.getOriginalEnvelope());
+        final ReferencedEnvelope targetEnvelope = new ReferencedEnvelope(target.getEnvelope2D());
+
+        ReferencedEnvelope requested;
+        try {
+            if (CRS.equalsIgnoreMetadata(targetEnvelope.getCoordinateReferenceSystem(), nativeCRS)) {
+                requested = new ReferencedEnvelope(targetEnvelope, nativeCRS);
+            } else {
+                requested = targetEnvelope.transform(nativeCRS, true);
+            }
+        } catch (Exception e) {
+            // can happen for areas outside of the domain of validity of the native CRS, let the
+            // reader deal with the target grid then
+            LOGGER.log(Level.FINE, "Could not transform the target envelope " + targetEnvelope
+                    + " into the coverage CRS, reading with the target grid", e);
+            if (!intersectsWGS84(coverageEnvelope, targetEnvelope)) {
+                return null;
+            }
+            return log(new CoverageReadPlan(target, target, interpolation, policy, -1, null,
+                    null, null));
+        }
+
+        if (!requested.intersects((BoundingBox) coverageEnvelope)) {
+            return null;
+        }
+
+        final GridEnvelope2D targetRange = target.getGridRange2D();
+        final double[] requestedResolution = new double[] {
+                requested.getWidth() / targetRange.getWidth(),
+                requested.getHeight() / targetRange.getHeight() };
+
+        final ReferencedEnvelope readEnvelope = new ReferencedEnvelope(
+                requested.intersection(coverageEnvelope), nativeCRS);
+        final int width = (int) Math.max(1,
+                Math.round(readEnvelope.getWidth() / requestedResolution[0]));
+        final int height = (int) Math.max(1,
+                Math.round(readEnvelope.getHeight() / requestedResolution[1]));
+        final GridGeometry2D readGridGeometry = new GridGeometry2D(new GridEnvelope2D(0, 0, width,
+                height), readEnvelope);
+
+        double[][] levels = getResolutionLevels(reader, coverageEnvelope);
+        int level = selectLevel(levels, requestedResolution, policy);
+        final double[] overviewResolution = levels[level];
+        final int[] subsampling = new int[2];
+        for (int i = 0; i < 2; i++) {
+            subsampling[i] = (int) Math.max(1,
+                    Math.floor(requestedResolution[i] / overviewResolution[i] + EPS));
+        }
+
+        return log(new CoverageReadPlan(target, readGridGeometry, interpolation, policy, level,
+                requestedResolution, overviewResolution, subsampling));
+    }
+
+    static CoverageReadPlan log(CoverageReadPlan plan) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(plan.toString());
+        }
+        return plan;
+    }
+
+    /**
+     * Selects the overview level the GeoTools readers pick for the requested resolution
+     *
+     * @param levels the resolution levels, from the finest to the coarsest
+     */
+    static int selectLevel(double[][] levels, double[] requested, OverviewPolicy policy) {
+        if (levels.length <= 1 || policy == OverviewPolicy.IGNORE) {
+            return 0;
+        }
+
+        if (policy == OverviewPolicy.QUALITY) {
+            // the coarsest level that is not coarser than requested
+            int level = 0;
+            for (int i = 1; i < levels.length; i++) {
+                if (levels[i][0] > requested[0] * (1 + EPS)
+                        || levels[i][1] > requested[1] * (1 + EPS)) {
+                    break;
+                }
+                level = i;
+            }
+            return level;
+        } else if (policy == OverviewPolicy.SPEED) {
+            // the finest level that is not finer than requested
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i][0] >= requested[0] * (1 - EPS)
+                        && levels[i][1] >= requested[1] * (1 - EPS)) {
+                    return i;
+                }
+            }
+            return levels.length - 1;
+        } else {
+            // the level whose resolution is the closest to the requested one
+            int level = 0;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < levels.length; i++) {
+                double distance = Math.abs(levels[i][0] - requested[0]) / requested[0]
+                        + Math.abs(levels[i][1] - requested[1]) / requested[1];
+                if (distance < best) {
+                    best = distance;
+                    level = i;
+                }
+            }
+            return level;
+        }
+    }
+
+    static double[][] getResolutionLevels(AbstractGridCoverage2DReader reader,
+            ReferencedEnvelope coverageEnvelope) {
+        try {
+            double[][] levels = reader.getResolutionLevels();
+            if (levels != null && levels.length > 0) {
+                return levels;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not get the resolution levels, assuming the coverage "
+                    + "has no overviews", e);
+        }
+        GridEnvelope2D range = (GridEnvelope2D) reader.getOriginalGridRange();
+        return new double[][] { { coverageEnvelope.getWidth() / range.getWidth(),
+                coverageEnvelope.getHeight() / range.getHeight() } };
+    }
+
+    static OverviewPolicy getOverviewPolicy(GeneralParameterValue[] parameters,
+            Interpolation interpolation) {
+        // the coverage configuration has the last word
+        if (parameters != null) {
+            for (GeneralParameterValue parameter : parameters) {
+                if (CoverageReadPlan.matches(parameter.getDescriptor().getName().getCode(),
+                        AbstractGridFormat.OVERVIEW_POLICY)) {
+                    Object value = ((ParameterValue<?>) parameter)
+                            .getValue();
+                    OverviewPolicy policy = toPolicy(value);
+                    if (policy != null) {
+                        return policy;
+                    }
+                }
+            }
+        }
+
+        OverviewPolicy policy = null;
+        String value = GeoServerExtensions.getProperty(OVERVIEW_POLICY);
+        if (value != null) {
+            policy = toPolicy(value);
+            if (policy == null) {
+                LOGGER.warning("Invalid value for " + OVERVIEW_POLICY + ": " + value
+                        + ", using the default overview policy");
+            }
+        }
+        if (policy == null) {
+            policy = OverviewPolicy.getDefaultPolicy();
+        }
+        if (interpolation != null && !(interpolation instanceof InterpolationNearest)
+                && (policy == OverviewPolicy.NEAREST || policy == OverviewPolicy.SPEED)) {
+            policy = OverviewPolicy.QUALITY;
+        }
+        return policy;
+    }
+
+    static OverviewPolicy toPolicy(Object value) {
+        if (value instanceof OverviewPolicy) {
+            return (OverviewPolicy) value;
+        } else if (value instanceof String) {
+            try {
+                return OverviewPolicy.valueOf(((String) value).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    static boolean intersectsWGS84(ReferencedEnvelope coverageEnvelope,
+            ReferencedEnvelope targetEnvelope) {
+        try {
+            ReferencedEnvelope coverageWGS84 = coverageEnvelope.transform(
+                    DefaultGeographicCRS.WGS84, true);
+            ReferencedEnvelope targetWGS84 = targetEnvelope.transform(DefaultGeographicCRS.WGS84,
+                    true);
+            return coverageWGS84.intersects((BoundingBox) targetWGS84);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to compare data and request envelopes, "
+                    + "proceeding with the read anyways", e);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jai;
+
+import java.awt.Point;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.media.jai.TileCache;
+
+import com.sun.media.jai.util.CacheDiagnostics;
+
+/**
+ * A {@link TileCache} based on concurrent maps, as opposed to the fully synchronized
+ * {@link com.sun.media.jai.util.SunTileCache}, so that tile lookups and additions from concurrent
+ * requests do not contend on a single lock.
+ * <p>
+ * The cache keeps track of the memory used by the tiles, and once that goes over the memory
+ * capacity, the least recently used tiles are evicted until the memory used falls below the
+ * memory threshold. The tiles are also indexed by owner image, so that {@link #getTiles} and
+ * {@link #removeTiles}, called when an image gets disposed, do not have to scan the whole cache.
+ * The owner images are weakly referenced, tiles of images that got garbage collected are dropped
+ * on the next eviction.
+ * </p>
+ * <p>
+ * The tile comparator is not used, eviction is always least recently used.
+ * </p>
+ */
+public class ConcurrentTileCache implements TileCache, CacheDiagnostics {
+
+    public static final long DEFAULT_MEMORY_CAPACITY = 64 * 1024 * 1024;
+
+    public static final float DEFAULT_MEMORY_THRESHOLD = 0.75f;
+
+    private final Map<TileKey, CachedTile> tiles = new ConcurrentHashMap<TileKey, CachedTile>();
+
+    private final Map<OwnerKey, Set<TileKey>> owners = new ConcurrentHashMap<OwnerKey, Set<TileKey>>();
+
+    private final AtomicLong memoryUsed = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private volatile long memoryCapacity;
+
+    private volatile float memoryThreshold;
+
+    private volatile boolean diagnostics = true;
+
+    private Comparator tileComparator;
+
+    public ConcurrentTileCache() {
+        this(DEFAULT_MEMORY_CAPACITY);
+    }
+
+    public ConcurrentTileCache(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("Memory capacity must be positive: "
+                    + memoryCapacity);
+        }
+        this.memoryCapacity = memoryCapacity;
+        this.memoryThreshold = DEFAULT_MEMORY_THRESHOLD;
+    }
+
+    public void add(RenderedImage owner, int tileX, int tileY, Raster data) {
+        add(owner, tileX, tileY, data, null);
+    }
+
+    public void add(RenderedImage owner, int tileX, int tileY, Raster data, Object tileCacheMetric) {
+        if (owner == null || data == null) {
+            return;
+        }
+        long size = sizeOf(data);
+        if (size > memoryCapacity) {
+            return;
+        }
+
+        Set<TileKey> ownerTiles = getOwnerTiles(owner);
+        TileKey key = new TileKey(OwnerKey.stored(owner), tileX, tileY);
+        CachedTile tile = new CachedTile(key, data, size);
+        CachedTile previous = tiles.put(key, tile);
+        memoryUsed.addAndGet(previous == null ? size : size - previous.size);
+        ownerTiles.add(key);
+
+        if (memoryUsed.get() > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    /**
+     * Returns the set of tiles of the specified owner, creating it if missing
+     */
+    private Set<TileKey> getOwnerTiles(RenderedImage owner) {
+        OwnerKey lookup = OwnerKey.lookup(owner);
+        Set<TileKey> ownerTiles = owners.get(lookup);
+        if (ownerTiles == null) {
+            synchronized (owners) {
+                ownerTiles = owners.get(lookup);
+                if (ownerTiles == null) {
+                    ownerTiles = Collections.newSetFromMap(new ConcurrentHashMap<TileKey, Boolean>());
+                    owners.put(OwnerKey.stored(owner), ownerTiles);
+                }
+            }
+        }
+        return ownerTiles;
+    }
+
+    public void addTiles(RenderedImage owner, Point[] tileIndices, Raster[] tiles,
+            Object tileCacheMetric) {
+        if (tileIndices.length != tiles.length) {
+            throw new IllegalArgumentException("The tile indices and tiles arrays "
+                    + "must have the same length");
+        }
+        for (int i = 0; i < tiles.length; i++) {
+            add(owner, tileIndices[i].x, tileIndices[i].y, tiles[i], tileCacheMetric);
+        }
+    }
+
+    public Raster getTile(RenderedImage owner, int tileX, int tileY) {
+        CachedTile tile = tiles.get(new TileKey(OwnerKey.lookup(owner), tileX, tileY));
+        if (tile == null) {
+            if (diagnostics) {
+                misses.incrementAndGet();
+            }
+            return null;
+        }
+        tile.lastAccess = System.nanoTime();
+        if (diagnostics) {
+            hits.incrementAndGet();
+        }
+        return tile.tile;
+    }
+
+    public Raster[] getTiles(RenderedImage owner) {
+        Set<TileKey> ownerTiles = owners.get(OwnerKey.lookup(owner));
+        if (ownerTiles == null) {
+            return null;
+        }
+        List<Raster> result = new ArrayList<Raster>(ownerTiles.size());
+        for (TileKey key : ownerTiles) {
+            CachedTile tile = tiles.get(key);
+            if (tile != null) {
+                result.add(tile.tile);
+            }
+        }
+        return result.isEmpty() ? null : result.toArray(new Raster[result.size()]);
+    }
+
+    public Raster[] getTiles(RenderedImage owner, Point[] tileIndices) {
+        Raster[] result = new Raster[tileIndices.length];
+        for (int i = 0; i < tileIndices.length; i++) {
+            result[i] = getTile(owner, tileIndices[i].x, tileIndices[i].y);
+        }
+        return result;
+    }
+
+    public void remove(RenderedImage owner, int tileX, int tileY) {
+        OwnerKey ownerKey = OwnerKey.lookup(owner);
+        TileKey key = new TileKey(ownerKey, tileX, tileY);
+        CachedTile tile = tiles.remove(key);
+        if (tile != null) {
+            memoryUsed.addAndGet(-tile.size);
+        }
+        Set<TileKey> ownerTiles = owners.get(ownerKey);
+        if (ownerTiles != null) {
+            ownerTiles.remove(key);
+        }
+    }
+
+    /**
+     * Removes all the tiles of the specified owner, in a time proportional to the number of
+     * tiles of the owner, rather than the size of the cache
+     */
+    public void removeTiles(RenderedImage owner) {
+        Set<TileKey> ownerTiles = owners.remove(OwnerKey.lookup(owner));
+        if (ownerTiles != null) {
+            for (TileKey key : ownerTiles) {
+                CachedTile tile = tiles.remove(key);
+                if (tile != null) {
+                    memoryUsed.addAndGet(-tile.size);
+                }
+            }
+        }
+    }
+
+    public void flush() {
+        for (Iterator<CachedTile> it = tiles.values().iterator(); it.hasNext();) {
+            CachedTile tile = it.next();
+            it.remove();
+            memoryUsed.addAndGet(-tile.size);
+        }
+        owners.clear();
+    }
+
+    /**
+     * Evicts the tiles of the garbage collected images, and then the least recently used ones
+     * until the memory used falls below the memory threshold. If another thread is already
+     * evicting, returns immediately.
+     */
+    public void memoryControl() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // tiles whose owner is gone can never be looked up again
+            for (Iterator<Map.Entry<OwnerKey, Set<TileKey>>> it = owners.entrySet().iterator(); it
+                    .hasNext();) {
+                Map.Entry<OwnerKey, Set<TileKey>> entry = it.next();
+                if (entry.getKey().get() == null) {
+                    it.remove();
+                    for (TileKey key : entry.getValue()) {
+                        evict(key);
+                    }
+                }
+            }
+
+            final long target = (long) (memoryCapacity * memoryThreshold);
+            if (memoryUsed.get() <= target) {
+                return;
+            }
+            // snapshot the access times, they keep on changing while sorting
+            List<Candidate> candidates = new ArrayList<Candidate>(tiles.size());
+            for (CachedTile tile : tiles.values()) {
+                candidates.add(new Candidate(tile.key, tile.lastAccess));
+            }
+            Collections.sort(candidates);
+            for (Candidate candidate : candidates) {
+                if (memoryUsed.get() <= target) {
+                    break;
+                }
+                if (evict(candidate.key)) {
+                    Set<TileKey> ownerTiles = owners.get(candidate.key.owner);
+                    if (ownerTiles != null) {
+                        ownerTiles.remove(candidate.key);
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean evict(TileKey key) {
+        CachedTile tile = tiles.remove(key);
+        if (tile != null) {
+            memoryUsed.addAndGet(-tile.size);
+            evictions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    static long sizeOf(Raster raster) {
+        DataBuffer db = raster.getDataBuffer();
+        return ((long) db.getSize()) * db.getNumBanks()
+                * DataBuffer.getDataTypeSize(db.getDataType()) / 8;
+    }
+
+    /**
+     * @deprecated tile capacity is not used, only memory capacity
+     */
+    public void setTileCapacity(int tileCapacity) {
+        // not used
+    }
+
+    /**
+     * @deprecated tile capacity is not used, only memory capacity
+     */
+    public int getTileCapacity() {
+        return 0;
+    }
+
+    public void setMemoryCapacity(long memoryCapacity) {
+        if (memoryCapacity < 0) {
+            throw new IllegalArgumentException("Memory capacity must be positive: "
+                    + memoryCapacity);
+        }
+        this.memoryCapacity = memoryCapacity;
+        if (memoryCapacity == 0) {
+            flush();
+        } else if (memoryUsed.get() > memoryCapacity) {
+            memoryControl();
+        }
+    }
+
+    public long getMemoryCapacity() {
+        return memoryCapacity;
+    }
+
+    public void setMemoryThreshold(float memoryThreshold) {
+        if (memoryThreshold < 0 || memoryThreshold > 1) {
+            throw new IllegalArgumentException("Memory threshold must be between 0 and 1: "
+                    + memoryThreshold);
+        }
+        this.memoryThreshold = memoryThreshold;
+        memoryControl();
+    }
+
+    public float getMemoryThreshold() {
+        return memoryThreshold;
+    }
+
+    /**
+     * The comparator is stored, but not used
+     */
+    public void setTileComparator(Comparator comparator) {
+        this.tileComparator = comparator;
+    }
+
+    public Comparator getTileComparator() {
+        return tileComparator;
+    }
+
+    // CacheDiagnostics
+
+    public void enableDiagnostics() {
+        diagnostics = true;
+    }
+
+    public void disableDiagnostics() {
+        diagnostics = false;
+    }
+
+    public long getCacheTileCount() {
+        return tiles.size();
+    }
+
+    public long getCacheMemoryUsed() {
+        return memoryUsed.get();
+    }
+
+    public long getCacheHitCount() {
+        return hits.get();
+    }
+
+    public long getCacheMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * The number of tiles evicted to keep the memory used below the capacity
+     */
+    public long getCacheEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * The number of images having tiles in the cache
+     */
+    public int getCacheOwnerCount() {
+        return owners.size();
+    }
+
+    public void resetCounts() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Identifies an owner image. The keys stored in the cache reference the image weakly, the
+     * lookup ones strongly.
+     */
+    static final class OwnerKey {
+        final WeakReference<RenderedImage> reference;
+
+        final RenderedImage image;
+
+        final int hash;
+
+        private OwnerKey(WeakReference<RenderedImage> reference, RenderedImage image, int hash) {
+            this.reference = reference;
+            this.image = image;
+            this.hash = hash;
+        }
+
+        static OwnerKey lookup(RenderedImage owner) {
+            return new OwnerKey(null, owner, System.identityHashCode(owner));
+        }
+
+        static OwnerKey stored(RenderedImage owner) {
+            return new OwnerKey(new WeakReference<RenderedImage>(owner), null,
+                    System.identityHashCode(owner));
+        }
+
+        RenderedImage get() {
+            return image != null ? image : reference.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof OwnerKey)) {
+                return false;
+            }
+            RenderedImage owner = get();
+            return owner != null && owner == ((OwnerKey) obj).get();
+        }
+    }
+
+    static final class TileKey {
+        final OwnerKey owner;
+
+        final int tileX;
+
+        final int tileY;
+
+        TileKey(OwnerKey owner, int tileX, int tileY) {
+            this.owner = owner;
+            this.tileX = tileX;
+            this.tileY = tileY;
+        }
+
+        @Override
+        public int hashCode() {
+            return (owner.hash * 31 + tileX) * 31 + tileY;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            TileKey other = (TileKey) obj;
+            return tileX == other.tileX && tileY == other.tileY && owner.equals(other.owner);
+        }
+    }
+
+    static final class CachedTile {
+        final TileKey key;
+
+        final Raster tile;
+
+        final long size;
+
+        volatile long lastAccess;
+
+        CachedTile(TileKey key, Raster tile, long size) {
+            this.key = key;
+            this.tile = tile;
+            this.size = size;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    static final class Candidate implements Comparable<Candidate> {
+        final TileKey key;
+
+        final long lastAccess;
+
+        Candidate(TileKey key, long lastAccess) {
+            this.key = key;
+            this.lastAccess = lastAccess;
+        }
+
+        public int compareTo(Candidate other) {
+            long diff = lastAccess - other.lastAccess;
+            return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+        }
+    }
+}
@@ -7,6 +7,7 @@ package org.geoserver.jai;
 import java.util.List;
 
 import javax.media.jai.JAI;
+import javax.media.jai.TileCache;
 
 import org.geoserver.config.ConfigurationListenerAdapter;
 import org.geoserver.config.GeoServer;
@@ -72,8 +73,13 @@ public class JAIInitializer implements GeoServerInitializer {
             }
         }
         
-        // Setting up Cache Capacity
-        SunTileCache jaiCache = (SunTileCache) jaiDef.getTileCache();
+        // Setting up the tile cache implementation and its capacity
+        TileCache jaiCache = jaiDef.getTileCache();
+        if (jai.isConcurrentTileCache() && !(jaiCache instanceof ConcurrentTileCache)) {
+            jaiCache = new ConcurrentTileCache();
+        } else if (!jai.isConcurrentTileCache() && !(jaiCache instanceof SunTileCache)) {
+            jaiCache = new SunTileCache();
+        }
         jai.setTileCache( jaiCache );
         
         long jaiMemory = (long) (jai.getMemoryCapacity() * Runtime.getRuntime().maxMemory());
@@ -0,0 +1,269 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Shared cache for the authority lookups (groups of a user, users of a group, roles of a user or
+ * group, parent roles) performed by the security services backed by an external store, such as a
+ * database or a LDAP server.
+ * <p>
+ * Entries are keyed by service name, lookup type and lookup key, and expire after a time to live
+ * controlled by the {@link #TIME_TO_LIVE} system variable (in seconds, defaults to
+ * {@value #DEFAULT_TIME_TO_LIVE}, a value of zero disables the cache). Lookups returning
+ * <code>null</code> are cached as well. The services are expected to call
+ * {@link #invalidate(String)} whenever their backing store is modified.
+ * </p>
+ * <p>
+ * The cache is obtained with {@link GeoServerSecurityManager#getAuthorityCache()}.
+ * </p>
+ */
+public class AuthorityCache {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.security");
+
+    /**
+     * System variable controlling the entries time to live, in seconds
+     */
+    public static final String TIME_TO_LIVE = "GEOSERVER_AUTHORITY_CACHE_TTL";
+
+    /**
+     * System variable controlling the max number of cached entries
+     */
+    public static final String MAX_ENTRIES = "GEOSERVER_AUTHORITY_CACHE_MAX_ENTRIES";
+
+    public static final int DEFAULT_TIME_TO_LIVE = 60;
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /**
+     * Marker for the cached <code>null</code> results
+     */
+    static final Object NULL = new Object();
+
+    /**
+     * Computes the value for a cache miss
+     */
+    public static interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    Map<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+    /**
+     * Bumped on every invalidation of a service, to avoid caching values loaded before the
+     * invalidation
+     */
+    Map<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+
+    long timeToLive;
+
+    int maxEntries;
+
+    AtomicLong hits = new AtomicLong();
+
+    AtomicLong misses = new AtomicLong();
+
+    public AuthorityCache() {
+        this(lookupInt(TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE) * 1000l, lookupInt(MAX_ENTRIES,
+                DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * @param timeToLive the entries time to live, in milliseconds
+     * @param maxEntries the max number of cached entries
+     */
+    public AuthorityCache(long timeToLive, int maxEntries) {
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    static int lookupInt(String property, int defaultValue) {
+        String value = GeoServerExtensions.getProperty(property);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.log(Level.WARNING, "Invalid value for " + property + ": " + value
+                        + ", using the default " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns the cached value, or computes and caches it using the loader
+     *
+     * @param serviceName the name of the security service performing the lookup
+     * @param type the lookup type, e.g., "groupsForUser"
+     * @param key the lookup key, e.g., the user name
+     * @param loader computes the value on cache miss
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V get(String serviceName, String type, String key, Loader<V> loader)
+            throws IOException {
+        if (timeToLive <= 0) {
+            return loader.load();
+        }
+
+        Key k = new Key(serviceName, type, key);
+        Entry entry = entries.get(k);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expires > now) {
+            hits.incrementAndGet();
+            return entry.value == NULL ? null : (V) entry.value;
+        }
+
+        misses.incrementAndGet();
+        long generation = getGeneration(serviceName).get();
+        V value = loader.load();
+        if (entries.size() >= maxEntries) {
+            evict();
+        }
+        // do not cache values that might have been loaded before an invalidation
+        if (getGeneration(serviceName).get() == generation) {
+            entries.put(k, new Entry(value == null ? NULL : value, now + timeToLive));
+        }
+        return value;
+    }
+
+    AtomicLong getGeneration(String serviceName) {
+        if (serviceName == null) {
+            serviceName = "";
+        }
+        AtomicLong generation = generations.get(serviceName);
+        if (generation == null) {
+            synchronized (generations) {
+                generation = generations.get(serviceName);
+                if (generation == null) {
+                    generation = new AtomicLong();
+                    generations.put(serviceName, generation);
+                }
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Drops the expired entries, and if that is not enough, the whole cache
+     */
+    void evict() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            if (it.next().expires <= now) {
+                it.remove();
+            }
+        }
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Removes all the entries of the specified security service
+     */
+    public void invalidate(String serviceName) {
+        getGeneration(serviceName).incrementAndGet();
+        for (Iterator<Key> it = entries.keySet().iterator(); it.hasNext();) {
+            if (Key.eq(it.next().serviceName, serviceName)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the cached entries
+     */
+    public void invalidateAll() {
+        synchronized (generations) {
+            for (AtomicLong generation : generations.values()) {
+                generation.incrementAndGet();
+            }
+        }
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The ratio of lookups served from the cache, between 0 and 1
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    static class Key {
+        String serviceName;
+
+        String type;
+
+        String key;
+
+        Key(String serviceName, String type, String key) {
+            this.serviceName = serviceName;
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = serviceName == null ? 0 : serviceName.hashCode();
+            result = 31 * result + (type == null ? 0 : type.hashCode());
+            result = 31 * result + (key == null ? 0 : key.hashCode());
+            return result;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return eq(serviceName, other.serviceName) && eq(type, other.type)
+                    && eq(key, other.key);
+        }
+
+        static boolean eq(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+    }
+
+    static class Entry {
+        Object value;
+
+        long expires;
+
+        Entry(Object value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -259,6 +259,9 @@ public class GeoServerSecurityManager extends ProviderManager implements Applica
     /** authentication cache */
     volatile AuthenticationCache authCache;
 
+    /** cache for the authority lookups of the security services */
+    volatile AuthorityCache authorityCache;
+
     /** rememmber me service */
     volatile RememberMeServices rememberMeService;
 
@@ -546,6 +549,25 @@ public class GeoServerSecurityManager extends ProviderManager implements Applica
         return authCache != null ? authCache : new LRUAuthenticationCacheImpl(1000);
     }
 
+    /**
+     * The cache shared by the security services to speed up group and role lookups
+     */
+    public AuthorityCache getAuthorityCache() {
+        if (authorityCache == null) {
+            synchronized (this) {
+                if (authorityCache == null) {
+                    authorityCache = lookupAuthorityCache();
+                }
+            }
+        }
+        return authorityCache;
+    }
+
+    AuthorityCache lookupAuthorityCache() {
+        AuthorityCache authorityCache = GeoServerExtensions.bean(AuthorityCache.class);
+        return authorityCache != null ? authorityCache : new AuthorityCache();
+    }
+
     public RememberMeServices getRememberMeService() {
         if (rememberMeService == null) {
             synchronized (this) {
@@ -14,6 +14,7 @@ import java.util.List;
 import javax.annotation.Nonnull;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogBatch;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.CatalogFactory;
 import org.geoserver.catalog.CatalogInfo;
@@ -1475,4 +1476,9 @@ public class SecureCatalogImpl extends AbstractDecorator<Catalog> implements Cat
     public void removeListeners(Class listenerClass) {
         delegate.removeListeners(listenerClass);
     }
+
+    public void execute(CatalogBatch batch) {
+        // have the operations go through this catalog
+        delegate.execute(batch.through(this));
+    }
 }
@@ -7,6 +7,8 @@ package org.geoserver.template;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.logging.Logger;
 
@@ -105,6 +107,11 @@ public class GeoServerTemplateLoader implements TemplateLoader {
      */
     private Catalog catalog;
 
+    /**
+     * Cache of the template locations in the data directory, may be null
+     */
+    TemplateLookupCache lookupCache;
+
     /**
      * Constructs the template loader.
      *
@@ -140,6 +147,13 @@ public class GeoServerTemplateLoader implements TemplateLoader {
         //grab the catalog and store a reference
         catalog = (Catalog)GeoServerExtensions.bean("catalog");
 
+        //use the lookup cache only if it's tracking the same data directory
+        TemplateLookupCache cache = GeoServerExtensions.bean(TemplateLookupCache.class);
+        if (cache != null && cache.getDataDirectory() != null
+                && dd.root().equals(cache.getDataDirectory().root())) {
+            lookupCache = cache;
+        }
+
         //create a class template loader to delegate to
         if (caller != null) {
             classTemplateLoader = new ClassTemplateLoader(caller, "");
@@ -150,6 +164,10 @@ public class GeoServerTemplateLoader implements TemplateLoader {
         this.catalog = catalog;
     }
 
+    public void setLookupCache(TemplateLookupCache lookupCache) {
+        this.lookupCache = lookupCache;
+    }
+
     /**
      * Sets the feature type in which templates are loaded against.
      * @deprecated use {@link #setFeatureType(FeatureTypeInfo)}
@@ -196,6 +214,115 @@ public class GeoServerTemplateLoader implements TemplateLoader {
     }
     
     public Object findTemplateSource(String path) throws IOException {
+        File template = findTemplateFile(path);
+        if (template != null) {
+            return template;
+        }
+
+        //final effort to use a class resource
+        if (classTemplateLoader != null) {
+            Object source = classTemplateLoader.findTemplateSource(path);
+
+            //wrap the source in a source that maintains the orignial path
+            if (source != null) {
+                return new ClassTemplateSource(path, source);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks up the template in the data directory, going through the lookup cache if available
+     */
+    File findTemplateFile(String path) throws IOException {
+        if (lookupCache == null || !lookupCache.isEnabled()) {
+            return lookupTemplateFile(path);
+        }
+
+        String key = lookupKey(path);
+        TemplateLookupCache.Lookup lookup = lookupCache.get(key);
+        //a template removed by hand is cheap to spot, no need to wait for the watcher
+        if (lookup != null && (lookup.getFile() == null || lookup.getFile().exists())) {
+            return lookup.getFile();
+        }
+
+        long generation = lookupCache.getGeneration();
+        //start watching before the lookup, so that changes happening meanwhile are not missed
+        lookupCache.watch(lookupCandidates(path));
+        File template = lookupTemplateFile(path);
+        lookupCache.put(key, template, generation);
+        return template;
+    }
+
+    String lookupKey(String path) {
+        StringBuilder sb = new StringBuilder(dd.root().getPath());
+        sb.append("|");
+        if (resource != null) {
+            sb.append(resource.getId());
+        }
+        sb.append("|");
+        if (featureType != null) {
+            sb.append(featureType.getName());
+        }
+        sb.append("|");
+        if (coverageName != null) {
+            sb.append(coverageName);
+        }
+        return sb.append("|").append(path).toString();
+    }
+
+    /**
+     * Returns the files the template could be found at, for the lookup cache to watch their
+     * directories
+     */
+    List<File> lookupCandidates(String path) throws IOException {
+        List<File> dirs = new ArrayList<File>();
+        File root = dd.root();
+        if (resource != null) {
+            dirs.add(dd.findResourceDir(resource));
+            dirs.add(dd.findStoreDir(resource.getStore()));
+            dirs.add(dd.findWorkspaceDir(resource.getStore().getWorkspace()));
+            dirs.add(new File(root, "workspaces"));
+        }
+        File featureTypes = new File(root, "featureTypes");
+        File coverages = new File(root, "coverages");
+        File templates = new File(root, "templates");
+        try {
+            if (featureType != null) {
+                dirs.add(new File(featureTypes,
+                        GeoserverDataDirectory.findFeatureTypeDirName(featureType)));
+                if (featureType.getName().getNamespaceURI() != null) {
+                    NamespaceInfo nsInfo = catalog.getNamespaceByURI(featureType.getName()
+                            .getNamespaceURI());
+                    if (nsInfo != null) {
+                        dirs.add(new File(templates, nsInfo.getPrefix()));
+                    }
+                }
+            } else if (coverageName != null) {
+                dirs.add(new File(coverages, GeoserverDataDirectory
+                        .findCoverageDirName(coverageName)));
+            }
+        } catch (NoSuchElementException e) {
+            // remote type, no specific directory for it
+        }
+        dirs.add(featureTypes);
+        dirs.add(coverages);
+        dirs.add(templates);
+
+        List<File> candidates = new ArrayList<File>();
+        for (File dir : dirs) {
+            if (dir != null) {
+                candidates.add(new File(dir, path));
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Looks up the template in the data directory
+     */
+    File lookupTemplateFile(String path) throws IOException {
         File template = null;
 
         //template look up order
@@ -237,23 +364,7 @@ public class GeoServerTemplateLoader implements TemplateLoader {
         }
         
         //next, check the templates directory
-        template = (File) fileTemplateLoader.findTemplateSource("templates" + File.separator + path);
-
-        if (template != null) {
-            return template;
-        }
-
-        //final effort to use a class resource
-        if (classTemplateLoader != null) {
-            Object source = classTemplateLoader.findTemplateSource(path);
-
-            //wrap the source in a source that maintains the orignial path
-            if (source != null) {
-                return new ClassTemplateSource(path, source);
-            }
-        }
-
-        return null;
+        return (File) fileTemplateLoader.findTemplateSource("templates" + File.separator + path);
     }
     
     File findTemplateSourceLegacy(String path) throws IOException {
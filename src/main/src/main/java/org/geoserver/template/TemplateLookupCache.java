@@ -0,0 +1,284 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.template;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.GeoServerDataDirectory;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.ResourceChangeListener;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Caches where {@link GeoServerTemplateLoader} found each template in the data directory, including
+ * the lookups that did not find any, so that the data directory is not probed again and again for
+ * the same templates.
+ * <p>
+ * The whole cache is dropped on any catalog change, and whenever a file is written through the
+ * {@link org.geoserver.platform.GeoServerResourceLoader} of the data directory. Templates copied
+ * into the data directory by hand are caught by a background thread watching the directories the
+ * templates were looked up in (a file being added to, or removed from, a directory changes its
+ * modification time). Since the check happens every {@link #getCheckInterval()} milliseconds, these
+ * might take that long to be noticed, while removed templates are spotted right away.
+ * </p>
+ * <p>
+ * The cache can be disabled by setting the {@value #TEMPLATE_LOOKUP_CACHE} system property,
+ * servlet context parameter or environment variable to {@code false}.
+ * </p>
+ */
+public class TemplateLookupCache implements CatalogListener, ResourceChangeListener,
+        DisposableBean {
+
+    static final Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger("org.geoserver.template");
+
+    /**
+     * The property used to disable the cache
+     */
+    public static final String TEMPLATE_LOOKUP_CACHE = "TEMPLATE_LOOKUP_CACHE";
+
+    public static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+    /**
+     * The outcome of a template lookup
+     */
+    public static class Lookup {
+        final File file;
+
+        Lookup(File file) {
+            this.file = file;
+        }
+
+        /**
+         * @return the template file, or {@code null} if the template was not found in the data
+         *         directory
+         */
+        public File getFile() {
+            return file;
+        }
+    }
+
+    GeoServerDataDirectory dataDirectory;
+
+    Map<String, Lookup> lookups = new ConcurrentHashMap<String, Lookup>();
+
+    /**
+     * The watched directories, along with their modification time when the watch started
+     */
+    Map<File, Long> watched = new ConcurrentHashMap<File, Long>();
+
+    AtomicLong generation = new AtomicLong();
+
+    AtomicLong hits = new AtomicLong();
+
+    AtomicLong misses = new AtomicLong();
+
+    long checkInterval = DEFAULT_CHECK_INTERVAL;
+
+    Boolean enabled;
+
+    ScheduledExecutorService watcher;
+
+    public TemplateLookupCache(GeoServerDataDirectory dataDirectory, Catalog catalog) {
+        this.dataDirectory = dataDirectory;
+        dataDirectory.getResourceLoader().addListener(this);
+        catalog.addListener(this);
+    }
+
+    public GeoServerDataDirectory getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public boolean isEnabled() {
+        if (enabled == null) {
+            String value = GeoServerExtensions.getProperty(TEMPLATE_LOOKUP_CACHE);
+            enabled = value == null || Boolean.valueOf(value);
+        }
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        clear();
+    }
+
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+
+    /**
+     * Sets how often, in milliseconds, the watched directories are checked for changes
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+        synchronized (this) {
+            if (watcher != null) {
+                watcher.shutdownNow();
+                watcher = null;
+            }
+        }
+    }
+
+    /**
+     * @return the current generation, to be passed to {@link #put(String, File, long)} once the
+     *         template has been looked up
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Lookup get(String key) {
+        Lookup lookup = lookups.get(key);
+        if (lookup == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return lookup;
+    }
+
+    /**
+     * Caches the outcome of a lookup, unless the cache has been invalidated since the specified
+     * generation
+     *
+     * @param file the template file, or {@code null} if not found
+     */
+    public void put(String key, File file, long generation) {
+        if (this.generation.get() == generation) {
+            lookups.put(key, new Lookup(file));
+        }
+    }
+
+    /**
+     * Starts watching the directories that would contain the specified template files. If a
+     * directory does not exist its closest existing parent is watched instead, as it will change
+     * when the directory gets created.
+     * <p>
+     * To make sure no change is missed, this should be called before looking up the templates.
+     * </p>
+     */
+    public void watch(Collection<File> templates) {
+        for (File template : templates) {
+            File dir = template.getParentFile();
+            while (dir != null && !dir.exists()) {
+                dir = dir.getParentFile();
+            }
+            if (dir != null && !watched.containsKey(dir)) {
+                watched.put(dir, dir.lastModified());
+            }
+        }
+        startWatcher();
+    }
+
+    synchronized void startWatcher() {
+        if (watcher != null || checkInterval <= 0) {
+            return;
+        }
+        watcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "GeoServer template lookup cache watcher");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        watcher.scheduleWithFixedDelay(new Runnable() {
+
+            public void run() {
+                try {
+                    checkWatched();
+                } catch (Throwable t) {
+                    LOGGER.log(Level.WARNING, "Failed to check the template directories", t);
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the cache if any of the watched directories changed
+     *
+     * @return true if a change was found
+     */
+    boolean checkWatched() {
+        for (Map.Entry<File, Long> entry : watched.entrySet()) {
+            if (entry.getKey().lastModified() != entry.getValue()) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Template directory " + entry.getKey()
+                            + " changed, clearing the template lookup cache");
+                }
+                clear();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        lookups.clear();
+        watched.clear();
+    }
+
+    public int size() {
+        return lookups.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized void destroy() throws Exception {
+        dataDirectory.getResourceLoader().removeListener(this);
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+        clear();
+    }
+
+    public void changed(File file) {
+        clear();
+    }
+
+    public void handleAddEvent(CatalogAddEvent event) {
+        clear();
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        clear();
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // wait for the post modify event
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        clear();
+    }
+
+    public void reloaded() {
+        clear();
+    }
+}
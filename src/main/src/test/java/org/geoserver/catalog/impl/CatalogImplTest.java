@@ -21,6 +21,7 @@ import static org.junit.Assert.fail;
 
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -29,6 +30,9 @@ import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogBatch;
+import org.geoserver.catalog.CatalogBatch.Operation;
+import org.geoserver.catalog.CatalogBatch.Type;
 import org.geoserver.catalog.CatalogException;
 import org.geoserver.catalog.CatalogFactory;
 import org.geoserver.catalog.CatalogInfo;
@@ -1578,6 +1582,67 @@ public class CatalogImplTest {
             //good
         }
     }
+
+    @Test
+    public void testExecuteBatch() throws Exception {
+        final StyleInfo s2 = catalog.getFactory().createStyle();
+        s2.setName("styleName2");
+        s2.setFilename("styleFilename2");
+        StyleInfo dupe = catalog.getFactory().createStyle();
+        dupe.setName(s.getName());
+        dupe.setFilename("dupeFilename");
+
+        final List<Boolean> s2Added = new ArrayList<Boolean>();
+        TestListener l = new TestListener() {
+            @Override
+            public void handleAddEvent(CatalogAddEvent event) {
+                super.handleAddEvent(event);
+                s2Added.add(catalog.getStyleByName(s2.getName()) != null);
+            }
+        };
+        catalog.addListener(l);
+
+        CatalogBatch batch = new CatalogBatch(Arrays.asList(
+                new Operation(Type.ADD, s), new Operation(Type.ADD, dupe),
+                new Operation(Type.ADD, s2)));
+        catalog.execute(batch);
+
+        List<Operation> ops = batch.getOperations();
+        assertEquals(3, ops.size());
+        assertFalse(ops.get(0).isFailed());
+        assertTrue(ops.get(1).isFailed());
+        assertFalse(ops.get(2).isFailed());
+        assertNotNull(catalog.getStyleByName(s.getName()));
+        assertNotNull(catalog.getStyleByName(s2.getName()));
+
+        // listeners got notified in order, after the whole batch was applied
+        assertEquals(2, l.added.size());
+        assertEquals(s.getName(), ((StyleInfo) l.added.get(0).getSource()).getName());
+        assertEquals(s2.getName(), ((StyleInfo) l.added.get(1).getSource()).getName());
+        assertEquals(Arrays.asList(true, true), s2Added);
+
+        // outside of the batch events are delivered right away
+        catalog.remove(catalog.getStyleByName(s2.getName()));
+        assertEquals(1, l.removed.size());
+    }
+
+    @Test
+    public void testExecuteBatchListenerFailure() throws Exception {
+        ExceptionThrowingListener l = new ExceptionThrowingListener();
+        l.throwCatalogException = true;
+        catalog.addListener(l);
+
+        CatalogBatch batch = new CatalogBatch(Arrays.asList(new Operation(Type.ADD, s)));
+        catalog.execute(batch);
+
+        // the listener failure is reported against the operation that fired the event, which
+        // has been applied nonetheless
+        Operation op = batch.getOperations().get(0);
+        assertFalse(op.isFailed());
+        assertNotNull(catalog.getStyleByName(s.getName()));
+        assertEquals(1, op.getListenerErrors().size());
+        assertTrue(op.getListenerErrors().get(0) instanceof CatalogException);
+    }
     
     @Test
     public void testAddWMSStore() {
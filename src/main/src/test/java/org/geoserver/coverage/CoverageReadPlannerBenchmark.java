@@ -0,0 +1,99 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.coverage;
+
+import java.awt.image.RenderedImage;
+import java.io.File;
+
+import javax.media.jai.Interpolation;
+import javax.media.jai.PlanarImage;
+
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.junit.Test;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.referencing.datum.PixelInCell;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Compares the bytes read and the time taken to read a pyramid at several output sizes, reading
+ * the native resolution as WCS 1.1 and 2.0 used to do, and reading as planned by the
+ * {@link CoverageReadPlanner}. Not run by the build, run it explicitly with
+ * {@code mvn test -Dtest=CoverageReadPlannerBenchmark}, the size of the pyramid defaults to 4096
+ * pixels and can be set with the {@code coverage.benchmark.size} system property.
+ */
+public class CoverageReadPlannerBenchmark {
+
+    static final int SIZE = Integer.getInteger("coverage.benchmark.size", 4096);
+
+    @Test
+    public void testReadPyramid() throws Exception {
+        File file = new File("./target/coverage-planner/benchmark.tif");
+        file.getParentFile().mkdirs();
+        int overviews = 0;
+        while ((SIZE >> (overviews + 1)) >= 256) {
+            overviews++;
+        }
+        CoverageReadPlannerTest.createPyramid(file, SIZE, overviews);
+
+        GeoTiffReader reader = new GeoTiffReader(file);
+        try {
+            Interpolation interpolation = Interpolation.getInstance(Interpolation.INTERP_NEAREST);
+            GridGeometry2D nativeGrid = new GridGeometry2D(reader.getOriginalGridRange(),
+                    reader.getOriginalGridToWorld(PixelInCell.CELL_CENTER), reader.getCrs());
+            ParameterValue<GridGeometry2D> nativeRead = AbstractGridFormat.READ_GRIDGEOMETRY2D
+                    .createValue();
+            nativeRead.setValue(nativeGrid);
+
+            // warm up
+            read(reader, new GeneralParameterValue[] { nativeRead });
+
+            for (int size = 256; size <= SIZE; size *= 4) {
+                GridGeometry2D target = new GridGeometry2D(new GridEnvelope2D(0, 0, size, size),
+                        CoverageReadPlannerTest.BOUNDS);
+
+                Stopwatch sw = new Stopwatch().start();
+                long nativeBytes = read(reader, new GeneralParameterValue[] { nativeRead });
+                sw.stop();
+                System.out.println(String.format("%dx%d output, native read: %d bytes in %s",
+                        size, size, nativeBytes, sw));
+
+                sw = new Stopwatch().start();
+                CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target, interpolation,
+                        null);
+                long plannedBytes = read(reader, plan.getReadParameters(null));
+                sw.stop();
+                System.out.println(String.format(
+                        "%dx%d output, planned read (level %d): %d bytes in %s", size, size,
+                        plan.getOverviewLevel(), plannedBytes, sw));
+            }
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Reads the coverage, computes all of its tiles and returns the size of its raster in bytes
+     */
+    long read(GeoTiffReader reader, GeneralParameterValue[] params) throws Exception {
+        GridCoverage2D coverage = reader.read(params);
+        try {
+            RenderedImage image = coverage.getRenderedImage();
+            PlanarImage.wrapRenderedImage(image).getTiles();
+            long sampleBits = 0;
+            for (int size : image.getSampleModel().getSampleSize()) {
+                sampleBits += size;
+            }
+            return (long) image.getWidth() * image.getHeight() * sampleBits / 8;
+        } finally {
+            coverage.dispose(true);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.coverage;
+
+import static org.junit.Assert.*;
+
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageWriterSpi;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.media.jai.Interpolation;
+
+import org.geotools.coverage.CoverageFactoryFinder;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.OverviewPolicy;
+import org.geotools.coverage.grid.io.imageio.GeoToolsWriteParams;
+import org.geotools.gce.geotiff.GeoTiffFormat;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.gce.geotiff.GeoTiffWriteParams;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+
+public class CoverageReadPlannerTest {
+
+    static final ReferencedEnvelope BOUNDS = new ReferencedEnvelope(0, 10, 0, 10,
+            DefaultGeographicCRS.WGS84);
+
+    GeoTiffReader reader;
+
+    @Before
+    public void setUp() throws Exception {
+        File file = new File("./target/coverage-planner/pyramid.tif");
+        file.getParentFile().mkdirs();
+        createPyramid(file, 1024, 3);
+        reader = new GeoTiffReader(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reader.dispose();
+    }
+
+    GridGeometry2D target(ReferencedEnvelope envelope, int width, int height) {
+        return new GridGeometry2D(new GridEnvelope2D(0, 0, width, height), envelope);
+    }
+
+    @Test
+    public void testNativeResolution() throws Exception {
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(BOUNDS, 1024, 1024),
+                null, null);
+        assertEquals(0, plan.getOverviewLevel());
+        assertArrayEquals(new int[] { 1, 1 }, plan.getSubsampling());
+        assertEquals(1024 * 1024, plan.getEstimatedPixels());
+        assertEquals(1024, plan.getReadGridGeometry().getGridRange2D().getWidth());
+    }
+
+    @Test
+    public void testOverview() throws Exception {
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(BOUNDS, 256, 256), null,
+                null);
+        assertEquals(2, plan.getOverviewLevel());
+        assertArrayEquals(new int[] { 1, 1 }, plan.getSubsampling());
+        assertEquals(256 * 256, plan.getEstimatedPixels());
+
+        // the reader agrees with the plan
+        GridCoverage2D coverage = reader.read(plan.getReadParameters(null));
+        try {
+            assertEquals(256, coverage.getRenderedImage().getWidth());
+            assertEquals(256, coverage.getRenderedImage().getHeight());
+        } finally {
+            coverage.dispose(true);
+        }
+    }
+
+    @Test
+    public void testSubsampling() throws Exception {
+        ParameterValue<OverviewPolicy> policy = AbstractGridFormat.OVERVIEW_POLICY.createValue();
+        policy.setValue(OverviewPolicy.IGNORE);
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(BOUNDS, 256, 256), null,
+                new GeneralParameterValue[] { policy });
+        assertEquals(OverviewPolicy.IGNORE, plan.getOverviewPolicy());
+        assertEquals(0, plan.getOverviewLevel());
+        assertArrayEquals(new int[] { 4, 4 }, plan.getSubsampling());
+        assertEquals(256 * 256, plan.getEstimatedPixels());
+    }
+
+    @Test
+    public void testInterpolationRaisesPolicy() throws Exception {
+        // 3x coarser than the native resolution, in between the first and second overview
+        ReferencedEnvelope envelope = new ReferencedEnvelope(0, 7.5, 0, 7.5,
+                DefaultGeographicCRS.WGS84);
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(envelope, 256, 256),
+                Interpolation.getInstance(Interpolation.INTERP_BILINEAR), null);
+        assertEquals(OverviewPolicy.QUALITY, plan.getOverviewPolicy());
+        assertEquals(1, plan.getOverviewLevel());
+        assertArrayEquals(new int[] { 1, 1 }, plan.getSubsampling());
+    }
+
+    @Test
+    public void testReadRegion() throws Exception {
+        // half of the request falls outside of the coverage
+        ReferencedEnvelope envelope = new ReferencedEnvelope(5, 15, 0, 10,
+                DefaultGeographicCRS.WGS84);
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(envelope, 512, 512),
+                null, null);
+        ReferencedEnvelope read = new ReferencedEnvelope(plan.getReadGridGeometry()
+                .getEnvelope2D());
+        assertEquals(5, read.getMinX(), 1e-9);
+        assertEquals(10, read.getMaxX(), 1e-9);
+        assertEquals(256, plan.getReadGridGeometry().getGridRange2D().getWidth());
+        assertEquals(512, plan.getReadGridGeometry().getGridRange2D().getHeight());
+        assertEquals(1, plan.getOverviewLevel());
+    }
+
+    @Test
+    public void testReprojectedTarget() throws Exception {
+        ReferencedEnvelope envelope = BOUNDS.transform(CRS.decode("EPSG:3857", true), true);
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(envelope, 128, 128),
+                null, null);
+        assertTrue(CRS.equalsIgnoreMetadata(DefaultGeographicCRS.WGS84, plan
+                .getReadGridGeometry().getCoordinateReferenceSystem()));
+        assertEquals(3, plan.getOverviewLevel());
+    }
+
+    @Test
+    public void testNoIntersection() throws Exception {
+        ReferencedEnvelope envelope = new ReferencedEnvelope(20, 30, 20, 30,
+                DefaultGeographicCRS.WGS84);
+        assertNull(CoverageReadPlanner.plan(reader, target(envelope, 256, 256), null, null));
+    }
+
+    @Test
+    public void testReadParameters() throws Exception {
+        ParameterValue<Boolean> jaiImageRead = AbstractGridFormat.USE_JAI_IMAGEREAD.createValue();
+        jaiImageRead.setValue(false);
+        ParameterValue<GridGeometry2D> oldGeometry = AbstractGridFormat.READ_GRIDGEOMETRY2D
+                .createValue();
+        oldGeometry.setValue(target(BOUNDS, 10, 10));
+        GeneralParameterValue[] configured = new GeneralParameterValue[] { jaiImageRead,
+                oldGeometry };
+
+        CoverageReadPlan plan = CoverageReadPlanner.plan(reader, target(BOUNDS, 256, 256),
+                Interpolation.getInstance(Interpolation.INTERP_NEAREST), configured);
+        GeneralParameterValue[] params = plan.getReadParameters(configured);
+        assertEquals(4, params.length);
+        assertSame(jaiImageRead, params[0]);
+        assertEquals(plan.getReadGridGeometry(), ((ParameterValue<?>) params[1]).getValue());
+        assertEquals(plan.getInterpolation(), ((ParameterValue<?>) params[2]).getValue());
+        assertEquals(plan.getOverviewPolicy(), ((ParameterValue<?>) params[3]).getValue());
+        // the configured parameters are left alone
+        assertEquals(2, configured.length);
+        assertEquals(10, oldGeometry.getValue().getGridRange2D().getWidth());
+    }
+
+    @Test
+    public void testSelectLevel() {
+        double[][] levels = new double[][] { { 1, 1 }, { 2, 2 }, { 4, 4 } };
+        double[] requested = new double[] { 3, 3 };
+        assertEquals(1, CoverageReadPlanner.selectLevel(levels, requested, OverviewPolicy.QUALITY));
+        assertEquals(2, CoverageReadPlanner.selectLevel(levels, requested, OverviewPolicy.SPEED));
+        assertEquals(0, CoverageReadPlanner.selectLevel(levels, requested, OverviewPolicy.IGNORE));
+        assertEquals(2, CoverageReadPlanner.selectLevel(levels, new double[] { 3.5, 3.5 },
+                OverviewPolicy.NEAREST));
+        assertEquals(0, CoverageReadPlanner.selectLevel(levels, new double[] { 0.5, 0.5 },
+                OverviewPolicy.SPEED));
+        assertEquals(2, CoverageReadPlanner.selectLevel(levels, new double[] { 10, 10 },
+                OverviewPolicy.QUALITY));
+    }
+
+    @Test
+    public void testPolicyProperty() throws Exception {
+        System.setProperty(CoverageReadPlanner.OVERVIEW_POLICY, "speed");
+        try {
+            assertEquals(OverviewPolicy.SPEED, CoverageReadPlanner.getOverviewPolicy(null, null));
+            // interpolating a coarser overview would blur the output
+            assertEquals(OverviewPolicy.QUALITY, CoverageReadPlanner.getOverviewPolicy(null,
+                    Interpolation.getInstance(Interpolation.INTERP_BICUBIC)));
+        } finally {
+            System.clearProperty(CoverageReadPlanner.OVERVIEW_POLICY);
+        }
+    }
+
+    /**
+     * Writes a tiled GeoTIFF covering {@link #BOUNDS} with the specified number of internal
+     * overviews, each half the size of the previous one, as gdaladdo would do
+     */
+    static void createPyramid(File file, int size, int overviews) throws Exception {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.RED, size, size, Color.BLUE));
+        g.fillRect(0, 0, size, size);
+        g.dispose();
+
+        GridCoverage2D coverage = CoverageFactoryFinder.getGridCoverageFactory(null).create(
+                "pyramid", image, BOUNDS);
+        GeoTiffWriteParams wp = new GeoTiffWriteParams();
+        wp.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
+        wp.setTiling(256, 256);
+        ParameterValueGroup writerParams = new GeoTiffFormat().getWriteParameters();
+        writerParams.parameter(AbstractGridFormat.GEOTOOLS_WRITE_PARAMS.getName().toString())
+                .setValue(wp);
+        GeoTiffWriter writer = new GeoTiffWriter(file);
+        try {
+            writer.write(coverage, (GeneralParameterValue[]) writerParams.values().toArray(
+                    new GeneralParameterValue[1]));
+        } finally {
+            writer.dispose();
+        }
+
+        // append the overviews as further pages of the same file
+        ImageWriter tiffWriter = new TIFFImageWriterSpi().createWriterInstance();
+        ImageOutputStream out = new FileImageOutputStream(file);
+        try {
+            tiffWriter.setOutput(out);
+            for (int i = 1; i <= overviews; i++) {
+                int overviewSize = size >> i;
+                BufferedImage overview = new BufferedImage(overviewSize, overviewSize,
+                        BufferedImage.TYPE_3BYTE_BGR);
+                Graphics2D og = overview.createGraphics();
+                og.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                og.drawImage(image, 0, 0, overviewSize, overviewSize, null);
+                og.dispose();
+
+                ImageWriteParam param = tiffWriter.getDefaultWriteParam();
+                param.setTilingMode(ImageWriteParam.MODE_EXPLICIT);
+                int tileSize = Math.min(256, overviewSize);
+                param.setTiling(tileSize, tileSize, 0, 0);
+                tiffWriter.writeInsert(-1, new IIOImage(overview, null, null), param);
+            }
+        } finally {
+            tiffWriter.dispose();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.jai;
+
+import static org.junit.Assert.*;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+
+import org.junit.Test;
+
+public class ConcurrentTileCacheTest {
+
+    static final int TILE_SIZE = 64 * 64;
+
+    RenderedImage image() {
+        return new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    Raster tile() {
+        return Raster.createBandedRaster(DataBuffer.TYPE_BYTE, 64, 64, 1,
+                new Point(0, 0));
+    }
+
+    @Test
+    public void testAddGet() {
+        ConcurrentTileCache cache = new ConcurrentTileCache(1024 * 1024);
+        RenderedImage image = image();
+        Raster tile = tile();
+
+        assertNull(cache.getTile(image, 0, 0));
+        cache.add(image, 0, 0, tile);
+        assertSame(tile, cache.getTile(image, 0, 0));
+        assertNull(cache.getTile(image, 1, 0));
+        assertNull(cache.getTile(image(), 0, 0));
+
+        assertEquals(1, cache.getCacheTileCount());
+        assertEquals(TILE_SIZE, cache.getCacheMemoryUsed());
+        assertEquals(1, cache.getCacheHitCount());
+        assertEquals(3, cache.getCacheMissCount());
+    }
+
+    @Test
+    public void testOwnerTiles() {
+        ConcurrentTileCache cache = new ConcurrentTileCache(1024 * 1024);
+        RenderedImage image1 = image();
+        RenderedImage image2 = image();
+        cache.add(image1, 0, 0, tile());
+        cache.add(image1, 1, 0, tile());
+        cache.add(image2, 0, 0, tile());
+
+        assertEquals(2, cache.getTiles(image1).length);
+        assertEquals(2, cache.getCacheOwnerCount());
+
+        cache.removeTiles(image1);
+        assertNull(cache.getTiles(image1));
+        assertEquals(1, cache.getTiles(image2).length);
+        assertEquals(TILE_SIZE, cache.getCacheMemoryUsed());
+
+        cache.remove(image2, 0, 0);
+        assertNull(cache.getTile(image2, 0, 0));
+        assertEquals(0, cache.getCacheMemoryUsed());
+    }
+
+    @Test
+    public void testReplaceTile() {
+        ConcurrentTileCache cache = new ConcurrentTileCache(1024 * 1024);
+        RenderedImage image = image();
+        cache.add(image, 0, 0, tile());
+        WritableRaster replacement = (WritableRaster) tile();
+        cache.add(image, 0, 0, replacement);
+        assertSame(replacement, cache.getTile(image, 0, 0));
+        assertEquals(TILE_SIZE, cache.getCacheMemoryUsed());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        // room for 10 tiles, evicting down to 5
+        ConcurrentTileCache cache = new ConcurrentTileCache(TILE_SIZE * 10);
+        cache.setMemoryThreshold(0.5f);
+        RenderedImage image = image();
+        for (int i = 0; i < 10; i++) {
+            cache.add(image, i, 0, tile());
+        }
+        assertEquals(0, cache.getCacheEvictionCount());
+
+        // make the first tile the most recently used one
+        Thread.sleep(1);
+        assertNotNull(cache.getTile(image, 0, 0));
+
+        cache.add(image, 10, 0, tile());
+        assertTrue(cache.getCacheMemoryUsed() <= TILE_SIZE * 5);
+        assertEquals(6, cache.getCacheEvictionCount());
+        assertNotNull(cache.getTile(image, 0, 0));
+        assertNotNull(cache.getTile(image, 10, 0));
+        assertNull(cache.getTile(image, 1, 0));
+        assertEquals(cache.getCacheTileCount(), cache.getTiles(image).length);
+    }
+
+    @Test
+    public void testTooLarge() {
+        ConcurrentTileCache cache = new ConcurrentTileCache(TILE_SIZE - 1);
+        RenderedImage image = image();
+        cache.add(image, 0, 0, tile());
+        assertNull(cache.getTile(image, 0, 0));
+    }
+
+    @Test
+    public void testFlush() {
+        ConcurrentTileCache cache = new ConcurrentTileCache(1024 * 1024);
+        RenderedImage image = image();
+        cache.add(image, 0, 0, tile());
+        cache.add(image, 0, 1, tile());
+        cache.flush();
+        assertEquals(0, cache.getCacheTileCount());
+        assertEquals(0, cache.getCacheMemoryUsed());
+        assertNull(cache.getTiles(image));
+
+        cache.add(image, 0, 0, tile());
+        cache.setMemoryCapacity(0);
+        assertEquals(0, cache.getCacheTileCount());
+    }
+}
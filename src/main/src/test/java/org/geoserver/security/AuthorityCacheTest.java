@@ -0,0 +1,127 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AuthorityCacheTest {
+
+    static class CountingLoader implements AuthorityCache.Loader<String> {
+        AtomicInteger calls = new AtomicInteger();
+
+        String value;
+
+        CountingLoader(String value) {
+            this.value = value;
+        }
+
+        public String load() throws IOException {
+            calls.incrementAndGet();
+            return value;
+        }
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        AuthorityCache cache = new AuthorityCache(60000, 100);
+        CountingLoader loader = new CountingLoader("value");
+
+        assertEquals("value", cache.get("service", "type", "key", loader));
+        assertEquals("value", cache.get("service", "type", "key", loader));
+        assertEquals(1, loader.calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRatio(), 0d);
+
+        // different type, service or key are separate entries
+        cache.get("service", "other", "key", loader);
+        cache.get("other", "type", "key", loader);
+        cache.get("service", "type", "other", loader);
+        assertEquals(4, loader.calls.get());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        AuthorityCache cache = new AuthorityCache(60000, 100);
+        CountingLoader loader = new CountingLoader(null);
+
+        assertNull(cache.get("service", "type", "key", loader));
+        assertNull(cache.get("service", "type", "key", loader));
+        assertEquals(1, loader.calls.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        AuthorityCache cache = new AuthorityCache(50, 100);
+        CountingLoader loader = new CountingLoader("value");
+
+        cache.get("service", "type", "key", loader);
+        Thread.sleep(100);
+        cache.get("service", "type", "key", loader);
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        AuthorityCache cache = new AuthorityCache(0, 100);
+        CountingLoader loader = new CountingLoader("value");
+
+        cache.get("service", "type", "key", loader);
+        cache.get("service", "type", "key", loader);
+        assertEquals(2, loader.calls.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        AuthorityCache cache = new AuthorityCache(60000, 100);
+        CountingLoader loader = new CountingLoader("value");
+
+        cache.get("service", "type", "key", loader);
+        cache.get("other", "type", "key", loader);
+        cache.invalidate("service");
+        assertEquals(1, cache.size());
+
+        cache.get("service", "type", "key", loader);
+        cache.get("other", "type", "key", loader);
+        assertEquals(3, loader.calls.get());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidateWhileLoading() throws Exception {
+        final AuthorityCache cache = new AuthorityCache(60000, 100);
+        // the service gets modified while the value is being loaded
+        AuthorityCache.Loader<String> loader = new AuthorityCache.Loader<String>() {
+            public String load() throws IOException {
+                cache.invalidate("service");
+                return "stale";
+            }
+        };
+
+        assertEquals("stale", cache.get("service", "type", "key", loader));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        AuthorityCache cache = new AuthorityCache(60000, 10);
+        CountingLoader loader = new CountingLoader("value");
+
+        for (int i = 0; i < 100; i++) {
+            cache.get("service", "type", "key" + i, loader);
+        }
+        assertTrue(cache.size() <= 10);
+    }
+}
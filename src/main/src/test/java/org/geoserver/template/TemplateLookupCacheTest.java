@@ -0,0 +1,137 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.template;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TemplateLookupCacheTest extends GeoServerSystemTestSupport {
+
+    TemplateLookupCache cache;
+
+    @Before
+    public void setUpCache() {
+        cache = applicationContext.getBean(TemplateLookupCache.class);
+        // we don't want the watcher thread to interfere
+        cache.setCheckInterval(0);
+        cache.clear();
+    }
+
+    @After
+    public void resetCache() {
+        cache.setCheckInterval(TemplateLookupCache.DEFAULT_CHECK_INTERVAL);
+        cache.clear();
+    }
+
+    GeoServerTemplateLoader loader(FeatureTypeInfo ft) throws Exception {
+        GeoServerTemplateLoader loader = new GeoServerTemplateLoader(getClass(),
+                getDataDirectory());
+        assertSame(cache, loader.lookupCache);
+        loader.setFeatureType(ft);
+        return loader;
+    }
+
+    @Test
+    public void testNegativeLookupCached() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+
+        // not in the data directory, but found in the classpath
+        Object source = loader(ft).findTemplateSource("FeatureSimple.ftl");
+        assertNotNull(source);
+        assertFalse(source instanceof File);
+        assertEquals(misses + 1, cache.getMisses());
+
+        // a new loader, as the GetFeatureInfo output formats do, hits the cache
+        source = loader(ft).findTemplateSource("FeatureSimple.ftl");
+        assertNotNull(source);
+        assertFalse(source instanceof File);
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void testTemplateAdded() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        assertNull(loader(ft).findTemplateSource("lookup.ftl"));
+        assertNull(loader(ft).findTemplateSource("lookup.ftl"));
+
+        File dir = getDataDirectory().findResourceDir(ft);
+        File template = new File(dir, "lookup.ftl");
+        // make sure the directory modification time changes, even on coarse grained file systems
+        long lastModified = dir.lastModified();
+        template.createNewFile();
+        try {
+            dir.setLastModified(lastModified + 2000);
+            assertTrue(cache.checkWatched());
+            assertEquals(0, cache.size());
+
+            File found = (File) loader(ft).findTemplateSource("lookup.ftl");
+            assertEquals(template.getCanonicalPath(), found.getCanonicalPath());
+        } finally {
+            template.delete();
+        }
+    }
+
+    @Test
+    public void testResourceLoaderWriteClears() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        assertNull(loader(ft).findTemplateSource("lookup.ftl"));
+        assertEquals(1, cache.size());
+
+        // no need to wait for the watcher when writing through the data directory
+        getDataDirectory().copyToResourceDir(ft, new ByteArrayInputStream("lookup".getBytes()),
+                "lookup.ftl");
+        File template = new File(getDataDirectory().findResourceDir(ft), "lookup.ftl");
+        try {
+            assertEquals(0, cache.size());
+            File found = (File) loader(ft).findTemplateSource("lookup.ftl");
+            assertEquals(template.getCanonicalPath(), found.getCanonicalPath());
+        } finally {
+            template.delete();
+        }
+    }
+
+    @Test
+    public void testTemplateRemoved() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        File template = getResourceLoader().createFile(getDataDirectory().findResourceDir(ft),
+                "lookup.ftl");
+        try {
+            File found = (File) loader(ft).findTemplateSource("lookup.ftl");
+            assertEquals(template.getCanonicalPath(), found.getCanonicalPath());
+        } finally {
+            template.delete();
+        }
+
+        // the cached location is checked before being used
+        assertEquals(1, cache.size());
+        assertNull(loader(ft).findTemplateSource("lookup.ftl"));
+    }
+
+    @Test
+    public void testCatalogChangeClears() throws Exception {
+        FeatureTypeInfo ft = getCatalog().getFeatureTypeByName(getLayerId(MockData.LAKES));
+        loader(ft).findTemplateSource("content.ftl");
+        assertEquals(1, cache.size());
+        assertFalse(cache.checkWatched());
+
+        Catalog catalog = getCatalog();
+        ft.setTitle("Lakes, again");
+        catalog.save(ft);
+        assertEquals(0, cache.size());
+    }
+}
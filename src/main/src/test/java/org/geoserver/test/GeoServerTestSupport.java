@@ -5,6 +5,7 @@
 package org.geoserver.test;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -66,6 +67,10 @@ public abstract class GeoServerTestSupport extends GeoServerAbstractTestSupport
         throws IOException {
         
         getTestData().copyToFeatureTypeDirectory( new ByteArrayInputStream(body.getBytes()), featureTypeName, template );
+        //let the resource loader listeners know about the new template
+        File dir = new File(getTestData().getFeatureTypesDirectory(),
+                featureTypeName.getPrefix() + "_" + featureTypeName.getLocalPart());
+        getResourceLoader().changed(new File(dir, template));
     }
 
     
@@ -13,8 +13,10 @@ import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +67,11 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
      */
     File baseDirectory;
 
+    /**
+     * Listeners notified of the files written through the loader
+     */
+    List<ResourceChangeListener> listeners = new CopyOnWriteArrayList<ResourceChangeListener>();
+
     /**
      * Creates a new resource loader with no base directory.
      * <p>
@@ -161,6 +168,35 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
         searchLocations.add(baseDirectory);
     }
 
+    /**
+     * Adds a listener notified of the files and directories created or written through this
+     * loader.
+     */
+    public void addListener(ResourceChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ResourceChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners that the specified file or directory has been created or written.
+     * <p>
+     * Code writing to the data directory without going through this loader should call this
+     * method once done.
+     * </p>
+     */
+    public void changed(File file) {
+        for (ResourceChangeListener listener : listeners) {
+            try {
+                listener.changed(file);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Resource change listener failed", e);
+            }
+        }
+    }
+
     /**
      * Performs a resource lookup.
      *
@@ -421,6 +457,7 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
 
         if (file.isAbsolute()) {
             file.mkdirs();
+            changed(file);
 
             return file;
         }
@@ -442,6 +479,7 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
         }
 
         file.mkdirs();
+        changed(file);
         return file;
     }
 
@@ -525,6 +563,7 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
 
         if (file.isAbsolute()) {
             file.createNewFile();
+            changed(file);
 
             return file;
         }
@@ -541,6 +580,7 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
                 file.getParentFile().mkdirs();
             }
             file.createNewFile();
+            changed(file);
         }
         
         return file;
@@ -610,6 +650,7 @@ public class GeoServerResourceLoader extends DefaultResourceLoader implements Ap
             } catch(IOException e) {
                 // we tried...
             }
+            changed(target);
         }
     }
     
@@ -0,0 +1,21 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform;
+
+import java.io.File;
+
+/**
+ * Listener notified of the files and directories created or written through a
+ * {@link GeoServerResourceLoader}.
+ * 
+ * @see GeoServerResourceLoader#addListener(ResourceChangeListener)
+ */
+public interface ResourceChangeListener {
+
+    /**
+     * Called after the specified file or directory has been created or written
+     */
+    void changed(File file);
+}
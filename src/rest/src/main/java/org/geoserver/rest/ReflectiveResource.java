@@ -10,15 +10,20 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.geoserver.ows.util.ResponseUtils;
 import org.geoserver.rest.format.DataFormat;
 import org.geoserver.rest.format.ReflectiveHTMLFormat;
 import org.geoserver.rest.format.ReflectiveJSONFormat;
 import org.geoserver.rest.format.ReflectiveXMLFormat;
+import org.geoserver.rest.util.RESTUtils;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
 import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.Representation;
 
 import com.thoughtworks.xstream.XStream;
 
@@ -74,8 +79,9 @@ public abstract class ReflectiveResource extends AbstractResource {
      * <ol>
      *   <li>Determining the serialization format from {@link #getFormatGet()}
      *   <li>Getting the target object from {@link #handleObjectGet()}
+     *   <li>Answering with a {@code 304} status if the tag from {@link #getTagGet(Object)} 
+     *   matches the {@code If-None-Match} header
      *   <li>Serializing to output
-     *   <li>
      * </ol>
      * </p>
      * 
@@ -85,7 +91,17 @@ public abstract class ReflectiveResource extends AbstractResource {
     public final void handleGet() {
         DataFormat format = getFormatGet();
         try {
-            getResponse().setEntity(format.toRepresentation(handleObjectGet()));
+            Object object = handleObjectGet();
+            Tag tag = getTagGet(object);
+            if (tag != null && isNotModified(tag)) {
+                getResponse().setStatus(Status.REDIRECTION_NOT_MODIFIED);
+                return;
+            }
+            Representation representation = format.toRepresentation(object);
+            if (tag != null) {
+                representation.setTag(tag);
+            }
+            getResponse().setEntity(representation);
         } 
         catch (Exception e) {
             handleException(e);
@@ -97,6 +113,41 @@ public abstract class ReflectiveResource extends AbstractResource {
      */
     protected abstract Object handleObjectGet() throws Exception;
 
+    /**
+     * Returns the entity tag of the target object returned by {@link #handleObjectGet()}, used
+     * to answer conditional GET requests with a {@code 304} status.
+     * <p>
+     * The default implementation returns <code>null</code>, meaning no tag is sent and GET
+     * requests are never conditional. Subclasses must account for the output format when
+     * computing the tag.
+     * </p>
+     */
+    protected Tag getTagGet(Object object) throws Exception {
+        return null;
+    }
+
+    /**
+     * Checks the {@code If-None-Match} header of the request against the tag
+     */
+    boolean isNotModified(Tag tag) {
+        HttpServletRequest request = RESTUtils.getServletRequest(getRequest());
+        String ifNoneMatch = request != null ? request.getHeader("If-None-Match") : null;
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String match : ifNoneMatch.split(",")) {
+            match = match.trim();
+            if (match.startsWith("W/")) {
+                match = match.substring(2);
+            }
+            if (match.equals("*") || match.equals(tag.getName())
+                    || match.equals("\"" + tag.getName() + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Handles a POST request by de-serializing the content of the request into an instance 
      * of the target object.
@@ -4,21 +4,43 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.sortBy;
+
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.config.util.XStreamPersister;
 import org.geoserver.ows.util.OwsUtils;
+import org.geoserver.rest.RestletException;
+import org.geoserver.rest.format.DataFormat;
 import org.geoserver.rest.format.ReflectiveJSONFormat;
 import org.geoserver.rest.format.ReflectiveXMLFormat;
+import org.geoserver.util.XCQL;
+import org.geotools.filter.text.cql2.CQLException;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.restlet.Context;
+import org.restlet.data.Form;
+import org.restlet.data.MediaType;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Representation;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
@@ -28,8 +50,26 @@ import com.thoughtworks.xstream.converters.collections.CollectionConverter;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
 import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 
+/**
+ * Base class for resources listing catalog objects.
+ * <p>
+ * The list can be paged, sorted and filtered with the {@code offset}, {@code limit},
+ * {@code sort} (as in {@code sort=name} or {@code sort=name:desc}) and {@code filter} (ECQL)
+ * query parameters. Subclasses that can express their list as a catalog query through
+ * {@link #handleListFilter()} have the query run by {@link Catalog#list}, and the objects are
+ * streamed out while being encoded, others have their {@link #handleListGet()} list paged in
+ * memory. The total number of matching objects is returned in the {@value #TOTAL_COUNT_HEADER}
+ * header, and the lists obtained from a catalog query are tagged for conditional requests.
+ * </p>
+ */
 public abstract class AbstractCatalogListResource extends CatalogResourceBase {
 
+    /**
+     * Response header holding the total number of objects matching the request, regardless of
+     * paging
+     */
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
     protected AbstractCatalogListResource(Context context, Request request,
             Response response, Class clazz, Catalog catalog) {
         super(context, request, response, clazz, catalog);
@@ -37,11 +77,269 @@ public abstract class AbstractCatalogListResource extends CatalogResourceBase {
 
     @Override
     protected final Object handleObjectGet() throws Exception {
-        return XStreamPersister.unwrapProxies( handleListGet() );
+        Form form = getRequest().getResourceRef().getQueryAsForm();
+        Integer offset = toInteger(form, "offset");
+        Integer limit = toInteger(form, "limit");
+        Filter filter = toFilter(form);
+        String sort = form.getFirstValue("sort", true);
+
+        Filter base = handleListFilter();
+        if (base != null) {
+            if (filter != null) {
+                base = and(base, filter);
+            }
+            int total = catalog.count(clazz, base);
+            setTotalCount(total);
+
+            int size = Math.max(0, total - (offset != null ? offset : 0));
+            if (limit != null) {
+                size = Math.min(size, limit);
+            }
+            SortBy sortBy = toSortBy(sort);
+            if (sortBy != null && !catalog.getFacade().canSort(clazz,
+                    sortBy.getPropertyName().getPropertyName())) {
+                throw new RestletException("Cannot sort on " + sort,
+                        Status.CLIENT_ERROR_BAD_REQUEST);
+            }
+            return new CatalogCollection(catalog, clazz, base, offset, limit, sortBy, size);
+        }
+
+        Collection list = handleListGet();
+        if (offset != null || limit != null || filter != null || sort != null) {
+            list = page(list, filter, toSortBy(sort), offset, limit);
+        }
+        else {
+            setTotalCount(list.size());
+        }
+        return XStreamPersister.unwrapProxies( list );
     }
     
     protected abstract Collection handleListGet() throws Exception;
+
+    /**
+     * Returns the filter selecting the objects of the list among the catalog objects of the
+     * resource class, or <code>null</code> if the list cannot be expressed as a catalog query, in
+     * which case the list is obtained from {@link #handleListGet()}.
+     * <p>
+     * The default implementation returns <code>null</code>.
+     * </p>
+     */
+    protected Filter handleListFilter() throws Exception {
+        return null;
+    }
+
+    /**
+     * Tags the lists obtained from a catalog query with a digest of the update sequence, which is
+     * increased on every catalog change, the requested resource and query, the user and the
+     * format, so that the tag is computed without running the query. Lists paged in memory are
+     * not tagged.
+     */
+    @Override
+    protected Tag getTagGet(Object object) throws Exception {
+        if (!(object instanceof CatalogCollection) || geoServer == null) {
+            return null;
+        }
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        DataFormat format = getFormatGet();
+        if (format != null && format.getMediaType() != null) {
+            digest.update(format.getMediaType().toString().getBytes("UTF-8"));
+        }
+        digest.update((byte) 0);
+        digest.update(String.valueOf(geoServer.getGlobal().getUpdateSequence()).getBytes("UTF-8"));
+        digest.update((byte) 0);
+        digest.update(getRequest().getResourceRef().toString().getBytes("UTF-8"));
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getName() != null) {
+            digest.update((byte) 0);
+            digest.update(auth.getName().getBytes("UTF-8"));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return new Tag(sb.toString(), false);
+    }
+
+    Integer toInteger(Form form, String name) {
+        String value = form.getFirstValue(name, true);
+        if (value == null) {
+            return null;
+        }
+        try {
+            int i = Integer.parseInt(value);
+            if (i < 0) {
+                throw new NumberFormatException();
+            }
+            return i;
+        } catch (NumberFormatException e) {
+            throw new RestletException("Invalid " + name + ": " + value,
+                    Status.CLIENT_ERROR_BAD_REQUEST);
+        }
+    }
+
+    Filter toFilter(Form form) {
+        String cql = form.getFirstValue("filter", true);
+        if (cql == null) {
+            return null;
+        }
+        try {
+            return XCQL.toFilter(cql);
+        } catch (CQLException e) {
+            throw new RestletException("Invalid filter: " + cql, Status.CLIENT_ERROR_BAD_REQUEST,
+                    e);
+        }
+    }
+
+    SortBy toSortBy(String sort) {
+        if (sort == null) {
+            return null;
+        }
+        String[] parts = sort.split(":");
+        boolean ascending = true;
+        if (parts.length == 2) {
+            if ("desc".equalsIgnoreCase(parts[1])) {
+                ascending = false;
+            } else if (!"asc".equalsIgnoreCase(parts[1])) {
+                parts = null;
+            }
+        }
+        if (parts == null || parts.length > 2 || parts[0].length() == 0) {
+            throw new RestletException("Invalid sort: " + sort, Status.CLIENT_ERROR_BAD_REQUEST);
+        }
+        return sortBy(parts[0], ascending);
+    }
+
+    /**
+     * Filters, sorts and pages a list in memory
+     */
+    Collection page(Collection list, Filter filter, final SortBy sortBy, Integer offset,
+            Integer limit) {
+        List items = new ArrayList();
+        for (Object item : list) {
+            if (filter == null || filter.evaluate(item)) {
+                items.add(item);
+            }
+        }
+        setTotalCount(items.size());
+
+        if (sortBy != null) {
+            final String property = sortBy.getPropertyName().getPropertyName();
+            final Map<Object, Comparable> values = new IdentityHashMap<Object, Comparable>();
+            for (Object item : items) {
+                values.put(item, getSortValue(item, property));
+            }
+            Collections.sort(items, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    Comparable v1 = values.get(o1);
+                    Comparable v2 = values.get(o2);
+                    int result;
+                    if (v1 == null) {
+                        result = v2 == null ? 0 : -1;
+                    } else {
+                        result = v2 == null ? 1 : v1.compareTo(v2);
+                    }
+                    return SortOrder.DESCENDING.equals(sortBy.getSortOrder()) ? -result : result;
+                }
+            });
+        }
+
+        int from = Math.min(offset != null ? offset : 0, items.size());
+        int to = limit != null ? Math.min(items.size(), from + limit) : items.size();
+        return new ArrayList(items.subList(from, to));
+    }
+
+    /**
+     * Returns the value of the sort property of the item, failing with a 400 status if the item
+     * has no such property or the property cannot be compared
+     */
+    Comparable getSortValue(Object item, String property) {
+        Object value;
+        try {
+            value = OwsUtils.get(item, property);
+        } catch (IllegalArgumentException e) {
+            throw new RestletException("Cannot sort on " + property,
+                    Status.CLIENT_ERROR_BAD_REQUEST, e);
+        }
+        if (value != null && !(value instanceof Comparable)) {
+            throw new RestletException("Cannot sort on " + property,
+                    Status.CLIENT_ERROR_BAD_REQUEST);
+        }
+        return (Comparable) value;
+    }
+
+    void setTotalCount(int total) {
+        getResponseHeaders().set(TOTAL_COUNT_HEADER, String.valueOf(total));
+    }
+
+    Form getResponseHeaders() {
+        Form headers = (Form) getResponse().getAttributes().get("org.restlet.http.headers");
+        if (headers == null) {
+            headers = new Form();
+            getResponse().getAttributes().put("org.restlet.http.headers", headers);
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the name, or the id if there is no name, under which the item is listed
+     */
+    String getItemRef(Object item) {
+        if ( OwsUtils.getter( clazz, "name", String.class ) != null ) {
+            return (String) OwsUtils.get( item, "name");
+        }
+        else if ( OwsUtils.getter( clazz, "id", String.class ) != null ) {
+            return (String) OwsUtils.get( item, "id");
+        }
+        else {
+            throw new RuntimeException( "Could not determine identifier for: " + clazz.getName());
+        }
+    }
     
+    /**
+     * Wraps the HTML format so that the catalog iterators are closed once the template has been
+     * processed, the XML and JSON formats close them on their own
+     */
+    @Override
+    protected List<DataFormat> createSupportedFormats(Request request, Response response) {
+        List<DataFormat> formats = super.createSupportedFormats(request, response);
+        for (int i = 0; i < formats.size(); i++) {
+            final DataFormat format = formats.get(i);
+            if (MediaType.TEXT_HTML.equals(format.getMediaType())) {
+                formats.set(i, new DataFormat(format.getMediaType()) {
+                    @Override
+                    public Representation toRepresentation(Object object) {
+                        return closing(format.toRepresentation(object), object);
+                    }
+
+                    @Override
+                    public Object toObject(Representation representation) {
+                        return format.toObject(representation);
+                    }
+                });
+            }
+        }
+        return formats;
+    }
+
+    Representation closing(final Representation representation, final Object data) {
+        if (!(data instanceof CatalogCollection)) {
+            return representation;
+        }
+        OutputRepresentation closing = new OutputRepresentation(representation.getMediaType()) {
+            @Override
+            public void write(OutputStream outputStream) throws IOException {
+                try {
+                    representation.write(outputStream);
+                } finally {
+                    ((CatalogCollection) data).close();
+                }
+            }
+        };
+        closing.setCharacterSet(representation.getCharacterSet());
+        return closing;
+    }
+
     //JD: we create custom formats here because we need to set up the collection aliases
     // correctly, basically whatever collection we get back we ant to alias to layers, featureTypes,
     // coverages, styles, etc...
@@ -57,7 +355,13 @@ public abstract class AbstractCatalogListResource extends CatalogResourceBase {
             @Override
             protected void write(Object data, OutputStream output) throws IOException {
                 aliasCollection(data, f.getXStream());
-                f.getXStream().toXML(data, output);
+                try {
+                    f.getXStream().toXML(data, output);
+                } finally {
+                    if (data instanceof CatalogCollection) {
+                        ((CatalogCollection) data).close();
+                    }
+                }
             }
         };
     }
@@ -74,7 +378,13 @@ public abstract class AbstractCatalogListResource extends CatalogResourceBase {
             @Override
             protected void write(Object data, OutputStream output) throws IOException {
                 aliasCollection(data, f.getXStream());
-                f.getXStream().toXML(data, output);
+                try {
+                    f.getXStream().toXML(data, output);
+                } finally {
+                    if (data instanceof CatalogCollection) {
+                        ((CatalogCollection) data).close();
+                    }
+                }
             }
         };
     }
@@ -112,16 +422,7 @@ public abstract class AbstractCatalogListResource extends CatalogResourceBase {
                         HierarchicalStreamWriter writer,
                         MarshallingContext context) {
                     
-                    String ref = null;
-                    if ( OwsUtils.getter( clazz, "name", String.class ) != null ) {
-                        ref = (String) OwsUtils.get( source, "name");
-                    }
-                    else if ( OwsUtils.getter( clazz, "id", String.class ) != null ) {
-                        ref = (String) OwsUtils.get( source, "id");
-                    }
-                    else {
-                        throw new RuntimeException( "Could not determine identifier for: " + clazz.getName());
-                    }
+                    String ref = getItemRef(source);
                     writer.startNode( "name" );
                     writer.setValue(ref);
                     writer.endNode();
@@ -0,0 +1,35 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.rest;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.rest.RestletException;
+import org.restlet.data.Method;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.Resource;
+
+public class BulkFinder extends AbstractCatalogFinder {
+
+    public BulkFinder(Catalog catalog) {
+        super(catalog);
+    }
+
+    @Override
+    public Resource findTarget(Request request, Response response) {
+        if (request.getMethod() != Method.POST) {
+            throw new RestletException("Bulk operations must be POSTed",
+                    Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+        }
+        String format = getAttribute(request, "format");
+        if (format != null && !"xml".equals(format)) {
+            throw new RestletException("Unsupported bulk format: " + format,
+                    Status.CLIENT_ERROR_UNSUPPORTED_MEDIA_TYPE);
+        }
+        return new BulkResource(getContext(), request, response, catalog);
+    }
+
+}
@@ -0,0 +1,427 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.rest;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogBatch;
+import org.geoserver.catalog.CatalogBatch.Operation;
+import org.geoserver.catalog.CatalogBatch.Type;
+import org.geoserver.catalog.CatalogBuilder;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.CoverageInfo;
+import org.geoserver.catalog.CoverageStoreInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WMSLayerInfo;
+import org.geoserver.catalog.WMSStoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.rest.RestletException;
+import org.geotools.util.logging.Logging;
+import org.restlet.Context;
+import org.restlet.data.MediaType;
+import org.restlet.data.Request;
+import org.restlet.data.Response;
+import org.restlet.data.Status;
+import org.restlet.resource.OutputRepresentation;
+import org.restlet.resource.Resource;
+
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+import com.thoughtworks.xstream.io.xml.XppDriver;
+
+/**
+ * Applies a stream of catalog add, save and remove operations in a single request.
+ * <p>
+ * The request body lists the operations, each one wrapping a catalog object encoded as in the
+ * other catalog resources:
+ *
+ * <pre>
+ * &lt;bulk>
+ *   &lt;add>&lt;workspace>&lt;name>foo&lt;/name>&lt;/workspace>&lt;/add>
+ *   &lt;save>&lt;style>&lt;name>line&lt;/name>&lt;filename>line.sld&lt;/filename>&lt;/style>&lt;/save>
+ *   &lt;remove>&lt;layerGroup>&lt;name>group&lt;/name>&lt;/layerGroup>&lt;/remove>
+ * &lt;/bulk>
+ * </pre>
+ *
+ * Objects are added as described, without accessing the underlying data, so resources have to be
+ * fully described (bounds, projection, attributes) and their layers added explicitly. Objects to
+ * save or remove are looked up by name, the values of the object being saved are copied over the
+ * existing one as in a PUT. References to other catalog objects are made by name as well, for
+ * example {@code <store class="dataStore"><workspace>ws</workspace><name>store</name></store>} or
+ * {@code <resource class="featureType"><name>ws:layer</name></resource>}.
+ * </p>
+ * <p>
+ * Only XML is supported, requests for other formats are refused with a 415 status code.
+ * </p>
+ * <p>
+ * The operations are parsed and applied one at a time by {@link Catalog#execute(CatalogBatch)},
+ * so an operation can refer to objects added earlier in the same request, and the response
+ * reports the outcome of each operation in order. A failing operation does not stop the following
+ * ones, a malformed request body stops the processing at the point of the error. Errors raised by
+ * the catalog listeners are reported apart, as the operation has been applied anyways.
+ * </p>
+ * <p>
+ * The results are written out once the whole batch has been applied, not as each operation
+ * completes: the configuration lock taken by {@code RestConfigurationLockCallback} is released
+ * before the response entity is written, so the operations cannot be applied while streaming the
+ * response. The results are small compared to the request, and are streamed out of the batch.
+ * </p>
+ */
+public class BulkResource extends Resource {
+
+    static Logger LOGGER = Logging.getLogger("org.geoserver.catalog.rest");
+
+    Catalog catalog;
+
+    XStreamPersisterFactory xpf;
+
+    public BulkResource(Context context, Request request, Response response, Catalog catalog) {
+        super(context, request, response);
+        this.catalog = catalog;
+        this.xpf = GeoServerExtensions.bean(XStreamPersisterFactory.class);
+    }
+
+    @Override
+    public boolean allowGet() {
+        return false;
+    }
+
+    @Override
+    public boolean allowPost() {
+        return true;
+    }
+
+    @Override
+    public void handlePost() {
+        XStreamPersister xp = xpf.createXMLPersister();
+        xp.setCatalog(catalog);
+
+        if (!getRequest().isEntityAvailable()) {
+            throw new RestletException("No bulk operations specified",
+                    Status.CLIENT_ERROR_BAD_REQUEST);
+        }
+        HierarchicalStreamReader reader;
+        try {
+            reader = new XppDriver().createReader(new InputStreamReader(getRequest().getEntity()
+                    .getStream(), "UTF-8"));
+        } catch (IOException e) {
+            throw new RestletException("Error reading the bulk operations",
+                    Status.SERVER_ERROR_INTERNAL, e);
+        }
+
+        CatalogBatch batch = new CatalogBatch(new OperationReader(reader, xp));
+        try {
+            catalog.execute(batch);
+        } finally {
+            reader.close();
+        }
+
+        final List<Operation> operations = batch.getOperations();
+        LOGGER.info("Applied " + operations.size() + " bulk catalog operations");
+
+        getResponse().setEntity(new OutputRepresentation(MediaType.TEXT_XML) {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                writeResults(operations, output);
+            }
+        });
+        getResponse().setStatus(Status.SUCCESS_OK);
+    }
+
+    /**
+     * Writes out the outcome of each operation, in order
+     */
+    void writeResults(List<Operation> operations, OutputStream output) throws IOException {
+        Writer w = new OutputStreamWriter(output, "UTF-8");
+        PrettyPrintWriter writer = new PrettyPrintWriter(w);
+        writer.startNode("bulk");
+        for (Operation op : operations) {
+            BulkOperation bop = (BulkOperation) op;
+            writer.startNode("result");
+            node(writer, "operation", bop.getType() != null ? bop.getType().name().toLowerCase()
+                    : "unknown");
+            if (bop.element != null) {
+                node(writer, "type", bop.element);
+            }
+            if (bop.name != null) {
+                node(writer, "name", bop.name);
+            }
+            node(writer, "success", String.valueOf(!bop.isFailed()));
+            if (bop.isFailed()) {
+                node(writer, "message", message(bop.getError()));
+            }
+            for (RuntimeException error : bop.getListenerErrors()) {
+                node(writer, "listenerError", message(error));
+            }
+            writer.endNode();
+        }
+        writer.endNode();
+        writer.flush();
+    }
+
+    String message(RuntimeException error) {
+        return error.getMessage() != null ? error.getMessage() : error.toString();
+    }
+
+    void node(PrettyPrintWriter writer, String name, String value) {
+        writer.startNode(name);
+        writer.setValue(value);
+        writer.endNode();
+    }
+
+    /**
+     * An operation along with the element and name it was parsed from, for reporting purposes
+     */
+    static class BulkOperation extends Operation {
+
+        String element;
+
+        String name;
+
+        BulkOperation(Type type, CatalogInfo object, String element, String name) {
+            super(type, object);
+            this.element = element;
+            this.name = name;
+        }
+
+        BulkOperation(Type type, RuntimeException error, String element, String name) {
+            super(type, error);
+            this.element = element;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Parses the operations out of the request body as they are pulled by the batch, so that
+     * references are resolved against the catalog as modified by the previous operations
+     */
+    class OperationReader implements Iterator<Operation> {
+
+        HierarchicalStreamReader reader;
+
+        XStreamPersister xp;
+
+        boolean broken;
+
+        OperationReader(HierarchicalStreamReader reader, XStreamPersister xp) {
+            this.reader = reader;
+            this.xp = xp;
+        }
+
+        public boolean hasNext() {
+            return !broken && reader.hasMoreChildren();
+        }
+
+        public Operation next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            reader.moveDown();
+            String operation = reader.getNodeName();
+            Type type;
+            try {
+                type = Type.valueOf(operation.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                reader.moveUp();
+                return new BulkOperation(null, new IllegalArgumentException(
+                        "Unknown bulk operation: " + operation), null, null);
+            }
+            if (!reader.hasMoreChildren()) {
+                reader.moveUp();
+                return new BulkOperation(type, new IllegalArgumentException(
+                        "No catalog object specified"), null, null);
+            }
+
+            reader.moveDown();
+            String element = reader.getNodeName();
+            Object parsed;
+            try {
+                parsed = xp.getXStream().unmarshal(reader);
+            } catch (RuntimeException e) {
+                // the reader position is unknown at this point, stop here
+                broken = true;
+                return new BulkOperation(type, e, element, null);
+            }
+            reader.moveUp();
+            reader.moveUp();
+
+            if (!(parsed instanceof CatalogInfo)) {
+                return new BulkOperation(type, new IllegalArgumentException(
+                        "Not a catalog object: " + element), element, null);
+            }
+            CatalogInfo info = (CatalogInfo) parsed;
+            String name = null;
+            try {
+                if (info instanceof ResourceInfo) {
+                    inferNamespace((ResourceInfo) info);
+                }
+                name = name(info);
+                if (type == Type.ADD) {
+                    return new BulkOperation(type, info, element, name);
+                }
+
+                CatalogInfo original = lookup(info);
+                if (original == null) {
+                    return new BulkOperation(type, new IllegalArgumentException("No such "
+                            + element + ": " + name), element, name);
+                }
+                if (type == Type.SAVE) {
+                    update(original, info);
+                }
+                return new BulkOperation(type, original, element, name);
+            } catch (RuntimeException e) {
+                return new BulkOperation(type, e, element, name);
+            }
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Resources are published in the namespace matching the workspace of their store
+     */
+    void inferNamespace(ResourceInfo resource) {
+        if (resource.getNamespace() == null && resource.getStore() != null
+                && resource.getStore().getWorkspace() != null) {
+            resource.setNamespace(catalog.getNamespaceByPrefix(resource.getStore().getWorkspace()
+                    .getName()));
+        }
+    }
+
+    /**
+     * Looks up the catalog object matching the parsed one by name
+     */
+    CatalogInfo lookup(CatalogInfo info) {
+        if (info instanceof WorkspaceInfo) {
+            return catalog.getWorkspaceByName(((WorkspaceInfo) info).getName());
+        }
+        if (info instanceof NamespaceInfo) {
+            return catalog.getNamespaceByPrefix(((NamespaceInfo) info).getPrefix());
+        }
+        if (info instanceof StoreInfo) {
+            StoreInfo store = (StoreInfo) info;
+            return catalog.getStoreByName(store.getWorkspace(), store.getName(), StoreInfo.class);
+        }
+        if (info instanceof ResourceInfo) {
+            ResourceInfo resource = (ResourceInfo) info;
+            if (resource.getNamespace() == null) {
+                return catalog.getResourceByName(resource.getName(), ResourceInfo.class);
+            }
+            return catalog.getResourceByName(resource.getNamespace(), resource.getName(),
+                    ResourceInfo.class);
+        }
+        if (info instanceof LayerInfo) {
+            ResourceInfo resource = ((LayerInfo) info).getResource();
+            if (resource == null) {
+                throw new IllegalArgumentException("The layer resource must be specified");
+            }
+            List<LayerInfo> layers = catalog.getLayers(resource);
+            return layers.isEmpty() ? null : layers.get(0);
+        }
+        if (info instanceof StyleInfo) {
+            StyleInfo style = (StyleInfo) info;
+            return style.getWorkspace() != null ? catalog.getStyleByName(style.getWorkspace(),
+                    style.getName()) : catalog.getStyleByName(style.getName());
+        }
+        if (info instanceof LayerGroupInfo) {
+            LayerGroupInfo group = (LayerGroupInfo) info;
+            return group.getWorkspace() != null ? catalog.getLayerGroupByName(
+                    group.getWorkspace(), group.getName()) : catalog.getLayerGroupByName(group
+                    .getName());
+        }
+        throw new IllegalArgumentException("Unsupported catalog object: " + info);
+    }
+
+    /**
+     * Copies the values of the parsed object over the original one, as done by the PUT handlers
+     */
+    void update(CatalogInfo original, CatalogInfo update) {
+        CatalogBuilder builder = new CatalogBuilder(catalog);
+        if (original instanceof WorkspaceInfo) {
+            builder.updateWorkspace((WorkspaceInfo) original, (WorkspaceInfo) update);
+        } else if (original instanceof NamespaceInfo) {
+            builder.updateNamespace((NamespaceInfo) original, (NamespaceInfo) update);
+        } else if (original instanceof DataStoreInfo && update instanceof DataStoreInfo) {
+            builder.updateDataStore((DataStoreInfo) original, (DataStoreInfo) update);
+        } else if (original instanceof CoverageStoreInfo && update instanceof CoverageStoreInfo) {
+            builder.updateCoverageStore((CoverageStoreInfo) original, (CoverageStoreInfo) update);
+        } else if (original instanceof WMSStoreInfo && update instanceof WMSStoreInfo) {
+            builder.updateWMSStore((WMSStoreInfo) original, (WMSStoreInfo) update);
+        } else if (original instanceof FeatureTypeInfo && update instanceof FeatureTypeInfo) {
+            builder.updateFeatureType((FeatureTypeInfo) original, (FeatureTypeInfo) update);
+        } else if (original instanceof CoverageInfo && update instanceof CoverageInfo) {
+            builder.updateCoverage((CoverageInfo) original, (CoverageInfo) update);
+        } else if (original instanceof WMSLayerInfo && update instanceof WMSLayerInfo) {
+            builder.updateWMSLayer((WMSLayerInfo) original, (WMSLayerInfo) update);
+        } else if (original instanceof LayerInfo) {
+            builder.updateLayer((LayerInfo) original, (LayerInfo) update);
+        } else if (original instanceof StyleInfo) {
+            builder.updateStyle((StyleInfo) original, (StyleInfo) update);
+        } else if (original instanceof LayerGroupInfo) {
+            builder.updateLayerGroup((LayerGroupInfo) original, (LayerGroupInfo) update);
+        } else {
+            throw new IllegalArgumentException("Cannot update " + original + " with " + update);
+        }
+    }
+
+    /**
+     * Name used to report the outcome of an operation
+     */
+    String name(CatalogInfo info) {
+        if (info instanceof WorkspaceInfo) {
+            return ((WorkspaceInfo) info).getName();
+        }
+        if (info instanceof NamespaceInfo) {
+            return ((NamespaceInfo) info).getPrefix();
+        }
+        if (info instanceof StoreInfo) {
+            StoreInfo store = (StoreInfo) info;
+            return prefixed(store.getWorkspace(), store.getName());
+        }
+        if (info instanceof ResourceInfo) {
+            ResourceInfo resource = (ResourceInfo) info;
+            NamespaceInfo ns = resource.getNamespace();
+            return ns != null ? ns.getPrefix() + ":" + resource.getName() : resource.getName();
+        }
+        if (info instanceof LayerInfo) {
+            ResourceInfo resource = ((LayerInfo) info).getResource();
+            return resource != null ? name(resource) : null;
+        }
+        if (info instanceof StyleInfo) {
+            StyleInfo style = (StyleInfo) info;
+            return prefixed(style.getWorkspace(), style.getName());
+        }
+        if (info instanceof LayerGroupInfo) {
+            LayerGroupInfo group = (LayerGroupInfo) info;
+            return prefixed(group.getWorkspace(), group.getName());
+        }
+        return null;
+    }
+
+    String prefixed(WorkspaceInfo ws, String name) {
+        return ws != null ? ws.getName() + ":" + name : name;
+    }
+}
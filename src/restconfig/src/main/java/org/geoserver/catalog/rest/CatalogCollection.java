@@ -0,0 +1,99 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.rest;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+/**
+ * A read only collection over the results of a catalog query, that loads the objects from
+ * {@link Catalog#list(Class, Filter, Integer, Integer, SortBy)} while being iterated instead of
+ * holding them in memory.
+ * <p>
+ * Every call to {@link #iterator()} runs the query again. The catalog iterators are closed once
+ * exhausted, {@link #close()} closes the ones that were not fully consumed.
+ * </p>
+ */
+class CatalogCollection<T extends CatalogInfo> extends AbstractCollection<T> {
+
+    Catalog catalog;
+
+    Class<T> clazz;
+
+    Filter filter;
+
+    Integer offset;
+
+    Integer count;
+
+    SortBy sortBy;
+
+    int size;
+
+    List<CloseableIterator<T>> open = new ArrayList<CloseableIterator<T>>();
+
+    CatalogCollection(Catalog catalog, Class<T> clazz, Filter filter, Integer offset,
+            Integer count, SortBy sortBy, int size) {
+        this.catalog = catalog;
+        this.clazz = clazz;
+        this.filter = filter;
+        this.offset = offset;
+        this.count = count;
+        this.sortBy = sortBy;
+        this.size = size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        final CloseableIterator<T> it = catalog.list(clazz, filter, offset, count, sortBy);
+        open.add(it);
+        return new Iterator<T>() {
+
+            public boolean hasNext() {
+                if (it.hasNext()) {
+                    return true;
+                }
+                it.close();
+                open.remove(it);
+                return false;
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return it.next();
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Closes the catalog iterators that have not been consumed
+     */
+    public void close() {
+        for (CloseableIterator<T> it : open) {
+            it.close();
+        }
+        open.clear();
+    }
+}
@@ -4,12 +4,16 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.NamespaceInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -35,4 +39,14 @@ public class CoverageListResource extends AbstractCatalogListResource {
         return catalog.getCoveragesByNamespace( ns );
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        String ws = getAttribute("workspace");
+        String cs = getAttribute("coveragestore");
+        if (cs != null) {
+            return and(equal("store.workspace.name", ws), equal("store.name", cs));
+        }
+        return equal("namespace.prefix", ws);
+    }
+
 }
@@ -4,12 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CoverageStoreInfo;
 import org.geoserver.catalog.rest.CoverageStoreResource.CoverageStoreHTMLFormat;
 import org.geoserver.rest.format.DataFormat;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -33,4 +36,9 @@ public class CoverageStoreListResource extends AbstractCatalogListResource {
         return catalog.getCoverageStoresByWorkspace( ws );
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        return equal("workspace.name", getAttribute("workspace"));
+    }
+
 }
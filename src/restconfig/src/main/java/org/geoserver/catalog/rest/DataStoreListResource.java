@@ -4,12 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.rest.DataStoreResource.DataStoreHTMLFormat;
 import org.geoserver.rest.format.DataFormat;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -31,4 +34,9 @@ public class DataStoreListResource extends AbstractCatalogListResource {
         String ws = getAttribute( "workspace" );
         return catalog.getDataStoresByWorkspace( ws );
     }
+
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        return equal("workspace.name", getAttribute("workspace"));
+    }
 }
@@ -4,12 +4,16 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.NamespaceInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -35,4 +39,14 @@ public class FeatureTypeListResource extends AbstractCatalogListResource {
         return catalog.getFeatureTypesByNamespace( ns );
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        String ws = getAttribute("workspace");
+        String ds = getAttribute("datastore");
+        if (ds != null) {
+            return and(equal("store.workspace.name", ws), equal("store.name", ds));
+        }
+        return equal("namespace.prefix", ws);
+    }
+
 }
@@ -4,11 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.equal;
+import static org.geoserver.catalog.Predicates.isNull;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.LayerGroupInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -31,4 +35,10 @@ public class LayerGroupListResource extends AbstractCatalogListResource {
             catalog.getLayerGroupsByWorkspace(CatalogFacade.NO_WORKSPACE);
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        String ws = getAttribute("workspace");
+        return ws != null ? equal("workspace.name", ws) : isNull("workspace.id");
+    }
+
 }
@@ -4,10 +4,13 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.acceptAll;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.LayerInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -26,4 +29,9 @@ public class LayerListResource extends AbstractCatalogListResource {
         return catalog.getLayers();
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        return acceptAll();
+    }
+
 }
@@ -4,12 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.acceptAll;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.rest.NamespaceResource.NamespaceHTMLFormat;
 import org.geoserver.rest.format.DataFormat;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -31,4 +34,9 @@ public class NamespaceListResource extends AbstractCatalogListResource {
         return catalog.getNamespaces();
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        return acceptAll();
+    }
+
 }
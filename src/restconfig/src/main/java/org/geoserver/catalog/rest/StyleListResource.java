@@ -4,11 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.equal;
+import static org.geoserver.catalog.Predicates.isNull;
+
 import java.util.Collection;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogFacade;
 import org.geoserver.catalog.StyleInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -40,4 +44,14 @@ public class StyleListResource extends AbstractCatalogListResource {
         //return catalog.getStyles();
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        if (getAttribute("layer") != null) {
+            // the layer styles are not a catalog query
+            return null;
+        }
+        String workspace = getAttribute("workspace");
+        return workspace != null ? equal("workspace.name", workspace) : isNull("workspace.id");
+    }
+
 }
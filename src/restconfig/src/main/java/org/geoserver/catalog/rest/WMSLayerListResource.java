@@ -4,6 +4,9 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
@@ -11,6 +14,7 @@ import org.geoserver.catalog.DataStoreInfo;
 import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMSStoreInfo;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -36,4 +40,14 @@ public class WMSLayerListResource extends AbstractCatalogListResource {
         return catalog.getResourcesByNamespace( ns , WMSLayerInfo.class );
     }
 
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        String ws = getAttribute("workspace");
+        String wms = getAttribute("wmsstore");
+        if (wms != null) {
+            return and(equal("store.workspace.name", ws), equal("store.name", wms));
+        }
+        return equal("namespace.prefix", ws);
+    }
+
 }
@@ -4,12 +4,15 @@
  */
 package org.geoserver.catalog.rest;
 
+import static org.geoserver.catalog.Predicates.acceptAll;
+
 import java.util.List;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.catalog.rest.WorkspaceResource.WorkspaceHTMLFormat;
 import org.geoserver.rest.format.DataFormat;
+import org.opengis.filter.Filter;
 import org.restlet.Context;
 import org.restlet.data.Request;
 import org.restlet.data.Response;
@@ -26,6 +29,11 @@ public class WorkspaceListResource extends AbstractCatalogListResource {
         LOGGER.fine( "GET all workspaces" );
         return catalog.getWorkspaces();
     }
+
+    @Override
+    protected Filter handleListFilter() throws Exception {
+        return acceptAll();
+    }
     
     @Override
     protected DataFormat createHTMLFormat(Request request, Response response) {
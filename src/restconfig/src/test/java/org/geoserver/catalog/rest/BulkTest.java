@@ -0,0 +1,173 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.rest;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.mockrunner.mock.web.MockHttpServletResponse;
+
+public class BulkTest extends CatalogRESTTestSupport {
+
+    static final String STORE_REF =
+        "<store class=\"dataStore\"><workspace>bulk</workspace><name>bulkStore</name></store>";
+
+    @After
+    public void removeBulkWorkspace() {
+        removeWorkspace("bulk");
+        removeNamespace("bulk");
+    }
+
+    Document postBulk(String xml) throws Exception {
+        MockHttpServletResponse response = postAsServletResponse("/rest/bulk", xml, "text/xml");
+        assertEquals(response.getOutputStreamContent(), 200, response.getStatusCode());
+        return dom(new ByteArrayInputStream(response.getOutputStreamContent().getBytes()));
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        String xml = "<bulk>"
+            + "<add><workspace><name>bulk</name></workspace></add>"
+            + "<add><namespace><prefix>bulk</prefix><uri>http://bulk</uri></namespace></add>"
+            + "<add><workspace><name>bulk</name></workspace></add>"
+            + "<remove><workspace><name>notThere</name></workspace></remove>"
+            + "</bulk>";
+        Document dom = postBulk(xml);
+
+        assertXpathEvaluatesTo("4", "count(/bulk/result)", dom);
+        assertXpathEvaluatesTo("add", "/bulk/result[1]/operation", dom);
+        assertXpathEvaluatesTo("workspace", "/bulk/result[1]/type", dom);
+        assertXpathEvaluatesTo("bulk", "/bulk/result[1]/name", dom);
+        assertXpathEvaluatesTo("true", "/bulk/result[1]/success", dom);
+        assertXpathEvaluatesTo("true", "/bulk/result[2]/success", dom);
+        // duplicate
+        assertXpathEvaluatesTo("false", "/bulk/result[3]/success", dom);
+        // missing
+        assertXpathEvaluatesTo("false", "/bulk/result[4]/success", dom);
+        assertXpathEvaluatesTo("No such workspace: notThere", "/bulk/result[4]/message", dom);
+
+        assertNotNull(catalog.getWorkspaceByName("bulk"));
+        assertNotNull(catalog.getNamespaceByPrefix("bulk"));
+        // persisted once the batch was applied
+        assertNotNull(getResourceLoader().find("workspaces", "bulk", "workspace.xml"));
+        assertNotNull(getResourceLoader().find("workspaces", "bulk", "namespace.xml"));
+    }
+
+    @Test
+    public void testSaveAndRemove() throws Exception {
+        String xml = "<bulk>"
+            + "<add><workspace><name>bulk</name></workspace></add>"
+            + "<add><namespace><prefix>bulk</prefix><uri>http://bulk</uri></namespace></add>"
+            + "<save><namespace><prefix>bulk</prefix><uri>http://bulk/changed</uri></namespace></save>"
+            + "<add><workspace><name>bulkTemp</name></workspace></add>"
+            + "<remove><workspace><name>bulkTemp</name></workspace></remove>"
+            + "</bulk>";
+        Document dom = postBulk(xml);
+
+        assertXpathEvaluatesTo("5", "count(/bulk/result)", dom);
+        assertXpathEvaluatesTo("0", "count(/bulk/result[success = 'false'])", dom);
+
+        NamespaceInfo ns = catalog.getNamespaceByPrefix("bulk");
+        assertEquals("http://bulk/changed", ns.getURI());
+        assertNull(catalog.getWorkspaceByName("bulkTemp"));
+    }
+
+    @Test
+    public void testFeatureTypeAndLayer() throws Exception {
+        String xml = "<bulk>"
+            + "<add><workspace><name>bulk</name></workspace></add>"
+            + "<add><namespace><prefix>bulk</prefix><uri>http://bulk</uri></namespace></add>"
+            + "<add><dataStore><name>bulkStore</name><workspace>bulk</workspace>"
+            +   "<enabled>true</enabled></dataStore></add>"
+            + "<add><featureType><name>bulkType</name><nativeName>bulkType</nativeName>"
+            +   "<srs>EPSG:4326</srs><enabled>true</enabled>"
+            +   STORE_REF
+            + "</featureType></add>"
+            + "<add><layer>"
+            +   "<resource class=\"featureType\"><name>bulk:bulkType</name></resource>"
+            +   "<type>VECTOR</type><enabled>true</enabled>"
+            + "</layer></add>"
+            + "<save><featureType><name>bulkType</name><title>Bulk type</title>"
+            +   "<enabled>true</enabled>"
+            +   STORE_REF
+            + "</featureType></save>"
+            + "</bulk>";
+        Document dom = postBulk(xml);
+
+        assertXpathEvaluatesTo("6", "count(/bulk/result)", dom);
+        assertXpathEvaluatesTo("0", "count(/bulk/result[success = 'false'])", dom);
+        assertXpathEvaluatesTo("featureType", "/bulk/result[4]/type", dom);
+        assertXpathEvaluatesTo("bulk:bulkType", "/bulk/result[4]/name", dom);
+        assertXpathEvaluatesTo("layer", "/bulk/result[5]/type", dom);
+        assertXpathEvaluatesTo("bulk:bulkType", "/bulk/result[5]/name", dom);
+
+        // the references by name have been resolved
+        FeatureTypeInfo ft = catalog.getFeatureTypeByName("bulk", "bulkType");
+        assertNotNull(ft);
+        assertEquals("Bulk type", ft.getTitle());
+        assertEquals(catalog.getDataStoreByName("bulk", "bulkStore"), ft.getStore());
+        assertEquals(catalog.getNamespaceByPrefix("bulk"), ft.getNamespace());
+        LayerInfo layer = catalog.getLayerByName("bulk:bulkType");
+        assertNotNull(layer);
+        assertEquals(ft, layer.getResource());
+
+        // and the layer can be removed before its resource
+        xml = "<bulk>"
+            + "<remove><layer>"
+            +   "<resource class=\"featureType\"><name>bulk:bulkType</name></resource>"
+            + "</layer></remove>"
+            + "<remove><featureType><name>bulkType</name>"
+            +   STORE_REF
+            + "</featureType></remove>"
+            + "</bulk>";
+        dom = postBulk(xml);
+        assertXpathEvaluatesTo("0", "count(/bulk/result[success = 'false'])", dom);
+        assertNull(catalog.getLayerByName("bulk:bulkType"));
+        assertNull(catalog.getFeatureTypeByName("bulk", "bulkType"));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        String xml = "<bulk>"
+            + "<add><workspace><name>bulk</name></workspace></add>"
+            + "<add><notACatalogObject/></add>"
+            + "<add><namespace><prefix>bulk</prefix><uri>http://bulk</uri></namespace></add>"
+            + "</bulk>";
+        Document dom = postBulk(xml);
+
+        // processing stops at the malformed operation
+        assertXpathEvaluatesTo("2", "count(/bulk/result)", dom);
+        assertXpathEvaluatesTo("true", "/bulk/result[1]/success", dom);
+        assertXpathEvaluatesTo("false", "/bulk/result[2]/success", dom);
+        assertNotNull(catalog.getWorkspaceByName("bulk"));
+        assertNull(catalog.getNamespaceByPrefix("bulk"));
+    }
+
+    @Test
+    public void testUnsupportedFormat() throws Exception {
+        String xml = "<bulk><add><workspace><name>bulk</name></workspace></add></bulk>";
+        assertEquals(415, postAsServletResponse("/rest/bulk.json", xml, "text/xml")
+                .getStatusCode());
+        assertNull(catalog.getWorkspaceByName("bulk"));
+
+        assertEquals(200, postAsServletResponse("/rest/bulk.xml", xml, "text/xml")
+                .getStatusCode());
+        assertNotNull(catalog.getWorkspaceByName("bulk"));
+    }
+
+    @Test
+    public void testGetNotAllowed() throws Exception {
+        assertEquals(405, getAsServletResponse("/rest/bulk").getStatusCode());
+    }
+}
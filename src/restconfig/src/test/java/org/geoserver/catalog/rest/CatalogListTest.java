@@ -0,0 +1,140 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog.rest;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.mockrunner.mock.web.MockHttpServletRequest;
+import com.mockrunner.mock.web.MockHttpServletResponse;
+
+public class CatalogListTest extends CatalogRESTTestSupport {
+
+    List<String> sortedLayerNames() {
+        List<String> names = new ArrayList<String>();
+        for (LayerInfo l : catalog.getLayers()) {
+            names.add(l.getName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        List<String> names = sortedLayerNames();
+
+        MockHttpServletResponse response =
+            getAsServletResponse("/rest/layers.xml?offset=1&limit=2&sort=name");
+        assertEquals(200, response.getStatusCode());
+        assertEquals(String.valueOf(names.size()),
+            response.getHeader(AbstractCatalogListResource.TOTAL_COUNT_HEADER));
+
+        Document dom = dom(new ByteArrayInputStream(response.getOutputStreamContent().getBytes()));
+        assertXpathEvaluatesTo("2", "count(//layer)", dom);
+        assertXpathEvaluatesTo(names.get(1), "/layers/layer[1]/name", dom);
+        assertXpathEvaluatesTo(names.get(2), "/layers/layer[2]/name", dom);
+    }
+
+    @Test
+    public void testSortDescending() throws Exception {
+        List<String> names = sortedLayerNames();
+
+        Document dom = getAsDOM("/rest/layers.xml?limit=1&sort=name:desc");
+        assertXpathEvaluatesTo("1", "count(//layer)", dom);
+        assertXpathEvaluatesTo(names.get(names.size() - 1), "/layers/layer/name", dom);
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        MockHttpServletResponse response =
+            getAsServletResponse("/rest/layers.xml?filter=name%20=%20'Buildings'");
+        assertEquals(200, response.getStatusCode());
+        assertEquals("1", response.getHeader(AbstractCatalogListResource.TOTAL_COUNT_HEADER));
+
+        Document dom = dom(new ByteArrayInputStream(response.getOutputStreamContent().getBytes()));
+        assertXpathEvaluatesTo("1", "count(//layer)", dom);
+        assertXpathEvaluatesTo("Buildings", "/layers/layer/name", dom);
+    }
+
+    @Test
+    public void testPagingStoreResources() throws Exception {
+        Document dom = getAsDOM("/rest/workspaces/cite/datastores/cite/featuretypes.xml?sort=name&limit=1");
+        assertXpathEvaluatesTo("1", "count(//featureType)", dom);
+    }
+
+    @Test
+    public void testInvalidParameters() throws Exception {
+        assertEquals(400, getAsServletResponse("/rest/layers.xml?limit=abc").getStatusCode());
+        assertEquals(400, getAsServletResponse("/rest/layers.xml?offset=-1").getStatusCode());
+        assertEquals(400, getAsServletResponse("/rest/layers.xml?filter=this%20is%20not%20cql")
+            .getStatusCode());
+        assertEquals(400, getAsServletResponse("/rest/layers.xml?sort=name:sideways")
+            .getStatusCode());
+        assertEquals(400, getAsServletResponse("/rest/layers.xml?sort=notAProperty")
+            .getStatusCode());
+    }
+
+    @Test
+    public void testSortUnknownPropertyInMemory() throws Exception {
+        LayerInfo l = catalog.getLayerByName("cite:BasicPolygons");
+        if (l.getStyles().isEmpty()) {
+            l.getStyles().add(catalog.getStyleByName("point"));
+            catalog.save(l);
+        }
+
+        // the layer styles are sorted in memory
+        assertEquals(200, getAsServletResponse("/rest/layers/cite:BasicPolygons/styles.xml?sort=name")
+            .getStatusCode());
+        assertEquals(400, getAsServletResponse(
+            "/rest/layers/cite:BasicPolygons/styles.xml?sort=notAProperty").getStatusCode());
+    }
+
+    @Test
+    public void testHTML() throws Exception {
+        MockHttpServletResponse response =
+            getAsServletResponse("/rest/workspaces.html?sort=name&limit=1");
+        assertEquals(200, response.getStatusCode());
+        assertTrue(response.getContentType().startsWith("text/html"));
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("/rest/workspaces.xml");
+        assertEquals(200, response.getStatusCode());
+        String etag = response.getHeader("ETag");
+        assertNotNull(etag);
+
+        MockHttpServletRequest request = createRequest("/rest/workspaces.xml");
+        request.setMethod("GET");
+        request.setHeader("If-None-Match", etag);
+        assertEquals(304, dispatch(request).getStatusCode());
+
+        // a different page is a different representation
+        request = createRequest("/rest/workspaces.xml?limit=1");
+        request.setMethod("GET");
+        request.setHeader("If-None-Match", etag);
+        assertEquals(200, dispatch(request).getStatusCode());
+
+        // a catalog change invalidates the tag
+        WorkspaceInfo ws = catalog.getFactory().createWorkspace();
+        ws.setName("etag");
+        catalog.add(ws);
+        catalog.remove(ws);
+        request = createRequest("/rest/workspaces.xml");
+        request.setMethod("GET");
+        request.setHeader("If-None-Match", etag);
+        assertEquals(200, dispatch(request).getStatusCode());
+    }
+}
@@ -27,6 +27,8 @@ import javax.sql.DataSource;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.io.FileUtils;
+import org.geoserver.security.AuthorityCache;
+import org.geoserver.security.GeoServerSecurityManager;
 import org.geoserver.security.config.SecurityNamedServiceConfig;
 import org.geoserver.security.impl.AbstractGeoServerSecurityService;
 import org.geoserver.security.jdbc.config.JDBCSecurityServiceConfig;
@@ -82,6 +84,30 @@ public abstract class AbstractJDBCService extends AbstractGeoServerSecurityServi
             bds.setMaxActive(10);
             datasource=bds;
         } 
+        // the connection parameters might have changed
+        invalidateAuthorityCache();
+    }
+
+    /**
+     * The cache used for the group and role lookups, 
+     * <code>null</code> if the lookups should not be cached
+     * 
+     * @return
+     */
+    protected AuthorityCache getAuthorityCache() {
+        GeoServerSecurityManager manager = getSecurityManager();
+        return manager != null ? manager.getAuthorityCache() : null;
+    }
+    
+    /**
+     * Removes the cached lookups of this service, to be called
+     * after changes to the backend
+     */
+    protected void invalidateAuthorityCache() {
+        GeoServerSecurityManager manager = getSecurityManager();
+        if (manager != null) {
+            manager.getAuthorityCache().invalidate(getName());
+        }
     }
 
     
@@ -305,6 +331,7 @@ public abstract class AbstractJDBCService extends AbstractGeoServerSecurityServi
             throw new IOException(ex);
         } finally {
             closeFinally(con, ps, null);
+            invalidateAuthorityCache();
         }        
     }
     
@@ -22,6 +22,7 @@ import java.util.TreeSet;
 import java.util.logging.Logger;
 
 
+import org.geoserver.security.AuthorityCache;
 import org.geoserver.security.GeoServerRoleService;
 import org.geoserver.security.GeoServerRoleStore;
 import org.geoserver.security.config.SecurityNamedServiceConfig;
@@ -265,7 +266,27 @@ public  class JDBCRoleService extends AbstractJDBCService implements GeoServerRo
     /** 
      * @see org.geoserver.security.GeoServerRoleService#getRolesForUser(java.lang.String)
      */
-    public  SortedSet<GeoServerRole> getRolesForUser(String username) throws IOException {
+    public  SortedSet<GeoServerRole> getRolesForUser(final String username) throws IOException {
+        AuthorityCache cache = getAuthorityCache();
+        if (cache == null) {
+            return loadRolesForUser(username);
+        }
+        return cache.get(getName(), "rolesForUser", username, 
+                new AuthorityCache.Loader<SortedSet<GeoServerRole>>() {
+            public SortedSet<GeoServerRole> load() throws IOException {
+                return loadRolesForUser(username);
+            }
+        });
+    }
+    
+    /**
+     * Loads the roles of a user from the database
+     * 
+     * @param username
+     * @return
+     * @throws IOException
+     */
+    protected SortedSet<GeoServerRole> loadRolesForUser(String username) throws IOException {
         Connection con=null;
         PreparedStatement ps = null,ps2 = null;
         ResultSet rs = null,rs2=null;
@@ -314,7 +335,27 @@ public  class JDBCRoleService extends AbstractJDBCService implements GeoServerRo
     /** 
      * @see org.geoserver.security.GeoServerRoleService#getRolesForGroup(java.lang.String)
      */
-    public  SortedSet<GeoServerRole> getRolesForGroup(String groupname) throws IOException {
+    public  SortedSet<GeoServerRole> getRolesForGroup(final String groupname) throws IOException {
+        AuthorityCache cache = getAuthorityCache();
+        if (cache == null) {
+            return loadRolesForGroup(groupname);
+        }
+        return cache.get(getName(), "rolesForGroup", groupname, 
+                new AuthorityCache.Loader<SortedSet<GeoServerRole>>() {
+            public SortedSet<GeoServerRole> load() throws IOException {
+                return loadRolesForGroup(groupname);
+            }
+        });
+    }
+    
+    /**
+     * Loads the roles of a group from the database
+     * 
+     * @param groupname
+     * @return
+     * @throws IOException
+     */
+    protected SortedSet<GeoServerRole> loadRolesForGroup(String groupname) throws IOException {
         Connection con=null;
         PreparedStatement ps = null,ps2 = null;
         ResultSet rs = null,rs2=null;
@@ -365,7 +406,8 @@ public  class JDBCRoleService extends AbstractJDBCService implements GeoServerRo
      * @see org.geoserver.security.GeoServerRoleService#load()
      */
     public void load() throws IOException {
-        // do nothing
+        // nothing to load, just drop the cached lookups
+        invalidateAuthorityCache();
     }
 
 
@@ -373,8 +415,29 @@ public  class JDBCRoleService extends AbstractJDBCService implements GeoServerRo
     /**
      * @see org.geoserver.security.GeoServerRoleService#getParentRole(org.geoserver.security.impl.GeoServerRole)
      */
-    public GeoServerRole getParentRole(GeoServerRole role)
+    public GeoServerRole getParentRole(final GeoServerRole role)
             throws IOException {
+        AuthorityCache cache = getAuthorityCache();
+        if (cache == null) {
+            return loadParentRole(role);
+        }
+        // roles without parent are cached as well
+        return cache.get(getName(), "parentRole", role.getAuthority(), 
+                new AuthorityCache.Loader<GeoServerRole>() {
+            public GeoServerRole load() throws IOException {
+                return loadParentRole(role);
+            }
+        });
+    }
+    
+    /**
+     * Loads the parent of a role from the database
+     * 
+     * @param role
+     * @return
+     * @throws IOException
+     */
+    protected GeoServerRole loadParentRole(GeoServerRole role) throws IOException {
 
         Connection con=null;
         PreparedStatement ps = null,ps2=null;
@@ -11,6 +11,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 
+import org.geoserver.security.AuthorityCache;
 import org.geoserver.security.GeoServerRoleService;
 import org.geoserver.security.GeoServerRoleStore;
 import org.geoserver.security.impl.GeoServerRole;
@@ -47,6 +48,17 @@ public class JDBCRoleStore extends JDBCRoleService implements GeoServerRoleStore
         // do nothing
     }
 
+    /**
+     * No caching, the store has to see the changes 
+     * of the running transaction
+     * 
+     * @see org.geoserver.security.jdbc.AbstractJDBCService#getAuthorityCache()
+     */
+    @Override
+    protected AuthorityCache getAuthorityCache() {
+        return null;
+    }
+
     /**
      * To be called at the the end of a transaction,
      * frees the current {@link Connection} 
@@ -212,6 +224,7 @@ public class JDBCRoleStore extends JDBCRoleService implements GeoServerRoleStore
             throw new IOException(ex);
         }
         setModified(false);
+        invalidateAuthorityCache();
     }
 
 
@@ -22,6 +22,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 
+import org.geoserver.security.AuthorityCache;
 import org.geoserver.security.GeoServerUserGroupService;
 import org.geoserver.security.GeoServerUserGroupStore;
 import org.geoserver.security.KeyStoreProvider;
@@ -331,7 +332,27 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
     /**
      * @see org.geoserver.security.GeoServerUserGroupService#getGroupsForUser(org.geoserver.security.impl.GeoServerUser)
      */
-    public  SortedSet<GeoServerUserGroup> getGroupsForUser (GeoServerUser user) throws IOException{        
+    public  SortedSet<GeoServerUserGroup> getGroupsForUser (final GeoServerUser user) throws IOException{        
+        AuthorityCache cache = getAuthorityCache();
+        if (cache == null) {
+            return loadGroupsForUser(user.getUsername());
+        }
+        return cache.get(getName(), "groupsForUser", user.getUsername(), 
+                new AuthorityCache.Loader<SortedSet<GeoServerUserGroup>>() {
+            public SortedSet<GeoServerUserGroup> load() throws IOException {
+                return loadGroupsForUser(user.getUsername());
+            }
+        });
+    }
+    
+    /**
+     * Loads the groups of a user from the database
+     * 
+     * @param username
+     * @return
+     * @throws IOException
+     */
+    protected SortedSet<GeoServerUserGroup> loadGroupsForUser(String username) throws IOException {
         Connection con=null;
         PreparedStatement ps = null;
         ResultSet rs = null;
@@ -339,7 +360,7 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
         try {
             con = getConnection();
             ps = getDMLStatement("groupmembers.groupsForUser",con);
-            ps.setString(1, user.getUsername());
+            ps.setString(1, username);
             rs = ps.executeQuery();
             while (rs.next()) {                
                 String groupname = rs.getString(1);
@@ -363,7 +384,27 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
     /**
      * @see org.geoserver.security.GeoServerUserGroupService#getUsersForGroup(org.geoserver.security.impl.GeoServerUserGroup)
      */
-    public  SortedSet<GeoServerUser> getUsersForGroup (GeoServerUserGroup group) throws IOException{
+    public  SortedSet<GeoServerUser> getUsersForGroup (final GeoServerUserGroup group) throws IOException{
+        AuthorityCache cache = getAuthorityCache();
+        if (cache == null) {
+            return loadUsersForGroup(group.getGroupname());
+        }
+        return cache.get(getName(), "usersForGroup", group.getGroupname(), 
+                new AuthorityCache.Loader<SortedSet<GeoServerUser>>() {
+            public SortedSet<GeoServerUser> load() throws IOException {
+                return loadUsersForGroup(group.getGroupname());
+            }
+        });
+    }
+    
+    /**
+     * Loads the members of a group from the database
+     * 
+     * @param groupname
+     * @return
+     * @throws IOException
+     */
+    protected SortedSet<GeoServerUser> loadUsersForGroup(String groupname) throws IOException{
         Connection con=null;
         PreparedStatement ps = null,ps2 = null;
         ResultSet rs = null,rs2=null;
@@ -373,7 +414,7 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
             ps = getDMLStatement("groupmembers.usersForGroup",con);
                         
 
-            ps.setString(1, group.getGroupname());
+            ps.setString(1, groupname);
             rs = ps.executeQuery();
             while (rs.next()) {                
                 String username = rs.getString(1);
@@ -388,7 +429,7 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
             ps.close();
             
             ps = getDMLStatement("userprops.userPropsForGroup",con);
-            ps.setString(1, group.getGroupname());
+            ps.setString(1, groupname);
             rs = ps.executeQuery();
             while (rs.next()) {
                 String userName = rs.getString(1);                
@@ -454,7 +495,8 @@ public  class JDBCUserGroupService extends AbstractJDBCService implements GeoSer
      * @see org.geoserver.security.GeoServerUserGroupService#load()
      */
     public void load() throws IOException {
-        // do nothing
+        // nothing to load, just drop the cached lookups
+        invalidateAuthorityCache();
     }
 
 
@@ -11,6 +11,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 
+import org.geoserver.security.AuthorityCache;
 import org.geoserver.security.GeoServerUserGroupService;
 import org.geoserver.security.GeoServerUserGroupStore;
 import org.geoserver.security.impl.GeoServerUser;
@@ -55,6 +56,17 @@ public class JDBCUserGroupStore extends JDBCUserGroupService implements GeoServe
     protected void closeConnection(Connection con) throws SQLException{
         // do nothing
     }
+
+    /**
+     * No caching, the store has to see the changes 
+     * of the running transaction
+     * 
+     * @see org.geoserver.security.jdbc.AbstractJDBCService#getAuthorityCache()
+     */
+    @Override
+    protected AuthorityCache getAuthorityCache() {
+        return null;
+    }
     
     /**
      * To be called at the the end of a transaction,
@@ -346,6 +358,7 @@ public class JDBCUserGroupStore extends JDBCUserGroupService implements GeoServe
             throw new IOException(ex);
         }
         setModified(false);
+        invalidateAuthorityCache();
         //fireUserGroupChangedEvent();
     }
 
@@ -0,0 +1,151 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+
+package org.geoserver.security.jdbc;
+
+import static org.junit.Assert.*;
+
+import java.util.SortedSet;
+
+import org.geoserver.security.AbstractSecurityServiceTest;
+import org.geoserver.security.AuthorityCache;
+import org.geoserver.security.GeoServerRoleService;
+import org.geoserver.security.GeoServerUserGroupService;
+import org.geoserver.security.impl.GeoServerRole;
+import org.geoserver.security.impl.GeoServerUser;
+import org.geoserver.security.impl.GeoServerUserGroup;
+import org.geoserver.security.impl.RoleCalculator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class H2AuthorityCacheTest extends AbstractSecurityServiceTest {
+
+    GeoServerUserGroupService ugService;
+    JDBCUserGroupStore ugStore;
+
+    GeoServerRoleService roleService;
+    JDBCRoleStore roleStore;
+
+    AuthorityCache cache;
+
+    @Before
+    public void init() throws Exception {
+        if (isNewUGService("h2cache")) {
+            JDBCTestSupport.createH2UserGroupService("h2cache", getSecurityManager());
+        }
+        ugService = getSecurityManager().loadUserGroupService("h2cache");
+        ugStore = (JDBCUserGroupStore) ugService.createStore();
+        JDBCTestSupport.dropExistingTables(ugStore, ugStore.getConnection());
+        ugStore.createTables();
+        ugStore.store();
+
+        if (isNewRoleService("h2cache")) {
+            JDBCTestSupport.createH2RoleService("h2cache", getSecurityManager());
+        }
+        roleService = getSecurityManager().loadRoleService("h2cache");
+        roleStore = (JDBCRoleStore) roleService.createStore();
+        JDBCTestSupport.dropExistingTables(roleStore, roleStore.getConnection());
+        roleStore.createTables();
+        roleStore.store();
+
+        cache = getSecurityManager().getAuthorityCache();
+    }
+
+    @After
+    public void dropTables() throws Exception {
+        if (ugStore != null) {
+            JDBCTestSupport.dropExistingTables(ugStore, ugStore.getConnection());
+            ugStore.store();
+        }
+        if (roleStore != null) {
+            JDBCTestSupport.dropExistingTables(roleStore, roleStore.getConnection());
+            roleStore.store();
+        }
+    }
+
+    @Test
+    public void testGroupsForUser() throws Exception {
+        GeoServerUser user = ugStore.createUserObject("user1", "pwd", true);
+        ugStore.addUser(user);
+        GeoServerUserGroup group = ugStore.createGroupObject("group1", true);
+        ugStore.addGroup(group);
+        ugStore.associateUserToGroup(user, group);
+        ugStore.store();
+
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+
+        assertEquals(1, ugService.getGroupsForUser(user).size());
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(1, ugService.getGroupsForUser(user).size());
+        assertEquals(hits + 1, cache.getHits());
+
+        assertEquals(1, ugService.getUsersForGroup(group).size());
+        assertEquals(misses + 2, cache.getMisses());
+        assertEquals(1, ugService.getUsersForGroup(group).size());
+        assertEquals(hits + 2, cache.getHits());
+
+        // unknown users are cached as well
+        GeoServerUser unknown = new GeoServerUser("unknown");
+        assertTrue(ugService.getGroupsForUser(unknown).isEmpty());
+        assertTrue(ugService.getGroupsForUser(unknown).isEmpty());
+        assertEquals(misses + 3, cache.getMisses());
+        assertEquals(hits + 3, cache.getHits());
+    }
+
+    @Test
+    public void testStoreInvalidates() throws Exception {
+        GeoServerUser user = ugStore.createUserObject("user1", "pwd", true);
+        ugStore.addUser(user);
+        GeoServerUserGroup group = ugStore.createGroupObject("group1", true);
+        ugStore.addGroup(group);
+        ugStore.associateUserToGroup(user, group);
+        ugStore.store();
+
+        assertEquals(1, ugService.getGroupsForUser(user).size());
+
+        // the store never uses the cache, it has to see its own changes
+        ugStore.disAssociateUserFromGroup(user, group);
+        assertEquals(0, ugStore.getGroupsForUser(user).size());
+        assertEquals(1, ugService.getGroupsForUser(user).size());
+
+        // the commit drops the cached entries
+        ugStore.store();
+        assertEquals(0, ugService.getGroupsForUser(user).size());
+        assertEquals(0, ugService.getUsersForGroup(group).size());
+    }
+
+    @Test
+    public void testRoleHierarchy() throws Exception {
+        GeoServerRole parent = roleStore.createRoleObject("ROLE_PARENT");
+        GeoServerRole child = roleStore.createRoleObject("ROLE_CHILD");
+        roleStore.addRole(parent);
+        roleStore.addRole(child);
+        roleStore.setParentRole(child, parent);
+        roleStore.associateRoleToUser(child, "user1");
+        roleStore.store();
+
+        RoleCalculator calc = new RoleCalculator(roleService);
+        SortedSet<GeoServerRole> roles = calc.calculateRoles("user1");
+        assertEquals(2, roles.size());
+        assertTrue(roles.contains(parent));
+
+        // the second calculation, root role included, is served from the cache
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        roles = calc.calculateRoles("user1");
+        assertEquals(2, roles.size());
+        assertEquals(misses, cache.getMisses());
+        assertTrue(cache.getHits() > hits);
+
+        // changing the hierarchy invalidates the cache
+        roleStore.setParentRole(child, null);
+        roleStore.store();
+        roles = calc.calculateRoles("user1");
+        assertEquals(1, roles.size());
+        assertFalse(roles.contains(parent));
+    }
+}
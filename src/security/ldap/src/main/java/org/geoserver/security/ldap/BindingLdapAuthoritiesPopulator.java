@@ -4,8 +4,10 @@
  */
 package org.geoserver.security.ldap;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -16,6 +18,7 @@ import javax.naming.directory.SearchControls;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.geoserver.security.AuthorityCache;
 import org.springframework.ldap.NamingException;
 import org.springframework.ldap.core.AuthenticatedLdapEntryContextCallback;
 import org.springframework.ldap.core.AuthenticationErrorCallback;
@@ -142,6 +145,13 @@ public class BindingLdapAuthoritiesPopulator implements
     private String rolePrefix = "ROLE_";
     private boolean convertToUpperCase = true;
 
+    /**
+     * Optional cache for the extracted authorities, and the name used to
+     * store them in it
+     */
+    private AuthorityCache authorityCache;
+    private String serviceName;
+
     // ~ Constructors
     // ===================================================================================================
 
@@ -204,9 +214,52 @@ public class BindingLdapAuthoritiesPopulator implements
      * @return the set of roles granted to the user.
      */
     public final Collection<GrantedAuthority> getGrantedAuthorities(
-            final DirContextOperations user, String username) {
+            final DirContextOperations user, final String username) {
         final String userDn = user.getNameInNamespace();
 
+        if (authorityCache == null) {
+            List<GrantedAuthority> result = loadGrantedAuthorities(user, userDn,
+                    username);
+            return result != null ? result : new ArrayList<GrantedAuthority>();
+        }
+
+        // the password is not part of the key: the user has already been
+        // authenticated when the authorities are requested, so a cache hit
+        // can skip the bind as well
+        String userName = username.indexOf(":") != -1 ? username.split(":")[0]
+                : username;
+        try {
+            Collection<GrantedAuthority> cached = authorityCache.get(
+                    serviceName, "grantedAuthorities", userDn + "|" + userName,
+                    new AuthorityCache.Loader<Collection<GrantedAuthority>>() {
+                        public Collection<GrantedAuthority> load()
+                                throws IOException {
+                            List<GrantedAuthority> result = loadGrantedAuthorities(
+                                    user, userDn, username);
+                            if (result == null) {
+                                throw new IOException("Unable to bind as "
+                                        + userDn);
+                            }
+                            return Collections.unmodifiableList(result);
+                        }
+                    });
+            return new ArrayList<GrantedAuthority>(cached);
+        } catch (IOException e) {
+            // failed binds are not cached
+            logger.debug(e.getMessage());
+            return new ArrayList<GrantedAuthority>();
+        }
+    }
+
+    /**
+     * Extracts the authorities from the LDAP server, binding first if the
+     * password is available.
+     * 
+     * @return the authorities, or <code>null</code> if the bind failed
+     */
+    private List<GrantedAuthority> loadGrantedAuthorities(
+            final DirContextOperations user, final String userDn,
+            String username) {
         if (logger.isDebugEnabled()) {
             logger.debug("Getting authorities for user " + userDn);
         }
@@ -221,8 +274,9 @@ public class BindingLdapAuthoritiesPopulator implements
             String password = userAndPassword[1];
             // authenticate and execute role extraction in the authenticated
             // context
-            ldapTemplate.authenticate(DistinguishedName.EMPTY_PATH, userDn,
-                    password, new AuthenticatedLdapEntryContextCallback() {
+            boolean authenticated = ldapTemplate.authenticate(
+                    DistinguishedName.EMPTY_PATH, userDn, password,
+                    new AuthenticatedLdapEntryContextCallback() {
 
                         @Override
                         public void executeWithContext(DirContext ctx,
@@ -230,6 +284,9 @@ public class BindingLdapAuthoritiesPopulator implements
                             getAllRoles(user, userDn, result, userName, ctx);
                         }
                     });
+            if (!authenticated) {
+                return null;
+            }
         } else {
             getAllRoles(user, userDn, result, username, null);
         }
@@ -298,6 +355,20 @@ public class BindingLdapAuthoritiesPopulator implements
         return authorities;
     }
 
+    /**
+     * Enables caching of the authorities extracted for each user.
+     * 
+     * @param authorityCache
+     *            the cache, or <code>null</code> to disable caching
+     * @param serviceName
+     *            the name of the security service using this populator
+     */
+    public void setAuthorityCache(AuthorityCache authorityCache,
+            String serviceName) {
+        this.authorityCache = authorityCache;
+        this.serviceName = serviceName;
+    }
+
     protected ContextSource getContextSource() {
         return ldapTemplate.getContextSource();
     }
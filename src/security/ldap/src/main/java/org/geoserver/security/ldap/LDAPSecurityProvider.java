@@ -127,6 +127,12 @@ public class LDAPSecurityProvider extends GeoServerSecurityProvider {
                             .setGroupSearchFilter(ldapConfig
                                     .getGroupSearchFilter());
                 }
+                // drop what was cached with the previous configuration
+                securityManager.getAuthorityCache().invalidate(
+                        ldapConfig.getName());
+                ((BindingLdapAuthoritiesPopulator) authPopulator)
+                        .setAuthorityCache(securityManager.getAuthorityCache(),
+                                ldapConfig.getName());
                 provider = new LdapAuthenticationProvider(authenticator,
                         authPopulator) {
                     /**
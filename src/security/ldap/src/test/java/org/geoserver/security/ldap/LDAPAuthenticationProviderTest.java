@@ -24,6 +24,7 @@ import org.apache.directory.server.configuration.MutableServerStartupConfigurati
 import org.apache.directory.server.core.partition.impl.btree.MutableBTreePartitionConfiguration;
 import org.geoserver.config.GeoServerDataDirectory;
 import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.security.AuthorityCache;
 import org.geoserver.security.GeoServerSecurityManager;
 import org.junit.After;
 import org.junit.Before;
@@ -212,6 +213,43 @@ public class LDAPAuthenticationProviderTest {
 
     }
 
+    /**
+     * Test that the roles fetched with bindBeforeGroupSearch are cached, and
+     * that the cache does not bypass the password check.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testBindBeforeGroupSearchCachesRoles() throws Exception {
+        // no anonymous access
+        if(initLdapServer(false)) {
+            config.setName("ldapCache");
+            config.setUserDnPattern("uid={0},ou=People");
+            config.setBindBeforeGroupSearch(true);
+            createAuthenticationProvider();
+            AuthorityCache cache = securityManager.getAuthorityCache();
+    
+            Authentication result = authProvider.authenticate(authentication);
+            assertEquals(2, result.getAuthorities().size());
+            long misses = cache.getMisses();
+            long hits = cache.getHits();
+    
+            result = authProvider.authenticate(authentication);
+            assertEquals(2, result.getAuthorities().size());
+            assertEquals(misses, cache.getMisses());
+            assertEquals(hits + 1, cache.getHits());
+    
+            boolean error = false;
+            try {
+                authProvider.authenticate(new UsernamePasswordAuthenticationToken(
+                        "admin", "wrong"));
+            } catch (Exception e) {
+                error = true;
+            }
+            assertTrue(error);
+        }
+    }
+
     /**
      * Test that without bindBeforeGroupSearch we get an exception during roles
      * fetching on a server without anonymous access enabled.
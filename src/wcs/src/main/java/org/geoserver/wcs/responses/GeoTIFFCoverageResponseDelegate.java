@@ -9,23 +9,30 @@ import it.geosolutions.imageioimpl.plugins.tiff.TIFFLZWCompressor;
 import java.awt.Dimension;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.imageio.stream.ImageOutputStream;
 import javax.media.jai.JAI;
+import javax.media.jai.PlanarImage;
 
 import org.geoserver.config.GeoServer;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.OWS20Exception;
 import org.geoserver.wcs.WCSInfo;
+import org.geotools.coverage.CoverageFactoryFinder;
+import org.geotools.coverage.GridSampleDimension;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
 import org.geotools.coverage.grid.io.imageio.GeoToolsWriteParams;
 import org.geotools.gce.geotiff.GeoTiffFormat;
 import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.image.io.ImageIOExt;
 import org.geotools.util.Utilities;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.parameter.ParameterValueGroup;
@@ -42,6 +49,13 @@ import com.sun.media.imageio.plugins.tiff.BaselineTIFFTagSet;
  */
 public class GeoTIFFCoverageResponseDelegate extends BaseCoverageResponseDelegate implements CoverageResponseDelegate {
 
+    /**
+     * System property, servlet context parameter or environment variable enabling the parallel
+     * computation of the tiles of the coverage being encoded, see {@link PrefetchingImage}.
+     * Defaults to {@code true}.
+     */
+    public static final String GEOTIFF_PREFETCH_TILES = "WCS_GEOTIFF_PREFETCH_TILES";
+
     /** DEFAULT_JPEG_COMPRESSION_QUALITY */
     private static final float DEFAULT_JPEG_COMPRESSION_QUALITY = 0.75f;
 
@@ -104,12 +118,35 @@ public class GeoTIFFCoverageResponseDelegate extends BaseCoverageResponseDelegat
             writerParams.parameter(GeoTiffFormat.RETAIN_AXES_ORDER.getName().toString()).setValue(true);
         }
 
+        // compute the tiles in parallel while they are encoded
+        GridCoverage2D coverage = sourceCoverage;
+        PlanarImage image = PlanarImage.wrapRenderedImage(sourceCoverage.getRenderedImage());
+        if (isPrefetchEnabled() && PrefetchingImage.isPrefetchable(image)) {
+            coverage = CoverageFactoryFinder.getGridCoverageFactory(null).create(
+                    sourceCoverage.getName(), new PrefetchingImage(image),
+                    sourceCoverage.getGridGeometry(),
+                    (GridSampleDimension[]) sourceCoverage.getSampleDimensions(), null,
+                    sourceCoverage.getProperties());
+        }
+
+        // the tiff writer goes back to the header once done, the whole file is kept around
+        // until then, in memory or in a temporary file depending on the ImageIO cache threshold
+        // of the coverage access settings
+        final DiscardableOutputStream destination = new DiscardableOutputStream(output);
+        final ImageOutputStream imageOutStream = ImageIOExt.createImageOutputStream(image,
+                destination);
+        if (imageOutStream == null) {
+            throw new IOException("Unable to create ImageOutputStream.");
+        }
+
         // write down
-        GeoTiffWriter writer = (GeoTiffWriter) GEOTIF_FORMAT.getWriter(output);
+        GeoTiffWriter writer = (GeoTiffWriter) GEOTIF_FORMAT.getWriter(imageOutStream);
+        boolean written = false;
         try {
             if (writer != null)
-                writer.write(sourceCoverage, (GeneralParameterValue[]) writerParams.values()
+                writer.write(coverage, (GeneralParameterValue[]) writerParams.values()
                         .toArray(new GeneralParameterValue[1]));
+            written = true;
         } finally {
             try {
                 if (writer != null)
@@ -117,10 +154,63 @@ public class GeoTIFFCoverageResponseDelegate extends BaseCoverageResponseDelegat
             } catch (Throwable e) {
                 // eating exception
             }
+            if (!written) {
+                // don't send out a truncated tiff, the client gets the exception instead
+                destination.discard();
+            }
+            try {
+                // sends out the cached contents, unless the writer already closed the stream
+                imageOutStream.close();
+            } catch (IOException e) {
+                // already closed
+            }
             sourceCoverage.dispose(false);
         }
     }
 
+    /**
+     * Forwards the contents to the delegate stream until told to discard them, used to throw away
+     * the contents cached by the image output stream when the encoding fails
+     */
+    static class DiscardableOutputStream extends FilterOutputStream {
+
+        private boolean discard;
+
+        DiscardableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void discard() {
+            discard = true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!discard) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!discard) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!discard) {
+                out.flush();
+            }
+        }
+    }
+
+    boolean isPrefetchEnabled() {
+        String value = GeoServerExtensions.getProperty(GEOTIFF_PREFETCH_TILES);
+        return value == null || Boolean.valueOf(value.trim());
+    }
+
     /**
      * Handle interleaving encoding parameters for WCS.
      * 
@@ -166,6 +256,12 @@ public class GeoTIFFCoverageResponseDelegate extends BaseCoverageResponseDelegat
      * 
      * <p>
      * Notice that tile width and height must be positive and multiple of 16.
+     * <p>
+     * When tiling is not requested and the source image has more than one column of tiles its
+     * tiles are used, so that each tile written matches a tile computed by the
+     * {@link PrefetchingImage}. When tiling is requested
+     * without a tile size the JAI default tile size is used instead, as the GeoTIFF extension
+     * tests expect, and a written tile may then span more than one computed tile.
      * 
      * 
      * @param econdingParameters a {@link Map} of {@link String} keys with {@link String} values to hold the encoding parameters.
@@ -0,0 +1,79 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs.responses;
+
+import java.awt.Point;
+import java.awt.image.Raster;
+
+import javax.media.jai.ImageLayout;
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
+
+/**
+ * Wraps an image computed on demand, such as the crop, scale and band select chain set up by
+ * GetCoverage, so that an encoder pulling its tiles one at a time gets them computed in parallel.
+ * <p>
+ * The first time a tile of a row is requested the whole row of tiles is computed by the JAI tile
+ * scheduler threads, and the computation of the next row is started in the background while the
+ * encoder works on the current one. Only the tiles of the current row are referenced, so the
+ * memory used depends on the width of the image, not on its size.
+ * </p>
+ */
+class PrefetchingImage extends PlanarImage {
+
+    final PlanarImage source;
+
+    int currentRow = Integer.MIN_VALUE;
+
+    Raster[] rowTiles;
+
+    /**
+     * Returns true if the image tiles are computed on demand and there is more than one of them
+     */
+    static boolean isPrefetchable(PlanarImage image) {
+        return image instanceof OpImage && image.getNumXTiles() * image.getNumYTiles() > 1;
+    }
+
+    public PrefetchingImage(PlanarImage source) {
+        super(new ImageLayout(source), null, null);
+        this.source = source;
+    }
+
+    @Override
+    public synchronized Raster getTile(int tileX, int tileY) {
+        if (tileX < getMinTileX() || tileX > getMaxTileX() || tileY < getMinTileY()
+                || tileY > getMaxTileY()) {
+            return null;
+        }
+        if (tileY != currentRow) {
+            // let the previous row be collected before computing the new one
+            rowTiles = null;
+            rowTiles = source.getTiles(row(tileY));
+            currentRow = tileY;
+            if (tileY < getMaxTileY()) {
+                source.prefetchTiles(row(tileY + 1));
+            }
+        }
+        return rowTiles[tileX - getMinTileX()];
+    }
+
+    Point[] row(int tileY) {
+        Point[] row = new Point[getNumXTiles()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = new Point(getMinTileX() + i, tileY);
+        }
+        return row;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return source.getProperty(name);
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return source.getPropertyNames();
+    }
+}
@@ -0,0 +1,249 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs.responses;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RasterFactory;
+import javax.media.jai.SourcelessOpImage;
+
+import org.geoserver.config.impl.GeoServerImpl;
+import org.geoserver.wcs.WCSInfoImpl;
+import org.geotools.coverage.CoverageFactoryFinder;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.gce.geotiff.GeoTiffReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.image.io.ImageIOExt;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+public class PrefetchingImageTest {
+
+    static final int TILE_SIZE = 16;
+
+    @Test
+    public void testRowTransitions() {
+        TileIndexImage source = new TileIndexImage(3, 3);
+        PrefetchingImage image = new PrefetchingImage(source);
+
+        // the first tile of a row computes the whole row
+        assertTile(image.getTile(1, 0), 1, 0);
+        assertEquals(0, image.currentRow);
+        for (int x = 0; x < 3; x++) {
+            assertTrue(source.computed.contains(new Point(x, 0)));
+        }
+
+        // the other tiles of the row come from the current row
+        assertSame(image.rowTiles[0], image.getTile(0, 0));
+        assertSame(image.rowTiles[2], image.getTile(2, 0));
+
+        // moving to the next row replaces the current one
+        assertTile(image.getTile(0, 1), 0, 1);
+        assertEquals(1, image.currentRow);
+        assertEquals(3, image.rowTiles.length);
+        for (int x = 0; x < 3; x++) {
+            assertTrue(source.computed.contains(new Point(x, 1)));
+            assertTile(image.rowTiles[x], x, 1);
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAccess() {
+        PrefetchingImage image = new PrefetchingImage(new TileIndexImage(3, 3));
+
+        assertTile(image.getTile(2, 2), 2, 2);
+        assertTile(image.getTile(0, 0), 0, 0);
+        assertTile(image.getTile(1, 2), 1, 2);
+        assertTile(image.getTile(2, 1), 2, 1);
+        assertTile(image.getTile(1, 1), 1, 1);
+        assertEquals(1, image.currentRow);
+
+        assertNull(image.getTile(3, 0));
+        assertNull(image.getTile(0, -1));
+
+        // the whole image as read through the prefetching one
+        Raster data = image.getData();
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(x / TILE_SIZE + (y / TILE_SIZE) * 3, data.getSample(x, y, 0));
+            }
+        }
+    }
+
+    @Test
+    public void testNotPrefetchable() {
+        assertTrue(PrefetchingImage.isPrefetchable(new TileIndexImage(2, 1)));
+        assertFalse(PrefetchingImage.isPrefetchable(new TileIndexImage(1, 1)));
+    }
+
+    @Test
+    public void testEncodeFileCache() throws Exception {
+        Long threshold = ImageIOExt.getFilesystemThreshold();
+        try {
+            // anything larger than a byte goes through a temporary file
+            ImageIOExt.setFilesystemThreshold(1L);
+            assertEncoded(new TileIndexImage(4, 3));
+
+            // and in memory otherwise
+            ImageIOExt.setFilesystemThreshold(Long.MAX_VALUE);
+            assertEncoded(new TileIndexImage(4, 3));
+        } finally {
+            ImageIOExt.setFilesystemThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void testEncodeFailure() throws Exception {
+        Long threshold = ImageIOExt.getFilesystemThreshold();
+        try {
+            ImageIOExt.setFilesystemThreshold(1L);
+            assertNothingEncoded();
+
+            ImageIOExt.setFilesystemThreshold(Long.MAX_VALUE);
+            assertNothingEncoded();
+        } finally {
+            ImageIOExt.setFilesystemThreshold(threshold);
+        }
+    }
+
+    void assertNothingEncoded() throws Exception {
+        // the last tile cannot be computed
+        TileIndexImage source = new TileIndexImage(4, 3) {
+            @Override
+            public Raster computeTile(int tileX, int tileY) {
+                if (tileX == 3 && tileY == 2) {
+                    throw new IllegalStateException("Failed to compute the tile");
+                }
+                return super.computeTile(tileX, tileY);
+            }
+        };
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            createDelegate().encode(createCoverage(source), "image/tiff",
+                    new HashMap<String, String>(), output);
+            fail("The encoding should have failed");
+        } catch (Exception e) {
+            // fine
+        }
+        // the client does not get a truncated tiff
+        assertEquals(0, output.size());
+    }
+
+    GeoTIFFCoverageResponseDelegate createDelegate() {
+        GeoServerImpl gs = new GeoServerImpl();
+        gs.add(new WCSInfoImpl());
+        return new GeoTIFFCoverageResponseDelegate(gs);
+    }
+
+    GridCoverage2D createCoverage(TileIndexImage source) {
+        return CoverageFactoryFinder.getGridCoverageFactory(null).create("test", source,
+                new ReferencedEnvelope(0, 4, 0, 3, DefaultGeographicCRS.WGS84));
+    }
+
+    void assertEncoded(TileIndexImage source) throws Exception {
+        GeoTIFFCoverageResponseDelegate delegate = createDelegate();
+        GridCoverage2D coverage = createCoverage(source);
+        File file = File.createTempFile("prefetch", ".tif");
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                delegate.encode(coverage, "image/tiff", new HashMap<String, String>(), output);
+            } finally {
+                output.close();
+            }
+            // the tiles have been pulled through the prefetching image
+            assertEquals(12, source.computed.size());
+
+            GeoTiffReader reader = new GeoTiffReader(file);
+            try {
+                GridCoverage2D read = reader.read(null);
+                Raster data = read.getRenderedImage().getData();
+                assertEquals(source.getWidth(), data.getWidth());
+                assertEquals(source.getHeight(), data.getHeight());
+                for (int y = 0; y < data.getHeight(); y++) {
+                    for (int x = 0; x < data.getWidth(); x++) {
+                        assertEquals(x / TILE_SIZE + (y / TILE_SIZE) * 4,
+                                data.getSample(data.getMinX() + x, data.getMinY() + y, 0));
+                    }
+                }
+                read.dispose(true);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    void assertTile(Raster tile, int tileX, int tileY) {
+        assertEquals(tileX * TILE_SIZE, tile.getMinX());
+        assertEquals(tileY * TILE_SIZE, tile.getMinY());
+        assertEquals(tileX + tileY * 3, tile.getSample(tile.getMinX(), tile.getMinY(), 0));
+    }
+
+    /**
+     * An image computed on demand whose pixels hold the index of their tile, recording the tiles
+     * being computed
+     */
+    static class TileIndexImage extends SourcelessOpImage {
+
+        static final SampleModel SAMPLE_MODEL = RasterFactory.createPixelInterleavedSampleModel(
+                DataBuffer.TYPE_BYTE, TILE_SIZE, TILE_SIZE, 1);
+
+        Set<Point> computed = Collections.synchronizedSet(new HashSet<Point>());
+
+        TileIndexImage(int tilesX, int tilesY) {
+            super(layout(), null, SAMPLE_MODEL, 0, 0, tilesX * TILE_SIZE, tilesY * TILE_SIZE);
+        }
+
+        static ImageLayout layout() {
+            ImageLayout layout = new ImageLayout();
+            layout.setSampleModel(SAMPLE_MODEL);
+            layout.setColorModel(PlanarImage.createColorModel(SAMPLE_MODEL));
+            layout.setTileGridXOffset(0);
+            layout.setTileGridYOffset(0);
+            layout.setTileWidth(TILE_SIZE);
+            layout.setTileHeight(TILE_SIZE);
+            return layout;
+        }
+
+        @Override
+        public Raster computeTile(int tileX, int tileY) {
+            computed.add(new Point(tileX, tileY));
+            return super.computeTile(tileX, tileY);
+        }
+
+        @Override
+        protected void computeRect(PlanarImage[] sources, WritableRaster dest, Rectangle destRect) {
+            for (int y = destRect.y; y < destRect.y + destRect.height; y++) {
+                for (int x = destRect.x; x < destRect.x + destRect.width; x++) {
+                    dest.setSample(x, y, 0, XToTileX(x) + YToTileY(y) * getNumXTiles());
+                }
+            }
+        }
+    }
+}
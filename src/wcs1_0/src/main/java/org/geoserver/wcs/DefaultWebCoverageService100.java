@@ -41,21 +41,19 @@ import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.util.ReaderDimensionsAccessor;
 import org.geoserver.config.GeoServer;
+import org.geoserver.coverage.CoverageReadPlan;
+import org.geoserver.coverage.CoverageReadPlanner;
 import org.geoserver.data.util.CoverageUtils;
 import org.geoserver.ows.util.RequestUtils;
 import org.geoserver.wcs.response.Wcs10CapsTransformer;
 import org.geoserver.wcs.response.Wcs10DescribeCoverageTransformer;
 import org.geoserver.wcs.responses.CoverageResponseDelegate;
 import org.geoserver.wcs.responses.CoverageResponseDelegateFinder;
-import org.geotools.coverage.grid.GeneralGridGeometry;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
-import org.geotools.coverage.grid.io.AbstractGridFormat;
-import org.geotools.gce.imagemosaic.ImageMosaicFormat;
 import org.geotools.geometry.GeneralEnvelope;
-import org.geotools.parameter.DefaultParameterDescriptor;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.geotools.resources.CRSUtilities;
@@ -67,7 +65,6 @@ import org.opengis.geometry.Envelope;
 import org.opengis.parameter.GeneralParameterDescriptor;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.parameter.ParameterDescriptor;
-import org.opengis.parameter.ParameterValue;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -295,14 +292,8 @@ public class DefaultWebCoverageService100 implements WebCoverageService100 {
                 // accordingly
                 requestedGridGeometry = new GridGeometry2D(PixelInCell.CELL_CENTER, destinationG2W,
                         getHorizontalEnvelope(requestedEnvelope), null);
-            // NOTICE that we always have to respect the provided envelope
-            final ParameterValue<GeneralGridGeometry> requestedGridGeometryParam = new DefaultParameterDescriptor<GeneralGridGeometry>(
-                    AbstractGridFormat.READ_GRIDGEOMETRY2D.getName().toString(),
-                    GeneralGridGeometry.class, null, requestedGridGeometry).createValue();
-            GeneralParameterValue[] tmpArray = new GeneralParameterValue[readParameters.length+1];
-            System.arraycopy(readParameters, 0, tmpArray, 0, readParameters.length);
-            tmpArray[tmpArray.length-1]=requestedGridGeometryParam;
-            readParameters=tmpArray;
+            // NOTICE that we always have to respect the provided envelope, the actual read
+            // grid geometry is set up by the read planner below
             
             
             /*
@@ -456,21 +447,17 @@ public class DefaultWebCoverageService100 implements WebCoverageService100 {
                     } else if (interpolationType.equalsIgnoreCase("nearest neighbor")) {
                         interpolation = Interpolation.getInstance(Interpolation.INTERP_NEAREST);
                     }
-                    readParameters = CoverageUtils.mergeParameter(parameterDescriptors,readParameters, interpolation, "interpolation");
-                    if(meta.getStore().getFormat() instanceof ImageMosaicFormat){
-                        GeneralParameterValue[] temp = new GeneralParameterValue[readParameters.length+1];
-                        System.arraycopy(readParameters, 0, temp, 0, readParameters.length);
-                        temp[temp.length-1]=ImageMosaicFormat.INTERPOLATION.createValue();
-                        ((ParameterValue)temp[temp.length-1]).setValue(interpolation);
-                        readParameters=temp;
-                    }
                 }
             }
 
             //
-            // perform read
+            // perform read, choosing the overview and read area matching the requested grid
             //
-            coverage = (GridCoverage2D) reader.read(readParameters);
+            final CoverageReadPlan plan = CoverageReadPlanner.plan(reader, requestedGridGeometry,
+                    interpolation, readParameters);
+            if (plan != null) {
+                coverage = (GridCoverage2D) reader.read(plan.getReadParameters(readParameters));
+            }
             if ((coverage == null) || !(coverage instanceof GridCoverage2D)) {
                 throw new IOException("No raster data found in the request (it may be that " +
                 		"the request bbox is outside of the coverage area, or that the filters used " +
@@ -43,6 +43,8 @@ import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CoverageDimensionInfo;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.config.GeoServer;
+import org.geoserver.coverage.CoverageReadPlan;
+import org.geoserver.coverage.CoverageReadPlanner;
 import org.geoserver.data.util.CoverageUtils;
 import org.geoserver.ows.util.RequestUtils;
 import org.geoserver.wcs.kvp.GridCS;
@@ -51,14 +53,11 @@ import org.geoserver.wcs.response.DescribeCoverageTransformer;
 import org.geoserver.wcs.response.WCSCapsTransformer;
 import org.geoserver.wcs.responses.CoverageResponseDelegate;
 import org.geoserver.wcs.responses.CoverageResponseDelegateFinder;
-import org.geotools.coverage.grid.GeneralGridGeometry;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
-import org.geotools.coverage.grid.io.AbstractGridFormat;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.gml2.bindings.GML2EncodingUtils;
-import org.geotools.parameter.DefaultParameterDescriptor;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.operation.builder.GridToEnvelopeMapper;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
@@ -247,161 +246,19 @@ public class DefaultWebCoverageService111 implements WebCoverageService111 {
                 }
             }
 
-            // now we have enough info to read the coverage, grab the parameters
-            // and add the grid geometry info
+            // compute the portion of the coverage being requested
             final GeneralEnvelope intersectionEnvelopeInSourceCRS = new GeneralEnvelope(requestedEnvelopeInNativeCRS);
             intersectionEnvelopeInSourceCRS.intersect(originalEnvelope);
-            
-            
-            final GridGeometry2D requestedGridGeometry = new GridGeometry2D(PixelInCell.CELL_CENTER, gridToCRS, intersectionEnvelopeInSourceCRS, null);
-
-            final ParameterValueGroup readParametersDescriptor = reader.getFormat().getReadParameters();
-            GeneralParameterValue[] readParameters = CoverageUtils.getParameters(readParametersDescriptor, meta.getParameters());
-                                    readParameters = (readParameters != null ? readParameters : new GeneralParameterValue[0]);
-            
-            //
-            // Setting coverage reading params.
-            //
-            final ParameterValue requestedGridGeometryParam = new DefaultParameterDescriptor(AbstractGridFormat.READ_GRIDGEOMETRY2D.getName().toString(), GeneralGridGeometry.class, null, requestedGridGeometry).createValue();
-
-            /*
-             * Test if the parameter "TIME" is present in the WMS
-             * request, and by the way in the reading parameters. If
-             * it is the case, one can adds it to the request. If an
-             * exception is thrown, we have nothing to do.
-             */
-            final List<GeneralParameterDescriptor> parameterDescriptors = readParametersDescriptor.getDescriptor().descriptors();
-            ParameterValue time=null;
-            boolean hasTime=timeValues.size()>0;
-            ParameterValue elevation=null;
-            boolean hasElevation=elevations != null && !Double.isNaN(elevations[0]);
-            
-            if(hasElevation||hasTime){
-                for(GeneralParameterDescriptor pd:parameterDescriptors){
-
-                        final String code=pd.getName().getCode();
-                        
-                        //
-                        // TIME
-                        //
-                        if(code.equalsIgnoreCase("TIME")){
-                            time=(ParameterValue) pd.createValue();
-                            time.setValue(timeValues);                }
-                        
-                        //
-                        // ELEVATION
-                        //
-                        if(code.equalsIgnoreCase("ELEVATION")){
-                            elevation=(ParameterValue) pd.createValue();
-                            elevation.setValue(elevations[0]);
-                        }
-                        
-                        
-                        // leave?
-                        if((hasElevation&&elevation!=null&&hasTime&&time!=null)||
-                                        !hasElevation&&hasTime&&time!=null||
-                                        hasElevation&&elevation!=null&&!hasTime)
-                                break;
-                    }
-            }
-            //
-            // add read parameters
-            //
-            int addedParams=1+(hasTime?1:0)+(hasElevation?1:0);
-            // add to the list
-            GeneralParameterValue[] readParametersClone = new GeneralParameterValue[readParameters.length+addedParams--];
-            System.arraycopy(readParameters, 0,readParametersClone , 0, readParameters.length);
-            readParametersClone[readParameters.length+addedParams--]=requestedGridGeometryParam;
-            if(hasTime)
-                readParametersClone[readParameters.length+addedParams--]=time;
-            if(hasElevation)
-                readParametersClone[readParameters.length+addedParams--]=elevation;            
-            readParameters=readParametersClone;
-            
-            // Check we're not being requested to read too much data from input (first check,
-            // guesses the grid size using the information contained in CoverageInfo)
-            WCSUtils.checkInputLimits(wcs, meta, reader, requestedGridGeometry);
-            
-            // 
-            // Check if we have a filter among the params
-            //
-            Filter filter = WCSUtils.getRequestFilter();
-            if(filter != null) {
-                readParameters = CoverageUtils.mergeParameter(parameterDescriptors, 
-                        readParameters, filter, "FILTER", "Filter");
-            }
-            
-            //
-            // perform Read ...
-            //
-            coverage = (GridCoverage2D) reader.read(readParameters);
-            if ((coverage == null) || !(coverage instanceof GridCoverage2D)) {
-                throw new IOException("The requested coverage could not be found.");
-            }
-            
-            // now that we have read the coverage double check the input size
-            WCSUtils.checkInputLimits(wcs, coverage);
-            
-            // some raster sources do not really read less data (arcgrid for example), we may need to crop
-            if(!intersectionEnvelopeInSourceCRS.contains(coverage.getEnvelope2D(), true)) {
-                coverage = WCSUtils.crop(coverage, intersectionEnvelopeInSourceCRS);
-            }
 
             /**
-             * Band Select (works on just one field)
+             * Checking for supported Interpolation Methods
              */
-            GridCoverage2D bandSelectedCoverage = coverage;
             String interpolationType = null;
-            if (request.getRangeSubset() != null) {
-                if (request.getRangeSubset().getFieldSubset().size() > 1) {
-                    throw new WcsException("Multi field coverages are not supported yet");
-                }
-
+            if (request.getRangeSubset() != null
+                    && request.getRangeSubset().getFieldSubset().size() > 0) {
                 FieldSubsetType field = (FieldSubsetType) request.getRangeSubset().getFieldSubset().get(0);
                 interpolationType = field.getInterpolationType();
-
-                // handle axis subset
-                if (field.getAxisSubset().size() > 1) {
-                    throw new WcsException("Multi axis coverages are not supported yet");
-                }
-                if (field.getAxisSubset().size() == 1) {
-                    // prepare a support structure to quickly get the band index
-                    // of a
-                    // key
-                    List<CoverageDimensionInfo> dimensions = meta.getDimensions();
-                    Map<String, Integer> dimensionMap = new HashMap<String, Integer>();
-                    for (int i = 0; i < dimensions.size(); i++) {
-                        String keyName = dimensions.get(i).getName().replace(' ', '_');
-                        dimensionMap.put(keyName, i);
-                    }
-
-                    // extract the band indexes
-                    AxisSubsetType axisSubset = (AxisSubsetType) field.getAxisSubset().get(0);
-                    List keys = axisSubset.getKey();
-                    int[] bands = new int[keys.size()];
-                    for (int j = 0; j < bands.length; j++) {
-                        final String key = (String) keys.get(j);
-                        Integer index = dimensionMap.get(key);
-                        if (index == null)
-                            throw new WcsException("Unknown field/axis/key combination "
-                                    + field.getIdentifier().getValue() + "/"
-                                    + axisSubset.getIdentifier() + "/" + key);
-                        bands[j] = index;
-                    }
-
-                    // finally execute the band select
-                    try {
-                        bandSelectedCoverage = (GridCoverage2D) WCSUtils
-                                .bandSelect(coverage, bands);
-                    } catch (WcsException e) {
-                        throw new WcsException(e.getLocalizedMessage());
-                    }
-                }
             }
-            
-            /**
-             * Checking for supported Interpolation Methods
-             */
             Interpolation interpolation = Interpolation.getInstance(Interpolation.INTERP_NEAREST);
             if (interpolationType != null) {
                 if (interpolationType.equalsIgnoreCase("bilinear")) {
@@ -421,7 +278,7 @@ public class DefaultWebCoverageService111 implements WebCoverageService111 {
                 CoordinateOperation co = of.createOperation(nativeCRS, targetCRS);
                 intersectionEnvelope = CRS.transform(co, intersectionEnvelopeInSourceCRS);
             } else {
-                intersectionEnvelope = intersectionEnvelopeInSourceCRS;
+                intersectionEnvelope = new GeneralEnvelope(intersectionEnvelopeInSourceCRS);
             }
             
             // compute the output resolution
@@ -525,6 +382,151 @@ public class DefaultWebCoverageService111 implements WebCoverageService111 {
             }
 
             final GridGeometry2D destinationGridGeometry = new GridGeometry2D(PixelInCell.CELL_CENTER, gridToCRS, intersectionEnvelope, null);
+
+            // now we have enough info to read the coverage, grab the parameters
+            final ParameterValueGroup readParametersDescriptor = reader.getFormat().getReadParameters();
+            GeneralParameterValue[] readParameters = CoverageUtils.getParameters(readParametersDescriptor, meta.getParameters());
+                                    readParameters = (readParameters != null ? readParameters : new GeneralParameterValue[0]);
+            
+            /*
+             * Test if the parameter "TIME" is present in the WMS
+             * request, and by the way in the reading parameters. If
+             * it is the case, one can adds it to the request. If an
+             * exception is thrown, we have nothing to do.
+             */
+            final List<GeneralParameterDescriptor> parameterDescriptors = readParametersDescriptor.getDescriptor().descriptors();
+            ParameterValue time=null;
+            boolean hasTime=timeValues.size()>0;
+            ParameterValue elevation=null;
+            boolean hasElevation=elevations != null && !Double.isNaN(elevations[0]);
+            
+            if(hasElevation||hasTime){
+                for(GeneralParameterDescriptor pd:parameterDescriptors){
+
+                        final String code=pd.getName().getCode();
+                        
+                        //
+                        // TIME
+                        //
+                        if(code.equalsIgnoreCase("TIME")){
+                            time=(ParameterValue) pd.createValue();
+                            time.setValue(timeValues);                }
+                        
+                        //
+                        // ELEVATION
+                        //
+                        if(code.equalsIgnoreCase("ELEVATION")){
+                            elevation=(ParameterValue) pd.createValue();
+                            elevation.setValue(elevations[0]);
+                        }
+                        
+                        
+                        // leave?
+                        if((hasElevation&&elevation!=null&&hasTime&&time!=null)||
+                                        !hasElevation&&hasTime&&time!=null||
+                                        hasElevation&&elevation!=null&&!hasTime)
+                                break;
+                    }
+            }
+            //
+            // add read parameters
+            //
+            if (time != null || elevation != null) {
+                List<GeneralParameterValue> paramList = new ArrayList<GeneralParameterValue>(Arrays.asList(readParameters));
+                if (time != null)
+                    paramList.add(time);
+                if (elevation != null)
+                    paramList.add(elevation);
+                readParameters = paramList.toArray(new GeneralParameterValue[paramList.size()]);
+            }
+
+            // plan the read, the reader will pick the overview and sub-sampling matching the
+            // resolution of the destination grid
+            final CoverageReadPlan plan = CoverageReadPlanner.plan(reader, destinationGridGeometry,
+                    interpolation, readParameters);
+            if (plan == null) {
+                throw new IOException("The requested coverage could not be found.");
+            }
+            
+            // Check we're not being requested to read too much data from input (first check,
+            // guesses the grid size using the information contained in CoverageInfo)
+            WCSUtils.checkInputLimits(wcs, meta, reader, plan.getReadGridGeometry());
+            
+            // 
+            // Check if we have a filter among the params
+            //
+            Filter filter = WCSUtils.getRequestFilter();
+            if(filter != null) {
+                readParameters = CoverageUtils.mergeParameter(parameterDescriptors, 
+                        readParameters, filter, "FILTER", "Filter");
+            }
+            
+            //
+            // perform Read ...
+            //
+            coverage = (GridCoverage2D) reader.read(plan.getReadParameters(readParameters));
+            if ((coverage == null) || !(coverage instanceof GridCoverage2D)) {
+                throw new IOException("The requested coverage could not be found.");
+            }
+            
+            // now that we have read the coverage double check the input size
+            WCSUtils.checkInputLimits(wcs, coverage);
+            
+            // some raster sources do not really read less data (arcgrid for example), we may need to crop
+            if(!intersectionEnvelopeInSourceCRS.contains(coverage.getEnvelope2D(), true)) {
+                coverage = WCSUtils.crop(coverage, intersectionEnvelopeInSourceCRS);
+            }
+
+            /**
+             * Band Select (works on just one field)
+             */
+            GridCoverage2D bandSelectedCoverage = coverage;
+            if (request.getRangeSubset() != null) {
+                if (request.getRangeSubset().getFieldSubset().size() > 1) {
+                    throw new WcsException("Multi field coverages are not supported yet");
+                }
+
+                FieldSubsetType field = (FieldSubsetType) request.getRangeSubset().getFieldSubset().get(0);
+
+                // handle axis subset
+                if (field.getAxisSubset().size() > 1) {
+                    throw new WcsException("Multi axis coverages are not supported yet");
+                }
+                if (field.getAxisSubset().size() == 1) {
+                    // prepare a support structure to quickly get the band index
+                    // of a
+                    // key
+                    List<CoverageDimensionInfo> dimensions = meta.getDimensions();
+                    Map<String, Integer> dimensionMap = new HashMap<String, Integer>();
+                    for (int i = 0; i < dimensions.size(); i++) {
+                        String keyName = dimensions.get(i).getName().replace(' ', '_');
+                        dimensionMap.put(keyName, i);
+                    }
+
+                    // extract the band indexes
+                    AxisSubsetType axisSubset = (AxisSubsetType) field.getAxisSubset().get(0);
+                    List keys = axisSubset.getKey();
+                    int[] bands = new int[keys.size()];
+                    for (int j = 0; j < bands.length; j++) {
+                        final String key = (String) keys.get(j);
+                        Integer index = dimensionMap.get(key);
+                        if (index == null)
+                            throw new WcsException("Unknown field/axis/key combination "
+                                    + field.getIdentifier().getValue() + "/"
+                                    + axisSubset.getIdentifier() + "/" + key);
+                        bands[j] = index;
+                    }
+
+                    // finally execute the band select
+                    try {
+                        bandSelectedCoverage = (GridCoverage2D) WCSUtils
+                                .bandSelect(coverage, bands);
+                    } catch (WcsException e) {
+                        throw new WcsException(e.getLocalizedMessage());
+                    }
+                }
+            }
+            
             
             // before extracting the output make sure it's not too big
             WCSUtils.checkOutputLimits(wcs, destinationGridGeometry.getGridRange2D(), 
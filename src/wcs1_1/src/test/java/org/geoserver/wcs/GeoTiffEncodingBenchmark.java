@@ -0,0 +1,126 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.geoserver.wcs.responses.GeoTIFFCoverageResponseDelegate;
+import org.geoserver.wcs.test.WCSTestSupport;
+import org.geotools.coverage.CoverageFactoryFinder;
+import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.coverage.grid.io.imageio.GeoToolsWriteParams;
+import org.geotools.gce.geotiff.GeoTiffFormat;
+import org.geotools.gce.geotiff.GeoTiffWriteParams;
+import org.geotools.gce.geotiff.GeoTiffWriter;
+import org.geotools.gce.imagemosaic.ImageMosaicFormat;
+import org.geotools.gce.imagemosaic.ImageMosaicReader;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+import org.opengis.parameter.GeneralParameterValue;
+import org.opengis.parameter.ParameterValue;
+import org.opengis.parameter.ParameterValueGroup;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Times the GeoTIFF encoding of a large image mosaic read from local files, with and without the
+ * parallel computation of the tiles. Not run by the build, run it explicitly with
+ * {@code mvn test -Dtest=GeoTiffEncodingBenchmark}, the mosaic is made of a square of 2048x2048
+ * granules whose side defaults to 4 and can be set with the {@code wcs.benchmark.size} system
+ * property.
+ */
+public class GeoTiffEncodingBenchmark extends WCSTestSupport {
+
+    static final int SIZE = Integer.getInteger("wcs.benchmark.size", 4);
+
+    static final int GRANULE_SIZE = 2048;
+
+    @Test
+    public void testEncodeMosaic() throws Exception {
+        File dir = new File("./target/geotiff-benchmark");
+        FileUtils.deleteDirectory(dir);
+        dir.mkdirs();
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                writeGranule(new File(dir, "granule_" + i + "_" + j + ".tif"), i, j);
+            }
+        }
+
+        ImageMosaicReader reader = new ImageMosaicFormat().getReader(dir);
+        try {
+            ParameterValue<Boolean> jaiImageRead = ImageMosaicFormat.USE_JAI_IMAGEREAD
+                    .createValue();
+            jaiImageRead.setValue(true);
+
+            GeoTIFFCoverageResponseDelegate delegate = new GeoTIFFCoverageResponseDelegate(
+                    getGeoServer());
+            Map<String, String> params = new HashMap<String, String>();
+            params.put("tiling", "true");
+            params.put("tilewidth", "512");
+            params.put("tileheight", "512");
+            params.put("compression", "DEFLATE");
+
+            for (String prefetch : new String[] { "false", "true", "false", "true" }) {
+                System.setProperty(GeoTIFFCoverageResponseDelegate.GEOTIFF_PREFETCH_TILES,
+                        prefetch);
+                GridCoverage2D coverage = reader
+                        .read(new GeneralParameterValue[] { jaiImageRead });
+                CountingOutputStream output = new CountingOutputStream(new NullOutputStream());
+
+                Stopwatch sw = new Stopwatch().start();
+                delegate.encode(coverage, "image/tiff", params, output);
+                sw.stop();
+                System.out.println(String.format(
+                        "%dx%d mosaic, prefetch %s: %d bytes encoded in %s", SIZE * GRANULE_SIZE,
+                        SIZE * GRANULE_SIZE, prefetch, output.getByteCount(), sw));
+            }
+        } finally {
+            System.clearProperty(GeoTIFFCoverageResponseDelegate.GEOTIFF_PREFETCH_TILES);
+            reader.dispose();
+        }
+    }
+
+    void writeGranule(File file, int i, int j) throws Exception {
+        BufferedImage image = new BufferedImage(GRANULE_SIZE, GRANULE_SIZE,
+                BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(i * 255 / SIZE, 0, 0), GRANULE_SIZE,
+                GRANULE_SIZE, new Color(0, j * 255 / SIZE, 255)));
+        g.fillRect(0, 0, GRANULE_SIZE, GRANULE_SIZE);
+        g.dispose();
+
+        ReferencedEnvelope envelope = new ReferencedEnvelope(i, i + 1, -j - 1, -j,
+                DefaultGeographicCRS.WGS84);
+        GridCoverage2D coverage = CoverageFactoryFinder.getGridCoverageFactory(null).create(
+                file.getName(), image, envelope);
+
+        GeoTiffWriteParams wp = new GeoTiffWriteParams();
+        wp.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
+        wp.setTiling(512, 512);
+        GeoTiffFormat format = new GeoTiffFormat();
+        ParameterValueGroup writerParams = format.getWriteParameters();
+        writerParams.parameter(AbstractGridFormat.GEOTOOLS_WRITE_PARAMS.getName().toString())
+                .setValue(wp);
+
+        GeoTiffWriter writer = new GeoTiffWriter(file);
+        try {
+            writer.write(coverage, (GeneralParameterValue[]) writerParams.values().toArray(
+                    new GeneralParameterValue[1]));
+        } finally {
+            writer.dispose();
+        }
+    }
+}
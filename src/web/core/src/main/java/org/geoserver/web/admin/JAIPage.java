@@ -53,6 +53,7 @@ public class JAIPage extends ServerAdminPage {
         form.add(new CheckBox("jpegAcceleration"));
         form.add(new CheckBox("pngAcceleration"));
         form.add(new CheckBox("allowNativeMosaic"));
+        form.add(new CheckBox("concurrentTileCache"));
 
         Button submit = new Button("submit", new StringResourceModel("submit", this, null)) {
             @Override
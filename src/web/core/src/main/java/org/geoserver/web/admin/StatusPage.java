@@ -26,6 +26,7 @@ import org.geoserver.config.CoverageAccessInfo;
 import org.geoserver.config.GeoServerDataDirectory;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.JAIInfo;
+import org.geoserver.jai.ConcurrentTileCache;
 import org.geoserver.web.util.MapModel;
 import org.geoserver.web.wicket.ParamResourceModel;
 import org.geotools.data.DataAccess;
@@ -63,6 +64,8 @@ public class StatusPage extends ServerAdminPage {
 
     private static final String KEY_JAI_MEM_THRESHOLD = "jai_mem_threshold";
 
+    private static final String KEY_JAI_TILE_CACHE = "jai_tile_cache";
+
     private static final String KEY_JAI_TILE_THREADS = "jai_tile_threads";
 
     private static final String KEY_JAI_TILE_THREAD_PRIORITY = "jai_tile_thread_priority";
@@ -91,6 +94,7 @@ public class StatusPage extends ServerAdminPage {
         add(new Label("jai.memory.available", new MapModel(values, KEY_JAI_MAX_MEM)));
         add(new Label("jai.memory.used", new MapModel(values, KEY_JAI_MEM_USAGE)));
         add(new Label("jai.memory.threshold", new MapModel(values, KEY_JAI_MEM_THRESHOLD)));
+        add(new Label("jai.tile.cache", new MapModel(values, KEY_JAI_TILE_CACHE)));
         add(new Label("jai.tile.threads", new MapModel(values, KEY_JAI_TILE_THREADS)));
         add(new Label("jai.tile.priority", new MapModel(values, KEY_JAI_TILE_THREAD_PRIORITY)));
         add(new Label("coverage.corepoolsize", new MapModel(values, KEY_COVERAGEACCESS_CORE_POOL_SIZE)));
@@ -188,6 +192,7 @@ public class StatusPage extends ServerAdminPage {
             values.put(KEY_JAI_MEM_USAGE, "-");
         }
         values.put(KEY_JAI_MEM_THRESHOLD, Float.toString(100.0f * jaiCache.getMemoryThreshold()));
+        values.put(KEY_JAI_TILE_CACHE, formatTileCache(jaiCache));
         values.put(KEY_JAI_TILE_THREADS, Integer.toString(jai.getTileScheduler().getParallelism()));
         values.put(KEY_JAI_TILE_THREAD_PRIORITY, Integer.toString(jai.getTileScheduler()
                 .getPriority()));
@@ -199,6 +204,24 @@ public class StatusPage extends ServerAdminPage {
         values.put(KEY_UPDATE_SEQUENCE, Long.toString(geoServerInfo.getUpdateSequence()));
     }
 
+    /**
+     * Reports the tile cache implementation, along with its hit, miss and eviction counts if
+     * available
+     */
+    private String formatTileCache(TileCache jaiCache) {
+        String name = jaiCache.getClass().getSimpleName();
+        if (jaiCache instanceof ConcurrentTileCache) {
+            ConcurrentTileCache cache = (ConcurrentTileCache) jaiCache;
+            long hits = cache.getCacheHitCount();
+            long total = hits + cache.getCacheMissCount();
+            String ratio = total == 0 ? "-" : String.format("%.1f%%", 100.0 * hits / total);
+            return name + " (" + cache.getCacheTileCount() + " tiles, " + hits + " hits, "
+                    + cache.getCacheMissCount() + " misses, " + ratio + " hit ratio, "
+                    + cache.getCacheEvictionCount() + " evictions)";
+        }
+        return name;
+    }
+
     /**
      * Retrieves the GeoServer data directory
      * @return
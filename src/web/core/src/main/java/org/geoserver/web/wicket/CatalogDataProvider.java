@@ -0,0 +1,166 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.web.wicket;
+
+import static org.geoserver.catalog.Predicates.acceptAll;
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.or;
+import static org.geoserver.catalog.Predicates.sortBy;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.Predicates;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A {@link GeoServerDataProvider} for catalog objects that leverages the catalog filtering and
+ * paging support instead of loading all the objects and filtering, sorting and paging them in
+ * memory.
+ * <p>
+ * The keywords are turned into full text search filters, and the sort property into a
+ * {@link SortBy} on the property path of {@link BeanProperty} properties, so that only the
+ * requested page is loaded from {@link Catalog#list(Class, Filter, Integer, Integer, SortBy)}, and
+ * sizes are computed with {@link Catalog#count(Class, Filter)}. Sorting on a property that cannot
+ * be translated into a {@link SortBy} falls back on sorting the filtered objects in memory.
+ * </p>
+ *
+ * @param <T>
+ */
+@SuppressWarnings("serial")
+public abstract class CatalogDataProvider<T extends CatalogInfo> extends GeoServerDataProvider<T> {
+
+    /**
+     * The type of catalog objects served by this provider
+     */
+    protected abstract Class<T> getInfoClass();
+
+    /**
+     * The filter selecting the objects served by this provider, before any keyword filtering.
+     * Defaults to all objects of {@link #getInfoClass()}
+     */
+    protected Filter getBaseFilter() {
+        return acceptAll();
+    }
+
+    /**
+     * Returns the filter combining the base filter and the current keywords
+     */
+    protected Filter getFilter() {
+        Filter filter = getKeywordsFilter(getKeywords());
+        Filter base = getBaseFilter();
+        if (Filter.INCLUDE.equals(base)) {
+            return filter;
+        } else if (Filter.INCLUDE.equals(filter)) {
+            return base;
+        } else {
+            return and(base, filter);
+        }
+    }
+
+    /**
+     * Returns the catalog property path used to sort on the specified property, or {@code null}
+     * if the catalog cannot sort on it. Defaults to the property path of {@link BeanProperty}
+     * properties.
+     */
+    protected String getSortPropertyPath(Property<T> property) {
+        if (property instanceof BeanProperty) {
+            return ((BeanProperty<T>) property).getPropertyPath();
+        }
+        return null;
+    }
+
+    /**
+     * @return the catalog sort order for the current sort, or {@code null} if there is no sort or
+     *         the catalog cannot sort on the current sort property
+     */
+    protected SortBy getSortOrder() {
+        SortParam sort = getSort();
+        Property<T> property = getProperty(sort);
+        if (property == null) {
+            return null;
+        }
+        String path = getSortPropertyPath(property);
+        return path == null ? null : sortBy(path, sort.isAscending());
+    }
+
+    /**
+     * Loads all the objects matching the base filter, used only when the items have to be sorted
+     * in memory
+     */
+    @Override
+    protected List<T> getItems() {
+        return list(getBaseFilter(), null, null, null);
+    }
+
+    /**
+     * Filters the items in the catalog, so that the results are consistent with {@link #size()}
+     */
+    @Override
+    protected List<T> getFilteredItems() {
+        return list(getFilter(), null, null, null);
+    }
+
+    @Override
+    public int size() {
+        return getCatalog().count(getInfoClass(), getFilter());
+    }
+
+    @Override
+    public int fullSize() {
+        return getCatalog().count(getInfoClass(), getBaseFilter());
+    }
+
+    @Override
+    public Iterator<T> iterator(int first, int count) {
+        SortBy sortOrder = getSortOrder();
+        if (sortOrder == null && getProperty(getSort()) != null) {
+            // the catalog cannot sort on this property, sort in memory
+            return super.iterator(first, count);
+        }
+        // copy the page, wicket won't close the iterator
+        return list(getFilter(), first, count, sortOrder).iterator();
+    }
+
+    /**
+     * Loads a page of catalog objects into a list, closing the catalog iterator
+     */
+    protected List<T> list(Filter filter, Integer offset, Integer count, SortBy sortOrder) {
+        CloseableIterator<T> items = getCatalog().list(getInfoClass(), filter, offset, count,
+                sortOrder);
+        try {
+            return Lists.newArrayList(items);
+        } finally {
+            items.close();
+        }
+    }
+
+    /**
+     * Builds a filter matching the objects containing any of the keywords in any of their text
+     * properties
+     */
+    public static Filter getKeywordsFilter(String[] keywords) {
+        Filter filter = acceptAll();
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                Filter propContains = Predicates.fullTextSearch(keyword);
+                // chain the filters together
+                if (Filter.INCLUDE == filter) {
+                    filter = propContains;
+                } else {
+                    filter = or(filter, propContains);
+                }
+            }
+        }
+        return filter;
+    }
+}
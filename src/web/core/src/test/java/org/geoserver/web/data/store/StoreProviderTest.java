@@ -0,0 +1,79 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.web.data.store;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.wicket.extensions.markup.html.repeater.util.SortParam;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.web.GeoServerWicketTestSupport;
+import org.junit.Test;
+
+public class StoreProviderTest extends GeoServerWicketTestSupport {
+
+    List<String> names(Iterator<StoreInfo> stores) {
+        List<String> names = new ArrayList<String>();
+        while (stores.hasNext()) {
+            names.add(stores.next().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        Catalog catalog = getCatalog();
+        int total = catalog.getStores(StoreInfo.class).size();
+
+        StoreProvider provider = new StoreProvider();
+        provider.setSort(new SortParam("name", true));
+        assertEquals(total, provider.size());
+        assertEquals(total, provider.fullSize());
+
+        List<String> all = names(provider.iterator(0, total));
+        assertEquals(total, all.size());
+        List<String> page = names(provider.iterator(1, 2));
+        assertEquals(all.subList(1, 3), page);
+
+        // descending
+        provider.setSort(new SortParam("name", false));
+        assertEquals(all.get(total - 1), names(provider.iterator(0, 1)).get(0));
+    }
+
+    @Test
+    public void testKeywords() throws Exception {
+        StoreProvider provider = new StoreProvider();
+        provider.setKeywords(new String[] { MockData.CITE_PREFIX });
+        List<String> names = names(provider.iterator(0, provider.size()));
+        assertEquals(names.size(), provider.size());
+        assertTrue(names.contains(MockData.CITE_PREFIX));
+    }
+
+    @Test
+    public void testWorkspace() throws Exception {
+        WorkspaceInfo ws = getCatalog().getWorkspaceByName(MockData.CITE_PREFIX);
+        StoreProvider provider = new StoreProvider(ws);
+        assertEquals(getCatalog().getStoresByWorkspace(ws, StoreInfo.class).size(),
+                provider.size());
+        Iterator<StoreInfo> stores = provider.iterator(0, provider.size());
+        while (stores.hasNext()) {
+            assertEquals(ws, stores.next().getWorkspace());
+        }
+    }
+
+    @Test
+    public void testInMemorySort() throws Exception {
+        // the data type cannot be sorted on by the catalog
+        StoreProvider provider = new StoreProvider();
+        provider.setSort(new SortParam("datatype", true));
+        assertEquals(provider.size(), names(provider.iterator(0, provider.size())).size());
+    }
+}
@@ -4,17 +4,28 @@
  */
 package org.geoserver.web.demo;
 
+import static org.geoserver.catalog.Predicates.and;
+import static org.geoserver.catalog.Predicates.equal;
+
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.wicket.model.IModel;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.util.CloseableIterator;
+import org.geoserver.web.wicket.CatalogDataProvider;
 import org.geoserver.web.wicket.GeoServerDataProvider;
+import org.opengis.filter.Filter;
 
 /**
  * Provides a filtered, sorted view over the catalog layers.
+ * <p>
+ * The layers are filtered, counted and, unless a sort is requested, paged by the catalog, only
+ * the layer groups are loaded and filtered in memory.
+ * </p>
  * 
  * @author Andrea Aime - OpenGeo
  */
@@ -54,21 +65,109 @@ public class PreviewLayerProvider extends GeoServerDataProvider<PreviewLayer> {
     public static final List<Property<PreviewLayer>> PROPERTIES = Arrays.asList(TYPE,
             NAME, TITLE, ABSTRACT, KEYWORDS, COMMON, ALL);
 
+    /**
+     * Selects the layers that can be previewed, that is, the ones that are enabled (along with
+     * their resource and store) and advertised
+     */
+    static final Filter PREVIEWABLE_LAYERS = and(equal("enabled", Boolean.TRUE),
+            equal("resource.enabled", Boolean.TRUE), equal("resource.store.enabled", Boolean.TRUE),
+            equal("resource.advertised", Boolean.TRUE));
+
     @Override
     protected List<PreviewLayer> getItems() {
+        return getItems(Filter.INCLUDE);
+    }
+
+    /**
+     * Filters the layers in the catalog, so that the results are consistent with {@link #size()}
+     */
+    @Override
+    protected List<PreviewLayer> getFilteredItems() {
+        return getItems(getKeywordsFilter());
+    }
+
+    List<PreviewLayer> getItems(Filter filter) {
+        List<PreviewLayer> result = new ArrayList<PreviewLayer>();
+        result.addAll(getLayers(filter, null, null));
+        result.addAll(getGroups(filter));
+        return result;
+    }
+
+    @Override
+    public int size() {
+        Filter filter = getKeywordsFilter();
+        return getCatalog().count(LayerInfo.class, layersFilter(filter))
+                + getGroups(filter).size();
+    }
+
+    @Override
+    public int fullSize() {
+        return getCatalog().count(LayerInfo.class, PREVIEWABLE_LAYERS)
+                + getGroups(Filter.INCLUDE).size();
+    }
+
+    /**
+     * Unless the items are sorted, loads only the requested page of layers from the catalog,
+     * followed by the groups
+     */
+    @Override
+    public Iterator<PreviewLayer> iterator(int first, int count) {
+        if (getProperty(getSort()) != null) {
+            return super.iterator(first, count);
+        }
+
+        Filter filter = getKeywordsFilter();
+        int layers = getCatalog().count(LayerInfo.class, layersFilter(filter));
         List<PreviewLayer> result = new ArrayList<PreviewLayer>();
+        if (first < layers) {
+            result.addAll(getLayers(filter, first, Math.min(count, layers - first)));
+        }
+        if (result.size() < count) {
+            List<PreviewLayer> groups = getGroups(filter);
+            int groupsFirst = Math.max(0, first - layers);
+            int groupsLast = Math.min(groups.size(), groupsFirst + count - result.size());
+            if (groupsFirst < groupsLast) {
+                result.addAll(groups.subList(groupsFirst, groupsLast));
+            }
+        }
+        return result.iterator();
+    }
+
+    Filter getKeywordsFilter() {
+        return CatalogDataProvider.getKeywordsFilter(getKeywords());
+    }
 
-        List<LayerInfo> layers = getCatalog().getLayers();
-        for (LayerInfo layer :layers ) {
-            // ask for enabled() instead of isEnabled() to account for disabled resource/store
-            if (layer.enabled() && layer.isAdvertised()) {
-                result.add(new PreviewLayer(layer));
+    Filter layersFilter(Filter keywordsFilter) {
+        if (Filter.INCLUDE.equals(keywordsFilter)) {
+            return PREVIEWABLE_LAYERS;
+        }
+        return and(PREVIEWABLE_LAYERS, keywordsFilter);
+    }
+
+    List<PreviewLayer> getLayers(Filter keywordsFilter, Integer offset, Integer count) {
+        List<PreviewLayer> result = new ArrayList<PreviewLayer>();
+        CloseableIterator<LayerInfo> layers = getCatalog().list(LayerInfo.class,
+                layersFilter(keywordsFilter), offset, count, null);
+        try {
+            while (layers.hasNext()) {
+                result.add(new PreviewLayer(layers.next()));
             }
+        } finally {
+            layers.close();
         }
+        return result;
+    }
 
+    /**
+     * Groups are usually few, and whether they can be previewed depends on all of their layers,
+     * they are filtered in memory
+     */
+    List<PreviewLayer> getGroups(Filter keywordsFilter) {
+        List<PreviewLayer> result = new ArrayList<PreviewLayer>();
         final List<LayerGroupInfo> layerGroups = getCatalog().getLayerGroups();
         for (LayerGroupInfo group :layerGroups ) {
-            if (!LayerGroupInfo.Mode.CONTAINER.equals(group.getMode())) {            
+            if (!LayerGroupInfo.Mode.CONTAINER.equals(group.getMode())
+                    && keywordsFilter.evaluate(group)) {
                 boolean enabled = true;
                 for (LayerInfo layer : group.layers()) {
                     // ask for enabled() instead of isEnabled() to account for disabled resource/store
@@ -79,7 +178,6 @@ public class PreviewLayerProvider extends GeoServerDataProvider<PreviewLayer> {
                     result.add(new PreviewLayer(group));
             }
         }
-
         return result;
     }
 
@@ -4,9 +4,14 @@
  */
 package org.geoserver.web.demo;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.data.test.MockData;
@@ -101,6 +106,43 @@ public class PreviewLayerProviderTest extends GeoServerWicketTestSupport {
         }        
     }    
     
+    @Test
+    public void testPaging() throws Exception {
+        LayerInfo layer = getCatalog().getLayerByName(getLayerId(MockData.BUILDINGS));
+        LayerGroupInfo group = getCatalog().getFactory().createLayerGroup();
+        group.setName("testPagingGroup");
+        group.getLayers().add(layer);
+        getCatalog().add(group);
+        try {
+            PreviewLayerProvider provider = new PreviewLayerProvider();
+            List<PreviewLayer> all = provider.getItems();
+            assertEquals(all.size(), provider.size());
+            assertEquals(all.size(), provider.fullSize());
+
+            // page across the layers and the group at the end
+            List<String> paged = new ArrayList<String>();
+            for (int first = 0; first < provider.size(); first += 3) {
+                Iterator<PreviewLayer> it = provider.iterator(first, 3);
+                while (it.hasNext()) {
+                    paged.add(it.next().getName());
+                }
+            }
+            List<String> expected = new ArrayList<String>();
+            for (PreviewLayer pl : all) {
+                expected.add(pl.getName());
+            }
+            assertEquals(expected, paged);
+            assertEquals("testPagingGroup", paged.get(paged.size() - 1));
+
+            // keyword filtering
+            provider.setKeywords(new String[] { "testPaging" });
+            assertEquals(1, provider.size());
+            assertEquals("testPagingGroup", provider.iterator(0, 10).next().getName());
+        } finally {
+            getCatalog().remove(group);
+        }
+    }
+
     private PreviewLayer getPreviewLayer(PreviewLayerProvider provider, String prefixedName) {
         for (PreviewLayer pl : provider.getItems()) {
             if(pl.getName().equals(prefixedName)) {
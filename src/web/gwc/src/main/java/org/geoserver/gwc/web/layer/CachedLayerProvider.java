@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.wicket.ResourceReference;
@@ -141,6 +142,56 @@ class CachedLayerProvider extends GeoServerDataProvider<TileLayer> {
         });
     }
 
+    /**
+     * Unless there are keywords to filter on, counts the tile layer names instead of loading all
+     * the tile layers
+     */
+    @Override
+    public int size() {
+        if (keywords == null || keywords.length == 0) {
+            return fullSize();
+        }
+        return super.size();
+    }
+
+    @Override
+    public int fullSize() {
+        return GWC.get().getTileLayerNames().size();
+    }
+
+    /**
+     * Unless there are keywords to filter on, or the layers are sorted on something else than
+     * their name, pages the tile layer names and loads only the tile layers in the requested page
+     */
+    @Override
+    public Iterator<TileLayer> iterator(int first, int count) {
+        final SortParam sort = getSort();
+        if ((keywords != null && keywords.length > 0)
+                || (sort != null && !NAME.getName().equals(sort.getProperty()))) {
+            return super.iterator(first, count);
+        }
+
+        List<String> names = new ArrayList<String>(GWC.get().getTileLayerNames());
+        if (sort != null) {
+            Collections.sort(names);
+            if (!sort.isAscending()) {
+                Collections.reverse(names);
+            }
+        }
+        int last = Math.min(first + count, names.size());
+        if (first >= last) {
+            return Collections.<TileLayer> emptyList().iterator();
+        }
+        List<String> page = names.subList(first, last);
+        return new ArrayList<TileLayer>(Lists.transform(page, new Function<String, TileLayer>() {
+
+            @Override
+            public TileLayer apply(String input) {
+                return GWC.get().getTileLayerByName(input);
+            }
+        })).iterator();
+    }
+
     /**
      * @see org.geoserver.web.wicket.GeoServerDataProvider#getProperties()
      */
@@ -4,13 +4,22 @@
  */
 package org.geoserver.wfs.web.publish;
 
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.border.Border;
+import org.apache.wicket.markup.html.form.CheckBox;
 import org.apache.wicket.markup.html.form.TextField;
 import org.apache.wicket.markup.html.form.validation.FormComponentFeedbackBorder;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
 import org.apache.wicket.model.PropertyModel;
+import org.apache.wicket.model.StringResourceModel;
 import org.apache.wicket.validation.validator.NumberValidator;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.wfs.cache.GetFeatureCache;
 import org.geoserver.web.publish.LayerConfigurationPanel;
+import org.geoserver.web.util.MapModel;
 
 @SuppressWarnings("serial")
 public class WFSLayerConfig extends LayerConfigurationPanel {
@@ -28,5 +37,43 @@ public class WFSLayerConfig extends LayerConfigurationPanel {
         Border mdb = new FormComponentFeedbackBorder("maxDecimalsBorder");
         mdb.add(maxDecimals);
         add(mdb);
+
+        // GetFeature response cache
+        add(new CheckBox(GetFeatureCache.CACHE_ENABLED, new MapModel(new PropertyModel(model,
+                "resource.metadata"), GetFeatureCache.CACHE_ENABLED)));
+        TextField cacheTTL = new TextField(GetFeatureCache.CACHE_TTL, new MapModel(
+                new PropertyModel(model, "resource.metadata"), GetFeatureCache.CACHE_TTL),
+                Integer.class);
+        cacheTTL.add(NumberValidator.minimum(0));
+        Border ctb = new FormComponentFeedbackBorder("cacheTTLBorder");
+        ctb.add(cacheTTL);
+        add(ctb);
+        add(new Label("cacheStatistics", new CacheStatisticsModel(model)));
+    }
+
+    /**
+     * Reports the hit/miss counts of the GetFeature cache for the layer being edited
+     */
+    class CacheStatisticsModel extends AbstractReadOnlyModel {
+        IModel layerModel;
+
+        CacheStatisticsModel(IModel layerModel) {
+            this.layerModel = layerModel;
+        }
+
+        @Override
+        public Object getObject() {
+            GetFeatureCache cache = GeoServerExtensions.bean(GetFeatureCache.class);
+            LayerInfo layer = (LayerInfo) layerModel.getObject();
+            if (cache == null || !(layer.getResource() instanceof FeatureTypeInfo)
+                    || layer.getResource().getId() == null) {
+                return "";
+            }
+            GetFeatureCache.Statistics stats = cache.getStatistics((FeatureTypeInfo) layer
+                    .getResource());
+            return new StringResourceModel("cacheStatisticsValue", WFSLayerConfig.this, null,
+                    new Object[] { stats.getHits(), stats.getMisses(),
+                            Math.round(stats.getHitRatio() * 100) }).getString();
+        }
     }
 }
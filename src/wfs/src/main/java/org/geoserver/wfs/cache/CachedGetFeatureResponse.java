@@ -0,0 +1,50 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.geoserver.ows.Response;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+
+/**
+ * Writes out a {@link CachedGetFeatureResult} as is, along with the headers recorded when the
+ * response was first encoded
+ */
+public class CachedGetFeatureResponse extends Response {
+
+    public CachedGetFeatureResponse() {
+        super(CachedGetFeatureResult.class);
+    }
+
+    @Override
+    public String getMimeType(Object value, Operation operation) throws ServiceException {
+        return ((CachedGetFeatureResult) value).getMimeType();
+    }
+
+    @Override
+    public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+        return ((CachedGetFeatureResult) value).getHeaders();
+    }
+
+    @Override
+    public String getPreferredDisposition(Object value, Operation operation) {
+        return ((CachedGetFeatureResult) value).getDisposition();
+    }
+
+    @Override
+    public String getAttachmentFileName(Object value, Operation operation) {
+        return ((CachedGetFeatureResult) value).getAttachmentFileName();
+    }
+
+    @Override
+    public void write(Object value, OutputStream output, Operation operation) throws IOException,
+            ServiceException {
+        output.write(((CachedGetFeatureResult) value).getContents());
+    }
+
+}
@@ -0,0 +1,52 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+/**
+ * A GetFeature response served from the {@link GetFeatureCache}: the already encoded bytes along
+ * with the HTTP metadata the original output format provided
+ */
+public class CachedGetFeatureResult {
+
+    byte[] contents;
+
+    String mimeType;
+
+    String[][] headers;
+
+    String disposition;
+
+    String attachmentFileName;
+
+    public CachedGetFeatureResult(byte[] contents, String mimeType, String[][] headers,
+            String disposition, String attachmentFileName) {
+        this.contents = contents;
+        this.mimeType = mimeType;
+        this.headers = headers;
+        this.disposition = disposition;
+        this.attachmentFileName = attachmentFileName;
+    }
+
+    public byte[] getContents() {
+        return contents;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String[][] getHeaders() {
+        return headers;
+    }
+
+    public String getDisposition() {
+        return disposition;
+    }
+
+    public String getAttachmentFileName() {
+        return attachmentFileName;
+    }
+
+}
@@ -0,0 +1,113 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A {@link ResponseCacheStore} keeping the encoded responses as files in a directory, the file
+ * names are computed as a digest of the cache key
+ */
+public class DiskResponseCacheStore implements ResponseCacheStore {
+
+    static final Logger LOGGER = Logging.getLogger(DiskResponseCacheStore.class);
+
+    File directory;
+
+    public DiskResponseCacheStore(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create the cache directory " + directory);
+        }
+        // contents from a previous run are not tracked by the cache, start afresh
+        clear();
+    }
+
+    public void put(String key, byte[] contents) throws IOException {
+        // write in a temp file and rename, so that readers never see a partial file
+        File target = getFile(key);
+        File temp = File.createTempFile("entry", ".tmp", directory);
+        OutputStream os = null;
+        try {
+            os = new FileOutputStream(temp);
+            os.write(contents);
+        } finally {
+            IOUtils.closeQuietly(os);
+        }
+        if (target.exists()) {
+            target.delete();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Could not store cache entry in " + target);
+        }
+    }
+
+    public byte[] get(String key) throws IOException {
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        InputStream is = null;
+        try {
+            is = new FileInputStream(file);
+            return IOUtils.toByteArray(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    public void remove(String key) {
+        File file = getFile(key);
+        if (file.exists() && !file.delete()) {
+            LOGGER.warning("Could not remove cache file " + file);
+        }
+    }
+
+    public void clear() {
+        try {
+            FileUtils.cleanDirectory(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to clean up the cache directory " + directory, e);
+        }
+    }
+
+    public void dispose() {
+        clear();
+    }
+
+    File getFile(String key) {
+        return new File(directory, digest(key) + ".bin");
+    }
+
+    static String digest(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            byte[] digest = md.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(Integer.toHexString((b & 0xFF) | 0x100).substring(1));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
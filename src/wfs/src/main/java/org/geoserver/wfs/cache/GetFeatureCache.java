@@ -0,0 +1,429 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.MetadataMap;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Keeps the encoded output of GetFeature requests so that clients repeatedly polling the same
+ * request can be served without hitting the data store again.
+ * <p>
+ * Caching is enabled per feature type via the {@link #CACHE_ENABLED} and {@link #CACHE_TTL} keys
+ * in the feature type metadata map. The overall memory (or disk) budget, the maximum size of a
+ * single entry and the storage type are controlled by the following system variables:
+ * <ul>
+ * <li>{@value #STORE_PROPERTY}: either <code>offheap</code> (default) or <code>disk</code></li>
+ * <li>{@value #MAX_SIZE_PROPERTY}: the overall cache size, in bytes (default 64MB)</li>
+ * <li>{@value #MAX_ENTRY_SIZE_PROPERTY}: the maximum size of a single response, in bytes (default
+ * 4MB), larger responses are not cached</li>
+ * </ul>
+ * </p>
+ * <p>
+ * Entries are tracked by the feature types they contain, and get invalidated as soon as one of
+ * them is modified (either by a WFS transaction or by a catalog change).
+ * </p>
+ */
+public class GetFeatureCache implements DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(GetFeatureCache.class);
+
+    /**
+     * Metadata key enabling the response cache on a feature type
+     */
+    public static final String CACHE_ENABLED = "wfsCacheEnabled";
+
+    /**
+     * Metadata key holding the time to live of the cached responses, in seconds
+     */
+    public static final String CACHE_TTL = "wfsCacheTTL";
+
+    public static final int DEFAULT_TTL = 60;
+
+    public static final String STORE_PROPERTY = "GEOSERVER_WFS_CACHE_STORE";
+
+    public static final String MAX_SIZE_PROPERTY = "GEOSERVER_WFS_CACHE_MAX_SIZE";
+
+    public static final String MAX_ENTRY_SIZE_PROPERTY = "GEOSERVER_WFS_CACHE_MAX_ENTRY_SIZE";
+
+    static final long DEFAULT_MAX_SIZE = 64 * 1024 * 1024;
+
+    static final long DEFAULT_MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+
+    ResponseCacheStore store;
+
+    long maxSize;
+
+    long maxEntrySize;
+
+    /**
+     * The entries metadata, in access order, guarded by "this"
+     */
+    LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f,
+            true);
+
+    long currentSize;
+
+    /**
+     * Per feature type modification counters, used to avoid caching responses computed while an
+     * invalidation was taking place
+     */
+    ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<String, AtomicLong>();
+
+    AtomicLong epoch = new AtomicLong();
+
+    ConcurrentHashMap<String, Statistics> typeStatistics = new ConcurrentHashMap<String, Statistics>();
+
+    Statistics statistics = new Statistics();
+
+    public GetFeatureCache(GeoServerResourceLoader loader) throws IOException {
+        this.maxSize = getLongProperty(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE);
+        this.maxEntrySize = getLongProperty(MAX_ENTRY_SIZE_PROPERTY, DEFAULT_MAX_ENTRY_SIZE);
+        String storeType = GeoServerExtensions.getProperty(STORE_PROPERTY);
+        if ("disk".equalsIgnoreCase(storeType)) {
+            File directory = loader.findOrCreateDirectory("temp", "wfs-cache");
+            this.store = new DiskResponseCacheStore(directory);
+        } else {
+            this.store = new OffHeapResponseCacheStore();
+        }
+    }
+
+    public GetFeatureCache(ResponseCacheStore store, long maxSize, long maxEntrySize) {
+        this.store = store;
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    long getLongProperty(String name, long defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value + ", using default "
+                        + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns true if the response cache is enabled for the specified feature type
+     */
+    public static boolean isEnabled(FeatureTypeInfo featureType) {
+        Boolean enabled = featureType.getMetadata().get(CACHE_ENABLED, Boolean.class);
+        return enabled != null && enabled;
+    }
+
+    /**
+     * Returns the time to live of the cached responses for the specified feature type, in seconds
+     */
+    public static int getTimeToLive(FeatureTypeInfo featureType) {
+        MetadataMap metadata = featureType.getMetadata();
+        Integer ttl = metadata.get(CACHE_TTL, Integer.class);
+        return ttl != null && ttl > 0 ? ttl : DEFAULT_TTL;
+    }
+
+    /**
+     * The key used to track a feature type in the cache
+     */
+    public static String typeKey(FeatureTypeInfo featureType) {
+        return typeKey(featureType.getNamespace().getURI(), featureType.getName());
+    }
+
+    /**
+     * The key used to track a feature type in the cache
+     */
+    public static String typeKey(QName typeName) {
+        return typeKey(typeName.getNamespaceURI(), typeName.getLocalPart());
+    }
+
+    static String typeKey(String namespaceURI, String localName) {
+        return new QName(namespaceURI, localName).toString();
+    }
+
+    /**
+     * The maximum size of a single cached response
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the current modification counter for the specified feature types. The value has to
+     * be grabbed before starting to compute a response, and passed back to
+     * {@link #put(String, Set, long, int, CachedGetFeatureResult)}
+     */
+    public long getGeneration(Collection<String> typeKeys) {
+        long generation = epoch.get();
+        for (String typeKey : typeKeys) {
+            AtomicLong counter = generations.get(typeKey);
+            if (counter != null) {
+                generation += counter.get();
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Looks up a cached response, returns <code>null</code> if not found or expired
+     */
+    public CachedGetFeatureResult get(String key, Collection<String> typeKeys) {
+        CacheEntry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.isExpired()) {
+                removeEntry(key);
+                entry = null;
+            }
+        }
+
+        byte[] contents = null;
+        if (entry != null) {
+            try {
+                contents = store.get(key);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read cached response, ignoring it", e);
+            }
+        }
+
+        boolean hit = contents != null;
+        statistics.record(hit);
+        for (String typeKey : typeKeys) {
+            getStatistics(typeKey).record(hit);
+        }
+        if (!hit) {
+            return null;
+        }
+        return new CachedGetFeatureResult(contents, entry.mimeType, entry.headers,
+                entry.disposition, entry.attachmentFileName);
+    }
+
+    /**
+     * Stores a response in the cache. The response is not stored if it's too big, or if any of
+     * the feature types got modified since the generation was computed
+     *
+     * @return true if the response was actually cached
+     */
+    public boolean put(String key, Set<String> typeKeys, long generation, int timeToLive,
+            CachedGetFeatureResult result) {
+        byte[] contents = result.getContents();
+        if (contents.length > maxEntrySize || contents.length > maxSize) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (generation != getGeneration(typeKeys)) {
+                return false;
+            }
+
+            try {
+                store.put(key, contents);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to store cached response", e);
+                return false;
+            }
+
+            CacheEntry entry = new CacheEntry();
+            entry.typeKeys = typeKeys;
+            entry.expires = System.currentTimeMillis() + timeToLive * 1000l;
+            entry.size = contents.length;
+            entry.mimeType = result.getMimeType();
+            entry.headers = result.getHeaders();
+            entry.disposition = result.getDisposition();
+            entry.attachmentFileName = result.getAttachmentFileName();
+            CacheEntry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentSize -= previous.size;
+            }
+            currentSize += entry.size;
+
+            // evict the least recently used entries until we are back in budget
+            Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+            while (currentSize > maxSize && it.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                it.remove();
+                currentSize -= eldest.getValue().size;
+                store.remove(eldest.getKey());
+                statistics.evictions.incrementAndGet();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Drops all the cached responses involving the specified feature type
+     */
+    public void invalidate(String typeKey) {
+        AtomicLong counter = generations.get(typeKey);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = generations.putIfAbsent(typeKey, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+
+        synchronized (this) {
+            counter.incrementAndGet();
+            Iterator<Map.Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, CacheEntry> entry = it.next();
+                if (entry.getValue().typeKeys.contains(typeKey)) {
+                    it.remove();
+                    currentSize -= entry.getValue().size;
+                    store.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops all the cached responses
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            epoch.incrementAndGet();
+            entries.clear();
+            currentSize = 0;
+            store.clear();
+        }
+    }
+
+    void removeEntry(String key) {
+        CacheEntry entry = entries.remove(key);
+        if (entry != null) {
+            currentSize -= entry.size;
+            store.remove(key);
+        }
+    }
+
+    /**
+     * The number of cached responses
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /**
+     * The overall size of the cached responses, in bytes
+     */
+    public synchronized long getCurrentSize() {
+        return currentSize;
+    }
+
+    /**
+     * The overall cache statistics
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The cache statistics for the specified feature type
+     */
+    public Statistics getStatistics(FeatureTypeInfo featureType) {
+        return getStatistics(typeKey(featureType));
+    }
+
+    Statistics getStatistics(String typeKey) {
+        Statistics result = typeStatistics.get(typeKey);
+        if (result == null) {
+            Statistics newStatistics = new Statistics();
+            result = typeStatistics.putIfAbsent(typeKey, newStatistics);
+            if (result == null) {
+                result = newStatistics;
+            }
+        }
+        return result;
+    }
+
+    public void destroy() throws Exception {
+        invalidateAll();
+        store.dispose();
+    }
+
+    static class CacheEntry {
+        Set<String> typeKeys;
+
+        long expires;
+
+        int size;
+
+        String mimeType;
+
+        String[][] headers;
+
+        String disposition;
+
+        String attachmentFileName;
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+
+    /**
+     * Hit/miss counters for the cache
+     */
+    public static class Statistics {
+        AtomicLong hits = new AtomicLong();
+
+        AtomicLong misses = new AtomicLong();
+
+        AtomicLong evictions = new AtomicLong();
+
+        void record(boolean hit) {
+            if (hit) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        }
+
+        public long getHits() {
+            return hits.get();
+        }
+
+        public long getMisses() {
+            return misses.get();
+        }
+
+        public long getEvictions() {
+            return evictions.get();
+        }
+
+        /**
+         * The ratio between hits and total requests, between 0 and 1
+         */
+        public double getHitRatio() {
+            long h = hits.get();
+            long total = h + misses.get();
+            return total == 0 ? 0 : ((double) h) / total;
+        }
+    }
+}
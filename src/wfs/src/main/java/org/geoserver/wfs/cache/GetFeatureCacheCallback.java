@@ -0,0 +1,389 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.DirectInvocationService;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.Response;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.Service;
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wfs.request.GetFeatureRequest;
+import org.geoserver.wfs.request.Query;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.sort.SortBy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Serves GetFeature requests out of the {@link GetFeatureCache} when possible, and populates the
+ * cache with the encoded output of the requests that missed it.
+ * <p>
+ * A request is cacheable only if all the feature types it queries have the cache enabled, in that
+ * case the key is built out of the normalized request (type names, filters, property names, srs,
+ * sorting, paging, output format) and the current user credentials.
+ * </p>
+ */
+public class GetFeatureCacheCallback extends AbstractDispatcherCallback {
+
+    static final Logger LOGGER = Logging.getLogger(GetFeatureCacheCallback.class);
+
+    static final ThreadLocal<PendingEntry> PENDING = new ThreadLocal<PendingEntry>();
+
+    GetFeatureCache cache;
+
+    Catalog catalog;
+
+    public GetFeatureCacheCallback(GetFeatureCache cache, Catalog catalog) {
+        this.cache = cache;
+        this.catalog = catalog;
+    }
+
+    @Override
+    public Operation operationDispatched(Request request, Operation operation) {
+        PENDING.remove();
+        if (!"GetFeature".equalsIgnoreCase(operation.getId()) || request.isSOAP()) {
+            return operation;
+        }
+        GetFeatureRequest getFeature = findRequest(operation);
+        if (getFeature == null || getFeature.isLockRequest()) {
+            return operation;
+        }
+
+        try {
+            // stored queries are resolved only during the execution, cannot compute a key for them
+            for (Object query : getFeature.getAdaptedQueries()) {
+                if (Query.adapt(query) == null) {
+                    return operation;
+                }
+            }
+
+            // check all the feature types involved have caching enabled. The lookup happens
+            // with the current user credentials, types that cannot be accessed are not cached
+            Set<String> typeKeys = new LinkedHashSet<String>();
+            int timeToLive = Integer.MAX_VALUE;
+            for (Query query : getFeature.getQueries()) {
+                for (QName typeName : query.getTypeNames()) {
+                    FeatureTypeInfo featureType = catalog.getFeatureTypeByName(
+                            typeName.getNamespaceURI(), typeName.getLocalPart());
+                    if (featureType == null || !GetFeatureCache.isEnabled(featureType)) {
+                        return operation;
+                    }
+                    typeKeys.add(GetFeatureCache.typeKey(featureType));
+                    timeToLive = Math.min(timeToLive, GetFeatureCache.getTimeToLive(featureType));
+                }
+            }
+            if (typeKeys.isEmpty()) {
+                return operation;
+            }
+
+            String key = buildKey(request, getFeature);
+            CachedGetFeatureResult cached = cache.get(key, typeKeys);
+            if (cached != null) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Serving GetFeature response from the cache: " + key);
+                }
+                Service service = operation.getService();
+                Service cachedService = new Service(service.getId(), service.getNamespace(),
+                        new CachedResultService(cached), service.getVersion(),
+                        service.getOperations());
+                return new Operation(operation.getId(), cachedService, operation.getMethod(),
+                        operation.getParameters());
+            }
+
+            PENDING.set(new PendingEntry(key, typeKeys, cache.getGeneration(typeKeys),
+                    timeToLive));
+        } catch (Exception e) {
+            // never make the request fail because of the cache
+            LOGGER.log(Level.FINE, "Failed to check the GetFeature cache, skipping it", e);
+        }
+
+        return operation;
+    }
+
+    @Override
+    public Response responseDispatched(Request request, Operation operation, Object result,
+            Response response) {
+        PendingEntry pending = PENDING.get();
+        if (pending == null || result instanceof CachedGetFeatureResult) {
+            return response;
+        }
+        return new CachingResponse(response, pending);
+    }
+
+    @Override
+    public void finished(Request request) {
+        PENDING.remove();
+    }
+
+    GetFeatureRequest findRequest(Operation operation) {
+        Object[] parameters = operation.getParameters();
+        if (parameters == null) {
+            return null;
+        }
+        for (Object parameter : parameters) {
+            GetFeatureRequest request = GetFeatureRequest.adapt(parameter);
+            if (request != null) {
+                return request;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Builds a cache key out of the normalized request contents
+     */
+    String buildKey(Request request, GetFeatureRequest getFeature) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("version=").append(getFeature.getVersion());
+        sb.append(";context=").append(request.getContext());
+        sb.append(";baseUrl=").append(getFeature.getBaseUrl());
+        sb.append(";outputFormat=").append(getFeature.getOutputFormat());
+        sb.append(";hits=").append(getFeature.isResultTypeHits());
+        sb.append(";maxFeatures=").append(getFeature.getMaxFeatures());
+        sb.append(";startIndex=").append(getFeature.getStartIndex());
+        sb.append(";traverseXlinkDepth=").append(getFeature.getTraverseXlinkDepth());
+        sb.append(";resolve=").append(getFeature.getResolve());
+        sb.append(";viewParams=").append(getFeature.getViewParams());
+        sb.append(";formatOptions=").append(sorted(getFeature.getFormatOptions()));
+        if (request.getRawKvp() != null) {
+            sb.append(";env=").append(request.getRawKvp().get("ENV"));
+        }
+
+        for (Query query : getFeature.getQueries()) {
+            sb.append(";query[typeNames=").append(query.getTypeNames());
+            sb.append(";aliases=").append(query.getAliases());
+            sb.append(";propertyNames=").append(query.getPropertyNames());
+            sb.append(";filter=").append(query.getFilter());
+            sb.append(";srsName=").append(query.getSrsName());
+            sb.append(";featureVersion=").append(query.getFeatureVersion());
+            sb.append(";sortBy=");
+            List<SortBy> sortBy = query.getSortBy();
+            if (sortBy != null) {
+                for (SortBy sort : sortBy) {
+                    sb.append(sort.getPropertyName() != null ? sort.getPropertyName()
+                            .getPropertyName() : null);
+                    sb.append(" ").append(sort.getSortOrder()).append(",");
+                }
+            }
+            sb.append("]");
+        }
+
+        // the output depends on what the user is allowed to see
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null) {
+            sb.append(";user=").append(auth.getName());
+            List<String> authorities = new ArrayList<String>();
+            if (auth.getAuthorities() != null) {
+                for (GrantedAuthority authority : auth.getAuthorities()) {
+                    authorities.add(authority.getAuthority());
+                }
+            }
+            Collections.sort(authorities);
+            sb.append(";roles=").append(authorities);
+        }
+
+        return sb.toString();
+    }
+
+    Map sorted(Map map) {
+        if (map == null) {
+            return null;
+        }
+        Map<String, Object> result = new TreeMap<String, Object>();
+        for (Object o : map.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            result.put(String.valueOf(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * The cache entry being computed by the current request
+     */
+    static class PendingEntry {
+        String key;
+
+        Set<String> typeKeys;
+
+        long generation;
+
+        int timeToLive;
+
+        PendingEntry(String key, Set<String> typeKeys, long generation, int timeToLive) {
+            this.key = key;
+            this.typeKeys = typeKeys;
+            this.generation = generation;
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * Stands in for the WFS service when the response is found in the cache
+     */
+    static class CachedResultService implements DirectInvocationService {
+
+        CachedGetFeatureResult result;
+
+        CachedResultService(CachedGetFeatureResult result) {
+            this.result = result;
+        }
+
+        public Object invokeDirect(String operationName, Object[] parameters)
+                throws IllegalArgumentException, Exception {
+            return result;
+        }
+    }
+
+    /**
+     * Wraps the actual response, collecting its output and metadata to populate the cache
+     */
+    class CachingResponse extends Response {
+
+        Response delegate;
+
+        PendingEntry pending;
+
+        String mimeType;
+
+        String[][] headers;
+
+        String disposition;
+
+        String attachmentFileName;
+
+        CachingResponse(Response delegate, PendingEntry pending) {
+            super(delegate.getBinding(), delegate.getOutputFormats());
+            this.delegate = delegate;
+            this.pending = pending;
+        }
+
+        @Override
+        public boolean canHandle(Operation operation) {
+            return delegate.canHandle(operation);
+        }
+
+        @Override
+        public String getMimeType(Object value, Operation operation) throws ServiceException {
+            mimeType = delegate.getMimeType(value, operation);
+            return mimeType;
+        }
+
+        @Override
+        public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+            headers = delegate.getHeaders(value, operation);
+            return headers;
+        }
+
+        @Override
+        public String getPreferredDisposition(Object value, Operation operation) {
+            disposition = delegate.getPreferredDisposition(value, operation);
+            return disposition;
+        }
+
+        @Override
+        public String getAttachmentFileName(Object value, Operation operation) {
+            attachmentFileName = delegate.getAttachmentFileName(value, operation);
+            return attachmentFileName;
+        }
+
+        @Override
+        public void write(Object value, OutputStream output, Operation operation)
+                throws IOException, ServiceException {
+            CollectingOutputStream collector = new CollectingOutputStream(output,
+                    cache.getMaxEntrySize());
+            delegate.write(value, collector, operation);
+
+            if (!collector.isOverflown()) {
+                CachedGetFeatureResult result = new CachedGetFeatureResult(
+                        collector.getContents(), mimeType, headers, disposition,
+                        attachmentFileName);
+                cache.put(pending.key, pending.typeKeys, pending.generation, pending.timeToLive,
+                        result);
+            }
+        }
+    }
+
+    /**
+     * Passes the output through to the client, while keeping a copy of it as long as it does not
+     * grow beyond the specified limit
+     */
+    static class CollectingOutputStream extends OutputStream {
+
+        OutputStream delegate;
+
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        long limit;
+
+        boolean overflown;
+
+        CollectingOutputStream(OutputStream delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            collect(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            collect(b, off, len);
+        }
+
+        void collect(byte[] b, int off, int len) {
+            if (overflown) {
+                return;
+            }
+            if (copy.size() + len > limit) {
+                overflown = true;
+                copy = null;
+            } else {
+                copy.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        boolean isOverflown() {
+            return overflown;
+        }
+
+        byte[] getContents() {
+            return copy.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.ServiceInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+import org.geoserver.wfs.WFSInfo;
+
+/**
+ * Invalidates the {@link GetFeatureCache} contents when the data or the configuration of the
+ * cached feature types changes, that is, on WFS transactions, catalog changes, and WFS or global
+ * settings changes.
+ */
+public class GetFeatureCacheInvalidator extends ConfigurationListenerAdapter implements
+        TransactionPlugin, CatalogListener {
+
+    /**
+     * The feature types modified by the transaction running in the current thread
+     */
+    static final ThreadLocal<Set<String>> MODIFIED_TYPES = new ThreadLocal<Set<String>>();
+
+    GetFeatureCache cache;
+
+    Catalog catalog;
+
+    public GetFeatureCacheInvalidator(GetFeatureCache cache, GeoServer geoServer) {
+        this.cache = cache;
+        this.catalog = geoServer.getCatalog();
+        catalog.addListener(this);
+        geoServer.addListener(this);
+    }
+
+    //
+    // TransactionPlugin
+    //
+
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        MODIFIED_TYPES.remove();
+        return request;
+    }
+
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        if (event.getLayerName() == null) {
+            return;
+        }
+        String typeKey = GetFeatureCache.typeKey(event.getLayerName());
+        cache.invalidate(typeKey);
+
+        Set<String> modified = MODIFIED_TYPES.get();
+        if (modified == null) {
+            modified = new HashSet<String>();
+            MODIFIED_TYPES.set(modified);
+        }
+        modified.add(typeKey);
+    }
+
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        // invalidate again, a GetFeature might have cached the data between the change
+        // notification and the actual commit
+        Set<String> modified = MODIFIED_TYPES.get();
+        MODIFIED_TYPES.remove();
+        if (modified != null) {
+            for (String typeKey : modified) {
+                cache.invalidate(typeKey);
+            }
+        }
+    }
+
+    public int getPriority() {
+        return 0;
+    }
+
+    //
+    // CatalogListener
+    //
+
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        // nothing cached about a new object
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        invalidate(event.getSource());
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        // the source has not been modified yet, take care of the old names
+        invalidate(event.getSource());
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        invalidate(event.getSource());
+    }
+
+    public void reloaded() {
+        cache.invalidateAll();
+    }
+
+    void invalidate(CatalogInfo info) {
+        if (info instanceof FeatureTypeInfo) {
+            cache.invalidate(GetFeatureCache.typeKey((FeatureTypeInfo) info));
+        } else if (info instanceof LayerInfo) {
+            if (((LayerInfo) info).getResource() instanceof FeatureTypeInfo) {
+                cache.invalidate(GetFeatureCache.typeKey((FeatureTypeInfo) ((LayerInfo) info)
+                        .getResource()));
+            }
+        } else if (info instanceof DataStoreInfo) {
+            List<FeatureTypeInfo> featureTypes = catalog
+                    .getFeatureTypesByDataStore((DataStoreInfo) info);
+            for (FeatureTypeInfo featureType : featureTypes) {
+                cache.invalidate(GetFeatureCache.typeKey(featureType));
+            }
+        } else if (info instanceof NamespaceInfo || info instanceof WorkspaceInfo) {
+            cache.invalidateAll();
+        }
+    }
+
+    //
+    // ConfigurationListener, settings such as number of decimals or feature bounding alter
+    // the output
+    //
+
+    @Override
+    public void handleGlobalChange(GeoServerInfo global, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void handleSettingsModified(SettingsInfo settings, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void handleServiceChange(ServiceInfo service, List<String> propertyNames,
+            List<Object> oldValues, List<Object> newValues) {
+        if (service instanceof WFSInfo) {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link ResponseCacheStore} keeping the encoded responses in direct byte buffers, outside of
+ * the java heap
+ */
+public class OffHeapResponseCacheStore implements ResponseCacheStore {
+
+    ConcurrentHashMap<String, ByteBuffer> buffers = new ConcurrentHashMap<String, ByteBuffer>();
+
+    public void put(String key, byte[] contents) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(contents.length);
+        buffer.put(contents);
+        buffer.flip();
+        buffers.put(key, buffer);
+    }
+
+    public byte[] get(String key) {
+        ByteBuffer buffer = buffers.get(key);
+        if (buffer == null) {
+            return null;
+        }
+        // duplicate so that concurrent readers do not share the position
+        ByteBuffer reader = buffer.duplicate();
+        byte[] contents = new byte[reader.remaining()];
+        reader.get(contents);
+        return contents;
+    }
+
+    public void remove(String key) {
+        buffers.remove(key);
+    }
+
+    public void clear() {
+        buffers.clear();
+    }
+
+    public void dispose() {
+        clear();
+    }
+}
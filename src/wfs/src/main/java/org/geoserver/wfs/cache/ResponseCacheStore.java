@@ -0,0 +1,42 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import java.io.IOException;
+
+/**
+ * Storage backend for the encoded responses kept by the {@link GetFeatureCache}.
+ * <p>
+ * The store only holds the raw bytes, the bookkeeping (expiration, size budget, invalidation) is
+ * performed by the cache itself. Implementations must be thread safe.
+ * </p>
+ */
+public interface ResponseCacheStore {
+
+    /**
+     * Stores the encoded response under the specified key, replacing any previous content
+     */
+    void put(String key, byte[] contents) throws IOException;
+
+    /**
+     * Returns the encoded response associated to the key, or <code>null</code> if not found
+     */
+    byte[] get(String key) throws IOException;
+
+    /**
+     * Removes the encoded response associated to the key, if any
+     */
+    void remove(String key);
+
+    /**
+     * Removes all the stored responses
+     */
+    void clear();
+
+    /**
+     * Releases any resource held by the store
+     */
+    void dispose();
+}
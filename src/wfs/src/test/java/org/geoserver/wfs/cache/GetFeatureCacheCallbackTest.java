@@ -0,0 +1,96 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.CiteTestData;
+import org.geoserver.wfs.WFSTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.mockrunner.mock.web.MockHttpServletResponse;
+
+public class GetFeatureCacheCallbackTest extends WFSTestSupport {
+
+    static final String POINTS_REQUEST = "wfs?request=GetFeature&typename=cgf:Points&version=1.0.0&service=wfs";
+
+    GetFeatureCache cache;
+
+    @Before
+    public void enableCache() throws Exception {
+        FeatureTypeInfo points = getCatalog().getFeatureTypeByName(
+                getLayerId(CiteTestData.POINTS));
+        points.getMetadata().put(GetFeatureCache.CACHE_ENABLED, true);
+        points.getMetadata().put(GetFeatureCache.CACHE_TTL, 600);
+        getCatalog().save(points);
+
+        cache = applicationContext.getBean(GetFeatureCache.class);
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void testCacheHit() throws Exception {
+        FeatureTypeInfo points = getCatalog().getFeatureTypeByName(
+                getLayerId(CiteTestData.POINTS));
+        GetFeatureCache.Statistics stats = cache.getStatistics(points);
+        long hits = stats.getHits();
+        long misses = stats.getMisses();
+
+        MockHttpServletResponse first = getAsServletResponse(POINTS_REQUEST);
+        assertEquals(misses + 1, stats.getMisses());
+        assertEquals(1, cache.getEntryCount());
+
+        MockHttpServletResponse second = getAsServletResponse(POINTS_REQUEST);
+        assertEquals(hits + 1, stats.getHits());
+        assertEquals(first.getContentType(), second.getContentType());
+        assertEquals(first.getOutputStreamContent(), second.getOutputStreamContent());
+    }
+
+    @Test
+    public void testDisabledType() throws Exception {
+        getAsServletResponse("wfs?request=GetFeature&typename=cgf:Lines&version=1.0.0&service=wfs");
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testTransactionInvalidates() throws Exception {
+        Document dom = getAsDOM(POINTS_REQUEST);
+        int count = dom.getElementsByTagName("cgf:Points").getLength();
+        assertEquals(1, cache.getEntryCount());
+
+        String delete = "<wfs:Transaction service=\"WFS\" version=\"1.0.0\" "
+                + "xmlns:cgf=\"http://www.opengis.net/cite/geometry\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\"> "
+                + "<wfs:Delete typeName=\"cgf:Points\"> " + "<ogc:Filter> "
+                + "<ogc:PropertyIsEqualTo> "
+                + "<ogc:PropertyName>cgf:id</ogc:PropertyName> "
+                + "<ogc:Literal>t0000</ogc:Literal> "
+                + "</ogc:PropertyIsEqualTo> " + "</ogc:Filter> "
+                + "</wfs:Delete> " + "</wfs:Transaction>";
+        dom = postAsDOM("wfs", delete);
+        assertEquals("WFS_TransactionResponse", dom.getDocumentElement().getLocalName());
+        assertEquals(0, cache.getEntryCount());
+
+        // the new request sees the deleted feature is gone
+        dom = getAsDOM(POINTS_REQUEST);
+        assertEquals(count - 1, dom.getElementsByTagName("cgf:Points").getLength());
+    }
+
+    @Test
+    public void testCatalogChangeInvalidates() throws Exception {
+        getAsServletResponse(POINTS_REQUEST);
+        assertEquals(1, cache.getEntryCount());
+
+        FeatureTypeInfo points = getCatalog().getFeatureTypeByName(
+                getLayerId(CiteTestData.POINTS));
+        points.setTitle("Modified title");
+        getCatalog().save(points);
+        assertEquals(0, cache.getEntryCount());
+    }
+}
@@ -0,0 +1,114 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class GetFeatureCacheTest {
+
+    static final Set<String> POINTS = Collections.singleton("{http://www.geoserver.org}points");
+
+    static final Set<String> LINES = Collections.singleton("{http://www.geoserver.org}lines");
+
+    GetFeatureCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new GetFeatureCache(new OffHeapResponseCacheStore(), 100, 40);
+    }
+
+    CachedGetFeatureResult result(int size) {
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i++) {
+            contents[i] = (byte) i;
+        }
+        return new CachedGetFeatureResult(contents, "text/xml", null, null, "test.xml");
+    }
+
+    @Test
+    public void testPutGet() {
+        assertNull(cache.get("a", POINTS));
+        assertTrue(cache.put("a", POINTS, cache.getGeneration(POINTS), 60, result(10)));
+
+        CachedGetFeatureResult cached = cache.get("a", POINTS);
+        assertNotNull(cached);
+        assertArrayEquals(result(10).getContents(), cached.getContents());
+        assertEquals("text/xml", cached.getMimeType());
+        assertEquals("test.xml", cached.getAttachmentFileName());
+
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+        assertEquals(0.5, cache.getStatistics().getHitRatio(), 0d);
+    }
+
+    @Test
+    public void testEntryTooBig() {
+        assertFalse(cache.put("a", POINTS, cache.getGeneration(POINTS), 60, result(50)));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEviction() {
+        cache.put("a", POINTS, cache.getGeneration(POINTS), 60, result(40));
+        cache.put("b", POINTS, cache.getGeneration(POINTS), 60, result(40));
+        // touch "a" so that "b" becomes the least recently used
+        assertNotNull(cache.get("a", POINTS));
+        cache.put("c", POINTS, cache.getGeneration(POINTS), 60, result(40));
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(80, cache.getCurrentSize());
+        assertNotNull(cache.get("a", POINTS));
+        assertNull(cache.get("b", POINTS));
+        assertNotNull(cache.get("c", POINTS));
+        assertEquals(1, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        cache.put("a", POINTS, cache.getGeneration(POINTS), 0, result(10));
+        Thread.sleep(10);
+        assertNull(cache.get("a", POINTS));
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put("a", POINTS, cache.getGeneration(POINTS), 60, result(10));
+        cache.put("b", LINES, cache.getGeneration(LINES), 60, result(10));
+
+        cache.invalidate(POINTS.iterator().next());
+        assertNull(cache.get("a", POINTS));
+        assertNotNull(cache.get("b", LINES));
+        assertEquals(10, cache.getCurrentSize());
+
+        cache.invalidateAll();
+        assertNull(cache.get("b", LINES));
+        assertEquals(0, cache.getCurrentSize());
+    }
+
+    @Test
+    public void testStaleGeneration() {
+        // a response computed while the data got modified should not be cached
+        long generation = cache.getGeneration(POINTS);
+        cache.invalidate(POINTS.iterator().next());
+        assertFalse(cache.put("a", POINTS, generation, 60, result(10)));
+
+        // other types are not affected
+        generation = cache.getGeneration(LINES);
+        cache.invalidate(POINTS.iterator().next());
+        assertTrue(cache.put("b", LINES, generation, 60, result(10)));
+    }
+}
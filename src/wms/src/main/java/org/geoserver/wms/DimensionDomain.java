@@ -0,0 +1,230 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.DimensionPresentation;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.platform.ServiceException;
+import org.geotools.data.FeatureSource;
+import org.geotools.data.Query;
+import org.geotools.factory.GeoTools;
+import org.geotools.feature.FeatureCollection;
+import org.geotools.feature.visitor.CalcResult;
+import org.geotools.feature.visitor.MaxVisitor;
+import org.geotools.feature.visitor.MinVisitor;
+import org.geotools.feature.visitor.UniqueVisitor;
+import org.geotools.util.Converters;
+
+/**
+ * The domain of a time or elevation dimension of a vector layer: either the sorted distinct values
+ * of the dimension attribute, or just their min and max, depending on the dimension presentation.
+ * <p>
+ * Time values are {@link Date} objects, elevation values are {@link Double} objects.
+ * </p>
+ */
+class DimensionDomain {
+
+    final String signature;
+
+    final boolean list;
+
+    /**
+     * The distinct values, or just the min and max ones for bounds only domains. Guarded by this
+     */
+    final TreeSet<Object> values;
+
+    final long loaded = System.currentTimeMillis();
+
+    DimensionDomain(String signature, boolean list, TreeSet<Object> values) {
+        this.signature = signature;
+        this.list = list;
+        this.values = values;
+        if (!list) {
+            trim(values);
+        }
+    }
+
+    /**
+     * Whether all the distinct values are listed for this dimension configuration, as opposed to
+     * just the min and max ones
+     */
+    static boolean isList(String dimensionName, DimensionInfo dimension) {
+        DimensionPresentation presentation = dimension.getPresentation();
+        if (ResourceInfo.ELEVATION.equals(dimensionName)) {
+            return presentation == DimensionPresentation.LIST
+                    || (presentation == DimensionPresentation.DISCRETE_INTERVAL && dimension
+                            .getResolution() == null);
+        }
+        return presentation == DimensionPresentation.LIST;
+    }
+
+    /**
+     * Identifies the parts of the dimension configuration the domain depends on
+     */
+    static String signature(DimensionInfo dimension, boolean list) {
+        return dimension.getAttribute() + (list ? ";list" : ";bounds");
+    }
+
+    /**
+     * Converts an attribute value to the type used for the dimension values, returns
+     * {@code null} for values that cannot be converted
+     */
+    static Object normalize(String dimensionName, Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (ResourceInfo.ELEVATION.equals(dimensionName)) {
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            return Converters.convert(value, Double.class);
+        }
+        if (value instanceof Date) {
+            return value;
+        }
+        return Converters.convert(value, Date.class);
+    }
+
+    /**
+     * Loads the domain scanning the feature type, with an aggregate visitor collecting the distinct
+     * values if {@code list} is true, or with min and max visitors otherwise
+     */
+    static DimensionDomain load(FeatureTypeInfo typeInfo, String dimensionName,
+            DimensionInfo dimension, boolean list) throws IOException {
+        FeatureCollection collection = getDimensionCollection(typeInfo, dimension);
+
+        TreeSet<Object> values = new TreeSet<Object>();
+        if (list) {
+            final UniqueVisitor visitor = new UniqueVisitor(dimension.getAttribute());
+            collection.accepts(visitor, null);
+
+            // we might get null values out of the visitor, normalize strips them
+            for (Object value : (Set<?>) visitor.getUnique()) {
+                add(values, normalize(dimensionName, value));
+            }
+        } else {
+            final MinVisitor min = new MinVisitor(dimension.getAttribute());
+            collection.accepts(min, null);
+            // check calcresult first to avoid potential IllegalStateException if no features are
+            // in collection
+            if (min.getResult() != CalcResult.NULL_RESULT) {
+                add(values, normalize(dimensionName, min.getMin()));
+                final MaxVisitor max = new MaxVisitor(dimension.getAttribute());
+                collection.accepts(max, null);
+                add(values, normalize(dimensionName, max.getMax()));
+            }
+        }
+
+        return new DimensionDomain(signature(dimension, list), list, values);
+    }
+
+    /**
+     * Returns the collection of all values of the dimension attribute, eventually sorted if the
+     * native capabilities allow for it
+     */
+    static FeatureCollection getDimensionCollection(FeatureTypeInfo typeInfo,
+            DimensionInfo dimension) throws IOException {
+        // grab the feature source
+        FeatureSource source = null;
+        try {
+            source = typeInfo.getFeatureSource(null, GeoTools.getDefaultHints());
+        } catch (IOException e) {
+            throw new ServiceException(
+                    "Could not get the feauture source to list time info for layer "
+                            + typeInfo.getPrefixedName(), e);
+        }
+
+        // build query to grab the dimension values
+        final Query dimQuery = new Query(source.getSchema().getName().getLocalPart());
+        dimQuery.setPropertyNames(Arrays.asList(dimension.getAttribute()));
+        return source.getFeatures(dimQuery);
+    }
+
+    static void add(TreeSet<Object> values, Object value) {
+        if (value != null) {
+            values.add(value);
+        }
+    }
+
+    /**
+     * Keeps only the min and max values
+     */
+    static void trim(TreeSet<Object> values) {
+        if (values.size() > 2) {
+            Object min = values.first();
+            Object max = values.last();
+            values.clear();
+            values.add(min);
+            values.add(max);
+        }
+    }
+
+    boolean matches(DimensionInfo dimension, boolean list) {
+        return signature.equals(signature(dimension, list));
+    }
+
+    boolean isList() {
+        return list;
+    }
+
+    /**
+     * A copy of the domain values
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> TreeSet<T> getValues() {
+        return new TreeSet<T>((Collection<T>) values);
+    }
+
+    synchronized boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    synchronized Object getMin() {
+        return values.isEmpty() ? null : values.first();
+    }
+
+    synchronized Object getMax() {
+        return values.isEmpty() ? null : values.last();
+    }
+
+    /**
+     * Adds values that have been written to the feature type
+     */
+    synchronized void add(Collection<Object> added) {
+        values.addAll(added);
+        if (!list) {
+            trim(values);
+        }
+    }
+
+    /**
+     * Checks if removing the specified values from the feature type might change the domain, that
+     * is, if any of them is in the list of values, or is at the bounds of the range
+     */
+    @SuppressWarnings("unchecked")
+    synchronized boolean isAffectedByRemoval(Collection<Object> removed) {
+        if (values.isEmpty()) {
+            return false;
+        }
+        Comparable<Object> min = (Comparable<Object>) values.first();
+        Comparable<Object> max = (Comparable<Object>) values.last();
+        for (Object value : removed) {
+            if (list ? values.contains(value)
+                    : (min.compareTo(value) >= 0 || max.compareTo(value) <= 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
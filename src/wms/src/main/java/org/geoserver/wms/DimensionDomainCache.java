@@ -0,0 +1,473 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.namespace.QName;
+
+import net.opengis.wfs.DeleteElementType;
+import net.opengis.wfs.InsertElementType;
+import net.opengis.wfs.PropertyType;
+import net.opengis.wfs.TransactionResponseType;
+import net.opengis.wfs.TransactionType;
+import net.opengis.wfs.UpdateElementType;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.wfs.TransactionEvent;
+import org.geoserver.wfs.TransactionEventType;
+import org.geoserver.wfs.TransactionPlugin;
+import org.geoserver.wfs.WFSException;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Caches the time and elevation domains of the vector layers, so that capabilities documents and
+ * {@code TIME=current} requests do not need to run an aggregate scan over the whole feature type
+ * each time.
+ * <p>
+ * Domains are loaded on first access and then kept up to date:
+ * <ul>
+ * <li>the values inserted or updated by WFS transactions are added once the transaction commits,
+ * while deletes and updates removing a value the domain depends on drop it, to be loaded again on
+ * next access</li>
+ * <li>every {@link #getRefreshInterval() refresh interval} the domains are loaded again in the
+ * background, to catch changes made to the data outside of GeoServer</li>
+ * <li>domains are dropped when the feature type or its store are modified or removed</li>
+ * </ul>
+ * </p>
+ */
+public class DimensionDomainCache implements TransactionPlugin, CatalogListener, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(DimensionDomainCache.class);
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 10 * 60 * 1000;
+
+    static final String DIMENSION_DOMAIN_CHANGES = "DIMENSION_DOMAIN_CHANGES";
+
+    static final String[] DIMENSIONS = { ResourceInfo.TIME, ResourceInfo.ELEVATION };
+
+    private final Catalog catalog;
+
+    private final Map<String, DimensionDomain> domains = new ConcurrentHashMap<String, DimensionDomain>();
+
+    private final ConcurrentHashMap<String, FutureTask<DimensionDomain>> loading = new ConcurrentHashMap<String, FutureTask<DimensionDomain>>();
+
+    /**
+     * Bumped whenever the data or the configuration change, domains loaded across a change are
+     * not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    private ScheduledExecutorService executor;
+
+    public DimensionDomainCache(Catalog catalog) {
+        this.catalog = catalog;
+        catalog.addListener(this);
+    }
+
+    /**
+     * @return how often, in milliseconds, the cached domains are loaded again in the background,
+     *         a value of zero or less disables the background refresh
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    static String key(FeatureTypeInfo typeInfo, String dimensionName) {
+        return typeInfo.getId() + ":" + dimensionName;
+    }
+
+    /**
+     * Returns the domain of the specified dimension, loading it if it's not cached yet or if the
+     * dimension configuration changed since it was loaded
+     */
+    DimensionDomain getDomain(final FeatureTypeInfo typeInfo, final String dimensionName,
+            final DimensionInfo dimension) throws IOException {
+        final boolean list = DimensionDomain.isList(dimensionName, dimension);
+        final String key = key(typeInfo, dimensionName);
+        DimensionDomain domain = domains.get(key);
+        if (domain != null && domain.matches(dimension, list)) {
+            hits.incrementAndGet();
+            return domain;
+        }
+        misses.incrementAndGet();
+
+        // make concurrent requests for the same domain wait for a single load
+        FutureTask<DimensionDomain> task = new FutureTask<DimensionDomain>(
+                new Callable<DimensionDomain>() {
+
+                    public DimensionDomain call() throws Exception {
+                        long generation = DimensionDomainCache.this.generation.get();
+                        DimensionDomain domain = DimensionDomain.load(typeInfo, dimensionName,
+                                dimension, list);
+                        put(key, domain, generation);
+                        return domain;
+                    }
+                });
+        FutureTask<DimensionDomain> running = loading.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                loading.remove(key, task);
+            }
+        }
+
+        try {
+            domain = running.get();
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while loading the " + dimensionName
+                    + " domain of " + typeInfo.getPrefixedName(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        if (!domain.matches(dimension, list)) {
+            // loaded by another request before the configuration changed
+            return DimensionDomain.load(typeInfo, dimensionName, dimension, list);
+        }
+        return domain;
+    }
+
+    /**
+     * Caches the domain, unless the data or configuration changed since the specified generation
+     */
+    private void put(String key, DimensionDomain domain, long generation) {
+        synchronized (domains) {
+            if (this.generation.get() == generation) {
+                domains.put(key, domain);
+            }
+        }
+        if (refreshInterval > 0) {
+            getExecutor();
+        }
+    }
+
+    /**
+     * Drops the domains of the specified feature type
+     */
+    void invalidate(String typeId) {
+        synchronized (domains) {
+            generation.incrementAndGet();
+            for (String dimensionName : DIMENSIONS) {
+                domains.remove(typeId + ":" + dimensionName);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (domains) {
+            generation.incrementAndGet();
+            domains.clear();
+        }
+    }
+
+    public int size() {
+        return domains.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Loads again the domains older than the refresh interval
+     */
+    void refresh() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, DimensionDomain> entry : domains.entrySet()) {
+            String key = entry.getKey();
+            DimensionDomain domain = entry.getValue();
+            if (now - domain.loaded < refreshInterval) {
+                continue;
+            }
+            int idx = key.lastIndexOf(':');
+            String dimensionName = key.substring(idx + 1);
+            FeatureTypeInfo typeInfo = catalog.getFeatureType(key.substring(0, idx));
+            DimensionInfo dimension = typeInfo == null ? null : typeInfo.getMetadata().get(
+                    dimensionName, DimensionInfo.class);
+            if (dimension == null || !dimension.isEnabled()) {
+                domains.remove(key);
+                continue;
+            }
+
+            long generation = this.generation.get();
+            try {
+                boolean list = DimensionDomain.isList(dimensionName, dimension);
+                put(key, DimensionDomain.load(typeInfo, dimensionName, dimension, list),
+                        generation);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to refresh the " + dimensionName
+                        + " domain of " + typeInfo.getPrefixedName(), e);
+            }
+        }
+    }
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "WMS dimension domain refresh");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor.scheduleWithFixedDelay(new Runnable() {
+
+                public void run() {
+                    try {
+                        refresh();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to refresh the dimension domains", e);
+                    }
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+        return executor;
+    }
+
+    public void destroy() throws Exception {
+        ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    //
+    // transaction plugin, collects the dimension values written by the transaction and applies
+    // them to the cached domains once the transaction has been committed
+    //
+
+    /**
+     * The values added to and removed from a dimension by a transaction
+     */
+    static class Changes {
+        TreeSet<Object> added = new TreeSet<Object>();
+
+        TreeSet<Object> removed = new TreeSet<Object>();
+    }
+
+    public TransactionType beforeTransaction(TransactionType request) throws WFSException {
+        // nothing to do
+        return request;
+    }
+
+    public void beforeCommit(TransactionType request) throws WFSException {
+        // nothing to do
+    }
+
+    public int getPriority() {
+        return 0;
+    }
+
+    public void dataStoreChange(TransactionEvent event) throws WFSException {
+        try {
+            dataStoreChangeInternal(event);
+        } catch (RuntimeException e) {
+            // never make the transaction fail, drop the domains of the type instead
+            LOGGER.log(Level.WARNING, "Error collecting the dimension values of the transaction",
+                    e);
+            QName name = event.getLayerName();
+            FeatureTypeInfo typeInfo = catalog.getFeatureTypeByName(name.getNamespaceURI(),
+                    name.getLocalPart());
+            if (typeInfo != null) {
+                invalidate(typeInfo.getId());
+            }
+        }
+    }
+
+    private void dataStoreChangeInternal(TransactionEvent event) {
+        final Object source = event.getSource();
+        if (!(source instanceof InsertElementType || source instanceof UpdateElementType || source instanceof DeleteElementType)) {
+            return;
+        }
+        final TransactionEventType type = event.getType();
+        if (TransactionEventType.POST_INSERT.equals(type)) {
+            // the values are the same as for PRE_INSERT
+            return;
+        }
+        final boolean removal = TransactionEventType.PRE_UPDATE.equals(type)
+                || TransactionEventType.PRE_DELETE.equals(type);
+
+        QName name = event.getLayerName();
+        FeatureTypeInfo typeInfo = catalog.getFeatureTypeByName(name.getNamespaceURI(),
+                name.getLocalPart());
+        if (typeInfo == null) {
+            return;
+        }
+        for (String dimensionName : DIMENSIONS) {
+            DimensionInfo dimension = typeInfo.getMetadata().get(dimensionName,
+                    DimensionInfo.class);
+            if (dimension == null || !dimension.isEnabled() || dimension.getAttribute() == null) {
+                continue;
+            }
+            if (source instanceof UpdateElementType
+                    && !updates((UpdateElementType) source, dimension.getAttribute())) {
+                continue;
+            }
+
+            // register the changes even if the domain is not cached, so that a load running
+            // across the commit does not get cached
+            String key = key(typeInfo, dimensionName);
+            Changes changes = getChanges(event.getRequest(), key);
+            if (!domains.containsKey(key)) {
+                continue;
+            }
+            TreeSet<Object> values = removal ? changes.removed : changes.added;
+            collect(event.getAffectedFeatures(), dimensionName, dimension.getAttribute(), values);
+            if (!DimensionDomain.isList(dimensionName, dimension)) {
+                DimensionDomain.trim(values);
+            }
+        }
+    }
+
+    private boolean updates(UpdateElementType update, String attribute) {
+        for (Object o : update.getProperty()) {
+            QName property = ((PropertyType) o).getName();
+            if (property != null && attribute.equals(property.getLocalPart())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collect(SimpleFeatureCollection features, String dimensionName,
+            String attribute, TreeSet<Object> values) {
+        SimpleFeatureIterator it = features.features();
+        try {
+            while (it.hasNext()) {
+                Object value = it.next().getAttribute(attribute);
+                DimensionDomain.add(values, DimensionDomain.normalize(dimensionName, value));
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Changes getChanges(TransactionType transaction, String key) {
+        Map<Object, Object> extendedProperties = transaction.getExtendedProperties();
+        Map<String, Changes> byKey = (Map<String, Changes>) extendedProperties
+                .get(DIMENSION_DOMAIN_CHANGES);
+        if (byKey == null) {
+            byKey = new HashMap<String, Changes>();
+            extendedProperties.put(DIMENSION_DOMAIN_CHANGES, byKey);
+        }
+        Changes changes = byKey.get(key);
+        if (changes == null) {
+            changes = new Changes();
+            byKey.put(key, changes);
+        }
+        return changes;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void afterTransaction(TransactionType request, TransactionResponseType result,
+            boolean committed) {
+        Map<String, Changes> byKey = (Map<String, Changes>) request.getExtendedProperties()
+                .remove(DIMENSION_DOMAIN_CHANGES);
+        if (byKey == null || !committed) {
+            return;
+        }
+        synchronized (domains) {
+            generation.incrementAndGet();
+            for (Map.Entry<String, Changes> entry : byKey.entrySet()) {
+                String key = entry.getKey();
+                Changes changes = entry.getValue();
+                DimensionDomain domain = domains.get(key);
+                if (domain == null) {
+                    continue;
+                }
+                if (!changes.removed.isEmpty() && domain.isAffectedByRemoval(changes.removed)) {
+                    domains.remove(key);
+                } else {
+                    domain.add(changes.added);
+                }
+            }
+        }
+    }
+
+    //
+    // catalog listener, drops the domains of the modified and removed feature types
+    //
+
+    public void handleAddEvent(CatalogAddEvent event) {
+        // nothing to do
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        if (event.getSource() instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) event.getSource()).getId());
+        }
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // nothing to do
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        if (event.getSource() instanceof FeatureTypeInfo) {
+            invalidate(((FeatureTypeInfo) event.getSource()).getId());
+        } else if (event.getSource() instanceof DataStoreInfo) {
+            // rare enough not to bother finding out the feature types of the store
+            clear();
+        }
+    }
+
+    public void reloaded() {
+        clear();
+    }
+}
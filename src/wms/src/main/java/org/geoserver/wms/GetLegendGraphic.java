@@ -4,9 +4,23 @@
  */
 package org.geoserver.wms;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoserver.ows.Dispatcher;
+import org.geoserver.ows.HttpErrorCodeException;
+import org.geoserver.ows.Request;
 import org.geoserver.ows.Response;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.Operation;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.legendgraphic.BufferedImageLegendGraphic;
+import org.geoserver.wms.legendgraphic.CachedLegendGraphic;
+import org.geoserver.wms.legendgraphic.CachedLegendGraphicResponse;
+import org.geoserver.wms.legendgraphic.LegendGraphicCache;
 import org.geotools.filter.function.EnvFunction;
 
 /**
@@ -18,10 +32,23 @@ public class GetLegendGraphic {
 
     private final WMS wms;
 
+    private LegendGraphicCache cache;
+
     public GetLegendGraphic(final WMS wms) {
         this.wms = wms;
     }
 
+    public LegendGraphicCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the cache for the encoded legends, if not set legends are rendered on each request
+     */
+    public void setCache(LegendGraphicCache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Produces a representation of the map's legend graphic given by the {@code request} by means
      * of a {@link GetLegendGraphicOutputFormat}.
@@ -36,6 +63,7 @@ public class GetLegendGraphic {
      * @throws ServiceException
      * @see WMSExtensions#findLegendGraphicFormat
      * @see BufferedImageLegendGraphic
+     * @see LegendGraphicCache
      */
     public Object run(final GetLegendGraphicRequest request) throws ServiceException {
 
@@ -45,8 +73,59 @@ public class GetLegendGraphic {
             throw new ServiceException("There is no support for creating legends in "
                     + outputFormat + " format", "InvalidFormat");
         }
-        Object legend = format.produceLegendGraphic(request);
-        return legend;
+        final LegendGraphicCache cache = this.cache;
+        final Request owsRequest = Dispatcher.REQUEST.get();
+        final String key = cache == null || owsRequest == null ? null : cache.getKey(request);
+        if (key == null) {
+            return format.produceLegendGraphic(request);
+        }
+
+        CachedLegendGraphic cached = cache.get(key);
+        if (cached == null) {
+            long generation = cache.getGeneration();
+            Object legend = format.produceLegendGraphic(request);
+            Operation operation = new Operation("GetLegendGraphic",
+                    owsRequest.getServiceDescriptor(), null, new Object[] { request });
+            Response response = findResponse(legend, operation, outputFormat);
+            if (response == null) {
+                return legend;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                response.write(legend, out, operation);
+            } catch (IOException e) {
+                throw new ServiceException("Error encoding the legend graphic", e);
+            }
+            cached = cache.put(key, out.toByteArray(), response.getMimeType(legend, operation),
+                    generation);
+        }
+        if (cache.isNotModified(owsRequest.getHttpRequest(), cached)) {
+            throw new HttpErrorCodeException(HttpServletResponse.SC_NOT_MODIFIED);
+        }
+        return cached;
+    }
+
+    /**
+     * Looks up the response able to encode the legend in the requested format
+     */
+    private Response findResponse(Object legend, Operation operation, String outputFormat) {
+        for (Response response : GeoServerExtensions.extensions(Response.class)) {
+            if (response instanceof CachedLegendGraphicResponse
+                    || !response.getBinding().isInstance(legend)
+                    || !response.canHandle(operation)) {
+                continue;
+            }
+            Set<String> outputFormats = response.getOutputFormats();
+            if (outputFormats.isEmpty()) {
+                return response;
+            }
+            for (String format : outputFormats) {
+                if (format.equalsIgnoreCase(outputFormat)) {
+                    return response;
+                }
+            }
+        }
+        return null;
     }
 
 }
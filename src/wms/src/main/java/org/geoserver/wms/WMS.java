@@ -47,17 +47,10 @@ import org.geoserver.wms.WatermarkInfo.Position;
 import org.geoserver.wms.featureinfo.GetFeatureInfoOutputFormat;
 import org.geoserver.wms.map.RenderedImageMapResponse;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
-import org.geotools.data.FeatureSource;
-import org.geotools.data.Query;
 import org.geotools.data.ows.Layer;
 import org.geotools.data.ows.WMSCapabilities;
 import org.geotools.factory.CommonFactoryFinder;
-import org.geotools.factory.GeoTools;
 import org.geotools.feature.FeatureCollection;
-import org.geotools.feature.visitor.CalcResult;
-import org.geotools.feature.visitor.MaxVisitor;
-import org.geotools.feature.visitor.MinVisitor;
-import org.geotools.feature.visitor.UniqueVisitor;
 import org.geotools.filter.Filters;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
@@ -112,6 +105,10 @@ public class WMS implements ApplicationContextAware {
     public static final String MAX_RENDERING_TIME = "maxAnimatorRenderingTime";
     
     public static final String MAX_RENDERING_SIZE = "maxRenderingSize";
+
+    public static final String MAX_PARALLEL_FRAMES = "maxParallelFrames";
+
+    public static final int MAX_PARALLEL_FRAMES_DEFAULT = 4;
     
     public static final String FRAMES_DELAY = "framesDelay";
 
@@ -188,6 +185,8 @@ public class WMS implements ApplicationContextAware {
 
     private ApplicationContext applicationContext;
 
+    private DimensionDomainCache dimensionDomainCache;
+
     public WMS(GeoServer geoserver) {
         this.geoserver = geoserver;
     }
@@ -290,6 +289,18 @@ public class WMS implements ApplicationContextAware {
         this.animatorExecutorService = animatorExecutorService;
     }
 
+    /**
+     * Sets the cache of the vector time and elevation domains, if {@code null} the domains are
+     * computed scanning the feature types on each request
+     */
+    public void setDimensionDomainCache(DimensionDomainCache dimensionDomainCache) {
+        this.dimensionDomainCache = dimensionDomainCache;
+    }
+
+    public DimensionDomainCache getDimensionDomainCache() {
+        return dimensionDomainCache;
+    }
+
     /**
      * @return the animatorExecutorService
      */
@@ -480,6 +491,13 @@ public class WMS implements ApplicationContextAware {
         return getMetadataValue( MAX_RENDERING_SIZE, null, Long.class);
     }
 
+    /**
+     * @return the max number of animation frames rendered at the same time for a single request
+     */
+    public int getMaxParallelFrames() {
+        return getMetadataValue(MAX_PARALLEL_FRAMES, MAX_PARALLEL_FRAMES_DEFAULT, Integer.class);
+    }
+
     public Integer getFramesDelay() {
         return getMetadataValue(FRAMES_DELAY, FRAMES_DELAY_DEFAULT, Integer.class);
     }
@@ -942,36 +960,11 @@ public class WMS implements ApplicationContextAware {
                     + " does not have time support enabled");
         }
 
-        FeatureCollection collection = getDimensionCollection(typeInfo, time);
-
-        TreeSet<Date> result = new TreeSet<Date>();
-        if (time.getPresentation() == DimensionPresentation.LIST) {
-            final UniqueVisitor visitor = new UniqueVisitor(time.getAttribute());
-            collection.accepts(visitor, null);
-
-            @SuppressWarnings("unchecked")
-            Set<Date> values = visitor.getUnique();
-            if (values.size() <= 0) {
-                result = null;
-            } else {
-                // we might get null values out of the visitor, strip them
-                values.remove(null);
-                result.addAll(values);
-            }
-        } else {
-            final MinVisitor min = new MinVisitor(time.getAttribute());
-            collection.accepts(min, null);
-            CalcResult minResult = min.getResult();
-            // check calcresult first to avoid potential IllegalStateException if no features are in collection
-            if (minResult != CalcResult.NULL_RESULT) {
-                result.add((Date) min.getMin());
-                final MaxVisitor max = new MaxVisitor(time.getAttribute());
-                collection.accepts(max, null);
-                result.add((Date) max.getMax());
-            }
+        DimensionDomain domain = getDimensionDomain(typeInfo, ResourceInfo.TIME, time, false);
+        if (domain.isList() && domain.isEmpty()) {
+            return null;
         }
-
-        return result;
+        return domain.getValues();
     }
 
     /**
@@ -991,38 +984,12 @@ public class WMS implements ApplicationContextAware {
                     + " does not have elevation support enabled");
         }
 
-        FeatureCollection collection = getDimensionCollection(typeInfo, elevation);
-
-        TreeSet<Double> result = new TreeSet<Double>();
-        if (elevation.getPresentation() == DimensionPresentation.LIST
-                || (elevation.getPresentation() == DimensionPresentation.DISCRETE_INTERVAL && elevation
-                        .getResolution() == null)) {
-            final UniqueVisitor visitor = new UniqueVisitor(elevation.getAttribute());
-            collection.accepts(visitor, null);
-
-            @SuppressWarnings("unchecked")
-            Set<Object> values = visitor.getUnique();
-            if (values.size() <= 0) {
-                result = null;
-            } else {
-                for (Object value : values) {
-                    result.add(((Number) value).doubleValue());
-                }
-            }
-        } else {
-            final MinVisitor min = new MinVisitor(elevation.getAttribute());
-            collection.accepts(min, null);
-            // check calcresult first to avoid potential IllegalStateException if no features are in collection
-            CalcResult calcResult = min.getResult();
-            if (calcResult != CalcResult.NULL_RESULT) {
-                result.add(((Number) min.getMin()).doubleValue());
-                final MaxVisitor max = new MaxVisitor(elevation.getAttribute());
-                collection.accepts(max, null);
-                result.add(((Number) max.getMax()).doubleValue());
-            }
+        DimensionDomain domain = getDimensionDomain(typeInfo, ResourceInfo.ELEVATION, elevation,
+                false);
+        if (domain.isList() && domain.isEmpty()) {
+            return null;
         }
-
-        return result;
+        return domain.getValues();
     }
 
     /**
@@ -1041,14 +1008,7 @@ public class WMS implements ApplicationContextAware {
         }
 
         // current is the max time we have
-        FeatureCollection collection = getDimensionCollection(typeInfo, time);
-        final MaxVisitor max = new MaxVisitor(time.getAttribute());
-        collection.accepts(max, null);
-        if (max.getResult() != CalcResult.NULL_RESULT) {
-            return (Date) max.getMax();
-        } else {
-            return null;
-        }
+        return (Date) getDimensionDomain(typeInfo, ResourceInfo.TIME, time, true).getMax();
     }
 
     /**
@@ -1082,14 +1042,8 @@ public class WMS implements ApplicationContextAware {
                     + " does not have time support enabled");
         }
 
-        FeatureCollection collection = getDimensionCollection(typeInfo, elevation);
-        final MinVisitor min = new MinVisitor(elevation.getAttribute());
-        collection.accepts(min, null);
-        if (min.getResult() == CalcResult.NULL_RESULT) {
-            return null;
-        } else {
-            return ((Number) min.getMin()).doubleValue();
-        }
+        return (Double) getDimensionDomain(typeInfo, ResourceInfo.ELEVATION, elevation, true)
+                .getMin();
     }
 
     /**
@@ -1123,20 +1077,23 @@ public class WMS implements ApplicationContextAware {
      */
     FeatureCollection getDimensionCollection(FeatureTypeInfo typeInfo, DimensionInfo dimension)
             throws IOException {
-        // grab the feature source
-        FeatureSource source = null;
-        try {
-            source = typeInfo.getFeatureSource(null, GeoTools.getDefaultHints());
-        } catch (IOException e) {
-            throw new ServiceException(
-                    "Could not get the feauture source to list time info for layer "
-                            + typeInfo.getPrefixedName(), e);
-        }
+        return DimensionDomain.getDimensionCollection(typeInfo, dimension);
+    }
 
-        // build query to grab the dimension values
-        final Query dimQuery = new Query(source.getSchema().getName().getLocalPart());
-        dimQuery.setPropertyNames(Arrays.asList(dimension.getAttribute()));
-        return source.getFeatures(dimQuery);
+    /**
+     * Returns the domain of a vector dimension, out of the {@link DimensionDomainCache} if
+     * available, or scanning the feature type otherwise
+     * 
+     * @param boundsOnly if true the caller is only interested in the min and max values, allows
+     *        to avoid collecting the distinct values when the domain is not cached
+     */
+    DimensionDomain getDimensionDomain(FeatureTypeInfo typeInfo, String dimensionName,
+            DimensionInfo dimension, boolean boundsOnly) throws IOException {
+        if (dimensionDomainCache != null) {
+            return dimensionDomainCache.getDomain(typeInfo, dimensionName, dimension);
+        }
+        boolean list = !boundsOnly && DimensionDomain.isList(dimensionName, dimension);
+        return DimensionDomain.load(typeInfo, dimensionName, dimension, list);
     }
     
     /**
@@ -65,6 +65,11 @@ public class WMSLifecycleHandler implements GeoServerLifecycleHandler, Applicati
         
         // reset WMS Animator Executor Service
         resetAnimatorExecutorService();
+
+        // the data might have changed under the dimension domains
+        if (wmsConfig.getDimensionDomainCache() != null) {
+            wmsConfig.getDimensionDomainCache().clear();
+        }
     }
 
     /**
@@ -0,0 +1,41 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.map.RenderedImageMap;
+
+/**
+ * A {@link RenderedImageMap} whose frames are rendered while the map is being encoded, instead of
+ * being all held in memory beforehand.
+ * <p>
+ * The map has no single image, {@link org.geoserver.wms.map.RenderedImageMapResponse} encodes the
+ * {@link #getFrames() frames} as they get rendered, and the frames still pending are cancelled
+ * when the map is disposed.
+ * </p>
+ */
+public class AnimatedMap extends RenderedImageMap {
+
+    private FrameSequence frames;
+
+    public AnimatedMap(final WMSMapContent mapContent, final FrameSequence frames,
+            final String mimeType) {
+        super(mapContent, null, mimeType);
+        this.frames = frames;
+    }
+
+    public FrameSequence getFrames() {
+        return frames;
+    }
+
+    @Override
+    protected void disposeInternal() {
+        super.disposeInternal();
+        if (frames != null) {
+            frames.close();
+            frames = null;
+        }
+    }
+}
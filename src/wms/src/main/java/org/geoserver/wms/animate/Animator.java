@@ -4,7 +4,6 @@
  */
 package org.geoserver.wms.animate;
 
-import java.awt.image.RenderedImage;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -122,15 +121,22 @@ public class Animator {
         }
 
         // initializing the catalog visitor. This takes care of producing single
-        // RenderedImages.
+        // RenderedImages, which are streamed to the output format as they get rendered
         FrameCatalogVisitor visitor = new FrameCatalogVisitor();
         frameCatalog.getFrames(visitor);
-        RenderedImage imageList = visitor.produce(frameCatalog.getWmsConfiguration());
+        FrameSequence frames = visitor.frames(frameCatalog.getWmsConfiguration());
+        frames.start();
 
         // run a single getmap to get the right mime type and map context
-        WebMap wmsResponse = wms.getMap(request);
+        WebMap wmsResponse;
+        try {
+            wmsResponse = wms.getMap(request);
+        } catch (Exception e) {
+            frames.close();
+            throw e;
+        }
 
-        return new RenderedImageMap(((RenderedImageMap) wmsResponse).getMapContext(), imageList,
+        return new AnimatedMap(((RenderedImageMap) wmsResponse).getMapContext(), frames,
                 wmsResponse.getMimeType());
     }
 
@@ -10,13 +10,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 
 import javax.media.jai.RenderedImageList;
 
@@ -35,8 +31,8 @@ import org.geoserver.wms.map.RenderedImageMapResponse;
 
 /**
  * The Frame Visitor contains the logic to produce frame images.<br/>
- * The "visit" method initializes the runnables and the animatorExecutor service, while
- * the "produce" method runs the tasks and generated the frames images.
+ * The "visit" method collects the frame renderers, while the "frames" method returns a
+ * {@link FrameSequence} streaming the frames images as they get rendered.
  * @author Alessio Fabiani, GeoSolutions S.A.S., alessio.fabiani@geo-solutions.it
  * @author Andrea Aime, GeoSolutions S.A.S., andrea.aime@geo-solutions.it
  */
@@ -48,12 +44,13 @@ public class FrameCatalogVisitor {
     int framesNumber;
 
     /**
-     * the list of runnables to be executed
+     * the list of frame renderers to be executed
      */
-    List<Future<RenderedImage>> tasks;
+    List<FrameLoader> loaders;
 
     /**
-     * Adds a new visitor to the runnables list and initializes the animatorExecutor service is not yet initialied. 
+     * Adds a new frame renderer to the list. The rendering does not start until the frames are
+     * requested.
      * @param request
      * @param wms
      * @param wmsConfiguration
@@ -61,87 +58,58 @@ public class FrameCatalogVisitor {
      * @param avalue
      */
     public void visit(final GetMapRequest request, WebMapService wms, WMS wmsConfiguration, String aparam, String avalue) {
-        if (this.tasks == null) {
-            this.tasks = new LinkedList<Future<RenderedImage>>();
+        if (this.loaders == null) {
+            this.loaders = new ArrayList<FrameLoader>();
         }
 
-        FrameLoader loader = new FrameLoader(request, wms, wmsConfiguration, aparam, avalue);
-        
-        
-        final FutureTask<RenderedImage> task = new FutureTask<RenderedImage>(loader);
-        this.tasks.add(task);
+        this.loaders.add(new FrameLoader(request, wms, wmsConfiguration, aparam, avalue));
         this.framesNumber++;
+    }
 
-        // run the loading in this thread
-        wmsConfiguration.getAnimatorExecutorService().execute(task);
+    /**
+     * Returns the sequence of frames, rendered on the animator executor service with the
+     * configured parallelism and limits. The caller is responsible for closing the sequence.
+     * @param wmsConfiguration
+     * @return
+     */
+    public FrameSequence frames(WMS wmsConfiguration) {
+        List<FrameLoader> frameLoaders = loaders == null ? new ArrayList<FrameLoader>() : loaders;
+        FrameSequence frames = new FrameSequence(frameLoaders,
+                wmsConfiguration.getAnimatorExecutorService(),
+                wmsConfiguration.getMaxParallelFrames(), wmsConfiguration.getMaxAllowedFrames(),
+                wmsConfiguration.getMaxRenderingSize());
+        dispose();
+        return frames;
     }
 
     /**
-     * Invokes the Executor service and produces the frames images.
+     * Produces all the frames images and returns them as a single list.
      * @param wmsConfiguration
      * @return
      * @throws IOException
      */
     public RenderedImageList produce(WMS wmsConfiguration) throws IOException {
-        List<RenderedImage> images = new ArrayList<RenderedImage>();
-
-        long gifAnimatedSize = 0;
-
-        for (Future<RenderedImage> future : tasks) {
-            RenderedImage image = null;
-            try {
-                image = future.get();
-            } catch (InterruptedException e) {
-                dispose();
-                throw new IOException(e);
-            } catch (ExecutionException e) {
-                dispose();
-                throw new IOException(e);
-            }
-
-            if (image == null) {
-                continue;
-            }
-
-            // collect the images
-            gifAnimatedSize += getImageSizeInBytes(image);
-            if (wmsConfiguration.getMaxRenderingSize() != null
-                    && gifAnimatedSize >= wmsConfiguration.getMaxRenderingSize()) {
-                dispose();
-                throw new IOException("Max rendering size exceed!");
-            }
-
-            images.add(image);
+        FrameSequence frames = frames(wmsConfiguration);
+        List<RenderedImage> images;
+        try {
+            images = frames.toList();
+        } finally {
+            frames.close();
         }
 
-        if (images == null || images.size() == 0) {
-            dispose();
+        if (images.size() == 0) {
             throw new IOException("Empty list of frames.");
         }
 
-        dispose();
         return new RenderedImageList(images);
     }
 
-    private long getImageSizeInBytes(RenderedImage image) {
-        int tileWidth = image.getTileWidth();
-        int tileLength = image.getNumXTiles();
-        int numBands = image.getSampleModel().getNumBands();
-        int[] sampleSize = image.getSampleModel().getSampleSize();
-
-        return (long) Math.ceil(2 * tileWidth * tileLength * numBands * (sampleSize[0] / 8.0));
-    }
-
     /**
-     * Suddenly stops the Executor service and clear instantiated visitors.
+     * Clears the collected frame renderers.
      */
     private void dispose() {
         this.framesNumber = 0;
-
-        if (this.tasks != null)
-            this.tasks.clear();
-        
-        this.tasks = null;
+        this.loaders = null;
     }
 
 }
@@ -0,0 +1,230 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.media.jai.PlanarImage;
+
+import org.geotools.resources.image.ImageUtilities;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Streams the frames of an animation in order, rendering them with bounded parallelism.
+ * <p>
+ * At most {@code maxParallelFrames} frames are being rendered, or waiting to be consumed, at any
+ * given time: each time a frame is handed out by {@link #nextFrame()} the rendering of a new one
+ * is scheduled. This way the memory used depends on the parallelism, not on the number of frames
+ * in the animation. The frame count and the rendering size limits are checked as the frames are
+ * handed out, so a request going over them fails as soon as that happens, without rendering the
+ * remaining frames.
+ * </p>
+ * <p>
+ * The sequence must be {@link #close() closed} once done with it, to cancel the renderings that are
+ * still pending in case of failure.
+ * </p>
+ */
+public class FrameSequence {
+
+    static final Logger LOGGER = Logging.getLogger(FrameSequence.class);
+
+    /**
+     * The frame renderers that have not been scheduled yet
+     */
+    LinkedList<Callable<RenderedImage>> loaders;
+
+    /**
+     * The frames being rendered, in animation order
+     */
+    LinkedList<Future<RenderedImage>> pending = new LinkedList<Future<RenderedImage>>();
+
+    ExecutorService executor;
+
+    int framesNumber;
+
+    int maxParallelFrames;
+
+    int maxFrames;
+
+    Long maxRenderingSize;
+
+    int produced;
+
+    long renderingSize;
+
+    boolean closed;
+
+    /**
+     * Builds a new frame sequence
+     *
+     * @param loaders the frame renderers, in animation order
+     * @param executor the executor running the frame renderers
+     * @param maxParallelFrames the max number of frames rendered at the same time
+     * @param maxFrames the max number of frames in the animation
+     * @param maxRenderingSize the max overall size of the frames, in bytes, or {@code null} if
+     *        there is no limit
+     */
+    public FrameSequence(List<? extends Callable<RenderedImage>> loaders,
+            ExecutorService executor, int maxParallelFrames, int maxFrames,
+            Long maxRenderingSize) {
+        this.loaders = new LinkedList<Callable<RenderedImage>>(loaders);
+        this.framesNumber = loaders.size();
+        this.executor = executor;
+        this.maxParallelFrames = Math.max(1, maxParallelFrames);
+        this.maxFrames = maxFrames;
+        this.maxRenderingSize = maxRenderingSize;
+    }
+
+    /**
+     * @return the number of frames requested, some of them might end up not producing any image
+     */
+    public int size() {
+        return framesNumber;
+    }
+
+    /**
+     * Starts rendering the first frames, without waiting for them
+     */
+    public synchronized void start() {
+        schedule();
+    }
+
+    /**
+     * Returns the next frame, waiting for it to be rendered if necessary. The frames are meant to
+     * be consumed by a single thread, the wait happens outside of the sequence lock so that the
+     * sequence can be {@link #close() closed} meanwhile.
+     *
+     * @return the next frame, or {@code null} if there are no more frames
+     * @throws IOException if the rendering failed, or the animation went over the configured
+     *         limits
+     */
+    public RenderedImage nextFrame() throws IOException {
+        while (true) {
+            Future<RenderedImage> future;
+            synchronized (this) {
+                if (closed) {
+                    return null;
+                }
+                schedule();
+                if (pending.isEmpty()) {
+                    return null;
+                }
+
+                future = pending.removeFirst();
+                // keep the renderers busy while the caller deals with this frame
+                schedule();
+            }
+
+            RenderedImage image;
+            try {
+                image = future.get();
+            } catch (InterruptedException e) {
+                close();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                close();
+                throw new IOException(e);
+            }
+
+            if (image == null) {
+                continue;
+            }
+
+            synchronized (this) {
+                if (closed) {
+                    dispose(image);
+                    return null;
+                }
+                produced++;
+                if (produced > maxFrames) {
+                    close();
+                    dispose(image);
+                    throw new IOException(
+                            "Request too long; reached the maximum allowed number of frames.");
+                }
+                renderingSize += getImageSizeInBytes(image);
+                if (maxRenderingSize != null && renderingSize >= maxRenderingSize) {
+                    close();
+                    dispose(image);
+                    throw new IOException("Max rendering size exceed!");
+                }
+            }
+
+            return image;
+        }
+    }
+
+    /**
+     * @return the number of frames handed out so far
+     */
+    public synchronized int getProduced() {
+        return produced;
+    }
+
+    /**
+     * Collects all the remaining frames in a list. Only meant for callers that need random access
+     * to the frames, as it defeats the purpose of streaming them.
+     */
+    public List<RenderedImage> toList() throws IOException {
+        List<RenderedImage> images = new ArrayList<RenderedImage>();
+        RenderedImage image;
+        while ((image = nextFrame()) != null) {
+            images.add(image);
+        }
+        return images;
+    }
+
+    /**
+     * Cancels the frame renderings still pending
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        loaders.clear();
+        for (Future<RenderedImage> future : pending) {
+            future.cancel(true);
+        }
+        if (!pending.isEmpty() && LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Cancelled " + pending.size() + " pending animation frames");
+        }
+        pending.clear();
+    }
+
+    private void schedule() {
+        while (!closed && pending.size() < maxParallelFrames && !loaders.isEmpty()) {
+            pending.add(executor.submit(loaders.removeFirst()));
+        }
+    }
+
+    /**
+     * Releases the resources of a frame that is not going to be handed out
+     */
+    static void dispose(RenderedImage image) {
+        if (image instanceof PlanarImage) {
+            ImageUtilities.disposePlanarImageChain((PlanarImage) image);
+        }
+    }
+
+    static long getImageSizeInBytes(RenderedImage image) {
+        int tileWidth = image.getTileWidth();
+        int tileLength = image.getNumXTiles();
+        int numBands = image.getSampleModel().getNumBands();
+        int[] sampleSize = image.getSampleModel().getSampleSize();
+
+        return (long) Math.ceil(2 * tileWidth * tileLength * numBands * (sampleSize[0] / 8.0));
+    }
+}
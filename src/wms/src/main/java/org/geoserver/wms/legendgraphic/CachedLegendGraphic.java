@@ -0,0 +1,42 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.legendgraphic;
+
+/**
+ * An already encoded legend graphic, as stored in the {@link LegendGraphicCache}
+ */
+public class CachedLegendGraphic {
+
+    private final byte[] legend;
+
+    private final String mimeType;
+
+    private final String etag;
+
+    private final long lastModified;
+
+    public CachedLegendGraphic(byte[] legend, String mimeType, String etag, long lastModified) {
+        this.legend = legend;
+        this.mimeType = mimeType;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public byte[] getLegend() {
+        return legend;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
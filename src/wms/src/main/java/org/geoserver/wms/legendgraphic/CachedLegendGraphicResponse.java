@@ -0,0 +1,52 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.legendgraphic;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.geoserver.ows.Response;
+import org.geoserver.platform.Operation;
+import org.geoserver.platform.ServiceException;
+import org.springframework.util.Assert;
+
+/**
+ * OWS {@link Response} writing out a {@link CachedLegendGraphic}, along with the headers needed
+ * for conditional requests
+ */
+public class CachedLegendGraphicResponse extends Response {
+
+    public CachedLegendGraphicResponse() {
+        super(CachedLegendGraphic.class);
+    }
+
+    @Override
+    public String getMimeType(Object value, Operation operation) throws ServiceException {
+        Assert.isInstanceOf(CachedLegendGraphic.class, value);
+        return ((CachedLegendGraphic) value).getMimeType();
+    }
+
+    @Override
+    public String[][] getHeaders(Object value, Operation operation) throws ServiceException {
+        CachedLegendGraphic legend = (CachedLegendGraphic) value;
+        // RFC 1123 date, as required by the HTTP headers
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz",
+                Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return new String[][] { { "ETag", "\"" + legend.getEtag() + "\"" },
+                { "Last-Modified", format.format(new Date(legend.getLastModified())) } };
+    }
+
+    @Override
+    public void write(Object value, OutputStream output, Operation operation) throws IOException,
+            ServiceException {
+        Assert.isInstanceOf(CachedLegendGraphic.class, value);
+        output.write(((CachedLegendGraphic) value).getLegend());
+    }
+}
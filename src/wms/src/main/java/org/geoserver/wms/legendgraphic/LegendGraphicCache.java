@@ -0,0 +1,255 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.legendgraphic;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.wms.GetLegendGraphicRequest;
+
+/**
+ * Caches the encoded legend graphics produced by GetLegendGraphic, keyed by the request
+ * parameters (layer, style, rule, size, scale, legend options, format and so on).
+ * <p>
+ * Legends of requests carrying the style inline or by reference ({@code SLD_BODY} and
+ * {@code SLD}) are not cached. The cache is dropped whenever a style, layer, resource or layer
+ * group is added, modified or removed, and the least recently used legends are evicted when the
+ * memory used goes over {@link #getMaxMemory()}.
+ * </p>
+ */
+public class LegendGraphicCache implements CatalogListener {
+
+    public static final long DEFAULT_MAX_MEMORY = 16 * 1024 * 1024;
+
+    private final Map<String, CachedLegendGraphic> legends = new LinkedHashMap<String, CachedLegendGraphic>(
+            16, 0.75f, true);
+
+    private long memoryUsed;
+
+    private long maxMemory = DEFAULT_MAX_MEMORY;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Time of the last invalidation, with second precision as that's what the HTTP headers carry
+     */
+    private volatile long lastModified = now();
+
+    public LegendGraphicCache(Catalog catalog) {
+        catalog.addListener(this);
+    }
+
+    private static long now() {
+        return 1000 * (System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Builds the cache key for the request, or returns {@code null} if the legend should not be
+     * cached
+     */
+    public String getKey(GetLegendGraphicRequest request) {
+        Map<String, String> rawKvp = request.getRawKvp();
+        if (rawKvp == null || maxMemory <= 0) {
+            return null;
+        }
+        Map<String, String> sorted = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : rawKvp.entrySet()) {
+            String key = entry.getKey().toUpperCase();
+            if ("SLD".equals(key) || "SLD_BODY".equals(key)) {
+                return null;
+            }
+            sorted.put(key, entry.getValue());
+        }
+        return sorted.toString();
+    }
+
+    /**
+     * @return the current generation, to be passed to
+     *         {@link #put(String, byte[], String, long)} once the legend has been encoded
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public CachedLegendGraphic get(String key) {
+        CachedLegendGraphic legend;
+        synchronized (legends) {
+            legend = legends.get(key);
+        }
+        if (legend == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return legend;
+    }
+
+    /**
+     * Caches the legend, unless the cache has been invalidated since the specified generation
+     *
+     * @return the legend, cached or not
+     */
+    public CachedLegendGraphic put(String key, byte[] legend, String mimeType, long generation) {
+        CachedLegendGraphic cached = new CachedLegendGraphic(legend, mimeType, etag(legend),
+                lastModified);
+        if (legend.length > maxMemory) {
+            return cached;
+        }
+        synchronized (legends) {
+            if (this.generation.get() != generation) {
+                return cached;
+            }
+            CachedLegendGraphic previous = legends.put(key, cached);
+            if (previous != null) {
+                memoryUsed -= previous.getLegend().length;
+            }
+            memoryUsed += legend.length;
+            // evict the least recently used legends
+            for (Iterator<CachedLegendGraphic> it = legends.values().iterator(); memoryUsed > maxMemory
+                    && it.hasNext();) {
+                memoryUsed -= it.next().getLegend().length;
+                it.remove();
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Checks the {@code If-None-Match} and {@code If-Modified-Since} headers against the legend
+     *
+     * @return true if the client already has the current version of the legend
+     */
+    public boolean isNotModified(HttpServletRequest request, CachedLegendGraphic legend) {
+        if (request == null) {
+            return false;
+        }
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag) || tag.equals("\"" + legend.getEtag() + "\"")
+                        || tag.equals(legend.getEtag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return ifModifiedSince != -1 && ifModifiedSince >= legend.getLastModified();
+    }
+
+    public void clear() {
+        synchronized (legends) {
+            generation.incrementAndGet();
+            lastModified = now();
+            legends.clear();
+            memoryUsed = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (legends) {
+            return legends.size();
+        }
+    }
+
+    public long getMemoryUsed() {
+        synchronized (legends) {
+            return memoryUsed;
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Sets the max memory used by the cached legends, in bytes, zero disables the cache
+     */
+    public void setMaxMemory(long maxMemory) {
+        this.maxMemory = maxMemory;
+        clear();
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder sb = new StringBuilder();
+            for (byte b : hash) {
+                sb.append(Integer.toHexString((b >> 4) & 0xF)).append(Integer.toHexString(b & 0xF));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void handleEvent(CatalogEvent event) {
+        CatalogInfo source = event.getSource();
+        if (source instanceof StyleInfo || source instanceof LayerInfo
+                || source instanceof ResourceInfo || source instanceof LayerGroupInfo) {
+            clear();
+        }
+    }
+
+    public void handleAddEvent(CatalogAddEvent event) {
+        handleEvent(event);
+    }
+
+    public void handleRemoveEvent(CatalogRemoveEvent event) {
+        handleEvent(event);
+    }
+
+    public void handleModifyEvent(CatalogModifyEvent event) {
+        // wait for the post modify event
+    }
+
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+        handleEvent(event);
+    }
+
+    public void reloaded() {
+        clear();
+    }
+}
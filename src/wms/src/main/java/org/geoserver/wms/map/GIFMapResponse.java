@@ -9,9 +9,7 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -25,12 +23,15 @@ import javax.imageio.stream.ImageOutputStream;
 import javax.media.jai.PlanarImage;
 import javax.media.jai.RenderedImageList;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.GetMapRequest;
 import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.animate.FrameSequence;
 import org.geoserver.wms.kvp.PaletteManager;
 import org.geotools.image.ImageWorker;
 import org.geotools.image.palette.InverseColorMapOp;
@@ -54,6 +55,12 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
 
     public static final String IMAGE_GIF_SUBTYPE_ANIMATED = "image/gif;subtype=animated";
 
+    /**
+     * Size of the encoded animated GIF past which it's buffered to a temporary file instead of
+     * memory, before being sent out
+     */
+    static final int ANIMATION_BUFFER_THRESHOLD = 4 * 1024 * 1024;
+
     private static final GIFImageWriterSpi ORIGINATING_PROVIDER = new GIFImageWriterSpi();
 
     /** the only MIME type this map producer supports */
@@ -158,59 +165,162 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
             throw new ServiceException("The number of frames for this GIF is less than 1");
         }
 
-        final GIFImageWriter gifWriter = new GIFImageWriter(ORIGINATING_PROVIDER);
-        // write param
-        final ImageWriteParam param = gifWriter.getDefaultWriteParam();
-        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-        param.setCompressionType("LZW");
-        param.setCompressionQuality(0.75f);
-
-        ImageOutputStream otStream = null;
-        List<RenderedImage> images = new ArrayList<RenderedImage>();
+        AnimatedGIFWriter writer = null;
         try {
-            otStream = ImageIO.createImageOutputStream(outStream);
-            gifWriter.setOutput(otStream);
-            gifWriter.prepareWriteSequence(null);
+            writer = new AnimatedGIFWriter(outStream, mapContent);
+            for (int i = 0; i < numfiles; i++) {
+                writer.write((RenderedImage) ril.get(i));
+            }
+            writer.finish();
+        } catch (IOException e) {
+            throw new ServiceException(e);
+        } finally {
+            if (writer != null) {
+                writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * Streams the frames into an animated GIF, palette-quantizing and encoding each frame as soon
+     * as it is rendered, and letting go of it right after, so that the memory used does not depend
+     * on the number of frames.
+     * <p>
+     * The encoded GIF is buffered, in memory up to {@link #ANIMATION_BUFFER_THRESHOLD} bytes and
+     * in a temporary file past that, and copied to the output only once all the frames have been
+     * encoded: a frame failing to render results in a service exception instead of a truncated
+     * GIF sent out with a successful status.
+     * </p>
+     * 
+     * @param frames The frames to be formatted.
+     * @param outStream The stream to write to.
+     * 
+     * @throws ServiceException if the frames cannot be rendered or encoded
+     * @throws IOException if encoding to <code>outStream</code> fails.
+     */
+    @Override
+    public void formatFrames(FrameSequence frames, OutputStream outStream,
+            WMSMapContent mapContent) throws ServiceException, IOException {
+        final String format = mapContent.getRequest().getFormat();
+        if (frames.size() == 1 || !format.equalsIgnoreCase(IMAGE_GIF_SUBTYPE_ANIMATED)) {
+            super.formatFrames(frames, outStream, mapContent);
+            return;
+        }
+
+        DeferredFileOutputStream buffer = new DeferredFileOutputStream(
+                ANIMATION_BUFFER_THRESHOLD, "animation", ".gif", null);
+        try {
+            AnimatedGIFWriter writer = null;
+            try {
+                writer = new AnimatedGIFWriter(buffer, mapContent);
+                RenderedImage frame;
+                while ((frame = frames.nextFrame()) != null) {
+                    writer.write(frame);
+                }
+                if (writer.framesWritten == 0) {
+                    throw new ServiceException("Empty list of frames.");
+                }
+                writer.finish();
+            } catch (IOException e) {
+                throw new ServiceException(e);
+            } finally {
+                frames.close();
+                if (writer != null) {
+                    writer.dispose();
+                }
+            }
+
+            // all frames encoded, nothing can go wrong past this point but the client going away
+            buffer.close();
+            buffer.writeTo(outStream);
+        } finally {
+            IOUtils.closeQuietly(buffer);
+            if (buffer.getFile() != null) {
+                buffer.getFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the frames of an animated GIF one at a time
+     */
+    class AnimatedGIFWriter {
+
+        final GIFImageWriter gifWriter = new GIFImageWriter(ORIGINATING_PROVIDER);
+
+        final ImageWriteParam param;
+
+        final ImageOutputStream otStream;
+
+        final WMSMapContent mapContent;
+
+        final boolean loopContinuosly;
+
+        final int delay;
+
+        int framesWritten;
+
+        AnimatedGIFWriter(OutputStream outStream, WMSMapContent mapContent) throws IOException {
+            this.mapContent = mapContent;
 
             // gif params
             final GetMapRequest request = (GetMapRequest) mapContent.getRequest();
-            final Boolean loopContinuosly = (request.getFormatOptions().get("gif_loop_continuosly") != null ?
+            loopContinuosly = (request.getFormatOptions().get("gif_loop_continuosly") != null ?
                     Boolean.valueOf((String)request.getFormatOptions().get("gif_loop_continuosly")) : wms.getLoopContinuously());
-            final Integer delay = (request.getFormatOptions().get("gif_frames_delay") != null ? 
+            delay = (request.getFormatOptions().get("gif_frames_delay") != null ? 
                     Integer.valueOf((String) request.getFormatOptions().get("gif_frames_delay")) : wms.getFramesDelay());
 
             // check value
             if (delay <= 0)
                 throw new ServiceException("Animate GIF delay invalid: " + delay);
 
-            //
-            // Getting input files
-            //
-            for (int i = 0; i < numfiles; i++) {
-                if (LOGGER.isLoggable(Level.FINE))
-                    LOGGER.fine("Writing image " + i);
-                // get the image
-                RenderedImage ri = (RenderedImage) ril.get(i);
-                // convert it to gif compatible
-                ri = applyPalette(ri, mapContent, MIME_TYPE, false);
-                if (ri != null) {
-                    // prepare metadata and write param
-                    final IIOMetadata imageMetadata = gifWriter.getDefaultImageMetadata(
-                            new ImageTypeSpecifier(ri), param);
-                    prepareMetadata(imageMetadata, loopContinuosly, delay);
-
-                    // write
-                    gifWriter.writeToSequence(new IIOImage(ri, null, imageMetadata), param);
-                    images.add(ri);
+            // write param
+            param = gifWriter.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionType("LZW");
+            param.setCompressionQuality(0.75f);
+
+            otStream = ImageIO.createImageOutputStream(outStream);
+            gifWriter.setOutput(otStream);
+            gifWriter.prepareWriteSequence(null);
+        }
+
+        void write(RenderedImage ri) throws IOException {
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.fine("Writing image " + framesWritten);
+            // convert it to gif compatible
+            ri = applyPalette(ri, mapContent, MIME_TYPE, false);
+            if (ri == null) {
+                return;
+            }
+            try {
+                // prepare metadata and write param
+                final IIOMetadata imageMetadata = gifWriter.getDefaultImageMetadata(
+                        new ImageTypeSpecifier(ri), param);
+                prepareMetadata(imageMetadata, loopContinuosly, delay);
+
+                // write
+                gifWriter.writeToSequence(new IIOImage(ri, null, imageMetadata), param);
+                framesWritten++;
+            } finally {
+                // let go of the image chain as soon as possible to free memory
+                if (ri instanceof PlanarImage) {
+                    ImageUtilities.disposePlanarImageChain((PlanarImage) ri);
+                } else if (ri instanceof BufferedImage) {
+                    ((BufferedImage) ri).flush();
                 }
             }
+        }
 
+        void finish() throws IOException {
             // close writing sequence
             gifWriter.endWriteSequence();
 
-        } catch (IOException e) {
-            throw new ServiceException(e);
-        } finally {
+            if (LOGGER.isLoggable(Level.FINE))
+                LOGGER.fine("Done writing animated gif");
+        }
+
+        void dispose() {
             try {
                 otStream.flush();
             } catch (Exception e) {
@@ -228,19 +338,7 @@ public final class GIFMapResponse extends RenderedImageMapResponse {
             } catch (Exception e) {
                 // swallow
             }
-
-            // let go of the image chain as soon as possible to free memory
-            for (RenderedImage image : images) {
-                if (image instanceof PlanarImage) {
-                    ImageUtilities.disposePlanarImageChain((PlanarImage) image);
-                } else if (image instanceof BufferedImage) {
-                    ((BufferedImage) image).flush();
-                }
-            }
         }
-
-        if (LOGGER.isLoggable(Level.FINE))
-            LOGGER.fine("Done writing animated gif");
     }
 
     public String getContentDisposition() {
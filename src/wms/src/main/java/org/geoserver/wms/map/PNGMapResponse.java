@@ -79,10 +79,18 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         super(OUTPUT_FORMATS, wms);
     }
 
+    /**
+     * Returns true if the format is the 8 bit paletted PNG, either as {@code image/png8} or as
+     * {@code image/png; mode=8bit}
+     */
+    public static boolean isPNG8(String format) {
+        return format != null && format.contains("8");
+    }
+
     @Override
     public String getMimeType(Object value, Operation operation) throws ServiceException {
         GetMapRequest request = (GetMapRequest) operation.getParameters()[0];
-        if (request.getFormat().contains("8")) {
+        if (isPNG8(request.getFormat())) {
             return MIME_TYPE_8BIT;
         } else {
             return MIME_TYPE;
@@ -106,7 +114,8 @@ public class PNGMapResponse extends RenderedImageMapResponse {
         }
         
         // check to see if we have to see a translucent or bitmask quantizer
-        image = applyPalette(image, mapContent, "image/png8", true);
+        image = applyPalette(image, mapContent, isPNG8(mapContent.getRequest().getFormat()),
+                true);
 
         Boolean PNGNativeAcc = wms.getPNGNativeAcceleration();
         float quality = (100 - wms.getPngCompression()) / 100.0f;
@@ -44,6 +44,8 @@ import javax.media.jai.operator.FormatDescriptor;
 import javax.media.jai.operator.LookupDescriptor;
 import javax.media.jai.operator.MosaicDescriptor;
 
+import org.geoserver.coverage.CoverageReadPlan;
+import org.geoserver.coverage.CoverageReadPlanner;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wms.DefaultWebMapService;
 import org.geoserver.wms.GetMapOutputFormat;
@@ -63,14 +65,12 @@ import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
-import org.geotools.gce.imagemosaic.ImageMosaicFormat;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.image.ImageWorker;
 import org.geotools.map.Layer;
 import org.geotools.map.StyleLayer;
 import org.geotools.parameter.Parameter;
 import org.geotools.referencing.CRS;
-import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.geotools.renderer.lite.RendererUtilities;
 import org.geotools.renderer.lite.StreamingRenderer;
@@ -81,7 +81,6 @@ import org.geotools.styling.Style;
 import org.geotools.util.logging.Logging;
 import org.opengis.feature.Feature;
 import org.opengis.feature.type.FeatureType;
-import org.opengis.geometry.BoundingBox;
 import org.opengis.parameter.GeneralParameterValue;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
@@ -851,8 +850,7 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
             final GridCoverage2D coverage = readBestCoverage(
                         reader, 
                         params,
-                        ReferencedEnvelope.reference(readGG.getEnvelope()),
-                        readGG.getGridRange2D(), 
+                        readGG,
                         interpolation,
                         readerBgColor);
             
@@ -1161,139 +1159,46 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
 
     /**
      * Reads the best matching grid out of a grid coverage applying sub-sampling and using overviews
-     * as necessary
+     * as necessary, as planned by the {@link CoverageReadPlanner}
      * 
-     * @param mapContent
      * @param reader
      * @param params
-     * @param requestedRasterArea
+     * @param readGG
      * @param interpolation
-     * @return
+     * @param bgColor
+     * @return the coverage, or null if the read area does not intersect the coverage
      * @throws IOException
      */
     private static GridCoverage2D readBestCoverage(
             final AbstractGridCoverage2DReader reader, 
             final Object params,
-            final ReferencedEnvelope envelope,
-            final Rectangle requestedRasterArea,
+            final GridGeometry2D readGG,
             final Interpolation interpolation,
             final Color bgColor) throws IOException {
 
-        ////
-        //
-        // Intersect the present envelope with the request envelope, also in WGS 84 to make sure
-        // there is an actual intersection
-        //
-        ////
-        try {
-            final CoordinateReferenceSystem coverageCRS=reader.getCrs();
-            final CoordinateReferenceSystem requestCRS= envelope.getCoordinateReferenceSystem();
-            final ReferencedEnvelope coverageEnvelope=new ReferencedEnvelope(reader.getOriginalEnvelope());
-            if(CRS.equalsIgnoreMetadata(coverageCRS, requestCRS)){
-                if(!coverageEnvelope.intersects((BoundingBox)envelope))
-                    return null;
-            }else{
-                
-                ReferencedEnvelope dataEnvelopeWGS84 = coverageEnvelope.transform(DefaultGeographicCRS.WGS84, true);
-                ReferencedEnvelope requestEnvelopeWGS84 = envelope.transform(DefaultGeographicCRS.WGS84, true);
-                if (!dataEnvelopeWGS84.intersects((BoundingBox) requestEnvelopeWGS84))
-                    return null;                
-            }
-        } catch (Exception e) {
-            LOGGER.log(
-                    Level.WARNING,
-                    "Failed to compare data and request envelopes, proceeding with rendering anyways",
-                    e);
+        final GeneralParameterValue[] configuredParams = (GeneralParameterValue[]) params;
+        final CoverageReadPlan plan = CoverageReadPlanner.plan(reader, readGG, interpolation,
+                configuredParams);
+        if (plan == null) {
+            return null;
         }
 
-        // //
-        // It is an AbstractGridCoverage2DReader, let's use parameters
-        // if we have any supplied by a user.
-        // //
-        // first I created the correct ReadGeometry
-        final Parameter<GridGeometry2D> readGG = (Parameter<GridGeometry2D>) AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
-        readGG.setValue(new GridGeometry2D(new GridEnvelope2D(requestedRasterArea), envelope));
-        
-        final Parameter<Interpolation> readInterpolation=(Parameter<Interpolation>) ImageMosaicFormat.INTERPOLATION.createValue(); 
-        readInterpolation.setValue(interpolation);
-        
-        final Parameter<Color> bgColorParam;
-        if(bgColor != null) {
-            bgColorParam = (Parameter<Color>) AbstractGridFormat.BACKGROUND_COLOR.createValue();
-            bgColorParam.setValue(bgColor);
-        } else {
-            bgColorParam = null;
-        }
-        
-        
-        // then I try to get read parameters associated with this
-        // coverage if there are any.
-        GridCoverage2D coverage = null;
-        GeneralParameterValue[] readParams = (GeneralParameterValue[]) params;
-        final int length = readParams == null ? 0 :readParams.length;
-        if (length > 0) {
-            // //
-            //
-            // Getting parameters to control how to read this coverage.
-            // Remember to check to actually have them before forwarding
-            // them to the reader.
-            //
-            // //
-        
-            // we have a valid number of parameters, let's check if
-            // also have a READ_GRIDGEOMETRY2D. In such case we just
-            // override it with the one we just build for this
-            // request.
-            final String readGGName = AbstractGridFormat.READ_GRIDGEOMETRY2D.getName().toString();
-            final String readInterpolationName = ImageMosaicFormat.INTERPOLATION.getName().toString();
-            final String bgColorName = AbstractGridFormat.BACKGROUND_COLOR.getName().toString();
-            int i = 0;
-            boolean foundInterpolation = false;
-            boolean foundGG = false;
-            boolean foundBgColor = false;
-            for (; i < length; i++) {
-                final String paramName = readParams[i].getDescriptor().getName().toString();
-                if (paramName.equalsIgnoreCase(readGGName)){
-                    ((Parameter) readParams[i]).setValue(readGG);
-                    foundGG = true;
-                } else if(paramName.equalsIgnoreCase(readInterpolationName)){
-                    ((Parameter) readParams[i]).setValue(interpolation);
-                    foundInterpolation = true;
-                } else if(paramName.equalsIgnoreCase(bgColorName) && bgColor != null) {
-                    ((Parameter) readParams[i]).setValue(bgColor);
-                    foundBgColor = true;
-                }
-            }
-            
-            // did we find anything?
-            if (!foundGG || !foundInterpolation || !(foundBgColor && bgColor != null)) {
-                // add the correct read geometry to the supplied
-                // params since we did not find anything
-                List<GeneralParameterValue> paramList = new ArrayList<GeneralParameterValue>();
-                paramList.addAll(Arrays.asList(readParams));
-                if(!foundGG) {
-                     paramList.add(readGG);
-                } 
-                if(!foundInterpolation) {
-                    paramList.add(readInterpolation);
-                } 
-                if(!foundBgColor && bgColor != null) {
-                    paramList.add(bgColorParam);
+        GeneralParameterValue[] readParams = plan.getReadParameters(configuredParams);
+        if (bgColor != null) {
+            final String bgColorName = AbstractGridFormat.BACKGROUND_COLOR.getName().getCode();
+            List<GeneralParameterValue> paramList = new ArrayList<GeneralParameterValue>();
+            for (GeneralParameterValue readParam : readParams) {
+                if (!readParam.getDescriptor().getName().getCode().equalsIgnoreCase(bgColorName)) {
+                    paramList.add(readParam);
                 }
-                readParams = (GeneralParameterValue[]) paramList.toArray(new GeneralParameterValue[paramList
-                        .size()]);
-            }
-            coverage = (GridCoverage2D) reader.read(readParams);
-        } else { 
-            // if for any reason the previous block did not produce a coverage (no params, empty params)
-            if(bgColorParam != null) {
-                coverage = (GridCoverage2D) reader.read(new GeneralParameterValue[] {readGG ,readInterpolation, bgColorParam});
-            } else {
-                coverage = (GridCoverage2D) reader.read(new GeneralParameterValue[] {readGG ,readInterpolation});
             }
+            final Parameter<Color> bgColorParam = (Parameter<Color>) AbstractGridFormat.BACKGROUND_COLOR.createValue();
+            bgColorParam.setValue(bgColor);
+            paramList.add(bgColorParam);
+            readParams = paramList.toArray(new GeneralParameterValue[paramList.size()]);
         }
 
-        return coverage;
+        return (GridCoverage2D) reader.read(readParams);
     }
 
     /**
@@ -19,6 +19,8 @@ import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.RasterCleaner;
 import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.animate.AnimatedMap;
+import org.geoserver.wms.animate.FrameSequence;
 import org.geoserver.wms.kvp.PaletteManager;
 import org.geoserver.wms.map.PNGMapResponse.QuantizeMethod;
 import org.geoserver.wms.map.quantize.CachingColorIndexer;
@@ -99,6 +101,35 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
     public abstract void formatImageOutputStream(RenderedImage image, OutputStream outStream,
             WMSMapContent mapContent) throws ServiceException, IOException;
 
+    /**
+     * Transforms the frames of an animation into the appropriate format, streaming to the output
+     * stream.
+     * <p>
+     * This default implementation encodes the first frame only, formats supporting animations
+     * should override it to encode the frames one by one as they get rendered.
+     * </p>
+     * 
+     * @param frames The frames to be formatted.
+     * @param outStream The stream to write to.
+     * @param mapContent The map content of the animation.
+     */
+    public void formatFrames(FrameSequence frames, OutputStream outStream,
+            WMSMapContent mapContent) throws ServiceException, IOException {
+        try {
+            RenderedImage image = frames.nextFrame();
+            if (image == null) {
+                throw new ServiceException("Empty list of frames.");
+            }
+            try {
+                formatImageOutputStream(image, outStream, mapContent);
+            } finally {
+                RasterCleaner.addImage(image);
+            }
+        } finally {
+            frames.close();
+        }
+    }
+
     /**
      * Writes the image to the given destination.
      * 
@@ -119,7 +150,11 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
             final List<GridCoverage2D> renderedCoverages = imageMap.getRenderedCoverages();
             final WMSMapContent mapContent = imageMap.getMapContext();
             try {
-                formatImageOutputStream(image, output, mapContent);
+                if (imageMap instanceof AnimatedMap) {
+                    formatFrames(((AnimatedMap) imageMap).getFrames(), output, mapContent);
+                } else {
+                    formatImageOutputStream(image, output, mapContent);
+                }
                 output.flush();
             } finally {
                 // let go of the coverages created for rendering
@@ -146,6 +181,19 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
      */
     protected RenderedImage applyPalette(RenderedImage image, WMSMapContent mapContent,
             String palettedFormatName, boolean supportsTranslucency) {
+        boolean paletted = palettedFormatName.equalsIgnoreCase(mapContent.getRequest()
+                .getFormat());
+        return applyPalette(image, mapContent, paletted, supportsTranslucency);
+    }
+
+    /**
+     * Same as {@link #applyPalette(RenderedImage, WMSMapContent, String, boolean)}, for formats
+     * having more than one name for their paletted variant
+     * 
+     * @param paletted true if the requested format is the paletted one
+     */
+    protected RenderedImage applyPalette(RenderedImage image, WMSMapContent mapContent,
+            boolean paletted, boolean supportsTranslucency) {
         // check to see if we have to see a translucent or bitmask quantizer
         GetMapRequest request = mapContent.getRequest();
         QuantizeMethod method = (QuantizeMethod) request.getFormatOptions().get(
@@ -155,13 +203,12 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
                 || (method == null && image.getColorModel().getTransparency() != Transparency.TRANSLUCENT);
 
         // do we have to use the bitmask quantizer?
-        final String format = request.getFormat();
         IndexColorModel icm = mapContent.getPalette();
         if (useBitmaskQuantizer) {
             // user provided palette?
             if (icm != null) {
                 image = forceIndexed8Bitmask(image, PaletteManager.getInverseColorMapOp(icm));
-            } else if (palettedFormatName.equalsIgnoreCase(format)) {
+            } else if (paletted) {
                 // or format that needs palette to be applied?
                 image = forceIndexed8Bitmask(image, null);
             }
@@ -175,7 +222,7 @@ public abstract class RenderedImageMapResponse extends AbstractMapResponse {
                 // user provided palette?
                 if (mapContent.getPalette() != null) {
                     indexer = new CachingColorIndexer(new LRUColorIndexer(icm, 1024));
-                } else if (palettedFormatName.equalsIgnoreCase(format)) {
+                } else if (paletted) {
                     // build the palette and grab the optimized color indexer
                     indexer = new Quantizer(256).subsample().buildColorIndexer(image);
                 }
@@ -0,0 +1,126 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+import java.util.TreeSet;
+
+import org.geoserver.catalog.DimensionPresentation;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.data.test.MockData;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class DimensionDomainCacheTest extends WMSDimensionsTestSupport {
+
+    DimensionDomainCache cache;
+
+    @Before
+    public void clearCache() {
+        cache = getWMS().getDimensionDomainCache();
+        assertNotNull(cache);
+        cache.clear();
+    }
+
+    FeatureTypeInfo timeElevation() {
+        return getCatalog().getFeatureTypeByName(V_TIME_ELEVATION.getLocalPart());
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        setupVectorDimension(ResourceInfo.TIME, "time", DimensionPresentation.LIST, null, null,
+                null);
+
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        TreeSet<Date> times = getWMS().getFeatureTypeTimes(timeElevation());
+        assertEquals(4, times.size());
+        assertEquals(misses + 1, cache.getMisses());
+
+        // the same domain serves the current time too
+        assertEquals(times.last(), getWMS().getCurrentTime(timeElevation()));
+        assertEquals(4, getWMS().getFeatureTypeTimes(timeElevation()).size());
+        assertEquals(misses + 1, cache.getMisses());
+        assertEquals(hits + 2, cache.getHits());
+    }
+
+    @Test
+    public void testConfigurationChange() throws Exception {
+        setupVectorDimension(ResourceInfo.ELEVATION, "elevation", DimensionPresentation.LIST,
+                null, null, null);
+        assertEquals(4, getWMS().getFeatureTypeElevations(timeElevation()).size());
+
+        setupVectorDimension(ResourceInfo.ELEVATION, "elevation",
+                DimensionPresentation.CONTINUOUS_INTERVAL, null, null, null);
+        TreeSet<Double> elevations = getWMS().getFeatureTypeElevations(timeElevation());
+        assertEquals(2, elevations.size());
+        assertEquals(0d, elevations.first(), 0d);
+        assertEquals(3d, elevations.last(), 0d);
+    }
+
+    @Test
+    public void testTransactions() throws Exception {
+        setupVectorDimension(ResourceInfo.TIME, "time", DimensionPresentation.LIST, null, null,
+                null);
+        TreeSet<Date> times = getWMS().getFeatureTypeTimes(timeElevation());
+        assertEquals(4, times.size());
+        assertEquals(1, cache.size());
+        long misses = cache.getMisses();
+
+        // an insert extends the cached domain
+        String insert = "<wfs:Transaction service=\"WFS\" version=\"1.0.0\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:gml=\"http://www.opengis.net/gml\" "
+                + "xmlns:sf=\"" + MockData.SF_URI + "\">"
+                + "<wfs:Insert><sf:TimeElevation>"
+                + "<sf:geom><gml:Polygon><gml:outerBoundaryIs><gml:LinearRing>"
+                + "<gml:coordinates>0,0 1,0 1,1 0,1 0,0</gml:coordinates>"
+                + "</gml:LinearRing></gml:outerBoundaryIs></gml:Polygon></sf:geom>"
+                + "<sf:time>2011-05-05</sf:time><sf:elevation>4.0</sf:elevation>"
+                + "</sf:TimeElevation></wfs:Insert></wfs:Transaction>";
+        Document dom = postAsDOM("wfs", insert);
+        assertEquals(1, dom.getElementsByTagName("wfs:SUCCESS").getLength());
+
+        TreeSet<Date> updated = getWMS().getFeatureTypeTimes(timeElevation());
+        assertEquals(misses, cache.getMisses());
+        assertEquals(5, updated.size());
+        assertTrue(updated.last().after(times.last()));
+        assertEquals(updated.last(), getWMS().getCurrentTime(timeElevation()));
+
+        // removing a value of the domain drops it
+        String delete = "<wfs:Transaction service=\"WFS\" version=\"1.0.0\" "
+                + "xmlns:wfs=\"http://www.opengis.net/wfs\" "
+                + "xmlns:ogc=\"http://www.opengis.net/ogc\" "
+                + "xmlns:sf=\"" + MockData.SF_URI + "\">"
+                + "<wfs:Delete typeName=\"sf:TimeElevation\"><ogc:Filter>"
+                + "<ogc:PropertyIsEqualTo><ogc:PropertyName>elevation</ogc:PropertyName>"
+                + "<ogc:Literal>4.0</ogc:Literal></ogc:PropertyIsEqualTo>"
+                + "</ogc:Filter></wfs:Delete></wfs:Transaction>";
+        dom = postAsDOM("wfs", delete);
+        assertEquals(1, dom.getElementsByTagName("wfs:SUCCESS").getLength());
+        assertEquals(0, cache.size());
+
+        assertEquals(times, getWMS().getFeatureTypeTimes(timeElevation()));
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void testDisabledDimensionRemoved() throws Exception {
+        setupVectorDimension(ResourceInfo.TIME, "time", DimensionPresentation.LIST, null, null,
+                null);
+        getWMS().getFeatureTypeTimes(timeElevation());
+        assertEquals(1, cache.size());
+
+        // saving the feature type drops its domains
+        FeatureTypeInfo info = timeElevation();
+        info.getMetadata().remove(ResourceInfo.TIME);
+        getCatalog().save(info);
+        assertEquals(0, cache.size());
+    }
+}
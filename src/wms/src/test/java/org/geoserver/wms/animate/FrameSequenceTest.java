@@ -0,0 +1,226 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.animate;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.media.jai.RenderedImageAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FrameSequenceTest {
+
+    ExecutorService executor;
+
+    AtomicInteger running = new AtomicInteger();
+
+    AtomicInteger maxRunning = new AtomicInteger();
+
+    @Before
+    public void setUpExecutor() {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    List<Callable<RenderedImage>> loaders(int count) {
+        List<Callable<RenderedImage>> loaders = new ArrayList<Callable<RenderedImage>>();
+        for (int i = 0; i < count; i++) {
+            // the frame width tells us which frame it is
+            final int width = i + 1;
+            loaders.add(new Callable<RenderedImage>() {
+
+                public RenderedImage call() throws Exception {
+                    int current = running.incrementAndGet();
+                    int max;
+                    while ((max = maxRunning.get()) < current
+                            && !maxRunning.compareAndSet(max, current)) {
+                        // retry
+                    }
+                    try {
+                        // give the other frames a chance to start
+                        Thread.sleep(10);
+                        return new BufferedImage(width, 1, BufferedImage.TYPE_BYTE_GRAY);
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                }
+            });
+        }
+        return loaders;
+    }
+
+    @Test
+    public void testOrderAndParallelism() throws Exception {
+        FrameSequence frames = new FrameSequence(loaders(20), executor, 3, Integer.MAX_VALUE,
+                null);
+        assertEquals(20, frames.size());
+        try {
+            for (int i = 0; i < 20; i++) {
+                RenderedImage frame = frames.nextFrame();
+                assertNotNull(frame);
+                assertEquals(i + 1, frame.getWidth());
+            }
+            assertNull(frames.nextFrame());
+        } finally {
+            frames.close();
+        }
+        assertEquals(20, frames.getProduced());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void testMaxFrames() throws Exception {
+        FrameSequence frames = new FrameSequence(loaders(5), executor, 2, 3, null);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertNotNull(frames.nextFrame());
+            }
+            frames.nextFrame();
+            fail("Should have failed, too many frames");
+        } catch (IOException e) {
+            // fine
+        }
+        // closed after the failure
+        assertNull(frames.nextFrame());
+    }
+
+    @Test
+    public void testMaxRenderingSize() throws Exception {
+        FrameSequence frames = new FrameSequence(loaders(10), executor, 2, Integer.MAX_VALUE,
+                5l);
+        try {
+            frames.toList();
+            fail("Should have failed, frames too big");
+        } catch (IOException e) {
+            assertEquals("Max rendering size exceed!", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testRenderingFailure() throws Exception {
+        List<Callable<RenderedImage>> loaders = loaders(3);
+        loaders.add(1, new Callable<RenderedImage>() {
+
+            public RenderedImage call() throws Exception {
+                throw new IllegalStateException("Rendering failed");
+            }
+        });
+        FrameSequence frames = new FrameSequence(loaders, executor, 2, Integer.MAX_VALUE, null);
+        assertNotNull(frames.nextFrame());
+        try {
+            frames.nextFrame();
+            fail("Should have failed");
+        } catch (IOException e) {
+            assertTrue(e.getCause().getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testSkipEmptyFrames() throws Exception {
+        List<Callable<RenderedImage>> loaders = loaders(2);
+        loaders.add(1, new Callable<RenderedImage>() {
+
+            public RenderedImage call() throws Exception {
+                return null;
+            }
+        });
+        FrameSequence frames = new FrameSequence(loaders, executor, 2, Integer.MAX_VALUE, null);
+        assertEquals(2, frames.toList().size());
+    }
+
+    @Test
+    public void testDisposeOverLimit() throws Exception {
+        final List<RenderedImage> disposed = new ArrayList<RenderedImage>();
+        List<Callable<RenderedImage>> loaders = new ArrayList<Callable<RenderedImage>>();
+        for (int i = 0; i < 3; i++) {
+            loaders.add(new Callable<RenderedImage>() {
+
+                public RenderedImage call() throws Exception {
+                    BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+                    return new RenderedImageAdapter(image) {
+                        @Override
+                        public void dispose() {
+                            synchronized (disposed) {
+                                disposed.add(this);
+                            }
+                        }
+                    };
+                }
+            });
+        }
+        FrameSequence frames = new FrameSequence(loaders, executor, 1, 2, null);
+        assertNotNull(frames.nextFrame());
+        assertNotNull(frames.nextFrame());
+        try {
+            frames.nextFrame();
+            fail("Should have failed, too many frames");
+        } catch (IOException e) {
+            // fine
+        }
+        // the frame over the limit is not handed out, and is disposed
+        assertEquals(1, disposed.size());
+    }
+
+    @Test
+    public void testCloseWhileWaiting() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        List<Callable<RenderedImage>> loaders = new ArrayList<Callable<RenderedImage>>();
+        loaders.add(new Callable<RenderedImage>() {
+
+            public RenderedImage call() throws Exception {
+                started.countDown();
+                release.await();
+                return new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+            }
+        });
+        final FrameSequence frames = new FrameSequence(loaders, executor, 1, Integer.MAX_VALUE,
+                null);
+        ExecutorService consumers = Executors.newFixedThreadPool(2);
+        try {
+            Future<RenderedImage> next = consumers.submit(new Callable<RenderedImage>() {
+
+                public RenderedImage call() throws Exception {
+                    return frames.nextFrame();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // the consumer is waiting for the frame, closing must not wait for it
+            Future<?> close = consumers.submit(new Runnable() {
+
+                public void run() {
+                    frames.close();
+                }
+            });
+            close.get(5, TimeUnit.SECONDS);
+
+            // the frame rendered in the meantime is not handed out
+            release.countDown();
+            assertNull(next.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            consumers.shutdownNow();
+        }
+    }
+}
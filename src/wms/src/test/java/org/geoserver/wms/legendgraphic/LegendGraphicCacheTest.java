@@ -0,0 +1,92 @@
+/* Copyright (c) 2001 - 2013 OpenPlans - www.openplans.org. All rights reserved.
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.legendgraphic;
+
+import static org.junit.Assert.*;
+
+import java.net.URLEncoder;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.wms.WMSTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mockrunner.mock.web.MockHttpServletRequest;
+import com.mockrunner.mock.web.MockHttpServletResponse;
+
+public class LegendGraphicCacheTest extends WMSTestSupport {
+
+    LegendGraphicCache cache;
+
+    String request;
+
+    @Before
+    public void setUpCache() {
+        cache = applicationContext.getBean(LegendGraphicCache.class);
+        cache.clear();
+        request = "wms?service=WMS&version=1.1.1&request=GetLegendGraphic&layer="
+                + getLayerId(MockData.LAKES) + "&style=Lakes&format=image/png&width=20&height=20";
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        long hits = cache.getHits();
+        MockHttpServletResponse response = getAsServletResponse(request);
+        assertEquals("image/png", response.getContentType());
+        assertEquals(1, cache.size());
+        assertNotNull(response.getHeader("ETag"));
+        assertNotNull(response.getHeader("Last-Modified"));
+
+        MockHttpServletResponse cached = getAsServletResponse(request);
+        assertEquals("image/png", cached.getContentType());
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals(response.getOutputStreamContent(), cached.getOutputStreamContent());
+
+        // different options, different legend
+        getAsServletResponse(request + "&legend_options=fontSize:20");
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse(request);
+        String etag = response.getHeader("ETag");
+
+        MockHttpServletRequest conditional = createRequest(request);
+        conditional.setMethod("GET");
+        conditional.setBodyContent(new byte[] {});
+        conditional.setHeader("If-None-Match", etag);
+        response = dispatch(conditional, "UTF-8");
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getErrorCode());
+    }
+
+    @Test
+    public void testStyleChangeInvalidates() throws Exception {
+        getAsServletResponse(request);
+        assertEquals(1, cache.size());
+
+        Catalog catalog = getCatalog();
+        StyleInfo style = catalog.getStyleByName("Lakes");
+        catalog.save(style);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInlineStyleNotCached() throws Exception {
+        String sldBody = "<StyledLayerDescriptor version=\"1.0.0\" "
+                + "xmlns=\"http://www.opengis.net/sld\"><NamedLayer><Name>"
+                + getLayerId(MockData.LAKES) + "</Name><UserStyle><FeatureTypeStyle><Rule>"
+                + "<PolygonSymbolizer/></Rule></FeatureTypeStyle></UserStyle></NamedLayer>"
+                + "</StyledLayerDescriptor>";
+        getAsServletResponse("wms?service=WMS&version=1.1.1&request=GetLegendGraphic&layer="
+                + getLayerId(MockData.LAKES) + "&format=image/png&width=20&height=20&sld_body="
+                + URLEncoder.encode(sldBody, "UTF-8"));
+        assertEquals(0, cache.size());
+    }
+}
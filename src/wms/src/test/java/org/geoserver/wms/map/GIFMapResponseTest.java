@@ -4,6 +4,24 @@
  */
 package org.geoserver.wms.map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.WMSMapContent;
+import org.geoserver.wms.animate.FrameSequence;
+import org.junit.Test;
+
 
 public class GIFMapResponseTest extends RenderedImageMapOutputFormatTest {
 
@@ -13,4 +31,38 @@ public class GIFMapResponseTest extends RenderedImageMapOutputFormatTest {
         return new RenderedImageMapOutputFormat("image/gif", getWMS());
     }
 
+    @Test
+    public void testAnimationFailingFrameWritesNothing() throws Exception {
+        List<Callable<RenderedImage>> loaders = new ArrayList<Callable<RenderedImage>>();
+        loaders.add(new Callable<RenderedImage>() {
+            public RenderedImage call() throws Exception {
+                return new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+            }
+        });
+        loaders.add(new Callable<RenderedImage>() {
+            public RenderedImage call() throws Exception {
+                throw new IllegalStateException("Rendering failed");
+            }
+        });
+
+        GetMapRequest request = new GetMapRequest();
+        request.setFormat(GIFMapResponse.IMAGE_GIF_SUBTYPE_ANIMATED);
+        WMSMapContent mapContent = new WMSMapContent(request);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            FrameSequence frames = new FrameSequence(loaders, executor, 1, Integer.MAX_VALUE,
+                    null);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try {
+                new GIFMapResponse(getWMS()).formatFrames(frames, output, mapContent);
+                fail("The failing frame should have resulted in a service exception");
+            } catch (ServiceException e) {
+                // the first frame has been encoded, but nothing went out
+                assertEquals(0, output.size());
+            }
+        } finally {
+            mapContent.dispose();
+            executor.shutdownNow();
+        }
+    }
 }
@@ -334,6 +334,18 @@ public class GetMapIntegrationTest extends WMSTestSupport {
     }
 
     
+    @Test
+    public void testPng8ModeSpelling() throws Exception {
+        MockHttpServletResponse response = getAsServletResponse("wms?bbox=" + bbox
+                + "&styles=&layers=" + layers + "&Format=image/png;%20mode=8bit"
+                + "&request=GetMap" + "&width=550" + "&height=250" + "&srs=EPSG:4326");
+        assertEquals("image/png; mode=8bit", response.getContentType());
+
+        InputStream is = getBinaryInputStream(response);
+        BufferedImage bi = ImageIO.read(is);
+        assertTrue(bi.getColorModel() instanceof IndexColorModel);
+    }
+
     @Test 
     public void testDefaultContentDisposition() throws Exception {
         MockHttpServletResponse response = getAsServletResponse("wms?bbox=" + bbox
@@ -226,7 +226,8 @@ public class GetFeatureInfoIntegrationTest extends WMSTestSupport {
     public void testCustomTemplateManyRules() throws Exception {
         // setup custom template
         File root = getTestData().getDataDirectoryRoot();
-        File target = new File(root, "workspaces/" + MockData.FORESTS.getPrefix() + "/content.ftl");
+        File target = getResourceLoader().createFile(root,
+                "workspaces/" + MockData.FORESTS.getPrefix() + "/content.ftl");
         File source = new File("./src/test/resources/org/geoserver/wms/content.ftl");
         try {
             assertTrue(source.exists());